@@ -0,0 +1,46 @@
+// compares the heap used by a list of many short, repetitive strings held as ConsLoStrings
+// and as ArenaLoStrings, with and without interning
+// run with: java -cp <classes> ArenaLoStringBenchmark [elements] [distinct strings]
+// prints one CSV line per representation: name, bytes retained, bytes per element
+class ArenaLoStringBenchmark {
+
+  public static void main(String[] args) {
+    int elements = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    System.out.println("representation,bytes,bytesPerElement");
+
+    long before = usedHeap();
+    ILoString cons = new MtLoString();
+    for (int i = elements - 1; i >= 0; i -= 1) {
+      // a new String for every element, as parsing a log would make
+      cons = new ConsLoString(new String("level=" + (i % distinct)), cons);
+    }
+    report("ConsLoString", usedHeap() - before, elements);
+
+    before = usedHeap();
+    ArenaLoString plain = new ArenaLoString(new StringArena(false), cons);
+    report("ArenaLoString", usedHeap() - before, elements);
+
+    before = usedHeap();
+    ArenaLoString interned = new ArenaLoString(new StringArena(true), cons);
+    report("ArenaLoString interned", usedHeap() - before, elements);
+
+    // keep everything reachable until it's been measured
+    System.out.println("# " + cons.length() + " " + plain.length() + " " + interned.length());
+  }
+
+  // returns the number of bytes in use on the heap, after collecting garbage
+  static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i += 1) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // prints one line of results
+  static void report(String name, long bytes, int elements) {
+    System.out.printf("%s,%d,%.1f%n", name, bytes, (double) bytes / elements);
+  }
+}
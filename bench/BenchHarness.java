@@ -0,0 +1,188 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+// one benchmark: a piece of work on a data structure of a given size, which the harness times
+// over and over
+interface IBenchmark {
+
+  // the name the results are reported under, such as "Deque.headTail"
+  String name();
+
+  // the largest size this benchmark is worth running at (some structures take quadratic time
+  // or stack depth on some inputs, so they're only run up to a size that finishes)
+  int maxSize();
+
+  // EFFECT: builds whatever the work needs, from scratch, for the given size
+  // this isn't timed
+  void setup(int size);
+
+  // does the work once, returning something that depends on all of it (so the JIT can't skip
+  // any of it)
+  Object run();
+
+  // the number of operations one run does, for the given size
+  long operations(int size);
+}
+
+// the results of timing one benchmark at one size
+class BenchResult {
+
+  // what was timed
+  String name;
+  int size;
+
+  // how many timed runs there were
+  int iterations;
+
+  // operations per second: the mean over the runs, and the standard deviation
+  double opsPerSecond;
+  double opsPerSecondStdDev;
+
+  // the mean time of one run, in nanoseconds
+  double nanosPerRun;
+
+  // the mean number of bytes allocated per operation
+  double bytesPerOp;
+
+  // the allocation rate over the runs, in megabytes per second
+  double allocMbPerSecond;
+
+  // constructor
+  BenchResult(String name, int size, int iterations, double opsPerSecond,
+      double opsPerSecondStdDev, double nanosPerRun, double bytesPerOp,
+      double allocMbPerSecond) {
+    this.name = name;
+    this.size = size;
+    this.iterations = iterations;
+    this.opsPerSecond = opsPerSecond;
+    this.opsPerSecondStdDev = opsPerSecondStdDev;
+    this.nanosPerRun = nanosPerRun;
+    this.bytesPerOp = bytesPerOp;
+    this.allocMbPerSecond = allocMbPerSecond;
+  }
+
+  // the header line for results written as CSV
+  static String csvHeader() {
+    return "benchmark,size,iterations,opsPerSecond,opsPerSecondStdDev,nanosPerRun,bytesPerOp,"
+        + "allocMbPerSecond";
+  }
+
+  // returns this result as a line of CSV
+  String toCsv() {
+    return String.format("%s,%d,%d,%.1f,%.1f,%.1f,%.2f,%.2f", this.name, this.size,
+        this.iterations, this.opsPerSecond, this.opsPerSecondStdDev, this.nanosPerRun,
+        this.bytesPerOp, this.allocMbPerSecond);
+  }
+
+  // returns this result as a JSON object on one line
+  String toJson() {
+    return String.format("{\"benchmark\":\"%s\",\"size\":%d,\"iterations\":%d,"
+        + "\"opsPerSecond\":%.1f,\"opsPerSecondStdDev\":%.1f,\"nanosPerRun\":%.1f,"
+        + "\"bytesPerOp\":%.2f,\"allocMbPerSecond\":%.2f}", this.name, this.size,
+        this.iterations, this.opsPerSecond, this.opsPerSecondStdDev, this.nanosPerRun,
+        this.bytesPerOp, this.allocMbPerSecond);
+  }
+}
+
+// times benchmarks: for each size, a benchmark is set up and run a few times to warm up the
+// JIT, and then set up and run some more times while being timed. Each timed run measures the
+// wall-clock time and the bytes the current thread allocated (as counted by the JVM), so
+// benchmarks should do their work on the calling thread.
+// This is a small stand-in for JMH (which needs a build tool to fetch it), so its numbers are
+// good for spotting regressions between runs on the same machine, not for fine comparisons.
+class BenchHarness {
+
+  // the number of untimed runs before the timed ones
+  int warmups;
+
+  // the number of timed runs
+  int iterations;
+
+  // where results are written, and whether as JSON lines (or CSV)
+  PrintStream out;
+  boolean json;
+
+  // a running combination of every run's result, so none of them can be optimized away
+  long sink;
+
+  // constructor
+  BenchHarness(int warmups, int iterations, PrintStream out, boolean json) {
+    this.warmups = warmups;
+    this.iterations = iterations;
+    this.out = out;
+    this.json = json;
+    this.sink = 0;
+  }
+
+  // EFFECT: runs each of the given benchmarks at each of the given sizes it can handle,
+  // writing a result for each
+  // returns every result
+  ArrayList<BenchResult> runAll(ArrayList<IBenchmark> benchmarks, int[] sizes) {
+    if (!this.json) {
+      this.out.println(BenchResult.csvHeader());
+    }
+
+    ArrayList<BenchResult> results = new ArrayList<BenchResult>();
+    for (IBenchmark bench : benchmarks) {
+      for (int size : sizes) {
+        if (size <= bench.maxSize()) {
+          BenchResult result = this.measure(bench, size);
+          results.add(result);
+          if (this.json) {
+            this.out.println(result.toJson());
+          } else {
+            this.out.println(result.toCsv());
+          }
+          this.out.flush();
+        }
+      }
+    }
+    return results;
+  }
+
+  // returns the result of timing the given benchmark at the given size
+  BenchResult measure(IBenchmark bench, int size) {
+    for (int i = 0; i < this.warmups; i += 1) {
+      bench.setup(size);
+      this.consume(bench.run());
+    }
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long ops = bench.operations(size);
+
+    double[] rates = new double[this.iterations];
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (int i = 0; i < this.iterations; i += 1) {
+      bench.setup(size);
+      long bytesBefore = threads.getThreadAllocatedBytes(thread);
+      long start = System.nanoTime();
+      Object result = bench.run();
+      long nanos = Math.max(1, System.nanoTime() - start);
+      totalBytes += threads.getThreadAllocatedBytes(thread) - bytesBefore;
+      totalNanos += nanos;
+      rates[i] = ops * 1e9 / nanos;
+      this.consume(result);
+    }
+
+    double mean = 0;
+    for (double rate : rates) {
+      mean += rate / this.iterations;
+    }
+    double variance = 0;
+    for (double rate : rates) {
+      variance += (rate - mean) * (rate - mean) / Math.max(1, this.iterations - 1);
+    }
+    return new BenchResult(bench.name(), size, this.iterations, mean, Math.sqrt(variance),
+        (double) totalNanos / this.iterations, (double) totalBytes / (ops * this.iterations),
+        totalBytes / 1e6 / (totalNanos / 1e9));
+  }
+
+  // EFFECT: folds the given result into the sink
+  void consume(Object result) {
+    this.sink = this.sink * 31 + System.identityHashCode(result);
+  }
+}
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+// measures how many durable adds a second a DurableQueue takes: with a force per add, with
+// group commit shared between producer threads, and with one producer adding batches
+// run with: java -cp <classes> DurableQueueBenchmark [adds] [producers, comma-separated]
+// prints one CSV line per mode and number of producers
+class DurableQueueBenchmark {
+
+  public static void main(String[] args) {
+    int adds = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    String[] parts = (args.length > 1 ? args[1] : "1,4,16").split(",");
+
+    System.out.println("mode,producers,adds,millis,addsPerSecond,forces");
+    for (String part : parts) {
+      int producers = Integer.parseInt(part.trim());
+      run("perOp", false, producers, adds);
+      run("groupCommit", true, producers, adds);
+    }
+    runBatched(adds, 100);
+  }
+
+  // EFFECT: adds the given number of items from the given number of threads and prints a line
+  static void run(String mode, boolean groupCommit, int producers, int adds) {
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(tempDirectory(), new IntCodec(),
+        DurableQueue.DEFAULT_SEGMENT_BYTES, groupCommit);
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p += 1) {
+      threads.add(new Thread(new Producer(queue, p * adds, adds / producers)));
+    }
+    long forces = queue.log.forces;
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+    report(mode, producers, adds / producers * producers, start, queue.log.forces - forces);
+    queue.close();
+  }
+
+  // EFFECT: adds the given number of items from one thread in batches of the given size and
+  // prints a line
+  static void runBatched(int adds, int batchSize) {
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(tempDirectory(), new IntCodec());
+    long forces = queue.log.forces;
+    long start = System.nanoTime();
+    for (int i = 0; i < adds; i += batchSize) {
+      ArrayList<Integer> batch = new ArrayList<Integer>();
+      for (int j = i; j < Math.min(adds, i + batchSize); j += 1) {
+        batch.add(j);
+      }
+      queue.addAll(batch);
+    }
+    report("batch" + batchSize, 1, adds, start, queue.log.forces - forces);
+    queue.close();
+  }
+
+  // EFFECT: prints the line for a run that started at the given time
+  static void report(String mode, int producers, int adds, long start, long forces) {
+    long nanos = System.nanoTime() - start;
+    System.out.println(mode + "," + producers + "," + adds + "," + nanos / 1000000 + ","
+        + (long) (adds * 1e9 / nanos) + "," + forces);
+  }
+
+  // returns a new temporary directory for a queue
+  static Path tempDirectory() {
+    try {
+      return Files.createTempDirectory("walbench");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+// measures how much faster counting a stream of events into an orderable multiset with
+// ToMultiSet gets with more threads: each thread counts its share into its own multiset, and
+// those are merged with mergeFrom at the end
+// run with: java -cp <classes> MultiSetCollectBenchmark [events] [max threads] [distinct items]
+// prints one CSV line per pool size: threads, best time in milliseconds, events a second, and
+// speedup over 1 thread
+class MultiSetCollectBenchmark {
+
+  public static void main(String[] args) {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 100000000;
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    int distinct = args.length > 2 ? Integer.parseInt(args[2]) : 65536;
+
+    System.out.println("threads,millis,eventsPerSecond,speedup");
+    double baseline = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      // a parallel stream runs in the pool it's started from, so this sets its parallelism
+      ForkJoinPool pool = new ForkJoinPool(threads);
+
+      double best = Double.MAX_VALUE;
+      // the first round warms up the JIT, and the best of the rest is kept
+      for (int round = 0; round < 3; round += 1) {
+        long start = System.nanoTime();
+        OrderableMultiSet<Integer> counted = pool.submit(new CollectEvents(events, distinct))
+            .join();
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (counted.distinctCount() != Math.min(events, distinct)) {
+          throw new IllegalStateException("The events weren't all counted.");
+        }
+        if (round >= 1) {
+          best = Math.min(best, millis);
+        }
+      }
+      pool.shutdown();
+
+      if (threads == 1) {
+        baseline = best;
+      }
+      System.out.printf("%d,%.2f,%d,%.2f%n", threads, best, (long) (events / best * 1000),
+          baseline / best);
+    }
+  }
+}
+
+// counts the given number of events, spread over the given number of distinct items, into an
+// orderable multiset with a parallel stream
+class CollectEvents implements Callable<OrderableMultiSet<Integer>> {
+
+  // the number of events, and of distinct items they're spread over
+  int events;
+  int distinct;
+
+  // constructor
+  CollectEvents(int events, int distinct) {
+    this.events = events;
+    this.distinct = distinct;
+  }
+
+  public OrderableMultiSet<Integer> call() {
+    return IntStream.range(0, this.events).parallel().map(new EventItem(this.distinct)).boxed()
+        .collect(new ToMultiSet<Integer>(new IncrementingIntegers()));
+  }
+}
+
+// returns the item of the event with the given number, scattering consecutive events over
+// the distinct items
+class EventItem implements IntUnaryOperator {
+
+  // the number of distinct items
+  int distinct;
+
+  // constructor
+  EventItem(int distinct) {
+    this.distinct = distinct;
+  }
+
+  public int applyAsInt(int event) {
+    return (int) Long.remainderUnsigned(event * 0x9E3779B97F4A7C15L, this.distinct);
+  }
+}
@@ -0,0 +1,130 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+// compares the garbage collector's work for a BinarySearchTree<Long> and a LongBPlusTree of
+// the same random keys: the time to insert them, the GC time and collections during the
+// inserts, the heap the finished structure keeps alive, and how long a full collection takes
+// while it's alive (which is what the tree's object graph adds to every old-generation pause)
+// run with: java -cp <classes> OffHeapBenchmark [keys]
+// prints one CSV line per structure
+class OffHeapBenchmark {
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    long[] keys = new long[count];
+    long state = 88172645463325252L;
+    for (int i = 0; i < count; i += 1) {
+      state ^= state << 13;
+      state ^= state >>> 7;
+      state ^= state << 17;
+      keys[i] = state;
+    }
+
+    System.out.println("structure,keys,insertMillis,gcCount,gcMillis,heapBytes,fullGcMillis");
+
+    long before = usedHeap();
+    long[] gc = gcTotals();
+    long start = System.nanoTime();
+    BinarySearchTree<Long> heap = new BinarySearchTree<Long>(new IncreasingLongs());
+    for (long key : keys) {
+      heap.insert(key);
+    }
+    report("BinarySearchTree", count, start, gc, before);
+    // keep the tree alive until it's been measured
+    System.out.println("# " + heap.find(new CompareToAnswer<Long>(new IncreasingLongs(),
+        keys[0])));
+    heap = null;
+
+    before = usedHeap();
+    gc = gcTotals();
+    start = System.nanoTime();
+    LongBPlusTree offHeap = new LongBPlusTree(new DirectPageStore());
+    for (long key : keys) {
+      offHeap.insert(key);
+    }
+    report("LongBPlusTree", count, start, gc, before);
+    System.out.println("# " + offHeap.contains(keys[0]) + " "
+        + offHeap.store.pageCount * (long) APageStore.PAGE_SIZE + " bytes off the heap");
+  }
+
+  // EFFECT: prints the line for a structure that's just been built
+  static void report(String name, int count, long start, long[] gcBefore, long heapBefore) {
+    long insertMillis = (System.nanoTime() - start) / 1000000;
+    long[] gc = gcTotals();
+    long heapBytes = usedHeap() - heapBefore;
+    long fullStart = System.nanoTime();
+    System.gc();
+    long fullGcMillis = (System.nanoTime() - fullStart) / 1000000;
+    System.out.println(name + "," + count + "," + insertMillis + "," + (gc[0] - gcBefore[0])
+        + "," + (gc[1] - gcBefore[1]) + "," + heapBytes + "," + fullGcMillis);
+  }
+
+  // returns the number of collections so far and their total time in milliseconds
+  static long[] gcTotals() {
+    long[] totals = new long[2];
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      totals[0] += Math.max(0, bean.getCollectionCount());
+      totals[1] += Math.max(0, bean.getCollectionTime());
+    }
+    return totals;
+  }
+
+  // returns the bytes of heap in use after collecting garbage
+  static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i += 1) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
+
+// inserts keys into an off-heap tree, or looks them all up in one
+class LongTreeOps implements IBenchmark {
+
+  // "insert" or "contains"
+  String op;
+
+  long[] keys;
+  LongBPlusTree tree;
+
+  LongTreeOps(String op) {
+    this.op = op;
+  }
+
+  public String name() {
+    return "LongBPlusTree." + this.op;
+  }
+
+  public int maxSize() {
+    return 10000000;
+  }
+
+  public void setup(int size) {
+    int[] shuffled = BenchKeys.make(size, true);
+    this.keys = new long[size];
+    for (int i = 0; i < size; i += 1) {
+      this.keys[i] = shuffled[i] * 2654435761L;
+    }
+    this.tree = new LongBPlusTree(new DirectPageStore());
+    if (this.op.equals("contains")) {
+      for (long key : this.keys) {
+        this.tree.insert(key);
+      }
+    }
+  }
+
+  public Object run() {
+    long found = 0;
+    for (long key : this.keys) {
+      if (this.op.equals("insert") ? this.tree.insert(key) : this.tree.contains(key)) {
+        found += 1;
+      }
+    }
+    return found;
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
@@ -0,0 +1,53 @@
+import java.util.concurrent.ForkJoinPool;
+
+// measures how much faster ParallelLists.map gets with more threads, for a function that's
+// expensive enough for the splitting to pay off
+// run with: java -cp <classes> ParallelListsBenchmark [elements] [max threads]
+// prints one CSV line per pool size: threads, best time in milliseconds, speedup over 1 thread
+class ParallelListsBenchmark {
+
+  public static void main(String[] args) {
+    int elements = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+    IList<Integer> list = new MtList<Integer>();
+    for (int i = elements - 1; i >= 0; i -= 1) {
+      list = new ConsList<Integer>(i, list);
+    }
+
+    System.out.println("threads,millis,speedup");
+    double baseline = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      ParallelLists<Integer> par = new ParallelLists<Integer>(pool, 64);
+
+      double best = Double.MAX_VALUE;
+      // the first few rounds warm up the JIT, and the best of the rest is kept
+      for (int round = 0; round < 8; round += 1) {
+        long start = System.nanoTime();
+        par.map(list, new SlowHash());
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (round >= 3) {
+          best = Math.min(best, millis);
+        }
+      }
+      pool.shutdown();
+
+      if (threads == 1) {
+        baseline = best;
+      }
+      System.out.printf("%d,%.2f,%.2f%n", threads, best, baseline / best);
+    }
+  }
+}
+
+// a deliberately slow function, which mixes the bits of its input thousands of times
+class SlowHash implements IFunc<Integer, Integer> {
+  public Integer apply(Integer num) {
+    int hash = num;
+    for (int i = 0; i < 5000; i += 1) {
+      hash = hash * 31 + (hash >>> 7) + i;
+    }
+    return hash;
+  }
+}
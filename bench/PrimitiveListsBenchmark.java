@@ -0,0 +1,53 @@
+import java.lang.management.ManagementFactory;
+
+// compares the memory allocated by a numeric pipeline (square every number, keep the even
+// squares, add them up) over an IList<Integer> and over an IntList
+// run with: java -cp <classes> PrimitiveListsBenchmark [elements]
+// prints one CSV line per version: name, bytes allocated per run, time per run in milliseconds
+class PrimitiveListsBenchmark {
+
+  public static void main(String[] args) {
+    int elements = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    // Integers up to 127 are cached, so start above that to box honestly
+    IList<Integer> boxed = new MtList<Integer>();
+    for (int i = elements - 1; i >= 0; i -= 1) {
+      boxed = new ConsList<Integer>(i + 1000, boxed);
+    }
+    IntList ints = new IntList(boxed);
+
+    System.out.println("version,bytes,millis");
+    for (int round = 0; round < 5; round += 1) {
+      IList<Integer> list = boxed;
+      report("IList<Integer>", round, () -> list.map(new SquareInteger())
+          .filter(new Even()).foldr(new SumInts(), 0));
+      report("IntList", round, () -> ints.map(new SquareInt())
+          .filter(new EvenInt()).foldl(new AddInts(), 0));
+    }
+  }
+
+  // runs the given pipeline, and prints what it allocated and how long it took, except during
+  // the first rounds, which only warm up the JIT
+  static void report(String name, int round, Runnable pipeline) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    long bytesBefore = threads.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    pipeline.run();
+    double millis = (System.nanoTime() - start) / 1e6;
+    long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+    if (round >= 2) {
+      System.out.printf("%s,%d,%.2f%n", name, bytes, millis);
+    }
+  }
+}
+
+// squares an Integer
+class SquareInteger implements IFunc<Integer, Integer> {
+  public Integer apply(Integer num) {
+    return num * num;
+  }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+// restores an orderable multiset of a stream of events (an add per event, with about 8 events
+// per distinct item) by replaying every event
+class ReplayEvents implements IBenchmark {
+
+  int[] events;
+
+  public String name() {
+    return "OrderableMultiSet.replayEvents";
+  }
+
+  public int maxSize() {
+    return 10000000;
+  }
+
+  public void setup(int size) {
+    int[] keys = BenchKeys.make(size, true);
+    this.events = new int[size];
+    for (int i = 0; i < size; i += 1) {
+      this.events[i] = keys[i] / 8;
+    }
+  }
+
+  public Object run() {
+    return this.replay();
+  }
+
+  // returns the multiset the events add up to
+  OrderableMultiSet<Integer> replay() {
+    OrderableMultiSet<Integer> set = new OrderableMultiSet<Integer>(new IncrementingIntegers());
+    for (int event : this.events) {
+      set.add(event);
+    }
+    return set;
+  }
+
+  // one operation per event restored, so the two ways of restoring can be compared directly
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// restores the same multiset as ReplayEvents by loading a snapshot of it
+class LoadSnapshot implements IBenchmark {
+
+  MultiSetSnapshot<Integer> snapshot = new MultiSetSnapshot<Integer>(new IntCodec());
+  Path file;
+
+  // the size the snapshot file was written for (it's only written once per size)
+  int written = -1;
+
+  public String name() {
+    return "OrderableMultiSet.loadSnapshot";
+  }
+
+  public int maxSize() {
+    return 10000000;
+  }
+
+  public void setup(int size) {
+    if (size == this.written) {
+      return;
+    }
+    ReplayEvents replay = new ReplayEvents();
+    replay.setup(size);
+    OrderableMultiSet<Integer> set = replay.replay();
+    try {
+      if (this.file == null) {
+        this.file = Files.createTempFile("multiset", ".snap");
+        this.file.toFile().deleteOnExit();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.snapshot.write(set, this.file);
+    this.written = size;
+  }
+
+  public Object run() {
+    return this.snapshot.load(this.file, new IncrementingIntegers());
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// compares restoring a multiset by replaying its events with loading a snapshot of it
+// run with: java -cp <classes> SnapshotBenchmark [sizes, comma-separated]
+// prints CSV in the same form as BenchSuite
+class SnapshotBenchmark {
+
+  public static void main(String[] args) {
+    String sizes = args.length > 0 ? args[0] : "1000,10000,100000,1000000";
+    String[] parts = sizes.split(",");
+    int[] sizeList = new int[parts.length];
+    for (int i = 0; i < parts.length; i += 1) {
+      sizeList[i] = Integer.parseInt(parts[i].trim());
+    }
+
+    ArrayList<IBenchmark> benchmarks = new ArrayList<IBenchmark>();
+    benchmarks.add(new ReplayEvents());
+    benchmarks.add(new LoadSnapshot());
+    new BenchHarness(2, 3, System.out, false).runAll(benchmarks, sizeList);
+  }
+}
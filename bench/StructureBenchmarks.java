@@ -0,0 +1,478 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+// the keys benchmarks insert and look up: 0 up to (but not including) a size, either in order
+// or shuffled the same way every time
+class BenchKeys {
+
+  // returns the keys for the given size, in order or shuffled
+  static int[] make(int size, boolean shuffled) {
+    int[] keys = new int[size];
+    for (int i = 0; i < size; i += 1) {
+      keys[i] = i;
+    }
+    if (shuffled) {
+      Random random = new Random(42);
+      for (int i = size - 1; i > 0; i -= 1) {
+        int j = random.nextInt(i + 1);
+        int swap = keys[i];
+        keys[i] = keys[j];
+        keys[j] = swap;
+      }
+    }
+    return keys;
+  }
+}
+
+// adds to the head of a deque and removes from its tail, size times each
+class DequeHeadTail implements IBenchmark {
+
+  // the deque, and how many elements go through it in a run
+  Deque<Integer> deque;
+  int size;
+
+  public String name() {
+    return "Deque.headTail";
+  }
+
+  public int maxSize() {
+    return 10000000;
+  }
+
+  public void setup(int size) {
+    this.size = size;
+    this.deque = new Deque<Integer>();
+  }
+
+  public Object run() {
+    long sum = 0;
+    for (int i = 0; i < this.size; i += 1) {
+      this.deque.addAtHead(i);
+    }
+    for (int i = 0; i < this.size; i += 1) {
+      sum += this.deque.removeFromTail();
+    }
+    return sum;
+  }
+
+  public long operations(int size) {
+    return 2L * size;
+  }
+}
+
+// adds size elements to a worklist and takes them all out again
+class WorkListChurn implements IBenchmark {
+
+  // whether this uses a stack (or a queue), the worklist, and how many elements go through
+  // it in a run
+  boolean stack;
+  IWorkList<Integer> work;
+  int size;
+
+  WorkListChurn(boolean stack) {
+    this.stack = stack;
+  }
+
+  public String name() {
+    if (this.stack) {
+      return "Stack.churn";
+    } else {
+      return "Queue.churn";
+    }
+  }
+
+  public int maxSize() {
+    return 10000000;
+  }
+
+  public void setup(int size) {
+    this.size = size;
+    if (this.stack) {
+      this.work = new Stack<Integer>();
+    } else {
+      this.work = new Queue<Integer>();
+    }
+  }
+
+  public Object run() {
+    long sum = 0;
+    for (int i = 0; i < this.size; i += 1) {
+      this.work.add(i);
+    }
+    while (!this.work.isEmpty()) {
+      sum += this.work.next();
+    }
+    return sum;
+  }
+
+  public long operations(int size) {
+    return 2L * size;
+  }
+}
+
+// inserts size keys into an empty binary search tree
+// the tree doesn't balance itself, so sorted keys make it a path: inserting is quadratic and
+// recurses once per level, so sorted keys only run at small sizes
+class BstInsert implements IBenchmark {
+
+  // whether the keys are shuffled (or sorted), the keys, and the tree they go into
+  boolean shuffled;
+  int[] keys;
+  BinarySearchTree<Integer> tree;
+
+  BstInsert(boolean shuffled) {
+    this.shuffled = shuffled;
+  }
+
+  public String name() {
+    return "BinarySearchTree.insert." + (this.shuffled ? "random" : "sorted");
+  }
+
+  public int maxSize() {
+    return this.shuffled ? 1000000 : 1000;
+  }
+
+  public void setup(int size) {
+    this.keys = BenchKeys.make(size, this.shuffled);
+    this.tree = new BinarySearchTree<Integer>(new IncrementingIntegers());
+  }
+
+  public Object run() {
+    for (int key : this.keys) {
+      this.tree.insert(key);
+    }
+    return this.tree;
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// reads a binary search tree of size keys: finding every key, getting every index, or
+// iterating over it
+class BstRead implements IBenchmark {
+
+  // whether the keys were inserted shuffled (or sorted)
+  boolean shuffled;
+
+  // "find", "get" or "iterate"
+  String op;
+
+  // the keys, and the tree they were inserted into (kept between runs, since reading
+  // doesn't change it)
+  int[] keys;
+  BinarySearchTree<Integer> tree;
+
+  BstRead(boolean shuffled, String op) {
+    this.shuffled = shuffled;
+    this.op = op;
+  }
+
+  public String name() {
+    return "BinarySearchTree." + this.op + "." + (this.shuffled ? "random" : "sorted");
+  }
+
+  public int maxSize() {
+    if (!this.shuffled) {
+      return 1000;
+    } else if (this.op.equals("get")) {
+      // get counts the nodes of a subtree at every step, so it's linear per call
+      return 10000;
+    } else {
+      return 1000000;
+    }
+  }
+
+  public void setup(int size) {
+    if (this.tree == null || this.tree.size() != size) {
+      this.keys = BenchKeys.make(size, this.shuffled);
+      this.tree = new BinarySearchTree<Integer>(new IncrementingIntegers());
+      for (int key : this.keys) {
+        this.tree.insert(key);
+      }
+    }
+  }
+
+  public Object run() {
+    long sum = 0;
+    if (this.op.equals("find")) {
+      IncrementingIntegers order = new IncrementingIntegers();
+      for (int key : this.keys) {
+        sum += this.tree.find(new CompareToAnswer<Integer>(order, key));
+      }
+    } else if (this.op.equals("get")) {
+      for (int i = 0; i < this.keys.length; i += 1) {
+        sum += this.tree.get(i);
+      }
+    } else {
+      for (int value : this.tree) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// works with an ordered multiset of size items drawn from size / 8 distinct keys: adding them
+// all, counting each key, or checking a subset of a quarter of the keys
+class MultiSetOps implements IBenchmark {
+
+  // "add", "itemCount" or "hasSubset"
+  String op;
+
+  // the items, the set of them, and a set of a quarter of them
+  int[] items;
+  OrderableMultiSet<Integer> set;
+  OrderableMultiSet<Integer> subset;
+
+  MultiSetOps(String op) {
+    this.op = op;
+  }
+
+  public String name() {
+    return "OrderableMultiSet." + this.op;
+  }
+
+  public int maxSize() {
+    return 1000000;
+  }
+
+  public void setup(int size) {
+    int[] keys = BenchKeys.make(size, true);
+    this.items = new int[size];
+    for (int i = 0; i < size; i += 1) {
+      this.items[i] = keys[i] / 8;
+    }
+    this.set = new OrderableMultiSet<Integer>(new IncrementingIntegers());
+    this.subset = new OrderableMultiSet<Integer>(new IncrementingIntegers());
+    if (!this.op.equals("add")) {
+      for (int item : this.items) {
+        this.set.add(item);
+      }
+      for (int i = 0; i < size / 4; i += 1) {
+        this.subset.add(this.items[i]);
+      }
+    }
+  }
+
+  public Object run() {
+    if (this.op.equals("add")) {
+      for (int item : this.items) {
+        this.set.add(item);
+      }
+      return this.set;
+    } else if (this.op.equals("itemCount")) {
+      long sum = 0;
+      for (int item : this.items) {
+        sum += this.set.itemCount(item);
+      }
+      return sum;
+    } else {
+      return this.set.hasSubset(this.subset);
+    }
+  }
+
+  public long operations(int size) {
+    if (this.op.equals("hasSubset")) {
+      return Math.max(1, size / 4);
+    } else {
+      return size;
+    }
+  }
+}
+
+// runs an operation over a ConsList of size integers: map, filter, foldr, length or append
+class IListOps implements IBenchmark {
+
+  // the operation to run, and the list it runs on (kept between runs)
+  String op;
+  IList<Integer> list;
+
+  IListOps(String op) {
+    this.op = op;
+  }
+
+  public String name() {
+    return "IList." + this.op;
+  }
+
+  public int maxSize() {
+    return 1000000;
+  }
+
+  public void setup(int size) {
+    if (this.list == null || this.list.length() != size) {
+      IList<Integer> result = new MtList<Integer>();
+      for (int i = size - 1; i >= 0; i -= 1) {
+        result = new ConsList<Integer>(i, result);
+      }
+      this.list = result;
+    }
+  }
+
+  public Object run() {
+    if (this.op.equals("map")) {
+      return this.list.map(new AddOne());
+    } else if (this.op.equals("filter")) {
+      return this.list.filter(new Even());
+    } else if (this.op.equals("foldr")) {
+      return this.list.foldr(new SumInts(), 0);
+    } else if (this.op.equals("length")) {
+      return this.list.length();
+    } else {
+      return this.list.append(this.list);
+    }
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// runs an operation over an ILoString of size short strings, built as a mix of Cons, Snoc and
+// Append nodes: length, normalize, reverse or scanConcat
+// scanConcat's result holds a quadratic number of characters, so it only runs at small sizes
+class ILoStringOps implements IBenchmark {
+
+  // the operation to run, and the list it runs on and its size (kept between runs)
+  String op;
+  ILoString list;
+  int size = -1;
+
+  ILoStringOps(String op) {
+    this.op = op;
+  }
+
+  public String name() {
+    return "ILoString." + this.op;
+  }
+
+  // scanConcat's result has a quadratic number of characters
+  public int maxSize() {
+    if (this.op.equals("scanConcat")) {
+      return 10000;
+    } else {
+      return 1000000;
+    }
+  }
+
+  public void setup(int size) {
+    if (this.size != size) {
+      ILoString result = new MtLoString();
+      for (int i = 0; i < size; i += 1) {
+        if (i % 3 == 0) {
+          result = new ConsLoString("c" + (i % 100), result);
+        } else if (i % 3 == 1) {
+          result = new SnocLoString(result, "s" + (i % 100));
+        } else {
+          result = new AppendLoString(result, new ConsLoString("a" + (i % 100),
+              new MtLoString()));
+        }
+      }
+      this.list = result;
+      this.size = size;
+    }
+  }
+
+  public Object run() {
+    if (this.op.equals("length")) {
+      return this.list.length();
+    } else if (this.op.equals("normalize")) {
+      return this.list.normalize();
+    } else if (this.op.equals("reverse")) {
+      return this.list.reverse();
+    } else {
+      return this.list.scanConcat();
+    }
+  }
+
+  public long operations(int size) {
+    return size;
+  }
+}
+
+// runs every benchmark (or the ones whose names match a pattern) at a range of sizes, writing
+// machine-readable results
+// run with: java -cp <classes> BenchSuite [options]
+//   --sizes 1000,10000,...   the sizes to run at (default 1000 up to 10000000, by tens)
+//   --filter <regex>         only run benchmarks whose names match
+//   --format csv|json        CSV with a header, or one JSON object per line (default csv)
+//   --warmup <n>             untimed runs before each measurement (default 3)
+//   --iterations <n>         timed runs per measurement (default 5)
+//   --out <file>             write results to a file instead of standard output
+class BenchSuite {
+
+  public static void main(String[] args) throws java.io.IOException {
+    int[] sizes = {1000, 10000, 100000, 1000000, 10000000};
+    String filter = ".*";
+    boolean json = false;
+    int warmup = 3;
+    int iterations = 5;
+    java.io.PrintStream out = System.out;
+
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      String value = args[i + 1];
+      if (args[i].equals("--sizes")) {
+        String[] parts = value.split(",");
+        sizes = new int[parts.length];
+        for (int j = 0; j < parts.length; j += 1) {
+          sizes[j] = Integer.parseInt(parts[j].trim());
+        }
+      } else if (args[i].equals("--filter")) {
+        filter = value;
+      } else if (args[i].equals("--format")) {
+        json = value.equals("json");
+      } else if (args[i].equals("--warmup")) {
+        warmup = Integer.parseInt(value);
+      } else if (args[i].equals("--iterations")) {
+        iterations = Integer.parseInt(value);
+      } else if (args[i].equals("--out")) {
+        out = new java.io.PrintStream(new java.io.FileOutputStream(value), true, "UTF-8");
+      } else {
+        throw new IllegalArgumentException("Unknown option: " + args[i]);
+      }
+    }
+
+    ArrayList<IBenchmark> selected = new ArrayList<IBenchmark>();
+    for (IBenchmark bench : all()) {
+      if (bench.name().matches(filter)) {
+        selected.add(bench);
+      }
+    }
+    new BenchHarness(warmup, iterations, out, json).runAll(selected, sizes);
+    out.close();
+  }
+
+  // returns every benchmark in the suite
+  static ArrayList<IBenchmark> all() {
+    ArrayList<IBenchmark> all = new ArrayList<IBenchmark>();
+    all.add(new DequeHeadTail());
+    all.add(new WorkListChurn(true));
+    all.add(new WorkListChurn(false));
+    for (boolean shuffled : new boolean[] {false, true}) {
+      all.add(new BstInsert(shuffled));
+      all.add(new BstRead(shuffled, "find"));
+      all.add(new BstRead(shuffled, "get"));
+      all.add(new BstRead(shuffled, "iterate"));
+    }
+    all.add(new MultiSetOps("add"));
+    all.add(new MultiSetOps("itemCount"));
+    all.add(new MultiSetOps("hasSubset"));
+    all.add(new ReplayEvents());
+    all.add(new LoadSnapshot());
+    all.add(new LongTreeOps("insert"));
+    all.add(new LongTreeOps("contains"));
+    for (String op : new String[] {"map", "filter", "foldr", "length", "append"}) {
+      all.add(new IListOps(op));
+    }
+    for (String op : new String[] {"length", "normalize", "reverse", "scanConcat"}) {
+      all.add(new ILoStringOps(op));
+    }
+    return all;
+  }
+}
@@ -0,0 +1,454 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import tester.*;
+
+// a count-min sketch: a fixed grid of counters where every item is hashed to one counter per
+// row. An item's count is estimated by the smallest of its counters, which can only ever be
+// too high (when other items share all of its counters), never too low.
+// With a width of e / epsilon and a depth of ln(1 / delta), an estimate is at most
+// epsilon * (the total number of items added) too high, with probability at least 1 - delta.
+// The counters are longs, like the total, since a sketch is meant for streams long enough
+// that one item alone can be added more than Integer.MAX_VALUE times.
+class CountMinSketch<T> {
+
+  // the counters, one row per hash function
+  long[][] counters;
+
+  // the number of counters in each row
+  int width;
+
+  // the total number of items added to this sketch
+  long total;
+
+  // constructor
+  // the width and depth are derived from the given error bound and failure probability
+  CountMinSketch(double epsilon, double delta) {
+    if (epsilon <= 0 || epsilon >= 1) {
+      throw new IllegalArgumentException("The error bound must be between 0 and 1.");
+    }
+    if (delta <= 0 || delta >= 1) {
+      throw new IllegalArgumentException("The failure probability must be between 0 and 1.");
+    }
+    this.width = (int) Math.ceil(Math.E / epsilon);
+    this.counters = new long[(int) Math.ceil(Math.log(1 / delta))][this.width];
+    this.total = 0;
+  }
+
+  // EFFECT: counts one more occurrence of the given item, returning its new estimated count
+  long add(T item) {
+    int hash = item.hashCode();
+    long estimate = Long.MAX_VALUE;
+
+    for (int row = 0; row < this.counters.length; row += 1) {
+      int column = this.column(hash, row);
+      this.counters[row][column] += 1;
+      estimate = Math.min(estimate, this.counters[row][column]);
+    }
+    this.total += 1;
+
+    return estimate;
+  }
+
+  // returns the estimated number of times the given item has been added
+  long estimate(T item) {
+    int hash = item.hashCode();
+    long estimate = Long.MAX_VALUE;
+
+    for (int row = 0; row < this.counters.length; row += 1) {
+      estimate = Math.min(estimate, this.counters[row][this.column(hash, row)]);
+    }
+
+    return estimate;
+  }
+
+  // returns the given count, or Integer.MAX_VALUE if it's larger than that, for reporting
+  // through methods that count in ints
+  static int saturate(long count) {
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  // returns the column that the given hash falls into in the given row
+  // each row scrambles the hash differently, so items that collide in one row are unlikely
+  // to collide in the others
+  int column(int hash, int row) {
+    int h = hash ^ (0x9E3779B9 * (row + 1));
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return (h & 0x7FFFFFFF) % this.width;
+  }
+}
+
+// an item tracked by a TopKTracker, along with its estimated count and where it currently
+// is in the tracker's heap
+class TrackedItem<T> {
+
+  // the tracked item
+  T item;
+
+  // the estimated count of the item
+  long count;
+
+  // the index of this entry in the heap
+  int position;
+
+  // constructor
+  TrackedItem(T item, long count, int position) {
+    this.item = item;
+    this.count = count;
+    this.position = position;
+  }
+}
+
+// keeps track of the (at most) capacity items with the largest counts it has been told about:
+// once it's full, a new item only gets a slot by evicting the tracked item with the smallest
+// count, and only if its own count is larger.
+// The tracked items are kept in a binary min-heap ordered by count, so the eviction candidate
+// is always at the top.
+// This is the heavy-hitters scheme that pairs a count-min sketch with a heap: the counts it's
+// told are the sketch's estimates, and a tracked count is exactly as good as the estimate it
+// came from. It is NOT Space-Saving, which counts by itself and hands an evicted slot's count
+// (plus one) to the item that takes it; Space-Saving's error bound doesn't apply here.
+class TopKTracker<T> {
+
+  // the tracked items, as a min-heap on their counts
+  ArrayList<TrackedItem<T>> heap;
+
+  // the tracked items, looked up by the item itself
+  HashMap<T, TrackedItem<T>> index;
+
+  // the most items this tracker will hold at once
+  int capacity;
+
+  // constructor
+  TopKTracker(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+    this.heap = new ArrayList<TrackedItem<T>>(capacity);
+    this.index = new HashMap<T, TrackedItem<T>>(capacity * 2);
+    this.capacity = capacity;
+  }
+
+  // EFFECT: records that the given item now has the given (never decreasing) count, tracking
+  // it if there's room or if its count beats the smallest tracked count
+  void offer(T item, long count) {
+    TrackedItem<T> tracked = this.index.get(item);
+
+    if (tracked != null) {
+      tracked.count = count;
+      this.siftDown(tracked.position);
+    } else if (this.heap.size() < this.capacity) {
+      tracked = new TrackedItem<T>(item, count, this.heap.size());
+      this.heap.add(tracked);
+      this.index.put(item, tracked);
+      this.siftUp(tracked.position);
+    } else if (count > this.heap.get(0).count) {
+      // reuse the evicted entry so that a full tracker allocates nothing new
+      tracked = this.heap.get(0);
+      this.index.remove(tracked.item);
+      tracked.item = item;
+      tracked.count = count;
+      this.index.put(item, tracked);
+      this.siftDown(0);
+    }
+  }
+
+  // returns the (at most) k tracked items with the largest counts, largest first
+  ArrayList<Pair<T, Integer>> top(int k) {
+    ArrayList<TrackedItem<T>> sorted = new ArrayList<TrackedItem<T>>(this.heap);
+    sorted.sort(new ByCountDescending<T>());
+
+    ArrayList<Pair<T, Integer>> result = new ArrayList<Pair<T, Integer>>();
+    for (int i = 0; i < Math.min(k, sorted.size()); i += 1) {
+      result.add(new Pair<T, Integer>(sorted.get(i).item,
+          CountMinSketch.saturate(sorted.get(i).count)));
+    }
+
+    return result;
+  }
+
+  // EFFECT: moves the entry at the given position up the heap until its parent is no larger
+  void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (this.heap.get(parent).count <= this.heap.get(position).count) {
+        return;
+      }
+      this.swap(position, parent);
+      position = parent;
+    }
+  }
+
+  // EFFECT: moves the entry at the given position down the heap until its children are no
+  // smaller
+  void siftDown(int position) {
+    while (true) {
+      int smallest = position;
+      int left = 2 * position + 1;
+      int right = left + 1;
+
+      if (left < this.heap.size() && this.heap.get(left).count < this.heap.get(smallest).count) {
+        smallest = left;
+      }
+      if (right < this.heap.size()
+          && this.heap.get(right).count < this.heap.get(smallest).count) {
+        smallest = right;
+      }
+      if (smallest == position) {
+        return;
+      }
+      this.swap(position, smallest);
+      position = smallest;
+    }
+  }
+
+  // EFFECT: swaps the heap entries at the two given positions
+  void swap(int i, int j) {
+    TrackedItem<T> first = this.heap.get(i);
+    TrackedItem<T> second = this.heap.get(j);
+    this.heap.set(i, second);
+    this.heap.set(j, first);
+    first.position = j;
+    second.position = i;
+  }
+}
+
+// orders tracked items from the largest count to the smallest
+class ByCountDescending<T> implements java.util.Comparator<TrackedItem<T>> {
+
+  // a negative result means the left item has the larger count
+  public int compare(TrackedItem<T> left, TrackedItem<T> right) {
+    return Long.compare(right.count, left.count);
+  }
+}
+
+// a multiset that only approximately counts its items, using a fixed amount of memory no matter
+// how many distinct items are added. Counts come from a count-min sketch, so they are never too
+// low and, with probability 1 - delta, at most epsilon * (the total number of items added) too
+// high. The items with the largest estimated counts are also tracked (by a TopKTracker fed
+// those estimates), and are what iteration produces.
+// Items must have an equals and hashCode that agree with each other.
+class ApproximateMultiSet<T> implements IMultiSet<T> {
+
+  // the sketch that estimates every item's count
+  CountMinSketch<T> sketch;
+
+  // the most frequent items seen so far
+  TopKTracker<T> heavyHitters;
+
+  // constructor
+  // the sketch is sized by the given error bound and failure probability, and the given
+  // number of most frequent items are tracked
+  ApproximateMultiSet(double epsilon, double delta, int capacity) {
+    this.sketch = new CountMinSketch<T>(epsilon, delta);
+    this.heavyHitters = new TopKTracker<T>(capacity);
+  }
+
+  // How often does the given item (approximately) appear in this multi set?
+  // never less than the true count, except that a count too large for an int is reported as
+  // Integer.MAX_VALUE
+  public int itemCount(T item) {
+    return CountMinSketch.saturate(this.sketch.estimate(item));
+  }
+
+  // The given multiset is a subset of this multiset if every item in the given multiset is
+  // present in this one, with a count that's less than or equal to the count in this multiset.
+  // Since counts are overestimates, this can report a subset that isn't really one, but it
+  // never rejects a real subset.
+  public boolean hasSubset(IMultiSet<T> other) {
+    for (Pair<T, Integer> pair : other) {
+      if (pair.second > this.itemCount(pair.first)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // EFFECT: adds the given item into this multiset
+  public void add(T item) {
+    this.heavyHitters.offer(item, this.sketch.add(item));
+  }
+
+  // returns the number of items added to this multiset, counting duplicates
+  long totalCount() {
+    return this.sketch.total;
+  }
+
+  // returns the (at most) k tracked items with the largest estimated counts, largest first
+  // (saturated at Integer.MAX_VALUE, like itemCount)
+  // k can be at most the number of items this multiset was built to track
+  ArrayList<Pair<T, Integer>> topK(int k) {
+    if (k > this.heavyHitters.capacity) {
+      throw new IllegalArgumentException("Only the top " + this.heavyHitters.capacity
+          + " items are tracked.");
+    }
+    return this.heavyHitters.top(k);
+  }
+
+  // returns an iterator over the tracked most frequent items and their estimated counts
+  public Iterator<Pair<T, Integer>> iterator() {
+    return this.heavyHitters.top(this.heavyHitters.capacity).iterator();
+  }
+}
+
+// a class for testing approximate multiset functionality
+class ExamplesApproximateMultiSet {
+
+  // returns a stream of the given number of draws from a Zipf distribution with the given
+  // exponent over the keys 0 to keys - 1, where key 0 is the most likely
+  ArrayList<Integer> zipf(int draws, int keys, double exponent, long seed) {
+    double[] cumulative = new double[keys];
+    double sum = 0;
+    for (int i = 0; i < keys; i += 1) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+
+    Random random = new Random(seed);
+    ArrayList<Integer> result = new ArrayList<Integer>(draws);
+    for (int i = 0; i < draws; i += 1) {
+      double target = random.nextDouble() * sum;
+      int low = 0;
+      int high = keys - 1;
+      while (low < high) {
+        int mid = (low + high) / 2;
+        if (cumulative[mid] < target) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      result.add(low);
+    }
+
+    return result;
+  }
+
+  // test that the sketch is sized from the error bounds, and rejects bad bounds
+  void testSketchSize(Tester t) {
+    CountMinSketch<String> sketch = new CountMinSketch<String>(0.01, 0.01);
+    t.checkExpect(sketch.width, 272);
+    t.checkExpect(sketch.counters.length, 5);
+
+    t.checkConstructorException(
+        new IllegalArgumentException("The error bound must be between 0 and 1."),
+        "CountMinSketch", 0.0, 0.5);
+    t.checkConstructorException(
+        new IllegalArgumentException("The failure probability must be between 0 and 1."),
+        "CountMinSketch", 0.5, 1.0);
+  }
+
+  // test counting a handful of items, which fit without any collisions
+  void testSmallCounts(Tester t) {
+    ApproximateMultiSet<String> set = new ApproximateMultiSet<String>(0.001, 0.001, 3);
+    set.add("a");
+    set.add("b");
+    set.add("a");
+    set.add("c");
+    set.add("a");
+    set.add("b");
+
+    t.checkExpect(set.itemCount("a"), 3);
+    t.checkExpect(set.itemCount("b"), 2);
+    t.checkExpect(set.itemCount("c"), 1);
+    t.checkExpect(set.itemCount("d"), 0);
+    t.checkExpect(set.totalCount(), 6L);
+
+    ArrayList<Pair<String, Integer>> top = set.topK(2);
+    t.checkExpect(top.size(), 2);
+    t.checkExpect(top.get(0).first, "a");
+    t.checkExpect(top.get(0).second, 3);
+    t.checkExpect(top.get(1).first, "b");
+
+    OrderableMultiSet<String> subset = new OrderableMultiSet<String>(new AlphabeticalStrings());
+    subset.add("a");
+    subset.add("a");
+    t.checkExpect(set.hasSubset(subset), true);
+    subset.add("d");
+    t.checkExpect(set.hasSubset(subset), false);
+
+    t.checkException(new IllegalArgumentException("Only the top 3 items are tracked."),
+        set, "topK", 4);
+  }
+
+  // test that a full tracker evicts its smallest item for a more frequent one
+  void testEviction(Tester t) {
+    ApproximateMultiSet<String> set = new ApproximateMultiSet<String>(0.001, 0.001, 2);
+    set.add("a");
+    set.add("b");
+    set.add("c"); // ties with the smallest tracked count, so it isn't tracked yet
+    t.checkExpect(set.topK(2).size(), 2);
+    set.add("c"); // now beats one of them
+    t.checkExpect(set.topK(1).get(0).first, "c");
+    t.checkExpect(set.topK(1).get(0).second, 2);
+  }
+
+  // test that a counter past Integer.MAX_VALUE keeps counting, and is reported saturated
+  void testHugeCounts(Tester t) {
+    ApproximateMultiSet<String> set = new ApproximateMultiSet<String>(0.01, 0.01, 2);
+    CountMinSketch<String> sketch = set.sketch;
+    // as if "a" had already been added Integer.MAX_VALUE times
+    for (int row = 0; row < sketch.counters.length; row += 1) {
+      sketch.counters[row][sketch.column("a".hashCode(), row)] = Integer.MAX_VALUE;
+    }
+    set.add("a");
+    set.add("a");
+
+    t.checkExpect(sketch.estimate("a"), Integer.MAX_VALUE + 2L);
+    t.checkExpect(set.itemCount("a"), Integer.MAX_VALUE);
+    t.checkExpect(set.heavyHitters.heap.get(0).count, Integer.MAX_VALUE + 2L);
+    t.checkExpect(set.topK(1).get(0).second, Integer.MAX_VALUE);
+  }
+
+  // test that on skewed Zipf data, estimates never undercount, stay within epsilon * N of the
+  // truth for all but (at most) a delta fraction of keys, and the top items are found
+  void testErrorBoundsOnZipf(Tester t) {
+    double epsilon = 0.001;
+    double delta = 0.01;
+    int keys = 20000;
+    ArrayList<Integer> stream = this.zipf(200000, keys, 1.1, 2510);
+
+    ApproximateMultiSet<Integer> approx = new ApproximateMultiSet<Integer>(epsilon, delta, 50);
+    int[] exact = new int[keys];
+    for (Integer item : stream) {
+      approx.add(item);
+      exact[item] += 1;
+    }
+
+    int undercounts = 0;
+    int outOfBounds = 0;
+    for (int key = 0; key < keys; key += 1) {
+      int estimate = approx.itemCount(key);
+      if (estimate < exact[key]) {
+        undercounts += 1;
+      }
+      if (estimate - exact[key] > epsilon * stream.size()) {
+        outOfBounds += 1;
+      }
+    }
+
+    t.checkExpect(undercounts, 0);
+    t.checkExpect(outOfBounds <= delta * keys, true);
+
+    // the most frequent keys of a Zipf distribution are 0, 1, 2, ... in that order
+    ArrayList<Pair<Integer, Integer>> top = approx.topK(5);
+    for (int i = 0; i < 5; i += 1) {
+      t.checkExpect(top.get(i).first, i);
+    }
+  }
+}
+
+// an example comparator, which orders strings alphabetically
+class AlphabeticalStrings implements IComparator<String> {
+
+  // compares two strings. a negative result means the first string comes first alphabetically
+  public int compare(String left, String right) {
+    return left.compareTo(right);
+  }
+}
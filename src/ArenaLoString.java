@@ -0,0 +1,335 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+// a shared store for the characters of many strings: every string added gets a number (its
+// entry), and its characters are copied onto the end of one big char array, where the entry
+// records its offset and length. Strings are only made again when they're asked for.
+// If interning is turned on, adding a string that's already in the arena gives back the entry
+// it already has instead of storing its characters again, which makes lists of a few strings
+// repeated many times take little more than 4 bytes per element.
+// Entries are never removed, so an arena should live as long as the lists that use it.
+// It isn't safe to add to an arena from more than one thread at a time.
+class StringArena {
+
+  // the characters of every entry, one after another
+  char[] chars;
+
+  // the number of characters used in the array
+  int charCount;
+
+  // where each entry's characters start, and how many there are
+  int[] offsets;
+  int[] lengths;
+
+  // the number of entries
+  int entryCount;
+
+  // the intern table, or null if interning is off: each slot holds an entry plus one, or 0 if
+  // it's empty, and an entry is in the first empty slot at or after the one its hash picks
+  int[] table;
+
+  // constructor
+  StringArena(boolean intern) {
+    this.chars = new char[1024];
+    this.charCount = 0;
+    this.offsets = new int[64];
+    this.lengths = new int[64];
+    this.entryCount = 0;
+    if (intern) {
+      this.table = new int[128];
+    } else {
+      this.table = null;
+    }
+  }
+
+  // returns the entry for the given string
+  // EFFECT: stores the string's characters, unless it's interned and already here
+  int add(String str) {
+    if (this.table == null) {
+      return this.store(str);
+    }
+
+    int last = this.table.length - 1;
+    int slot = this.hash(str) & last;
+    while (this.table[slot] != 0) {
+      int entry = this.table[slot] - 1;
+      if (this.matches(entry, str)) {
+        return entry;
+      }
+      slot = (slot + 1) & last;
+    }
+
+    int entry = this.store(str);
+    this.table[slot] = entry + 1;
+    if (this.entryCount * 2 > this.table.length) {
+      this.growTable();
+    }
+    return entry;
+  }
+
+  // returns the string with the given entry, made from its characters
+  String get(int entry) {
+    if (entry < 0 || entry >= this.entryCount) {
+      throw new IndexOutOfBoundsException("The given entry is not in this arena.");
+    }
+    return new String(this.chars, this.offsets[entry], this.lengths[entry]);
+  }
+
+  // returns the number of characters in the string with the given entry
+  int length(int entry) {
+    return this.lengths[entry];
+  }
+
+  // EFFECT: copies the characters of the given string onto the end of the array
+  // returns the new entry for it
+  int store(String str) {
+    if (this.charCount + str.length() > this.chars.length) {
+      this.chars = Arrays.copyOf(this.chars,
+          Math.max(this.chars.length * 2, this.charCount + str.length()));
+    }
+    if (this.entryCount == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, this.entryCount * 2);
+      this.lengths = Arrays.copyOf(this.lengths, this.entryCount * 2);
+    }
+
+    str.getChars(0, str.length(), this.chars, this.charCount);
+    this.offsets[this.entryCount] = this.charCount;
+    this.lengths[this.entryCount] = str.length();
+    this.charCount += str.length();
+    this.entryCount += 1;
+    return this.entryCount - 1;
+  }
+
+  // are the characters of the given entry the same as those of the given string?
+  boolean matches(int entry, String str) {
+    if (this.lengths[entry] != str.length()) {
+      return false;
+    }
+    int offset = this.offsets[entry];
+    for (int i = 0; i < str.length(); i += 1) {
+      if (this.chars[offset + i] != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // returns the hash code of the given string, with the high bits folded into the low ones
+  int hash(String str) {
+    int hash = str.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  // returns what hash would return for the string with the given entry, without making it
+  int hashEntry(int entry) {
+    int hash = 0;
+    int end = this.offsets[entry] + this.lengths[entry];
+    for (int i = this.offsets[entry]; i < end; i += 1) {
+      hash = 31 * hash + this.chars[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  // EFFECT: moves every entry into an intern table twice as big
+  void growTable() {
+    this.table = new int[this.table.length * 2];
+    int last = this.table.length - 1;
+    for (int entry = 0; entry < this.entryCount; entry += 1) {
+      int slot = this.hashEntry(entry) & last;
+      while (this.table[slot] != 0) {
+        slot = (slot + 1) & last;
+      }
+      this.table[slot] = entry + 1;
+    }
+  }
+}
+
+// a compact list of strings: the strings live in a StringArena, and the list is just an array
+// of their entries, so each element costs 4 bytes (plus its characters, once, if the arena
+// interns). Strings are only made when they're read.
+// The list never changes; operations that make a new list make a new array of entries in the
+// same arena.
+class ArenaLoString implements ILoString {
+
+  // where the strings are stored
+  StringArena arena;
+
+  // the entries of the strings in this list, in order
+  int[] entries;
+
+  // constructor
+  ArenaLoString(StringArena arena, int[] entries) {
+    this.arena = arena;
+    this.entries = entries;
+  }
+
+  // convenience constructor that adds the strings of the given list to the given arena
+  ArenaLoString(StringArena arena, ILoString list) {
+    this(arena, new ArenaEntries(arena).apply(list));
+  }
+
+  // returns the number of strings in this list, in O(1)
+  public int length() {
+    return this.entries.length;
+  }
+
+  // returns the string at the given index, made from the arena's characters
+  String get(int index) {
+    if (index < 0 || index >= this.entries.length) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+    return this.arena.get(this.entries[index]);
+  }
+
+  // returns the total number of characters in the strings of this list, without making them
+  long charLength() {
+    long total = 0;
+    for (int entry : this.entries) {
+      total += this.arena.length(entry);
+    }
+    return total;
+  }
+
+  // returns this list with its strings in the opposite order, in the same arena
+  public ILoString reverse() {
+    int[] result = new int[this.entries.length];
+    for (int i = 0; i < result.length; i += 1) {
+      result[i] = this.entries[this.entries.length - 1 - i];
+    }
+    return new ArenaLoString(this.arena, result);
+  }
+
+  // returns the strings of this list as ConsLoStrings ending in an MtLoString
+  public ILoString normalize() {
+    ILoString result = new MtLoString();
+    for (int i = this.entries.length - 1; i >= 0; i -= 1) {
+      result = new ConsLoString(this.arena.get(this.entries[i]), result);
+    }
+    return result;
+  }
+
+  // returns a list of the strings of this list followed by those of the given list, in this
+  // list's arena (the given list's strings are added to it, unless they're already in it)
+  public ILoString append(ILoString back) {
+    int[] theirs;
+    if (back instanceof ArenaLoString && ((ArenaLoString) back).arena == this.arena) {
+      theirs = ((ArenaLoString) back).entries;
+    } else {
+      theirs = new ArenaEntries(this.arena).apply(back);
+    }
+
+    int[] result = Arrays.copyOf(this.entries, this.entries.length + theirs.length);
+    System.arraycopy(theirs, 0, result, this.entries.length, theirs.length);
+    return new ArenaLoString(this.arena, result);
+  }
+
+  // produces an ILoString where each string element is all the prior strings (from this
+  // ArenaLoString) concatenated together from left to right
+  public ILoString scanConcat() {
+    return new PrefixScan(this).toLoString();
+  }
+
+  // produces an ILoString where each string element is all the prior strings (from this
+  // ArenaLoString) concatenated together from left to right, using an accumulator which
+  // stores all the previous strings (from this list, left to right) concatenated together
+  public ILoString scanHelper(String prevConcat) {
+    return this.normalize().scanHelper(prevConcat);
+  }
+
+  // EFFECT: pushes the strings of this list onto the given stack, last to first, so that the
+  // first one ends up on top
+  public void unfold(ArrayList<Object> pending) {
+    for (int i = this.entries.length - 1; i >= 0; i -= 1) {
+      pending.add(this.arena.get(this.entries[i]));
+    }
+  }
+}
+
+// adds the strings of a list to an arena, returning their entries in order
+class ArenaEntries implements IFunc<ILoString, int[]> {
+
+  // the arena to add to
+  StringArena arena;
+
+  // constructor
+  ArenaEntries(StringArena arena) {
+    this.arena = arena;
+  }
+
+  // EFFECT: adds each string of the given list to the arena
+  public int[] apply(ILoString list) {
+    int[] result = new int[16];
+    int count = 0;
+    ILoStringIterator strings = new ILoStringIterator(list);
+    while (strings.hasNext()) {
+      if (count == result.length) {
+        result = Arrays.copyOf(result, count * 2);
+      }
+      result[count] = this.arena.add(strings.next());
+      count += 1;
+    }
+    return Arrays.copyOf(result, count);
+  }
+}
+
+// a class for testing arena-backed lists of strings
+class ExamplesArenaLoString {
+
+  MtLoString mt = new MtLoString();
+  ILoString words = new ConsLoString("to", new ConsLoString("be", new ConsLoString("or",
+      new ConsLoString("not", new ConsLoString("to", new ConsLoString("be", this.mt))))));
+
+  // test that an arena list holds the same strings as the list it was made from
+  void testSameStrings(Tester t) {
+    ArenaLoString list = new ArenaLoString(new StringArena(true), this.words);
+    t.checkExpect(list.length(), 6);
+    t.checkExpect(list.get(3), "not");
+    t.checkExpect(list.charLength(), 13L);
+    t.checkExpect(list.normalize(), this.words);
+    t.checkExpect(list.reverse().normalize(), this.words.reverse().normalize());
+    t.checkExpect(list.scanConcat(), this.words.scanConcat());
+    t.checkExpect(list.scanHelper("x"), this.words.scanHelper("x"));
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this list."), list, "get", 6);
+  }
+
+  // test that interning stores each distinct string once
+  void testInterning(Tester t) {
+    StringArena interned = new StringArena(true);
+    StringArena plain = new StringArena(false);
+    new ArenaLoString(interned, this.words);
+    new ArenaLoString(plain, this.words);
+    t.checkExpect(interned.entryCount, 4);
+    t.checkExpect(interned.charCount, 9);
+    t.checkExpect(plain.entryCount, 6);
+    t.checkExpect(plain.charCount, 13);
+
+    // the empty string, and many distinct strings, so the table has to grow
+    t.checkExpect(interned.add(""), interned.add(""));
+    for (int i = 0; i < 1000; i += 1) {
+      interned.add("w" + i);
+    }
+    t.checkExpect(interned.add("w500"), interned.add(new String("w500")));
+    t.checkExpect(interned.get(interned.add("w999")), "w999");
+    t.checkExpect(interned.entryCount, 1005);
+  }
+
+  // test appending lists in the same arena and in others
+  void testAppend(Tester t) {
+    StringArena arena = new StringArena(true);
+    ArenaLoString list = new ArenaLoString(arena, this.words);
+    ILoString twice = list.append(list);
+    t.checkExpect(twice.length(), 12);
+    t.checkExpect(twice.normalize(), this.words.append(this.words));
+    t.checkExpect(arena.entryCount, 4);
+
+    ILoString more = list.append(new ConsLoString("that", this.mt));
+    t.checkExpect(((ArenaLoString) more).get(6), "that");
+    t.checkExpect(arena.entryCount, 5);
+
+    ILoString other = list.append(new ArenaLoString(new StringArena(false), this.words));
+    t.checkExpect(other.normalize(), this.words.append(this.words));
+    t.checkExpect(new ArenaLoString(arena, this.mt).append(this.mt).length(), 0);
+  }
+}
@@ -47,10 +47,14 @@ class Insert<T> implements BinTreeVisitor<T, IBinTree<T>> {
   // a comparator for determining the order the value should be placed in the tree
   IComparator<T> order;
 
+  // the number of levels of the tree this has gone down so far
+  int depth;
+
   // constructor
   Insert(T item, IComparator<T> order) {
     this.item = item;
     this.order = order;
+    this.depth = 0;
   }
 
   // return the resulting binary tree from inserting the value into the given binary tree
@@ -60,7 +64,9 @@ class Insert<T> implements BinTreeVisitor<T, IBinTree<T>> {
   }
 
   // insert a value into a binary tree whose root is a node
+  // EFFECT: counts this node's level in depth
   public IBinTree<T> visitNode(Node<T> node) {
+    this.depth += 1;
     int comparison = this.order.compare(node.value, this.item);
 
     IBinTree<T> left = node.left;
@@ -78,11 +84,108 @@ class Insert<T> implements BinTreeVisitor<T, IBinTree<T>> {
 
   // insert a value into a binary tree whose root is a leaf
   // since it's a leaf, insert the value in this spot, creating a new node to replace the leaf
+  // EFFECT: counts the new node's level in depth
   public IBinTree<T> visitLeaf(Leaf<T> leaf) {
+    this.depth += 1;
     return new Node<T>(this.item, new Leaf<T>(), new Leaf<T>());
   }
 }
 
+// delete the node holding a given value from a binary search tree using the given comparator
+// like Insert, this rebuilds the path down to the deleted node instead of mutating it
+class Delete<T> implements BinTreeVisitor<T, IBinTree<T>> {
+
+  // the value to be deleted from the BST
+  T item;
+
+  // a comparator for determining where the value is in the tree
+  IComparator<T> order;
+
+  // constructor
+  Delete(T item, IComparator<T> order) {
+    this.item = item;
+    this.order = order;
+  }
+
+  // return the resulting binary tree from deleting the value from the given binary tree
+  public IBinTree<T> apply(IBinTree<T> bt) {
+    return bt.accept(this);
+  }
+
+  // delete the value from a binary tree whose root is a node
+  // if this node holds the value, it's replaced by the smallest value to its right (or by its
+  // left subtree if there's nothing to its right)
+  public IBinTree<T> visitNode(Node<T> node) {
+    int comparison = this.order.compare(node.value, this.item);
+
+    if (comparison > 0) { // the node's value is larger than the given item
+      return new Node<T>(node.value, this.apply(node.left), node.right);
+    } else if (comparison < 0) { // the node's value is smaller than the given item
+      return new Node<T>(node.value, node.left, this.apply(node.right));
+    } else {
+      T successor = new Leftmost<T>().apply(node.right);
+
+      if (successor == null) {
+        return node.left;
+      } else {
+        return new Node<T>(successor, node.left,
+            new Delete<T>(successor, this.order).apply(node.right));
+      }
+    }
+  }
+
+  // the value isn't in a tree whose root is a leaf, so there's nothing to delete
+  public IBinTree<T> visitLeaf(Leaf<T> leaf) {
+    return leaf;
+  }
+}
+
+// return the smallest (leftmost) value in the given binary tree, or null if it has no nodes
+class Leftmost<T> implements BinTreeVisitor<T, T> {
+
+  // dynamically dispatches this function object to the specific type of IBinTree that's given
+  public T apply(IBinTree<T> bt) {
+    return bt.accept(this);
+  }
+
+  // the leftmost value is this node's, unless there's a node further to the left
+  public T visitNode(Node<T> node) {
+    T further = this.apply(node.left);
+
+    if (further == null) {
+      return node.value;
+    } else {
+      return further;
+    }
+  }
+
+  // a leaf has no values
+  public T visitLeaf(Leaf<T> leaf) {
+    return null;
+  }
+}
+
+// builds a balanced binary tree out of a list of values that's already in order, by making the
+// middle value the root and building each half the same way
+class BuildBalanced<T> implements IFunc<ArrayList<T>, IBinTree<T>> {
+
+  // returns a balanced binary tree holding the given values, in order
+  public IBinTree<T> apply(ArrayList<T> sorted) {
+    return this.build(sorted, 0, sorted.size());
+  }
+
+  // returns a balanced binary tree holding the values of the given list from the low index
+  // (inclusive) to the high index (exclusive)
+  IBinTree<T> build(ArrayList<T> sorted, int low, int high) {
+    if (low >= high) {
+      return new Leaf<T>();
+    }
+    int mid = (low + high) >>> 1;
+    return new Node<T>(sorted.get(mid), this.build(sorted, low, mid),
+        this.build(sorted, mid + 1, high));
+  }
+}
+
 // return an integer representing the number of nodes in the given binary tree
 class CountNodes<T> implements BinTreeVisitor<T, Integer> {
 
@@ -137,9 +240,13 @@ class Find<T> implements BinTreeVisitor<T, T> {
   // is lower, equal to, or higher than the stored value it has
   IFunc<T, Integer> search;
 
+  // the number of nodes and leaves this has visited so far
+  int visits;
+
   // constructor
   Find(IFunc<T, Integer> search) {
     this.search = search;
+    this.visits = 0;
   }
 
   // dynamically dispatches this function object to the specific type of IBinTree that's given
@@ -149,7 +256,9 @@ class Find<T> implements BinTreeVisitor<T, T> {
 
   // uses the comparison function to see determine where to recursively call this function object
   // based on the value of the current node
+  // EFFECT: counts this node in visits
   public T visitNode(Node<T> node) {
+    this.visits += 1;
     int comparison = this.search.apply(node.value);
 
     if (comparison > 0) { // the current node's value is larger than the correct value
@@ -166,7 +275,9 @@ class Find<T> implements BinTreeVisitor<T, T> {
   }
 
   // if we've reached a leaf, the T value isn't contained within the given binary tree
+  // EFFECT: counts this leaf in visits
   public T visitLeaf(Leaf<T> leaf) {
+    this.visits += 1;
     return null;
   }
 }
@@ -218,6 +329,15 @@ class GetValueAtIndex<T> implements BinTreeVisitor<T, T> {
 // contains no duplicate values
 class BinarySearchTree<T> implements Iterable<T> {
 
+  // the latencies (in nanoseconds) of the operations on every bst, the number of nodes each
+  // find visits, and the deepest level any insert has reached (the height of the tallest tree,
+  // unless it's since shrunk), recorded when Metrics are enabled
+  static final Histogram INSERT = Metrics.histogram("BinarySearchTree.insert");
+  static final Histogram FIND = Metrics.histogram("BinarySearchTree.find");
+  static final Histogram FIND_VISITS = Metrics.histogram("BinarySearchTree.find.visits");
+  static final Histogram DELETE = Metrics.histogram("BinarySearchTree.delete");
+  static final MaxGauge HEIGHT = Metrics.gauge("BinarySearchTree.height");
+
   // the comparator for the values of the nodes in this bst
   IComparator<T> order;
 
@@ -233,13 +353,42 @@ class BinarySearchTree<T> implements Iterable<T> {
 
   // EFFECT: inserts the given item into this binary search tree according to the comparator
   void insert(T item) {
-    this.root = new Insert<T>(item, this.order).apply(this.root);
+    long start = Metrics.start();
+    Insert<T> insert = new Insert<T>(item, this.order);
+    this.root = insert.apply(this.root);
+    INSERT.recordSince(start);
+    HEIGHT.update(insert.depth);
   }
 
   // returns the value at the node where the given search returns zero
   // returns null if there's no value in the tree that satisfies the search
   T find(IFunc<T, Integer> search) {
-    return new Find<T>(search).apply(this.root);
+    long start = Metrics.start();
+    Find<T> find = new Find<T>(search);
+    T result = find.apply(this.root);
+    FIND.recordSince(start);
+    FIND_VISITS.record(find.visits);
+    return result;
+  }
+
+  // EFFECT: deletes the given item from this binary search tree according to the comparator
+  // does nothing if the item isn't in this tree
+  void delete(T item) {
+    long start = Metrics.start();
+    this.root = new Delete<T>(item, this.order).apply(this.root);
+    DELETE.recordSince(start);
+  }
+
+  // EFFECT: replaces the contents of this binary search tree with a balanced tree of the given
+  // items, in O(n), such as when loading a snapshot
+  // throws an exception if the items aren't in strictly increasing order
+  void buildFrom(ArrayList<T> sorted) {
+    for (int i = 1; i < sorted.size(); i += 1) {
+      if (this.order.compare(sorted.get(i - 1), sorted.get(i)) >= 0) {
+        throw new IllegalArgumentException("The items are not in strictly increasing order.");
+      }
+    }
+    this.root = new BuildBalanced<T>().apply(sorted);
   }
 
   // returns the number of nodes in this binary tree
@@ -259,44 +408,67 @@ class BinarySearchTree<T> implements Iterable<T> {
   }
 }
 
-// an iterator for BSTs, which gets the next value of a bst based on index
+// an iterator for BSTs, which visits the nodes of a bst in order, keeping a stack of the nodes
+// whose left subtrees are still being visited
 class InOrderBinTreeIterator<T> implements Iterator<T> {
 
-  // the binary search tree
-  BinarySearchTree<T> bst;
-
-  // the index of the node we're currently at
-  int index;
-  
-  // the number of nodes in this BST
-  int size;
+  // the nodes we've gone left from, but haven't produced the values of yet
+  ArrayList<Node<T>> path;
 
   // constructor
   InOrderBinTreeIterator(BinarySearchTree<T> bst) {
-    this.bst = bst;
-    this.index = 0;
-    this.size = this.bst.size();
+    this.path = new ArrayList<Node<T>>();
+    new PushLeftSpine<T>(this.path).apply(bst.root);
   }
 
   // is there a next value in the bst?
   public boolean hasNext() {
-    return this.index < this.size;
+    return !this.path.isEmpty();
   }
 
-  // returns the value at the next index of the bst, if there is one
+  // returns the next value of the bst, if there is one
   // errors if there is not a next value
-  // EFFECT: increments the index of the node we're currently at
+  // EFFECT: moves on to the node after the one whose value is returned
   public T next() {
     if (this.hasNext()) {
-      T data = this.bst.get(this.index);
-      this.index += 1;
-      return data;
+      Node<T> node = this.path.remove(this.path.size() - 1);
+      new PushLeftSpine<T>(this.path).apply(node.right);
+      return node.value;
     } else {
       throw new RuntimeException("The binary search tree has no more values!");
     }
   }
 }
 
+// pushes the root of the given binary tree, and the chain of left children below it, onto a
+// stack of nodes
+class PushLeftSpine<T> implements BinTreeVisitor<T, Void> {
+
+  // the stack that nodes are pushed onto
+  ArrayList<Node<T>> path;
+
+  // constructor
+  PushLeftSpine(ArrayList<Node<T>> path) {
+    this.path = path;
+  }
+
+  // dynamically dispatches this function object to the specific type of IBinTree that's given
+  public Void apply(IBinTree<T> bt) {
+    return bt.accept(this);
+  }
+
+  // EFFECT: pushes this node, then its left subtree's spine
+  public Void visitNode(Node<T> node) {
+    this.path.add(node);
+    return this.apply(node.left);
+  }
+
+  // a leaf has no nodes to push
+  public Void visitLeaf(Leaf<T> leaf) {
+    return null;
+  }
+}
+
 
 // represents a binary tree structure
 interface IBinTree<T> { 
@@ -494,6 +666,62 @@ class ExamplesBinaryTree {
         this.bstIntSmall, "get", 77);
   }
 
+  // test deleting values from a bst
+  void testDelete(Tester t) {
+    this.initData();
+
+    // deleting a value that isn't there does nothing
+    this.bstIntSmall.delete(5);
+    t.checkExpect(this.bstIntSmall.size(), 4);
+
+    // deleting a node with no children
+    this.bstIntSmall.delete(3);
+    t.checkExpect(this.bstIntSmall.size(), 3);
+    t.checkExpect(this.bstIntSmall.find(new CompareToAnswer<>(this.incInts, 3)), null);
+
+    // deleting the root, which has two children, replaces it with the next value
+    this.bstIntSmall.delete(6);
+    t.checkExpect(((Node<Integer>) this.bstIntSmall.root).value, 9);
+    t.checkExpect(this.bstIntSmall.get(0), 2);
+    t.checkExpect(this.bstIntSmall.get(1), 9);
+
+    // deleting from a larger tree keeps the rest in order
+    this.bstIntLarge.delete(7);
+    this.bstIntLarge.delete(0);
+    this.bstIntLarge.delete(77);
+    ArrayList<Integer> data = new ArrayList<>();
+    for (Integer value : this.bstIntLarge) {
+      data.add(value);
+    }
+    ArrayList<Integer> dataShouldBe = new ArrayList<>();
+    for (int i = 1; i <= 11; i += 1) {
+      if (i != 7) {
+        dataShouldBe.add(i);
+      }
+    }
+    t.checkExpect(data, dataShouldBe);
+
+    // deleting the only value leaves an empty tree
+    this.bstIntTiny.insert(1);
+    this.bstIntTiny.delete(1);
+    t.checkExpect(this.bstIntTiny.size(), 0);
+  }
+
+  // test building a balanced tree out of values that are already in order
+  void testBuildBalanced(Tester t) {
+    ArrayList<Integer> sorted = new ArrayList<>();
+    for (int i = 0; i < 7; i += 1) {
+      sorted.add(i);
+    }
+
+    IBinTree<Integer> tree = new BuildBalanced<Integer>().apply(sorted);
+    t.checkExpect(((Node<Integer>) tree).value, 3);
+    t.checkExpect(((Node<Integer>) ((Node<Integer>) tree).left).value, 1);
+    t.checkExpect(((Node<Integer>) ((Node<Integer>) tree).right).value, 5);
+    t.checkExpect(new CountNodes<Integer>().apply(tree), 7);
+    t.checkExpect(new BuildBalanced<Integer>().apply(new ArrayList<Integer>()), new Leaf<Integer>());
+  }
+
   // test the behavior of the bst iterator
   void testIterateOverBST(Tester t) {
     this.initData();
@@ -514,5 +742,9 @@ class ExamplesBinaryTree {
 
     t.checkExpect(bstIntSmallData, dataShouldBe);
 
+    // an empty bst has nothing to iterate over
+    t.checkExpect(this.bstIntTiny.iterator().hasNext(), false);
+    t.checkException(new RuntimeException("The binary search tree has no more values!"),
+        this.bstIntTiny.iterator(), "next");
   }
 }
\ No newline at end of file
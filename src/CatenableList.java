@@ -0,0 +1,632 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
+/*
+ * A conc-tree is a binary tree that stores a list's elements in its leaves, in order. Every
+ * node knows how many elements it holds (its size) and how tall it is (its level), and the
+ * total weight of its elements, if the ConcOps that built it was given a way to weigh them.
+ *
+ * The "balanced" nodes, ConcNodes, have subtrees whose levels differ by at most one, which
+ * keeps the whole tree O(log n) tall. Two balanced trees can be concatenated in
+ * O(difference in levels) by walking down the taller tree's inner spine until it reaches a
+ * subtree the shorter tree can be joined to, and rebalancing on the way back up.
+ *
+ * Adding one element at a time to the end would make every addition pay that walk, so
+ * additions are kept in a chain of ConcAppend nodes instead. The right-hand subtrees of the
+ * chain get taller going up it, and when a new leaf makes the newest subtree as tall as the
+ * one before it, the two are linked, like carrying in binary addition. That makes adding an
+ * element O(1) amortized. Before the tree is concatenated with another, the chain is folded
+ * back into a balanced tree, which costs O(log n) since it's only O(log n) long.
+ *
+ * (This follows Prokopec and Odersky, "Conc-Trees for Functional and Parallel Programming")
+ */
+
+// represents a conc-tree with the elements of a list in its leaves
+abstract class Conc<T> {
+
+  // how tall this tree is (a tree of at most one element has level 0)
+  int level;
+
+  // the number of elements in this tree
+  int size;
+
+  // the total weight of the elements in this tree
+  long weight;
+
+  // returns the element at the given index of this tree
+  abstract T get(int index);
+
+  // is this a balanced tree (with no ConcAppend nodes in it)?
+  boolean isBalanced() {
+    return true;
+  }
+}
+
+// a conc-tree with no elements
+class ConcEmpty<T> extends Conc<T> {
+
+  // constructor
+  ConcEmpty() {
+    this.level = 0;
+    this.size = 0;
+    this.weight = 0;
+  }
+
+  // an empty tree has no elements to get
+  T get(int index) {
+    throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+  }
+}
+
+// a conc-tree with exactly one element
+class ConcLeaf<T> extends Conc<T> {
+
+  // the element
+  T value;
+
+  // constructor
+  ConcLeaf(T value, long weight) {
+    this.value = value;
+    this.level = 0;
+    this.size = 1;
+    this.weight = weight;
+  }
+
+  // convenience constructor for an element with no weight
+  ConcLeaf(T value) {
+    this(value, 0);
+  }
+
+  // the only element is at index 0
+  T get(int index) {
+    if (index != 0) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+    return this.value;
+  }
+}
+
+// a balanced conc-tree: the elements of the left subtree followed by those of the right one,
+// whose levels differ by at most one
+class ConcNode<T> extends Conc<T> {
+
+  // the subtrees holding the first and last elements of this tree
+  Conc<T> left;
+  Conc<T> right;
+
+  // constructor
+  ConcNode(Conc<T> left, Conc<T> right) {
+    this.left = left;
+    this.right = right;
+    this.level = 1 + Math.max(left.level, right.level);
+    this.size = left.size + right.size;
+    this.weight = left.weight + right.weight;
+  }
+
+  // returns the element at the given index, from whichever subtree holds it
+  T get(int index) {
+    Conc<T> curr = this;
+
+    while (curr instanceof ConcNode) {
+      ConcNode<T> node = (ConcNode<T>) curr;
+      if (index < node.left.size) {
+        curr = node.left;
+      } else {
+        index -= node.left.size;
+        curr = node.right;
+      }
+    }
+
+    return curr.get(index);
+  }
+}
+
+// a link in the chain of trees that elements are added to the end of; its right subtree is
+// always shorter than the right subtree of the ConcAppend to its left, if there is one
+class ConcAppend<T> extends ConcNode<T> {
+
+  // constructor
+  ConcAppend(Conc<T> left, Conc<T> right) {
+    super(left, right);
+  }
+
+  // a chain of ConcAppends has to be folded up before it's balanced
+  boolean isBalanced() {
+    return false;
+  }
+}
+
+// the operations that build conc-trees out of other conc-trees
+class ConcOps<T> {
+
+  // how much each element weighs, or null if they weigh nothing
+  IFunc<T, Integer> measure;
+
+  // constructor
+  ConcOps(IFunc<T, Integer> measure) {
+    this.measure = measure;
+  }
+
+  // convenience constructor for trees whose elements weigh nothing
+  ConcOps() {
+    this(null);
+  }
+
+  // returns a tree of the elements of the given tree followed by the given element
+  // O(1) amortized
+  Conc<T> addLast(Conc<T> xs, T item) {
+    ConcLeaf<T> leaf;
+    if (this.measure == null) {
+      leaf = new ConcLeaf<T>(item);
+    } else {
+      leaf = new ConcLeaf<T>(item, this.measure.apply(item));
+    }
+
+    if (xs.size == 0) {
+      return leaf;
+    } else if (xs.level == 0) {
+      return new ConcNode<T>(xs, leaf);
+    } else if (xs.isBalanced()) {
+      return new ConcAppend<T>(xs, leaf);
+    } else {
+      return this.link((ConcAppend<T>) xs, leaf);
+    }
+  }
+
+  // adds the given balanced tree to the end of the given chain, linking it with the newest
+  // subtree in the chain if they're the same height, and carrying further up if needed
+  Conc<T> link(ConcAppend<T> xs, Conc<T> ys) {
+    while (true) {
+      if (xs.right.level > ys.level) {
+        return new ConcAppend<T>(xs, ys);
+      }
+
+      Conc<T> zs = new ConcNode<T>(xs.right, ys);
+      if (!xs.left.isBalanced()) {
+        xs = (ConcAppend<T>) xs.left;
+        ys = zs;
+      } else if (xs.left.level <= zs.level) {
+        return this.concat(xs.left, zs);
+      } else {
+        return new ConcAppend<T>(xs.left, zs);
+      }
+    }
+  }
+
+  // returns a balanced tree of the same elements as the given tree
+  Conc<T> normalize(Conc<T> xs) {
+    if (xs.isBalanced()) {
+      return xs;
+    }
+
+    // fold the chain up from the newest tree, whose subtrees are the shortest
+    ConcAppend<T> chain = (ConcAppend<T>) xs;
+    Conc<T> result = chain.right;
+    Conc<T> curr = chain.left;
+
+    while (!curr.isBalanced()) {
+      ConcAppend<T> link = (ConcAppend<T>) curr;
+      result = this.concat(link.right, result);
+      curr = link.left;
+    }
+
+    return this.concat(curr, result);
+  }
+
+  // returns a balanced tree of the elements of the first tree followed by those of the second
+  // O(log n)
+  Conc<T> concatTop(Conc<T> xs, Conc<T> ys) {
+    if (xs.size == 0) {
+      return this.normalize(ys);
+    } else if (ys.size == 0) {
+      return this.normalize(xs);
+    } else {
+      return this.concat(this.normalize(xs), this.normalize(ys));
+    }
+  }
+
+  // returns a balanced tree of the elements of the first balanced tree followed by those of the
+  // second balanced tree, neither of which is empty
+  // this takes time proportional to the difference in their levels
+  Conc<T> concat(Conc<T> xs, Conc<T> ys) {
+    if (xs.size == 0) {
+      return ys;
+    } else if (ys.size == 0) {
+      return xs;
+    }
+
+    int diff = ys.level - xs.level;
+
+    if (Math.abs(diff) <= 1) {
+      return new ConcNode<T>(xs, ys);
+    } else if (diff < -1) { // the first tree is taller, so join onto its right side
+      ConcNode<T> x = (ConcNode<T>) xs;
+
+      if (x.left.level >= x.right.level) {
+        return new ConcNode<T>(x.left, this.concat(x.right, ys));
+      }
+
+      ConcNode<T> xr = (ConcNode<T>) x.right;
+      Conc<T> nrr = this.concat(xr.right, ys);
+      if (nrr.level == x.level - 3) {
+        return new ConcNode<T>(x.left, new ConcNode<T>(xr.left, nrr));
+      } else {
+        return new ConcNode<T>(new ConcNode<T>(x.left, xr.left), nrr);
+      }
+    } else { // the second tree is taller, so join onto its left side
+      ConcNode<T> y = (ConcNode<T>) ys;
+
+      if (y.right.level >= y.left.level) {
+        return new ConcNode<T>(this.concat(xs, y.left), y.right);
+      }
+
+      ConcNode<T> yl = (ConcNode<T>) y.left;
+      Conc<T> nll = this.concat(xs, yl.left);
+      if (nll.level == y.level - 3) {
+        return new ConcNode<T>(new ConcNode<T>(nll, yl.right), y.right);
+      } else {
+        return new ConcNode<T>(nll, new ConcNode<T>(yl.right, y.right));
+      }
+    }
+  }
+
+  // splits the given tree into a balanced tree of its first n elements and a balanced tree of
+  // the rest
+  // O(log n)
+  Pair<Conc<T>, Conc<T>> split(Conc<T> xs, int n) {
+    xs = this.normalize(xs);
+
+    if (n <= 0) {
+      return new Pair<Conc<T>, Conc<T>>(new ConcEmpty<T>(), xs);
+    } else if (n >= xs.size) {
+      return new Pair<Conc<T>, Conc<T>>(xs, new ConcEmpty<T>());
+    }
+
+    // a tree with more than n > 0 elements has at least two, so it's a ConcNode
+    ConcNode<T> node = (ConcNode<T>) xs;
+    if (n < node.left.size) {
+      Pair<Conc<T>, Conc<T>> halves = this.split(node.left, n);
+      return new Pair<Conc<T>, Conc<T>>(halves.first, this.concat(halves.second, node.right));
+    } else {
+      Pair<Conc<T>, Conc<T>> halves = this.split(node.right, n - node.left.size);
+      return new Pair<Conc<T>, Conc<T>>(this.concat(node.left, halves.first), halves.second);
+    }
+  }
+}
+
+// an iterator over the elements of a conc-tree, either from first to last or last to first,
+// keeping a stack of the subtrees still to be visited
+class ConcIterator<T> implements Iterator<T> {
+
+  // the subtrees still to be visited, with the next one on top
+  ArrayList<Conc<T>> pending;
+
+  // are we going from the last element to the first?
+  boolean backwards;
+
+  // constructor
+  ConcIterator(Conc<T> tree, boolean backwards) {
+    this.pending = new ArrayList<Conc<T>>();
+    this.backwards = backwards;
+    if (tree.size > 0) {
+      this.pending.add(tree);
+    }
+  }
+
+  // are there any elements left?
+  public boolean hasNext() {
+    return !this.pending.isEmpty();
+  }
+
+  // returns the next element
+  // EFFECT: moves down to the leaf after it
+  public T next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The list has no more elements.");
+    }
+
+    Conc<T> curr = this.pending.remove(this.pending.size() - 1);
+    while (curr instanceof ConcNode) {
+      ConcNode<T> node = (ConcNode<T>) curr;
+      if (this.backwards) {
+        this.pending.add(node.left);
+        curr = node.right;
+      } else {
+        this.pending.add(node.right);
+        curr = node.left;
+      }
+    }
+
+    return ((ConcLeaf<T>) curr).value;
+  }
+}
+
+// an immutable list that knows its own length, can have elements added to its end in O(1)
+// amortized time, can be appended to another CatenableList in O(log n), and can get the element
+// at any index in O(log n). Its elements are kept in a conc-tree.
+// When visited by an IListVisitor, it appears as a ConsList of its first element and a
+// CatenableList of the rest, or an MtList if it's empty.
+class CatenableList<T> implements IList<T> {
+
+  // the tree holding the elements of this list
+  Conc<T> tree;
+
+  // the operations on the tree
+  ConcOps<T> ops;
+
+  // constructor
+  // makes an empty list
+  CatenableList() {
+    this(new ConcEmpty<T>());
+  }
+
+  // convenience constructor for a list holding the elements of the given tree
+  CatenableList(Conc<T> tree) {
+    this.tree = tree;
+    this.ops = new ConcOps<T>();
+  }
+
+  // convenience constructor for a list holding the elements of the given list, in order
+  CatenableList(IList<T> list) {
+    this();
+    for (T item : list) {
+      this.tree = this.ops.addLast(this.tree, item);
+    }
+  }
+
+  // visits the given IListVisitor, as an MtList if this list is empty, or otherwise as a
+  // ConsList of the first element and the rest of this list
+  public <R> R accept(IListVisitor<T, R> f) {
+    if (this.tree.size == 0) {
+      return f.visitMtList(new MtList<T>());
+    } else {
+      return f.visitConsList(new ConsList<T>(this.get(0), this.drop(1)));
+    }
+  }
+
+  // applies the given function to every element of this list
+  public <U> IList<U> map(IFunc<T, U> f) {
+    ConcOps<U> mapped = new ConcOps<U>();
+    Conc<U> result = new ConcEmpty<U>();
+
+    for (T item : this) {
+      result = mapped.addLast(result, f.apply(item));
+    }
+
+    return new CatenableList<U>(result);
+  }
+
+  // returns the length of this list, which the tree keeps track of
+  public int length() {
+    return this.tree.size;
+  }
+
+  // applies a function to each successive element of this list, starting with the base and the
+  // last element
+  public <U> U foldr(IFunc2<T, U, U> func, U base) {
+    U result = base;
+    Iterator<T> backwards = new ConcIterator<T>(this.tree, true);
+
+    while (backwards.hasNext()) {
+      result = func.apply(backwards.next(), result);
+    }
+
+    return result;
+  }
+
+  // returns whether or not any of the elements in this list fulfill the truth condition of the
+  // given IPred
+  public boolean ormap(IPred<T> func) {
+    for (T item : this) {
+      if (func.apply(item)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // adds the given list to the end of this list
+  // O(log n) if the given list is a CatenableList, or O(the given list's length) otherwise
+  public IList<T> append(IList<T> that) {
+    CatenableList<T> back;
+
+    if (that instanceof CatenableList) {
+      back = (CatenableList<T>) that;
+    } else {
+      back = new CatenableList<T>(that);
+    }
+
+    return new CatenableList<T>(this.ops.concatTop(this.tree, back.tree));
+  }
+
+  // add the given element to the end of this list, in O(1) amortized time
+  public IList<T> add(T that) {
+    return new CatenableList<T>(this.ops.addLast(this.tree, that));
+  }
+
+  // returns a filtered version of this list including only elements that satisfy the given
+  // predicate
+  public IList<T> filter(IPred<T> pred) {
+    Conc<T> result = new ConcEmpty<T>();
+
+    for (T item : this) {
+      if (pred.apply(item)) {
+        result = this.ops.addLast(result, item);
+      }
+    }
+
+    return new CatenableList<T>(result);
+  }
+
+  // does this list contain the given element?
+  // NOTE: like ConsList, this uses REFERENCE EQUALITY to determine sameness
+  public boolean contains(T that) {
+    for (T item : this) {
+      if (item == that) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // returns an iterator over the elements of this list, from first to last
+  public Iterator<T> iterator() {
+    return new ConcIterator<T>(this.tree, false);
+  }
+
+  // returns the element at the given index of this list, in O(log n)
+  T get(int index) {
+    if (index < 0 || index >= this.tree.size) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+    return this.tree.get(index);
+  }
+
+  // returns the first n elements of this list, in O(log n)
+  CatenableList<T> take(int n) {
+    return new CatenableList<T>(this.ops.split(this.tree, n).first);
+  }
+
+  // returns all but the first n elements of this list, in O(log n)
+  CatenableList<T> drop(int n) {
+    return new CatenableList<T>(this.ops.split(this.tree, n).second);
+  }
+}
+
+// a list visitor that adds up a list of integers by visiting each cons in turn
+class SumVisitor implements IListVisitor<Integer, Integer> {
+
+  // visits the given list
+  public Integer apply(IList<Integer> list) {
+    return list.accept(this);
+  }
+
+  // an empty list adds up to 0
+  public Integer visitMtList(MtList<Integer> mt) {
+    return 0;
+  }
+
+  // a non-empty list adds up to its first element plus the sum of the rest
+  public Integer visitConsList(ConsList<Integer> cons) {
+    return cons.first + this.apply(cons.rest);
+  }
+}
+
+// a class for testing catenable list functionality
+class ExamplesCatenableList {
+
+  // returns a catenable list of the integers from the low one up to (but not including) the
+  // high one
+  CatenableList<Integer> range(int low, int high) {
+    IList<Integer> result = new CatenableList<Integer>();
+    for (int i = low; i < high; i += 1) {
+      result = result.add(i);
+    }
+    return (CatenableList<Integer>) result;
+  }
+
+  // returns the elements of the given list in an ArrayList
+  ArrayList<Integer> toArrayList(IList<Integer> list) {
+    ArrayList<Integer> result = new ArrayList<Integer>();
+    for (Integer item : list) {
+      result.add(item);
+    }
+    return result;
+  }
+
+  // is every balanced node in the given tree actually balanced?
+  boolean balanced(Conc<Integer> tree) {
+    if (!(tree instanceof ConcNode)) {
+      return true;
+    }
+    ConcNode<Integer> node = (ConcNode<Integer>) tree;
+    return (!tree.isBalanced() || Math.abs(node.left.level - node.right.level) <= 1)
+        && this.balanced(node.left) && this.balanced(node.right);
+  }
+
+  // test the list operations on a small list
+  void testSmallList(Tester t) {
+    CatenableList<Integer> list = this.range(1, 4);
+    CatenableList<Integer> empty = new CatenableList<Integer>();
+
+    t.checkExpect(list.length(), 3);
+    t.checkExpect(empty.length(), 0);
+    t.checkExpect(this.toArrayList(list.map(new AddOne())), this.toArrayList(this.range(2, 5)));
+    t.checkExpect(list.foldr(new SumInts(), 0), 6);
+    t.checkExpect(list.foldr(new ConsOnto<Integer>(), new MtList<Integer>()),
+        new ConsList<Integer>(1, new ConsList<Integer>(2, new ConsList<Integer>(3,
+            new MtList<Integer>()))));
+    t.checkExpect(list.ormap(new Even()), true);
+    t.checkExpect(list.ormap(new BiggerThanFive()), false);
+    t.checkExpect(this.toArrayList(list.filter(new Odd())).size(), 2);
+    t.checkExpect(list.contains(list.get(1)), true);
+    t.checkExpect(empty.contains(1), false);
+    t.checkExpect(this.toArrayList(list.append(new ConsList<Integer>(4,
+        new MtList<Integer>()))), this.toArrayList(this.range(1, 5)));
+    t.checkExpect(this.toArrayList(empty.append(list)), this.toArrayList(list));
+  }
+
+  // test that visitors see a catenable list as a cons of its first element and the rest
+  void testVisitor(Tester t) {
+    t.checkExpect(this.range(1, 101).accept(new SumVisitor()), 5050);
+    t.checkExpect(new CatenableList<Integer>().accept(new SumVisitor()), 0);
+  }
+
+  // test indexing, taking and dropping
+  void testIndexing(Tester t) {
+    CatenableList<Integer> list = this.range(0, 1000);
+
+    t.checkExpect(list.get(0), 0);
+    t.checkExpect(list.get(517), 517);
+    t.checkExpect(list.get(999), 999);
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this list."), list, "get", 1000);
+    t.checkExpect(list.take(10).length(), 10);
+    t.checkExpect(ListFixtures.countsUpFrom(list.take(10), 0), true);
+    t.checkExpect(list.drop(990).length(), 10);
+    t.checkExpect(ListFixtures.countsUpFrom(list.drop(990), 990), true);
+    t.checkExpect(list.drop(1000).length(), 0);
+  }
+
+  // test that adding and appending large lists keeps them correct and shallow
+  void testLargeLists(Tester t) {
+    int n = 200000;
+    CatenableList<Integer> list = this.range(0, n);
+
+    t.checkExpect(list.length(), n);
+    t.checkExpect(ListFixtures.countsUpFrom(list, 0), true);
+    t.checkExpect(list.get(n - 1), n - 1);
+
+    // append lists of very different sizes, in both directions
+    CatenableList<Integer> joined = (CatenableList<Integer>) this.range(0, 7)
+        .append(this.range(7, n)).append(this.range(n, n + 3));
+    t.checkExpect(joined.length(), n + 3);
+    t.checkExpect(ListFixtures.countsUpFrom(joined, 0), true);
+    t.checkExpect(this.balanced(joined.tree), true);
+    t.checkExpect(joined.tree.level <= 2 * 18 + 2, true);
+
+    // repeatedly appending small lists onto the front and back stays shallow
+    IList<Integer> grown = new CatenableList<Integer>();
+    for (int i = 0; i < 2000; i += 1) {
+      grown = grown.append(this.range(0, 3));
+    }
+    t.checkExpect(grown.length(), 6000);
+    t.checkExpect(((CatenableList<Integer>) grown).tree.level <= 2 * 13 + 2, true);
+    t.checkExpect(list.foldr(new SumInts(), 0), (int) ((long) n * (n - 1) / 2));
+  }
+
+  // test that older versions of a list are left alone by later additions
+  void testPersistence(Tester t) {
+    CatenableList<Integer> list = this.range(0, 100);
+    IList<Integer> longer = list.add(100);
+    IList<Integer> other = list.add(-1);
+
+    t.checkExpect(list.length(), 100);
+    t.checkExpect(((CatenableList<Integer>) longer).get(100), 100);
+    t.checkExpect(((CatenableList<Integer>) other).get(100), -1);
+  }
+}
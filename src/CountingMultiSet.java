@@ -0,0 +1,560 @@
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
+// a function object that is given each distinct item of a multiset along with how often it
+// appears, without boxing the count
+interface ICountConsumer<T> {
+
+  // consume the given item and its count
+  void accept(T item, int count);
+}
+
+// a node in a treap: a binary search tree where every node also has a random priority, and
+// nodes with higher priorities sit above nodes with lower ones, which keeps the tree balanced
+// whatever order its items arrive in. N is the kind of node the tree is made of.
+abstract class TreapNode<N extends TreapNode<N>> {
+
+  // the balancing priority of this node
+  int priority;
+
+  // the subtrees holding "smaller" and "larger" items
+  N left;
+  N right;
+
+  // constructor
+  TreapNode(int priority) {
+    this.priority = priority;
+    this.left = null;
+    this.right = null;
+  }
+
+  // EFFECT: brings up to date anything this node keeps about its subtree, after its children
+  // have changed (a plain treap node keeps nothing)
+  void update() { }
+}
+
+// the priorities and rotations shared by the treaps of this project (CountingMultiSet's tree
+// and OrderableMultiSet's CountIndex); each treap does its own searching, since they order
+// their nodes differently
+class Treap<N extends TreapNode<N>> {
+
+  // the state of the generator for node priorities
+  int seed;
+
+  // constructor
+  Treap() {
+    this.seed = 0x2545F491;
+  }
+
+  // returns the next pseudo-random node priority (an xorshift generator)
+  // EFFECT: advances the generator's state
+  int nextPriority() {
+    this.seed ^= this.seed << 13;
+    this.seed ^= this.seed >>> 17;
+    this.seed ^= this.seed << 5;
+    return this.seed;
+  }
+
+  // makes the left child of the given node its parent, returning the new parent
+  N rotateRight(N node) {
+    N newParent = node.left;
+    node.left = newParent.right;
+    newParent.right = node;
+    node.update();
+    newParent.update();
+    return newParent;
+  }
+
+  // makes the right child of the given node its parent, returning the new parent
+  N rotateLeft(N node) {
+    N newParent = node.right;
+    node.right = newParent.left;
+    newParent.left = node;
+    node.update();
+    newParent.update();
+    return newParent;
+  }
+}
+
+// a node in the tree behind a CountingMultiSet, holding one distinct item and a primitive
+// count of how many times it has been added
+// the priority fits in the padding a node would have anyway
+class CountNode<T> extends TreapNode<CountNode<T>> {
+
+  // the distinct item this node represents
+  T item;
+
+  // how many times the item appears in the multiset
+  int count;
+
+  // constructor
+  CountNode(T item, int count, int priority) {
+    super(priority);
+    this.item = item;
+    this.count = count;
+  }
+}
+
+// a multiset whose counts are stored as primitive ints directly in the tree nodes, rather than
+// as boxed Integers inside Pairs. Incrementing the count of an item that's already present
+// doesn't allocate anything, and each distinct item costs a single node.
+// Items are kept in the order of the given comparator, and iteration visits them in that order.
+class CountingMultiSet<T> implements IMultiSet<T> {
+
+  // the comparator used to order the items in this multiset
+  IComparator<T> order;
+
+  // the root of the tree of distinct items, or null if this multiset is empty
+  CountNode<T> root;
+
+  // the number of distinct items in this multiset
+  int size;
+
+  // the number of items in this multiset, counting duplicates
+  long total;
+
+  // the priorities and rotations that keep the tree balanced
+  Treap<CountNode<T>> treap;
+
+  // constructor
+  CountingMultiSet(IComparator<T> order) {
+    this.order = order;
+    this.root = null;
+    this.size = 0;
+    this.total = 0;
+    this.treap = new Treap<CountNode<T>>();
+  }
+
+  // How often does the given item appear in this multi set?
+  // (If it is not present, then return 0.)
+  public int itemCount(T item) {
+    CountNode<T> node = this.findNode(item);
+
+    if (node == null) {
+      return 0;
+    } else {
+      return node.count;
+    }
+  }
+
+  // The given multiset is a subset of this multiset if every item in the given multiset is
+  // present in this one, with a count that's less than or equal to the count in this multiset.
+  public boolean hasSubset(IMultiSet<T> other) {
+    for (Pair<T, Integer> pair : other) {
+      if (pair.second > this.itemCount(pair.first)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // EFFECT: adds the given item into this multiset
+  public void add(T item) {
+    this.add(item, 1);
+  }
+
+  // EFFECT: adds the given item into this multiset the given number of times
+  // throws an exception if that would take its count past Integer.MAX_VALUE, leaving this
+  // multiset as it was
+  void add(T item, int times) {
+    if (times < 0) {
+      throw new IllegalArgumentException("Can't add an item a negative number of times.");
+    }
+
+    CountNode<T> node = this.findNode(item);
+
+    if (node != null) {
+      try {
+        node.count = Math.addExact(node.count, times);
+      } catch (ArithmeticException e) {
+        throw new IllegalArgumentException("Can't add an item that many times: its count "
+            + "would overflow.");
+      }
+    } else if (times > 0) {
+      this.root = this.insert(this.root,
+          new CountNode<T>(item, times, this.treap.nextPriority()));
+      this.size += 1;
+    }
+    this.total += times;
+  }
+
+  // returns the number of distinct items in this multiset
+  int size() {
+    return this.size;
+  }
+
+  // returns the number of items in this multiset, counting duplicates
+  long totalCount() {
+    return this.total;
+  }
+
+  // EFFECT: gives every distinct item in this multiset and its count to the given consumer,
+  // in order, without allocating a Pair or boxing the count
+  void forEachCount(ICountConsumer<T> consumer) {
+    ArrayList<CountNode<T>> path = new ArrayList<CountNode<T>>();
+    CountNode<T> curr = this.root;
+
+    while (curr != null || !path.isEmpty()) {
+      while (curr != null) {
+        path.add(curr);
+        curr = curr.left;
+      }
+      CountNode<T> node = path.remove(path.size() - 1);
+      consumer.accept(node.item, node.count);
+      curr = node.right;
+    }
+  }
+
+  // returns an iterator over the distinct items in this multiset and their counts, in order
+  // each Pair is only created when it's asked for
+  public Iterator<Pair<T, Integer>> iterator() {
+    return new InOrderCountIterator<T>(this.root);
+  }
+
+  // returns the node holding the given item, or null if it isn't in this multiset
+  CountNode<T> findNode(T item) {
+    CountNode<T> curr = this.root;
+
+    while (curr != null) {
+      int comparison = this.order.compare(curr.item, item);
+
+      if (comparison > 0) { // the node's item is larger than the given item
+        curr = curr.left;
+      } else if (comparison < 0) { // the node's item is smaller than the given item
+        curr = curr.right;
+      } else {
+        return curr;
+      }
+    }
+
+    return null;
+  }
+
+  // inserts the given node, whose item isn't already present, into the given subtree
+  // and returns the new root of that subtree, rotating the node upwards until its priority
+  // is no higher than its parent's
+  CountNode<T> insert(CountNode<T> subtree, CountNode<T> node) {
+    if (subtree == null) {
+      return node;
+    }
+
+    if (this.order.compare(subtree.item, node.item) > 0) {
+      subtree.left = this.insert(subtree.left, node);
+      if (subtree.left.priority > subtree.priority) {
+        return this.treap.rotateRight(subtree);
+      }
+    } else {
+      subtree.right = this.insert(subtree.right, node);
+      if (subtree.right.priority > subtree.priority) {
+        return this.treap.rotateLeft(subtree);
+      }
+    }
+
+    return subtree;
+  }
+
+  // is this counting multiset equal to the given object?
+  // two multisets are equal if they're both subsets of each other
+  public boolean equals(Object other) {
+    if (!(other instanceof CountingMultiSet)) {
+      return false;
+    }
+    // this cast is safe, because we just checked instanceof
+    @SuppressWarnings("unchecked")
+    CountingMultiSet<T> that = (CountingMultiSet<T>) other;
+    return this.size == that.size && this.total == that.total
+        && this.hasSubset(that) && that.hasSubset(this);
+  }
+
+  // returns a value that represents this counting multiset
+  // the value will be the same for equivalent multisets
+  public int hashCode() {
+    int hash = 0;
+
+    for (Pair<T, Integer> pair : this) {
+      hash += pair.first.hashCode() * pair.second;
+    }
+
+    return hash;
+  }
+}
+
+// an iterator over a CountingMultiSet's tree, visiting nodes in order using an explicit stack
+// of the nodes whose left subtrees are still being visited
+class InOrderCountIterator<T> implements Iterator<Pair<T, Integer>> {
+
+  // the nodes we've gone left from, but haven't produced yet
+  ArrayList<CountNode<T>> path;
+
+  // constructor
+  InOrderCountIterator(CountNode<T> root) {
+    this.path = new ArrayList<CountNode<T>>();
+    this.pushLeftSpine(root);
+  }
+
+  // is there a next item in the multiset?
+  public boolean hasNext() {
+    return !this.path.isEmpty();
+  }
+
+  // returns the next item in the multiset with its count
+  // EFFECT: moves on to the following node
+  public Pair<T, Integer> next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The multiset has no more items!");
+    }
+    CountNode<T> node = this.path.remove(this.path.size() - 1);
+    this.pushLeftSpine(node.right);
+    return new Pair<T, Integer>(node.item, node.count);
+  }
+
+  // EFFECT: pushes the given node and every node down its chain of left children onto the path
+  void pushLeftSpine(CountNode<T> node) {
+    while (node != null) {
+      this.path.add(node);
+      node = node.left;
+    }
+  }
+}
+
+// a consumer that sums up the counts it's given
+class SumCounts<T> implements ICountConsumer<T> {
+
+  // the running total of the counts
+  long sum = 0;
+
+  // adds the given count to the running total
+  public void accept(T item, int count) {
+    this.sum += count;
+  }
+}
+
+// a class for testing counting multiset functionality
+class ExamplesCountingMultiSet {
+
+  IncrementingIntegers incInts;
+  CountingMultiSet<Integer> mtSet;
+  CountingMultiSet<Integer> smallSet;
+  CountingMultiSet<Integer> smallSetWithOverlap;
+
+  // initialize the example data
+  void initData() {
+    this.incInts = new IncrementingIntegers();
+    this.mtSet = new CountingMultiSet<Integer>(this.incInts);
+
+    this.smallSet = new CountingMultiSet<Integer>(this.incInts);
+    this.smallSet.add(6);
+    this.smallSet.add(2);
+    this.smallSet.add(9);
+    this.smallSet.add(3);
+
+    this.smallSetWithOverlap = new CountingMultiSet<Integer>(this.incInts);
+    this.smallSetWithOverlap.add(6);
+    this.smallSetWithOverlap.add(2);
+    this.smallSetWithOverlap.add(9);
+    this.smallSetWithOverlap.add(3);
+    this.smallSetWithOverlap.add(8);
+    this.smallSetWithOverlap.add(8);
+  }
+
+  // test that adding an item only creates a node for items that aren't present yet
+  void testAdd(Tester t) {
+    this.initData();
+
+    t.checkExpect(this.mtSet.size(), 0);
+    this.mtSet.add(6);
+    t.checkExpect(this.mtSet.size(), 1);
+    t.checkExpect(this.mtSet.itemCount(6), 1);
+
+    this.mtSet.add(6);
+    t.checkExpect(this.mtSet.size(), 1);
+    t.checkExpect(this.mtSet.itemCount(6), 2);
+    t.checkExpect(this.mtSet.totalCount(), 2L);
+
+    // adding many copies at once just bumps the count
+    this.mtSet.add(4, 1000);
+    t.checkExpect(this.mtSet.size(), 2);
+    t.checkExpect(this.mtSet.itemCount(4), 1000);
+    t.checkExpect(this.mtSet.totalCount(), 1002L);
+
+    t.checkException(new IllegalArgumentException("Can't add an item a negative number of times."),
+        this.mtSet, "add", 4, -1);
+
+    // a count can't go past Integer.MAX_VALUE
+    this.mtSet.add(4, Integer.MAX_VALUE - 1000);
+    t.checkExpect(this.mtSet.itemCount(4), Integer.MAX_VALUE);
+    t.checkException(new IllegalArgumentException("Can't add an item that many times: its "
+        + "count would overflow."), this.mtSet, "add", 4, 1);
+    t.checkExpect(this.mtSet.itemCount(4), Integer.MAX_VALUE);
+    t.checkExpect(this.mtSet.totalCount(), 2L + Integer.MAX_VALUE);
+  }
+
+  // test counting items in various sets
+  void testCount(Tester t) {
+    this.initData();
+    t.checkExpect(this.smallSet.itemCount(5), 0);
+    t.checkExpect(this.smallSet.itemCount(6), 1);
+    t.checkExpect(this.smallSetWithOverlap.itemCount(8), 2);
+    t.checkExpect(this.mtSet.itemCount(8), 0);
+  }
+
+  // test whether various sets are subsets of others, including ordered multisets
+  void testSubset(Tester t) {
+    this.initData();
+    t.checkExpect(this.smallSet.hasSubset(this.mtSet), true);
+    t.checkExpect(this.mtSet.hasSubset(this.smallSet), false);
+    t.checkExpect(this.smallSetWithOverlap.hasSubset(this.smallSet), true);
+    t.checkExpect(this.smallSet.hasSubset(this.smallSetWithOverlap), false);
+
+    OrderableMultiSet<Integer> ordered = new OrderableMultiSet<Integer>(this.incInts);
+    ordered.add(8);
+    ordered.add(8);
+    ordered.add(3);
+    t.checkExpect(this.smallSetWithOverlap.hasSubset(ordered), true);
+    t.checkExpect(ordered.hasSubset(this.smallSetWithOverlap), false);
+  }
+
+  // test that iteration produces every distinct item, in order, with its count
+  void testIterate(Tester t) {
+    this.initData();
+    ArrayList<Integer> items = new ArrayList<Integer>();
+    ArrayList<Integer> counts = new ArrayList<Integer>();
+
+    for (Pair<Integer, Integer> pair : this.smallSetWithOverlap) {
+      items.add(pair.first);
+      counts.add(pair.second);
+    }
+
+    ArrayList<Integer> itemsShouldBe = new ArrayList<Integer>();
+    itemsShouldBe.add(2);
+    itemsShouldBe.add(3);
+    itemsShouldBe.add(6);
+    itemsShouldBe.add(8);
+    itemsShouldBe.add(9);
+    ArrayList<Integer> countsShouldBe = new ArrayList<Integer>();
+    countsShouldBe.add(1);
+    countsShouldBe.add(1);
+    countsShouldBe.add(1);
+    countsShouldBe.add(2);
+    countsShouldBe.add(1);
+
+    t.checkExpect(items, itemsShouldBe);
+    t.checkExpect(counts, countsShouldBe);
+    t.checkExpect(this.mtSet.iterator().hasNext(), false);
+  }
+
+  // test visiting every item and its count without boxing
+  void testForEachCount(Tester t) {
+    this.initData();
+    SumCounts<Integer> summer = new SumCounts<Integer>();
+    this.smallSetWithOverlap.forEachCount(summer);
+    t.checkExpect(summer.sum, 6L);
+  }
+
+  // test equality and hash codes
+  void testEquality(Tester t) {
+    this.initData();
+    CountingMultiSet<Integer> reordered = new CountingMultiSet<Integer>(this.incInts);
+    reordered.add(3);
+    reordered.add(9);
+    reordered.add(2);
+    reordered.add(6);
+
+    t.checkExpect(this.smallSet.equals(reordered), true);
+    t.checkExpect(this.smallSet.hashCode() == reordered.hashCode(), true);
+    t.checkExpect(this.smallSet.equals(this.smallSetWithOverlap), false);
+    t.checkExpect(this.mtSet.equals(new CountingMultiSet<Integer>(this.incInts)), true);
+  }
+
+  // test that adding items in sorted order still keeps the tree shallow
+  void testSortedInsertsStayBalanced(Tester t) {
+    CountingMultiSet<Integer> set = new CountingMultiSet<Integer>(new IncrementingIntegers());
+
+    for (int i = 0; i < 100000; i += 1) {
+      set.add(i);
+    }
+
+    t.checkExpect(set.size(), 100000);
+    t.checkExpect(set.itemCount(99999), 1);
+    t.checkExpect(this.height(set.root) < 60, true);
+  }
+
+  // returns the number of nodes on the longest path from the given node down to a missing child
+  int height(CountNode<Integer> node) {
+    if (node == null) {
+      return 0;
+    } else {
+      return 1 + Math.max(this.height(node.left), this.height(node.right));
+    }
+  }
+
+  // returns the number of bytes currently in use on the heap, after asking for a collection
+  long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i += 1) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // returns the number of bytes the current thread has allocated so far
+  long allocatedBytes() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  // are object references compressed to 4 bytes in this JVM (as HotSpot does by default for
+  // heaps under 32GB)?
+  boolean compressedOops() {
+    HotSpotDiagnosticMXBean hotSpot =
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+    return hotSpot.getVMOption("UseCompressedOops").getValue().equals("true");
+  }
+
+  // test the memory footprint of a multiset holding 10 million distinct keys: each key should
+  // cost one node plus the boxed key itself, and incrementing existing keys shouldn't allocate
+  // This assumes a HotSpot JVM, whose object layout the bounds below are worked out for.
+  void testFootprintAt10MKeys(Tester t) {
+    int keys = 10000000;
+    long before = this.usedHeap();
+
+    CountingMultiSet<Integer> set = new CountingMultiSet<Integer>(new IncrementingIntegers());
+    for (int i = 0; i < keys; i += 1) {
+      // an odd multiplier modulo 2^24 visits each key once, in a scrambled order
+      set.add((i * 0x9E3779B1) & 0xFFFFFF);
+    }
+    long after = this.usedHeap();
+    long bytesPerKey = (after - before) / keys;
+
+    t.checkExpect(set.size(), keys);
+    // with compressed references, a 32 byte node and a 16 byte Integer; without them (on heaps
+    // of 32GB or more), a 48 byte node and a 16 byte Integer; either with some slack for the
+    // measurement
+    if (this.compressedOops()) {
+      t.checkExpect(bytesPerKey <= 56, true);
+    } else {
+      t.checkExpect(bytesPerKey <= 72, true);
+    }
+
+    // incrementing keys that are already present allocates nothing: 1000 new nodes would be
+    // 32000 bytes or more, so this allows only for the measuring itself
+    Integer key = 12345 * 0x9E3779B1 & 0xFFFFFF;
+    for (int i = 0; i < 1000; i += 1) {
+      set.add(key);
+    }
+    long allocatedBefore = this.allocatedBytes();
+    for (int i = 0; i < 1000; i += 1) {
+      set.add(key);
+    }
+    long allocated = this.allocatedBytes() - allocatedBefore;
+    t.checkExpect(allocated < 1000, true);
+    t.checkExpect(set.itemCount(key), 2001);
+    t.checkExpect(set.size(), keys);
+  }
+}
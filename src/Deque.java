@@ -151,6 +151,14 @@ class Sentinel<T> extends ANode<T> {
 
 // a circular (in both directions) list of nodes
 class Deque<T> implements Iterable<T> {
+  // counts of the operations on every Deque, recorded when Metrics are enabled
+  static final Counter ADD_AT_HEAD = Metrics.counter("Deque.addAtHead");
+  static final Counter ADD_AT_TAIL = Metrics.counter("Deque.addAtTail");
+  static final Counter REMOVE_FROM_HEAD = Metrics.counter("Deque.removeFromHead");
+  static final Counter REMOVE_FROM_TAIL = Metrics.counter("Deque.removeFromTail");
+  static final Counter FIND = Metrics.counter("Deque.find");
+  static final Counter REMOVE_NODE = Metrics.counter("Deque.removeNode");
+
   // the header node for this Deque
   Sentinel<T> header;
   //  Iterator<T> iterator;
@@ -173,11 +181,13 @@ class Deque<T> implements Iterable<T> {
 
   // EFFECT: add the given data into a new node at the beginning of this Deque
   void addAtHead(T t) {
+    ADD_AT_HEAD.increment();
     this.header.addAfter(t);
   }
 
   // EFFECT: add the given data into a new node at the end of this Deque
   void addAtTail(T t) {
+    ADD_AT_TAIL.increment();
     this.header.getPrev().addAfter(t);
   }
 
@@ -185,6 +195,7 @@ class Deque<T> implements Iterable<T> {
   // contained
   // error if this Deque is empty
   T removeFromHead() {
+    REMOVE_FROM_HEAD.increment();
     T data = this.header.getNext().getData();
     this.header.getNext().remove();
     return data;
@@ -194,6 +205,7 @@ class Deque<T> implements Iterable<T> {
   // contained
   // error if this Deque is empty
   T removeFromTail() {
+    REMOVE_FROM_TAIL.increment();
     T data = this.header.getPrev().getData();
     this.header.getPrev().remove();
     return data;
@@ -202,11 +214,13 @@ class Deque<T> implements Iterable<T> {
   // find the first node in this Deque that matches the given predicate
   // if no node matches, return the predicate
   ANode<T> find(IPred<T> pred) {
+    FIND.increment();
     return this.header.getNext().findMatch(pred);
   }
 
   // EFFECT: removes the given node from this Deque
   void removeNode(ANode<T> node) {
+    REMOVE_NODE.increment();
     node.remove();
   }
 
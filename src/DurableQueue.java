@@ -0,0 +1,915 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import tester.*;
+
+// one file of a write-ahead log, and the last item added in it
+class LogSegment {
+
+  // the segment's number (segments are written in increasing order) and its file
+  long index;
+  Path file;
+
+  // the sequence number of the last item added in this segment, or -1 if there are none
+  long lastAdd;
+
+  // constructor
+  LogSegment(long index, Path file) {
+    this.index = index;
+    this.file = file;
+    this.lastAdd = -1;
+  }
+}
+
+// an append-only log of records, split into segment files in a directory. Each record is its
+// length, a CRC-32 of its body, and its body (a type byte and then whatever the type needs).
+// Records are appended to a buffer in memory and written to the newest segment when someone
+// waits for them to be durable. With group commit, whoever waits first writes and forces
+// everything appended so far, and everyone who appended in the meantime waits for that one
+// force instead of doing their own, so many producers share each fsync. Without it, each
+// waiter writes and forces for itself.
+// When the newest segment grows past the segment size, a new one is started with a checkpoint
+// record, and older segments the checkpoint makes unnecessary are deleted.
+// A log locks its directory while it's open, since another log writing the same segments would
+// delete the ones this one is appending to. If a write or force ever fails, the records it took
+// can't be written again, so the log fails for good: every waiter and every later append gets
+// the failure, and nothing from the failed write on is ever counted as durable.
+class WriteAheadLog {
+
+  // the kinds of record
+  static final byte ADD = 1;
+  static final byte CONSUMED = 2;
+  static final byte CHECKPOINT = 3;
+
+  // where the segments are, and how big one gets before the next is started
+  Path directory;
+  long segmentBytes;
+
+  // do waiters share forces?
+  boolean groupCommit;
+
+  // every segment still on disk, oldest first (the last is the one being written)
+  ArrayList<LogSegment> segments = new ArrayList<LogSegment>();
+
+  // the newest segment's channel, and the number of bytes appended to it
+  FileChannel channel;
+  long activeBytes;
+
+  // records appended but not yet written to the channel
+  ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+  // room to lay out a record's body
+  ByteArrayOutputStream body = new ByteArrayOutputStream();
+  DataOutputStream bodyOut = new DataOutputStream(this.body);
+
+  // the number of bytes appended in total, and how many of them are durable
+  long appended;
+  long durable;
+
+  // is someone writing and forcing outside the lock?
+  boolean flushing;
+
+  // the number of forces so far
+  long forces;
+
+  // the first failure to write or force the log, or null if there hasn't been one
+  IOException failure;
+
+  // the lock on the directory's lock file, which keeps any other log from opening it, and the
+  // lock file's channel
+  FileChannel lockChannel;
+  FileLock lock;
+
+  // constructor
+  WriteAheadLog(Path directory, long segmentBytes, boolean groupCommit) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.groupCommit = groupCommit;
+    this.appended = 0;
+    this.durable = 0;
+    this.flushing = false;
+    this.forces = 0;
+    this.failure = null;
+  }
+
+  // EFFECT: locks the directory, so no other log writes or deletes its segments while this
+  // one is open
+  // throws an exception if another log (in this program or another) has it open
+  void lock() {
+    try {
+      this.lockChannel = FileChannel.open(this.directory.resolve("wal.lock"),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      try {
+        this.lock = this.lockChannel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        this.lock = null;
+      }
+      if (this.lock == null) {
+        this.lockChannel.close();
+        throw new IllegalStateException("The log in " + this.directory + " is already open.");
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // returns the file for the segment with the given number
+  Path segmentFile(long index) {
+    return this.directory.resolve(String.format("wal-%020d.log", index));
+  }
+
+  // returns every segment in the directory, oldest first
+  ArrayList<LogSegment> existingSegments() {
+    ArrayList<Path> files = new ArrayList<Path>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "wal-*.log")) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Collections.sort(files);
+
+    ArrayList<LogSegment> result = new ArrayList<LogSegment>();
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      result.add(new LogSegment(Long.parseLong(name.substring(4, name.length() - 4)), file));
+    }
+    return result;
+  }
+
+  // returns the position of the end of the last whole record in the given bytes of a segment
+  // EFFECT: gives each whole record to the given replay, in order
+  int replay(ByteBuffer bytes, LogSegment segment, ILogReplay replay) {
+    int end = 0;
+    CRC32 crc = new CRC32();
+    while (bytes.remaining() >= 8) {
+      int length = bytes.getInt();
+      int sum = bytes.getInt();
+      if (length < 1 || length > bytes.remaining()) {
+        break;
+      }
+      ByteBuffer record = bytes.slice();
+      record.limit(length);
+      crc.reset();
+      crc.update(record.duplicate());
+      if ((int) crc.getValue() != sum) {
+        break;
+      }
+      bytes.position(bytes.position() + length);
+      end = bytes.position();
+
+      byte type = record.get();
+      if (type == ADD) {
+        long sequence = record.getLong();
+        segment.lastAdd = sequence;
+        replay.replayAdd(sequence, record);
+      } else if (type == CONSUMED) {
+        replay.replayConsumed(record.getLong());
+      } else {
+        long head = record.getLong();
+        replay.replayCheckpoint(head, record.getLong());
+      }
+    }
+    return end;
+  }
+
+  // EFFECT: replays every record in the directory's segments, cutting off a record that was
+  // only partly written when the last segment was (as by a crash)
+  // throws an exception if any other segment is damaged
+  void recover(ILogReplay replay) {
+    this.segments = this.existingSegments();
+    for (int i = 0; i < this.segments.size(); i += 1) {
+      LogSegment segment = this.segments.get(i);
+      try {
+        byte[] bytes = Files.readAllBytes(segment.file);
+        int end = this.replay(ByteBuffer.wrap(bytes), segment, replay);
+        if (end < bytes.length) {
+          if (i < this.segments.size() - 1) {
+            throw new IllegalStateException("The log segment " + segment.file.getFileName()
+                + " is damaged.");
+          }
+          try (FileChannel damaged = FileChannel.open(segment.file, StandardOpenOption.WRITE)) {
+            damaged.truncate(end);
+            damaged.force(true);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // returns the position in the log once the given item's ADD record is appended
+  // EFFECT: appends the record, marking it as the newest segment's last item
+  synchronized <T> long appendAdd(long sequence, T item, ICodec<T> codec) {
+    this.checkFailure();
+    try {
+      this.body.reset();
+      this.bodyOut.writeByte(ADD);
+      this.bodyOut.writeLong(sequence);
+      codec.write(item, this.bodyOut);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.segments.get(this.segments.size() - 1).lastAdd = sequence;
+    return this.appendBody();
+  }
+
+  // returns the position in the log once a record that every item before the given sequence
+  // number has been taken is appended
+  // EFFECT: appends the record
+  synchronized long appendConsumed(long head) {
+    this.checkFailure();
+    this.body.reset();
+    try {
+      this.bodyOut.writeByte(CONSUMED);
+      this.bodyOut.writeLong(head);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this.appendBody();
+  }
+
+  // returns the position in the log once the body that's been laid out is appended
+  // EFFECT: appends the body as a record
+  long appendBody() {
+    CRC32 crc = new CRC32();
+    crc.update(this.body.toByteArray());
+    int length = this.body.size();
+    this.pending.write(length >>> 24);
+    this.pending.write(length >>> 16);
+    this.pending.write(length >>> 8);
+    this.pending.write(length);
+    int sum = (int) crc.getValue();
+    this.pending.write(sum >>> 24);
+    this.pending.write(sum >>> 16);
+    this.pending.write(sum >>> 8);
+    this.pending.write(sum);
+    this.pending.write(this.body.toByteArray(), 0, length);
+    this.appended += 8 + length;
+    this.activeBytes += 8 + length;
+    return this.appended;
+  }
+
+  // EFFECT: waits until everything up to the given position of the log is durable, writing
+  // and forcing it (and anything else appended) if no one else is
+  // throws an exception if it can't be made durable, because this or an earlier write failed
+  void sync(long position) {
+    if (!this.groupCommit) {
+      synchronized (this) {
+        if (this.durable < position) {
+          this.checkFailure();
+          long batchEnd = this.appended;
+          try {
+            this.writePending(this.channel, this.takePending());
+          } catch (IOException e) {
+            throw this.fail(e);
+          }
+          this.durable = batchEnd;
+        }
+      }
+      return;
+    }
+
+    while (true) {
+      ByteBuffer batch;
+      long batchEnd;
+      FileChannel target;
+      synchronized (this) {
+        while (this.durable < position && this.flushing) {
+          try {
+            this.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the log.");
+          }
+        }
+        if (this.durable >= position) {
+          return;
+        }
+        this.checkFailure();
+        this.flushing = true;
+        batch = this.takePending();
+        batchEnd = this.appended;
+        target = this.channel;
+      }
+
+      boolean written = false;
+      try {
+        this.writePending(target, batch);
+        written = true;
+      } catch (IOException e) {
+        throw this.fail(e);
+      } finally {
+        synchronized (this) {
+          this.flushing = false;
+          // only what was written and forced counts, so whoever was waiting on a batch that
+          // failed wakes up to the failure instead
+          if (written) {
+            this.durable = Math.max(this.durable, batchEnd);
+          }
+          this.notifyAll();
+        }
+      }
+    }
+  }
+
+  // returns an exception for the given failure to write or force the log
+  // EFFECT: keeps the failure, so every later append and wait throws it too (the records it
+  // took are gone, so nothing after them could ever be durable)
+  synchronized UncheckedIOException fail(IOException failure) {
+    if (this.failure == null) {
+      this.failure = failure;
+    }
+    return new UncheckedIOException(failure);
+  }
+
+  // throws an exception if writing or forcing the log has ever failed
+  void checkFailure() {
+    if (this.failure != null) {
+      throw new UncheckedIOException("The log can't be written since a write failed.",
+          this.failure);
+    }
+  }
+
+  // returns the records appended but not yet written, leaving none
+  ByteBuffer takePending() {
+    ByteBuffer batch = ByteBuffer.wrap(this.pending.toByteArray());
+    this.pending.reset();
+    return batch;
+  }
+
+  // EFFECT: writes the given records to the given channel and forces them to disk
+  void writePending(FileChannel target, ByteBuffer batch) throws IOException {
+    while (batch.hasRemaining()) {
+      target.write(batch);
+    }
+    target.force(false);
+    synchronized (this) {
+      this.forces += 1;
+    }
+  }
+
+  // EFFECT: finishes the newest segment (if there is one), starts a new one with a checkpoint
+  // of the given head and next sequence number, and deletes the older segments whose items
+  // have all been taken
+  synchronized void roll(long head, long nextSequence) {
+    while (this.flushing) {
+      try {
+        this.wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the log.");
+      }
+    }
+    this.checkFailure();
+
+    try {
+      if (this.channel != null) {
+        this.writePending(this.channel, this.takePending());
+        this.channel.close();
+      }
+      long index = 0;
+      if (!this.segments.isEmpty()) {
+        index = this.segments.get(this.segments.size() - 1).index + 1;
+      }
+      LogSegment segment = new LogSegment(index, this.segmentFile(index));
+      this.segments.add(segment);
+      this.channel = FileChannel.open(segment.file, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE);
+      this.activeBytes = 0;
+
+      this.body.reset();
+      this.bodyOut.writeByte(CHECKPOINT);
+      this.bodyOut.writeLong(head);
+      this.bodyOut.writeLong(nextSequence);
+      this.appendBody();
+      this.writePending(this.channel, this.takePending());
+      this.channel.force(true);
+      this.durable = this.appended;
+      // the new segment has to be in the directory for good before anything is deleted, or a
+      // crash could keep the deletions and lose the checkpoint that makes them safe
+      this.syncDirectory();
+
+      boolean deleted = false;
+      while (this.segments.size() > 1 && this.segments.get(0).lastAdd < head) {
+        Files.delete(this.segments.remove(0).file);
+        deleted = true;
+      }
+      if (deleted) {
+        this.syncDirectory();
+      }
+    } catch (IOException e) {
+      throw this.fail(e);
+    }
+  }
+
+  // EFFECT: forces the directory, so files made and deleted in it stay that way after a crash
+  void syncDirectory() throws IOException {
+    try (FileChannel dir = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+      dir.force(true);
+    }
+  }
+
+  // EFFECT: makes everything appended durable, closes the newest segment and unlocks the
+  // directory (which is unlocked even if the last records can't be made durable)
+  void close() {
+    try {
+      this.sync(this.appended);
+    } finally {
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        this.unlock();
+      }
+    }
+  }
+
+  // EFFECT: unlocks the directory, so another log can open it
+  void unlock() {
+    try {
+      this.lock.release();
+      this.lockChannel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// something that rebuilds its state from the records of a write-ahead log
+interface ILogReplay {
+
+  // EFFECT: applies the ADD record of the item with the given sequence number, whose encoding
+  // starts at the given buffer's position
+  void replayAdd(long sequence, ByteBuffer item);
+
+  // EFFECT: applies a record that every item before the given sequence number was taken
+  void replayConsumed(long head);
+
+  // EFFECT: applies a checkpoint of the given head and next sequence number
+  void replayCheckpoint(long head, long nextSequence);
+}
+
+// a queue whose contents survive the program stopping: every add and next is recorded in a
+// WriteAheadLog in the given directory before it returns, and opening a queue on the same
+// directory replays the log to get back the items that were added and not yet taken, in order.
+// Items are numbered in the order they're added. The log records each item with its number,
+// and each next as the number of the first item not yet taken (the head), so only the newest
+// such record matters. Every segment starts with a checkpoint of the head and the next
+// number, which is what lets the segments before it go once their items have all been taken;
+// replay starts from the oldest segment left, taking its checkpoint as the state so far.
+// The queue is safe to use from many threads at once; with group commit, producers adding at
+// the same time share forces.
+class DurableQueue<T> implements IWorkList<T>, ILogReplay {
+
+  // the default size a segment grows to before a new one is started
+  static final long DEFAULT_SEGMENT_BYTES = 16 << 20;
+
+  // how items are written in the log
+  ICodec<T> codec;
+
+  // the log
+  WriteAheadLog log;
+
+  // the items added and not yet taken, in order
+  Deque<T> items;
+
+  // the number of items held, the number of the first one and the number the next one gets
+  long count;
+  long head;
+  long nextSequence;
+
+  // has replay seen a checkpoint yet?
+  boolean replayedCheckpoint;
+
+  // constructor
+  // opens the queue in the given directory (making it if it doesn't exist), recovering the
+  // items the log holds
+  DurableQueue(Path directory, ICodec<T> codec, long segmentBytes, boolean groupCommit) {
+    if (segmentBytes <= 0) {
+      throw new IllegalArgumentException("The segment size must be positive.");
+    }
+    this.codec = codec;
+    this.items = new Deque<T>();
+    this.count = 0;
+    this.head = 0;
+    this.nextSequence = 0;
+    this.replayedCheckpoint = false;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    this.log = new WriteAheadLog(directory, segmentBytes, groupCommit);
+    this.log.lock();
+    try {
+      this.log.recover(this);
+      if (this.count != this.nextSequence - this.head) {
+        throw new IllegalStateException("The log is missing items that were never taken.");
+      }
+      this.log.roll(this.head, this.nextSequence);
+    } catch (RuntimeException e) {
+      this.log.unlock();
+      throw e;
+    }
+  }
+
+  // convenience constructor with the default segment size and group commit
+  DurableQueue(Path directory, ICodec<T> codec) {
+    this(directory, codec, DEFAULT_SEGMENT_BYTES, true);
+  }
+
+  // adds the given item to the end of this queue
+  // EFFECT: returns once the item is durable
+  public void add(T item) {
+    long position;
+    synchronized (this) {
+      position = this.log.appendAdd(this.nextSequence, item, this.codec);
+      this.items.addAtTail(item);
+      this.count += 1;
+      this.nextSequence += 1;
+      this.rollIfFull();
+    }
+    this.log.sync(position);
+  }
+
+  // adds the given items to the end of this queue, in order
+  // EFFECT: returns once they're all durable, having forced the log once for all of them
+  public void addAll(ArrayList<T> batch) {
+    long position = 0;
+    synchronized (this) {
+      for (T item : batch) {
+        position = this.log.appendAdd(this.nextSequence, item, this.codec);
+        this.items.addAtTail(item);
+        this.count += 1;
+        this.nextSequence += 1;
+      }
+      this.rollIfFull();
+    }
+    this.log.sync(position);
+  }
+
+  // are there no items in this queue?
+  public synchronized boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  // returns the number of items in this queue
+  synchronized long size() {
+    return this.count;
+  }
+
+  // removes and returns the item at the front of this queue, throwing an exception if there
+  // are none
+  // EFFECT: returns once its removal is durable
+  public T next() {
+    T item;
+    long position;
+    synchronized (this) {
+      if (this.count == 0) {
+        throw new NoSuchElementException("No more elements in worklist.");
+      }
+      item = this.items.removeFromHead();
+      this.count -= 1;
+      this.head += 1;
+      position = this.log.appendConsumed(this.head);
+      this.rollIfFull();
+    }
+    this.log.sync(position);
+    return item;
+  }
+
+  // EFFECT: removes every item from this queue, durably
+  public void clear() {
+    long position;
+    synchronized (this) {
+      this.items = new Deque<T>();
+      this.count = 0;
+      this.head = this.nextSequence;
+      position = this.log.appendConsumed(this.head);
+      this.rollIfFull();
+    }
+    this.log.sync(position);
+  }
+
+  // EFFECT: starts a new segment with a checkpoint now, deleting the segments whose items have
+  // all been taken
+  public synchronized void checkpoint() {
+    this.log.roll(this.head, this.nextSequence);
+  }
+
+  // EFFECT: makes everything durable and closes the log (the queue can't be used after this)
+  public synchronized void close() {
+    this.log.close();
+  }
+
+  // EFFECT: starts a new segment if the newest one is full
+  void rollIfFull() {
+    if (this.log.activeBytes >= this.log.segmentBytes) {
+      this.log.roll(this.head, this.nextSequence);
+    }
+  }
+
+  // EFFECT: adds the replayed item to the end of this queue
+  public void replayAdd(long sequence, ByteBuffer item) {
+    this.items.addAtTail(this.codec.read(item));
+    this.count += 1;
+    this.nextSequence = sequence + 1;
+  }
+
+  // EFFECT: drops the items before the given head
+  public void replayConsumed(long head) {
+    this.head = Math.max(this.head, head);
+    // the items held are numbered from nextSequence - count up to nextSequence
+    while (this.count > this.nextSequence - this.head) {
+      this.items.removeFromHead();
+      this.count -= 1;
+    }
+  }
+
+  // EFFECT: takes the first checkpoint replayed as the state so far, and any later ones as a
+  // record of the head
+  public void replayCheckpoint(long head, long nextSequence) {
+    if (!this.replayedCheckpoint) {
+      this.replayedCheckpoint = true;
+      this.head = head;
+      this.nextSequence = nextSequence;
+    } else {
+      this.replayConsumed(head);
+    }
+  }
+}
+
+// adds a range of numbers to a durable queue from its own thread
+class Producer implements Runnable {
+
+  // the queue to add to
+  DurableQueue<Integer> queue;
+
+  // the first number to add, and how many
+  int first;
+  int count;
+
+  // constructor
+  Producer(DurableQueue<Integer> queue, int first, int count) {
+    this.queue = queue;
+    this.first = first;
+    this.count = count;
+  }
+
+  // EFFECT: adds the numbers, in order
+  public void run() {
+    for (int i = this.first; i < this.first + this.count; i += 1) {
+      this.queue.add(i);
+    }
+  }
+}
+
+// a class for testing durable queues
+class ExamplesDurableQueue {
+
+  // returns a new temporary directory
+  Path tempDirectory() {
+    return TempFiles.directory("wal");
+  }
+
+  // returns the number of segment files in the given directory
+  int segmentCount(Path directory) {
+    return new WriteAheadLog(directory, 1, true).existingSegments().size();
+  }
+
+  // EFFECT: stops using the given queue without closing it, as if the program had crashed:
+  // nothing more is written, and the directory is unlocked as the crash would unlock it
+  void crash(DurableQueue<?> queue) {
+    try {
+      queue.log.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    queue.log.unlock();
+  }
+
+  // test that the items left in a queue are recovered after it stops without closing
+  void testRecover(Tester t) {
+    Path directory = this.tempDirectory();
+    DurableQueue<String> queue = new DurableQueue<String>(directory, new StringCodec());
+    queue.add("a");
+    queue.add("b");
+    queue.add("c");
+    t.checkExpect(queue.next(), "a");
+    queue.add("d");
+    this.crash(queue);
+    DurableQueue<String> reopened = new DurableQueue<String>(directory, new StringCodec());
+    t.checkExpect(reopened.size(), 3L);
+    t.checkExpect(reopened.next(), "b");
+    t.checkExpect(reopened.next(), "c");
+    reopened.add("e");
+    reopened.close();
+
+    DurableQueue<String> again = new DurableQueue<String>(directory, new StringCodec());
+    t.checkExpect(again.next(), "d");
+    t.checkExpect(again.next(), "e");
+    t.checkExpect(again.isEmpty(), true);
+    t.checkException(new NoSuchElementException("No more elements in worklist."), again,
+        "next");
+    again.add("f");
+    again.clear();
+    again.close();
+    DurableQueue<String> last = new DurableQueue<String>(directory, new StringCodec());
+    t.checkExpect(last.isEmpty(), true);
+    last.close();
+    TempFiles.delete(directory);
+  }
+
+  // test that a record only partly written at the end of the log is cut off
+  void testTornRecord(Tester t) {
+    Path directory = this.tempDirectory();
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(directory, new IntCodec());
+    queue.add(1);
+    queue.add(2);
+    queue.close();
+
+    Path last = queue.log.segments.get(queue.log.segments.size() - 1).file;
+    try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND)) {
+      // the start of a record whose body never made it
+      channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 13, 1, 2, 3, 4, 1, 0}));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    long damagedSize = last.toFile().length();
+
+    DurableQueue<Integer> reopened = new DurableQueue<Integer>(directory, new IntCodec());
+    t.checkExpect(reopened.size(), 2L);
+    t.checkExpect(last.toFile().length(), damagedSize - 10);
+    t.checkExpect(reopened.next(), 1);
+    reopened.close();
+    TempFiles.delete(directory);
+  }
+
+  // test that segments whose items have all been taken are deleted
+  void testCompaction(Tester t) {
+    Path directory = this.tempDirectory();
+    // small segments, so a few items fill one
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(directory, new IntCodec(), 200,
+        true);
+    for (int i = 0; i < 100; i += 1) {
+      queue.add(i);
+    }
+    int full = this.segmentCount(directory);
+    t.checkExpect(full > 10, true);
+    for (int i = 0; i < 90; i += 1) {
+      queue.next();
+    }
+    queue.checkpoint();
+    // the segments left start with the one holding item 90
+    t.checkExpect(this.segmentCount(directory) < full, true);
+    t.checkExpect(queue.log.segments.get(0).lastAdd >= 90, true);
+    t.checkExpect(this.segmentCount(directory), queue.log.segments.size());
+    queue.close();
+
+    DurableQueue<Integer> reopened = new DurableQueue<Integer>(directory, new IntCodec(), 200,
+        true);
+    t.checkExpect(reopened.size(), 10L);
+    t.checkExpect(reopened.next(), 90);
+    reopened.clear();
+    reopened.checkpoint();
+    t.checkExpect(this.segmentCount(directory), 1);
+    reopened.close();
+    t.checkConstructorException(new IllegalArgumentException(
+        "The segment size must be positive."), "DurableQueue", directory, new IntCodec(), 0L,
+        true);
+    TempFiles.delete(directory);
+  }
+
+  // returns the number of forces it took for the given number of producers to add the given
+  // number of items each to the given queue, all at once
+  long forcesToAdd(DurableQueue<Integer> queue, int producers, int adds) {
+    long before = queue.log.forces;
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p += 1) {
+      threads.add(new Thread(new Producer(queue, p * 1000, adds)));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+    return queue.log.forces - before;
+  }
+
+  // test that many producers adding at once share forces, and nothing is lost
+  void testGroupCommit(Tester t) {
+    Path directory = this.tempDirectory();
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(directory, new IntCodec());
+    // producers wait for their force with the lock let go, so while one forces, the others
+    // append, and the next force covers all of them
+    long shared = this.forcesToAdd(queue, 8, 125);
+    t.checkExpect(shared < 1000 / 2, true);
+    queue.close();
+
+    Path perOpDirectory = this.tempDirectory();
+    DurableQueue<Integer> perOp = new DurableQueue<Integer>(perOpDirectory, new IntCodec(),
+        DurableQueue.DEFAULT_SEGMENT_BYTES, false);
+    t.checkExpect(shared < this.forcesToAdd(perOp, 8, 125), true);
+    perOp.close();
+    TempFiles.delete(perOpDirectory);
+
+    DurableQueue<Integer> reopened = new DurableQueue<Integer>(directory, new IntCodec());
+    t.checkExpect(reopened.size(), 1000L);
+    // each producer's items come out in the order it added them
+    int[] last = {-1, -1, -1, -1, -1, -1, -1, -1};
+    boolean inOrder = true;
+    while (!reopened.isEmpty()) {
+      int item = reopened.next();
+      inOrder = inOrder && item % 1000 > last[item / 1000];
+      last[item / 1000] = item % 1000;
+    }
+    t.checkExpect(inOrder, true);
+    t.checkExpect(last[7], 124);
+
+    ArrayList<Integer> batch = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i += 1) {
+      batch.add(i);
+    }
+    long forces = reopened.log.forces;
+    reopened.addAll(batch);
+    t.checkExpect(reopened.log.forces, forces + 1);
+    reopened.close();
+    TempFiles.delete(directory);
+  }
+
+  // test that a directory can't be opened by two queues at once, and can be once the first
+  // is closed
+  void testLocked(Tester t) {
+    Path directory = this.tempDirectory();
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(directory, new IntCodec());
+    queue.add(1);
+    t.checkConstructorException(new IllegalStateException("The log in " + directory
+        + " is already open."), "DurableQueue", directory, new IntCodec());
+    queue.close();
+
+    DurableQueue<Integer> reopened = new DurableQueue<Integer>(directory, new IntCodec());
+    t.checkExpect(reopened.next(), 1);
+    reopened.close();
+    TempFiles.delete(directory);
+  }
+
+  // EFFECT: checks that once a write to a queue's log fails, the item it was for isn't counted
+  // as durable, and the queue fails every add after it
+  void checkWriteFailure(Tester t, boolean groupCommit) {
+    Path directory = this.tempDirectory();
+    DurableQueue<Integer> queue = new DurableQueue<Integer>(directory, new IntCodec(),
+        DurableQueue.DEFAULT_SEGMENT_BYTES, groupCommit);
+    queue.add(1);
+    long durable = queue.log.durable;
+    try {
+      // closed underneath the log, so its next write fails
+      queue.log.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkException(new UncheckedIOException(new ClosedChannelException()), queue, "add", 2);
+    t.checkExpect(queue.log.durable, durable);
+    t.checkException(new UncheckedIOException("The log can't be written since a write failed.",
+        new ClosedChannelException()), queue, "add", 3);
+    t.checkException(new UncheckedIOException("The log can't be written since a write failed.",
+        new ClosedChannelException()), queue, "close");
+
+    // closing let go of the directory, and only the item made durable is there
+    DurableQueue<Integer> reopened = new DurableQueue<Integer>(directory, new IntCodec());
+    t.checkExpect(reopened.size(), 1L);
+    t.checkExpect(reopened.next(), 1);
+    reopened.close();
+    TempFiles.delete(directory);
+  }
+
+  // test that a failed write fails the queue, with and without group commit
+  void testWriteFailure(Tester t) {
+    this.checkWriteFailure(t, true);
+    this.checkWriteFailure(t, false);
+  }
+}
@@ -0,0 +1,594 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import tester.*;
+
+// represents a list with an element after it, for adding to the end of a list in O(1)
+// (the generic version of SnocLoString)
+// Operations walk the list with a FlatListIterator, so they take time linear in its size,
+// and never recurse, however the list was built.
+// When visited by an IListVisitor, it appears as its normalized ConsList, which takes time
+// linear in its size to build.
+class SnocList<T> implements IList<T> {
+
+  // the elements before the last one
+  IList<T> front;
+
+  // the last element
+  T last;
+
+  // constructor
+  SnocList(IList<T> front, T last) {
+    this.front = front;
+    this.last = last;
+  }
+
+  // visits the given IListVisitor with this list as a ConsList
+  public <R> R accept(IListVisitor<T, R> f) {
+    return new NormalizeList<T>().apply(this).accept(f);
+  }
+
+  // applies the given function to every element of this list
+  public <U> IList<U> map(IFunc<T, U> f) {
+    return new FlatListOps<T>().map(this, f);
+  }
+
+  // returns the number of elements in this list
+  public int length() {
+    return new FlatListOps<T>().length(this);
+  }
+
+  // applies a function to each successive element of this list, starting with the base
+  public <U> U foldr(IFunc2<T, U, U> func, U base) {
+    return new FlatListOps<T>().foldr(this, func, base);
+  }
+
+  // returns whether or not any of the elements in this list fulfill the truth condition of the
+  // given IPred
+  public boolean ormap(IPred<T> func) {
+    return new FlatListOps<T>().ormap(this, func);
+  }
+
+  // adds the given list to the end of this list, in O(1)
+  public IList<T> append(IList<T> that) {
+    return new AppendList<T>(this, that);
+  }
+
+  // adds the given element to the end of this list, in O(1)
+  public IList<T> add(T that) {
+    return new SnocList<T>(this, that);
+  }
+
+  // returns a filtered version of this list including only elements that satisfy the given
+  // predicate
+  public IList<T> filter(IPred<T> pred) {
+    return new FlatListOps<T>().filter(this, pred);
+  }
+
+  // does this list contain the given element?
+  public boolean contains(T that) {
+    return new FlatListOps<T>().contains(this, that);
+  }
+
+  // returns an iterator over the elements of this list, first to last
+  public Iterator<T> iterator() {
+    return new FlatListIterator<T>(this);
+  }
+}
+
+// represents two lists appended together, in O(1)
+// (the generic version of AppendLoString)
+// Operations walk the list with a FlatListIterator, so they take time linear in its size,
+// and never recurse, however the list was built.
+// When visited by an IListVisitor, it appears as its normalized ConsList (or MtList), which
+// takes time linear in its size to build.
+class AppendList<T> implements IList<T> {
+
+  // the lists whose elements come first and last
+  IList<T> front;
+  IList<T> back;
+
+  // constructor
+  AppendList(IList<T> front, IList<T> back) {
+    this.front = front;
+    this.back = back;
+  }
+
+  // visits the given IListVisitor with this list as a ConsList or MtList
+  public <R> R accept(IListVisitor<T, R> f) {
+    return new NormalizeList<T>().apply(this).accept(f);
+  }
+
+  // applies the given function to every element of this list
+  public <U> IList<U> map(IFunc<T, U> f) {
+    return new FlatListOps<T>().map(this, f);
+  }
+
+  // returns the number of elements in this list
+  public int length() {
+    return new FlatListOps<T>().length(this);
+  }
+
+  // applies a function to each successive element of this list, starting with the base
+  public <U> U foldr(IFunc2<T, U, U> func, U base) {
+    return new FlatListOps<T>().foldr(this, func, base);
+  }
+
+  // returns whether or not any of the elements in this list fulfill the truth condition of the
+  // given IPred
+  public boolean ormap(IPred<T> func) {
+    return new FlatListOps<T>().ormap(this, func);
+  }
+
+  // adds the given list to the end of this list, in O(1)
+  public IList<T> append(IList<T> that) {
+    return new AppendList<T>(this, that);
+  }
+
+  // adds the given element to the end of this list, in O(1)
+  public IList<T> add(T that) {
+    return new SnocList<T>(this, that);
+  }
+
+  // returns a filtered version of this list including only elements that satisfy the given
+  // predicate
+  public IList<T> filter(IPred<T> pred) {
+    return new FlatListOps<T>().filter(this, pred);
+  }
+
+  // does this list contain the given element?
+  public boolean contains(T that) {
+    return new FlatListOps<T>().contains(this, that);
+  }
+
+  // returns an iterator over the elements of this list, first to last
+  public Iterator<T> iterator() {
+    return new FlatListIterator<T>(this);
+  }
+}
+
+// an iterator over the elements of any list, first to last, that keeps its own stack of the
+// parts it hasn't gotten to yet instead of recursing (the generic version of
+// ILoStringIterator). ConsLists, SnocLists and AppendLists are taken apart on the stack, so
+// they can be nested however deeply; any other kind of list is walked with its own iterator.
+class FlatListIterator<T> implements Iterator<T> {
+
+  // the parts still to be walked, with the next one on top (at the end): each is either a
+  // list or an iterator over some elements
+  ArrayList<Object> pending;
+
+  // constructor
+  FlatListIterator(IList<T> list) {
+    this.pending = new ArrayList<Object>();
+    this.pending.add(list);
+  }
+
+  // are there any elements left?
+  // EFFECT: takes apart the parts on top of the stack until an iterator with an element left
+  // is on top, or the stack is empty
+  public boolean hasNext() {
+    while (!this.pending.isEmpty()) {
+      Object top = this.pending.get(this.pending.size() - 1);
+      if (top instanceof Iterator) {
+        if (((Iterator<?>) top).hasNext()) {
+          return true;
+        }
+        this.pending.remove(this.pending.size() - 1);
+      } else {
+        this.pending.remove(this.pending.size() - 1);
+        // the cast is safe, because every list on the stack is a part of a list of T's
+        @SuppressWarnings("unchecked")
+        IList<T> part = (IList<T>) top;
+        this.unfold(part);
+      }
+    }
+    return false;
+  }
+
+  // returns the next element
+  public T next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The list has no more elements.");
+    }
+    // the cast is safe, because every iterator on the stack is over T's
+    @SuppressWarnings("unchecked")
+    Iterator<T> top = (Iterator<T>) this.pending.get(this.pending.size() - 1);
+    return top.next();
+  }
+
+  // EFFECT: pushes the parts of the given list onto the stack, so that the part that comes
+  // first ends up on top
+  void unfold(IList<T> list) {
+    if (list instanceof ConsList) {
+      ConsList<T> cons = (ConsList<T>) list;
+      this.pending.add(cons.rest);
+      this.pending.add(Collections.singletonList(cons.first).iterator());
+    } else if (list instanceof SnocList) {
+      SnocList<T> snoc = (SnocList<T>) list;
+      this.pending.add(Collections.singletonList(snoc.last).iterator());
+      this.pending.add(snoc.front);
+    } else if (list instanceof AppendList) {
+      AppendList<T> both = (AppendList<T>) list;
+      this.pending.add(both.back);
+      this.pending.add(both.front);
+    } else if (!(list instanceof MtList)) {
+      this.pending.add(list.iterator());
+    }
+  }
+}
+
+// the list operations shared by SnocList and AppendList, done with one walk over the list
+class FlatListOps<T> {
+
+  // returns a list of the given function applied to every element of the given list
+  <U> IList<U> map(IList<T> list, IFunc<T, U> f) {
+    BuildConsList<U> result = new BuildConsList<U>();
+    for (T item : list) {
+      result.take(f.apply(item));
+    }
+    return result.result();
+  }
+
+  // returns the number of elements in the given list
+  int length(IList<T> list) {
+    int count = 0;
+    for (T item : list) {
+      count += 1;
+    }
+    return count;
+  }
+
+  // folds the given list from the right
+  // the elements are gathered up first, so that they can be folded from the right
+  <U> U foldr(IList<T> list, IFunc2<T, U, U> func, U base) {
+    ArrayList<T> elements = new ArrayList<T>();
+    for (T item : list) {
+      elements.add(item);
+    }
+    U result = base;
+    for (int i = elements.size() - 1; i >= 0; i -= 1) {
+      result = func.apply(elements.get(i), result);
+    }
+    return result;
+  }
+
+  // do any of the elements of the given list satisfy the given predicate?
+  boolean ormap(IList<T> list, IPred<T> pred) {
+    for (T item : list) {
+      if (pred.apply(item)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // returns a list of the elements of the given list that satisfy the given predicate
+  IList<T> filter(IList<T> list, IPred<T> pred) {
+    BuildConsList<T> result = new BuildConsList<T>();
+    for (T item : list) {
+      if (pred.apply(item)) {
+        result.take(item);
+      }
+    }
+    return result.result();
+  }
+
+  // does the given list contain the given element (compared by reference, like ConsList)?
+  boolean contains(IList<T> list, T that) {
+    for (T item : list) {
+      if (item == that) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
+
+// converts any list into only ConsLists ending in an MtList, keeping the order of its elements,
+// in one pass (the generic version of NormalizeLoString)
+class NormalizeList<T> implements IFunc<IList<T>, IList<T>> {
+  public IList<T> apply(IList<T> list) {
+    BuildConsList<T> result = new BuildConsList<T>();
+    Iterator<T> items = new FlatListIterator<T>(list);
+    while (items.hasNext()) {
+      result.take(items.next());
+    }
+    return result.result();
+  }
+}
+
+// returns a ConsList of the elements of any list in the opposite order, in one pass
+class ReverseList<T> implements IFunc<IList<T>, IList<T>> {
+  public IList<T> apply(IList<T> list) {
+    IList<T> result = new MtList<T>();
+    Iterator<T> items = new FlatListIterator<T>(list);
+    while (items.hasNext()) {
+      result = new ConsList<T>(items.next(), result);
+    }
+    return result;
+  }
+}
+
+// returns the running results of folding a list from the left: the element at index i of the
+// result is the function applied to the element at index i and the element before it in the
+// result (or the base, for the first one). This takes one pass, in O(n).
+// With a function that puts the result so far before the element, this is scanConcat for any
+// kind of element.
+class Scan<T, U> implements IFunc<IList<T>, IList<U>> {
+
+  // the function that combines an element with the result so far
+  IFunc2<T, U, U> func;
+
+  // the result before the first element
+  U base;
+
+  // constructor
+  Scan(IFunc2<T, U, U> func, U base) {
+    this.func = func;
+    this.base = base;
+  }
+
+  // returns the running results of folding the given list
+  public IList<U> apply(IList<T> list) {
+    BuildConsList<U> result = new BuildConsList<U>();
+    U sofar = this.base;
+    Iterator<T> items = new FlatListIterator<T>(list);
+    while (items.hasNext()) {
+      sofar = this.func.apply(items.next(), sofar);
+      result.take(sofar);
+    }
+    return result.result();
+  }
+}
+
+// computes the same running results as a Scan, for an associative operator, using every thread
+// of a fork-join pool.
+// The list is copied into an array and cut into blocks. First each block is reduced to one
+// value, in parallel; then a quick sequential pass turns those into the value before each
+// block; then each block is scanned starting from the value before it, in parallel. That's
+// about twice the work of a sequential scan, split across the pool's threads.
+// The operator takes its arguments the way Scan's function (and foldr's) does, the element
+// first and the result so far second, so the same operator gives the same results in both.
+// Seen as combining the result so far with the element after it, it has to be associative, and
+// the identity has to be one for it, for the result to match a sequential scan; it doesn't have
+// to be commutative.
+class ParallelScan<T> implements IFunc<IList<T>, IList<T>> {
+
+  // the operator, which combines the next element (first) with the result so far (second)
+  IFunc2<T, T, T> op;
+
+  // the identity for the operator
+  T identity;
+
+  // the pool to run on
+  ForkJoinPool pool;
+
+  // the fewest elements in a block
+  int grain;
+
+  // constructor
+  ParallelScan(IFunc2<T, T, T> op, T identity, ForkJoinPool pool, int grain) {
+    if (grain <= 0) {
+      throw new IllegalArgumentException("The grain size must be positive.");
+    }
+    this.op = op;
+    this.identity = identity;
+    this.pool = pool;
+    this.grain = grain;
+  }
+
+  // convenience constructor that uses the common pool and blocks of at least 4096 elements
+  ParallelScan(IFunc2<T, T, T> op, T identity) {
+    this(op, identity, ForkJoinPool.commonPool(), 4096);
+  }
+
+  // returns the running results of combining the elements of the given list
+  public IList<T> apply(IList<T> list) {
+    Object[] items = new ArrayOfList<T>().apply(list);
+    // a few blocks per thread, so that threads that finish early can take another
+    int blocks = Math.max(1, Math.min(items.length / this.grain,
+        4 * this.pool.getParallelism()));
+    Object[] totals = new Object[blocks];
+
+    this.pool.invoke(new BlockScan<T>(items, totals, this.op, this.identity, blocks,
+        0, blocks, false));
+    T sofar = this.identity;
+    for (int b = 0; b < blocks; b += 1) {
+      // the cast is safe, because the block's total came from the operator
+      @SuppressWarnings("unchecked")
+      T total = (T) totals[b];
+      totals[b] = sofar;
+      sofar = this.op.apply(total, sofar);
+    }
+    this.pool.invoke(new BlockScan<T>(items, totals, this.op, this.identity, blocks,
+        0, blocks, true));
+
+    return new ListOfArray<T>().apply(items);
+  }
+}
+
+// either reduces or scans a range of the blocks of an array, in parallel, for a ParallelScan
+class BlockScan<T> extends RecursiveAction {
+
+  // the version of the serial form RecursiveAction makes this class have
+  private static final long serialVersionUID = 1L;
+
+  // the elements, which a scan replaces with its running results
+  Object[] items;
+
+  // for a reduce, where each block's total goes; for a scan, the value before each block
+  Object[] totals;
+
+  // the operator (taking the element first) and its identity
+  IFunc2<T, T, T> op;
+  T identity;
+
+  // the number of blocks the array is cut into
+  int blocks;
+
+  // the range of blocks to work on, from low (inclusive) to high (exclusive)
+  int low;
+  int high;
+
+  // is this a scan (or a reduce)?
+  boolean scan;
+
+  // constructor
+  BlockScan(Object[] items, Object[] totals, IFunc2<T, T, T> op, T identity, int blocks,
+      int low, int high, boolean scan) {
+    this.items = items;
+    this.totals = totals;
+    this.op = op;
+    this.identity = identity;
+    this.blocks = blocks;
+    this.low = low;
+    this.high = high;
+    this.scan = scan;
+  }
+
+  // EFFECT: reduces or scans each block in the range, splitting the range in half until it's
+  // a single block
+  protected void compute() {
+    if (this.high - this.low > 1) {
+      int mid = (this.low + this.high) >>> 1;
+      invokeAll(new BlockScan<T>(this.items, this.totals, this.op, this.identity, this.blocks,
+          this.low, mid, this.scan),
+          new BlockScan<T>(this.items, this.totals, this.op, this.identity, this.blocks,
+              mid, this.high, this.scan));
+      return;
+    }
+
+    // the blocks split the array as evenly as they can
+    int start = (int) ((long) this.items.length * this.low / this.blocks);
+    int end = (int) ((long) this.items.length * (this.low + 1) / this.blocks);
+    T sofar = this.identity;
+    if (this.scan) {
+      sofar = this.at(this.totals, this.low);
+    }
+    for (int i = start; i < end; i += 1) {
+      sofar = this.op.apply(this.at(this.items, i), sofar);
+      if (this.scan) {
+        this.items[i] = sofar;
+      }
+    }
+    if (!this.scan) {
+      this.totals[this.low] = sofar;
+    }
+  }
+
+  // returns the element at the given index of one of the arrays
+  // the cast is safe, because everything in the arrays came from the list or the operator
+  @SuppressWarnings("unchecked")
+  T at(Object[] array, int index) {
+    return (T) array[index];
+  }
+}
+
+// puts the result so far before the given string
+class ConcatAfter implements IFunc2<String, String, String> {
+  public String apply(String str, String sofar) {
+    return sofar + str;
+  }
+}
+
+// a class for testing the generic list representations and scans
+class ExamplesGenericLists {
+
+  // a list built by adding to both ends and appending, in order: 1, 2, 3, 4, 5, 6
+  IList<Integer> mixed = new AppendList<Integer>(
+      new SnocList<Integer>(new ConsList<Integer>(1, new MtList<Integer>()), 2),
+      new ConsList<Integer>(3, new SnocList<Integer>(new SnocList<Integer>(
+          new AppendList<Integer>(new MtList<Integer>(), new MtList<Integer>()), 4), 5)))
+      .add(6);
+
+  // test the list operations on mixed lists
+  void testOperations(Tester t) {
+    t.checkExpect(new NormalizeList<Integer>().apply(this.mixed),
+        ListFixtures.list(1, 2, 3, 4, 5, 6));
+    t.checkExpect(this.mixed.length(), 6);
+    t.checkExpect(this.mixed.map(new AddOne()), ListFixtures.list(2, 3, 4, 5, 6, 7));
+    t.checkExpect(this.mixed.filter(new Even()), ListFixtures.list(2, 4, 6));
+    t.checkExpect(this.mixed.foldr(new ConsOnto<Integer>(), new MtList<Integer>()),
+        ListFixtures.list(1, 2, 3, 4, 5, 6));
+    t.checkExpect(this.mixed.ormap(new BiggerThanFive()), true);
+    t.checkExpect(this.mixed.ormap(new Negative()), false);
+    t.checkExpect(this.mixed.accept(new SumVisitor()), 21);
+    t.checkExpect(new AppendList<Integer>(new MtList<Integer>(), new MtList<Integer>())
+        .accept(new SumVisitor()), 0);
+    t.checkExpect(new NormalizeList<Integer>().apply(this.mixed.append(ListFixtures.list(7, 8))),
+        ListFixtures.list(1, 2, 3, 4, 5, 6, 7, 8));
+    t.checkExpect(new ReverseList<Integer>().apply(this.mixed),
+        ListFixtures.list(6, 5, 4, 3, 2, 1));
+
+    String hello = "hello";
+    IList<String> words = new SnocList<String>(new MtList<String>(), hello);
+    t.checkExpect(words.contains(hello), true);
+    t.checkExpect(words.contains(new String("hello")), false);
+  }
+
+  // test that other kinds of lists can be mixed in
+  void testOtherLists(Tester t) {
+    IList<Integer> vector = new PersistentVector<Integer>().add(7).add(8);
+    IList<Integer> both = new AppendList<Integer>(this.mixed, vector);
+    t.checkExpect(new NormalizeList<Integer>().apply(both),
+        ListFixtures.list(1, 2, 3, 4, 5, 6, 7, 8));
+    t.checkException(new NoSuchElementException("The list has no more elements."),
+        new FlatListIterator<Integer>(new MtList<Integer>()), "next");
+  }
+
+  // test scans, including one that works like scanConcat
+  void testScan(Tester t) {
+    t.checkExpect(new Scan<Integer, Integer>(new SumInts(), 0).apply(this.mixed),
+        ListFixtures.list(1, 3, 6, 10, 15, 21));
+    t.checkExpect(new Scan<String, String>(new ConcatAfter(), "").apply(
+        ListFixtures.list("a", "b", "c")), ListFixtures.list("a", "ab", "abc"));
+    t.checkExpect(new Scan<Integer, Integer>(new SumInts(), 0).apply(new MtList<Integer>()),
+        new MtList<Integer>());
+  }
+
+  // test that a parallel scan matches a sequential one with the same operator, including for an
+  // operator that isn't commutative and block sizes that don't divide the list evenly
+  void testParallelScan(Tester t) {
+    IList<Integer> numbers = new MtList<Integer>();
+    for (int i = 999; i >= 0; i -= 1) {
+      numbers = new ConsList<Integer>(i, numbers);
+    }
+    ParallelScan<Integer> sums =
+        new ParallelScan<Integer>(new SumInts(), 0, new ForkJoinPool(4), 7);
+    t.checkExpect(sums.apply(numbers), new Scan<Integer, Integer>(new SumInts(), 0)
+        .apply(numbers));
+    t.checkExpect(new ParallelScan<Integer>(new SumInts(), 0).apply(numbers),
+        new Scan<Integer, Integer>(new SumInts(), 0).apply(numbers));
+
+    IList<String> letters = numbers.map(new ShowInt());
+    ParallelScan<String> concat =
+        new ParallelScan<String>(new ConcatAfter(), "", new ForkJoinPool(3), 13);
+    t.checkExpect(concat.apply(letters), new Scan<String, String>(new ConcatAfter(), "")
+        .apply(letters));
+    t.checkExpect(sums.apply(new MtList<Integer>()), new MtList<Integer>());
+    t.checkConstructorException(new IllegalArgumentException("The grain size must be positive."),
+        "ParallelScan", new SumInts(), 0, ForkJoinPool.commonPool(), 0);
+    sums.pool.shutdown();
+    concat.pool.shutdown();
+  }
+
+  // test lists built from many nested Snocs and Appends, which would overflow the stack if
+  // they were walked by recursion
+  void testDeepLists(Tester t) {
+    IList<Integer> snocs = new MtList<Integer>();
+    IList<Integer> appends = new MtList<Integer>();
+    for (int i = 0; i < 200000; i += 1) {
+      snocs = new SnocList<Integer>(snocs, i);
+      appends = new AppendList<Integer>(new ConsList<Integer>(i, new MtList<Integer>()),
+          appends);
+    }
+    t.checkExpect(snocs.length(), 200000);
+    t.checkExpect(appends.length(), 200000);
+    t.checkExpect(snocs.foldr(new SumInts(), 0), appends.foldr(new SumInts(), 0));
+    t.checkExpect(new Scan<Integer, Integer>(new SumInts(), 0).apply(snocs).length(), 200000);
+    t.checkExpect(((ConsList<Integer>) new ReverseList<Integer>().apply(snocs)).first, 199999);
+  }
+}
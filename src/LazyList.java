@@ -0,0 +1,331 @@
+import java.util.ArrayList;
+import tester.*;
+
+// one step of a lazy list pipeline, which turns an element into another one, or drops it by
+// returning the DROPPED marker
+// stages work on plain Objects so that a whole pipeline of differently typed steps can be run
+// one after the other; LazyList's types make sure that each step gets what it expects
+interface IStage {
+
+  // the marker for an element that a stage has dropped
+  Object DROPPED = new Object();
+
+  // returns what the given element becomes after this stage, or DROPPED
+  Object process(Object item);
+}
+
+// a stage that applies a function to every element
+class MapStage<A, B> implements IStage {
+
+  // the function to apply
+  IFunc<A, B> func;
+
+  // constructor
+  MapStage(IFunc<A, B> func) {
+    this.func = func;
+  }
+
+  // returns the function applied to the given element
+  // the cast is safe, because the LazyList this stage belongs to only gives it A's
+  @SuppressWarnings("unchecked")
+  public Object process(Object item) {
+    return this.func.apply((A) item);
+  }
+}
+
+// a stage that drops the elements that don't satisfy a predicate
+class FilterStage<A> implements IStage {
+
+  // the predicate elements have to satisfy to be kept
+  IPred<A> pred;
+
+  // constructor
+  FilterStage(IPred<A> pred) {
+    this.pred = pred;
+  }
+
+  // returns the given element if it satisfies the predicate, or DROPPED if it doesn't
+  // the cast is safe, because the LazyList this stage belongs to only gives it A's
+  @SuppressWarnings("unchecked")
+  public Object process(Object item) {
+    if (this.pred.apply((A) item)) {
+      return item;
+    } else {
+      return IStage.DROPPED;
+    }
+  }
+}
+
+// a lazy view of an IList with map and filter steps applied to it.
+// map and filter don't do anything right away: they just record another stage. When one of the
+// terminal operations (foldr, ormap, length or toList) runs, every element of the source list
+// goes through all of the stages in a single pass, so no intermediate list is ever built, and
+// ormap stops pulling elements as soon as it has its answer.
+// Stages run in the same order, on the same elements, as the eager IList operations would.
+class LazyList<T> {
+
+  // the list the elements come from
+  IList<?> source;
+
+  // the last stage applied, or null if this is the source list itself
+  IStage stage;
+
+  // the lazy list this one adds its stage onto, or null if this is the source list itself
+  LazyList<?> previous;
+
+  // constructor
+  // a lazy view of the given list, with no stages yet
+  LazyList(IList<T> source) {
+    this.source = source;
+    this.stage = null;
+    this.previous = null;
+  }
+
+  // convenience constructor that adds the given stage onto the given lazy list
+  LazyList(LazyList<?> previous, IStage stage) {
+    this.source = previous.source;
+    this.stage = stage;
+    this.previous = previous;
+  }
+
+  // returns a lazy list that applies the given function to every element of this one
+  <U> LazyList<U> map(IFunc<T, U> f) {
+    return new LazyList<U>(this, new MapStage<T, U>(f));
+  }
+
+  // returns a lazy list of only the elements of this one that satisfy the given predicate
+  LazyList<T> filter(IPred<T> pred) {
+    return new LazyList<T>(this, new FilterStage<T>(pred));
+  }
+
+  // applies a function to each successive element of this lazy list, starting with the base
+  // and the last element
+  // the surviving elements are gathered once, so that they can be folded from the right
+  <U> U foldr(IFunc2<T, U, U> func, U base) {
+    ArrayList<T> survivors = new ArrayList<T>();
+    this.run(new CollectInto<T>(survivors));
+
+    U result = base;
+    for (int i = survivors.size() - 1; i >= 0; i -= 1) {
+      result = func.apply(survivors.get(i), result);
+    }
+
+    return result;
+  }
+
+  // do any of the elements of this lazy list satisfy the given predicate?
+  // stops pulling elements from the source as soon as one does
+  boolean ormap(IPred<T> pred) {
+    return !this.run(new UntilSatisfied<T>(pred));
+  }
+
+  // returns the number of elements in this lazy list
+  int length() {
+    CountElements<T> counter = new CountElements<T>();
+    this.run(counter);
+    return counter.count;
+  }
+
+  // returns a list of the elements of this lazy list, in order
+  IList<T> toList() {
+    BuildConsList<T> builder = new BuildConsList<T>();
+    this.run(builder);
+    return builder.result();
+  }
+
+  // passes each element of the source list through every stage in turn, giving the ones that
+  // make it through to the given sink, until the sink says to stop
+  // returns whether every element was pulled from the source
+  boolean run(ISink<T> sink) {
+    ArrayList<IStage> stages = new ArrayList<IStage>();
+    for (LazyList<?> curr = this; curr.stage != null; curr = curr.previous) {
+      stages.add(curr.stage);
+    }
+    int count = stages.size();
+
+    for (Object item : this.source) {
+      Object result = item;
+      // the stages were gathered from the last to the first
+      for (int i = count - 1; i >= 0 && result != IStage.DROPPED; i -= 1) {
+        result = stages.get(i).process(result);
+      }
+      if (result != IStage.DROPPED) {
+        // the cast is safe, because the element has been through every stage
+        @SuppressWarnings("unchecked")
+        T kept = (T) result;
+        if (!sink.take(kept)) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+}
+
+// where the elements that make it through a lazy list's stages go
+interface ISink<T> {
+
+  // takes the given element, returning whether to keep going
+  boolean take(T item);
+}
+
+// a sink that adds every element to a list
+class CollectInto<T> implements ISink<T> {
+
+  // the list the elements are added to
+  ArrayList<T> items;
+
+  // constructor
+  CollectInto(ArrayList<T> items) {
+    this.items = items;
+  }
+
+  // EFFECT: adds the given element to the list, and keeps going
+  public boolean take(T item) {
+    this.items.add(item);
+    return true;
+  }
+}
+
+// a sink that builds a ConsList of the elements it's given, from front to back
+class BuildConsList<T> implements ISink<T> {
+
+  // the first and last cells of the list built so far, or null if nothing has been taken
+  ConsList<T> first = null;
+  ConsList<T> last = null;
+
+  // EFFECT: adds the given element to the end of the list, and keeps going
+  public boolean take(T item) {
+    // the last cell's rest is filled in once every element has been taken
+    ConsList<T> next = new ConsList<T>(item, null);
+    if (this.last == null) {
+      this.first = next;
+    } else {
+      this.last.rest = next;
+    }
+    this.last = next;
+    return true;
+  }
+
+  // returns the list of every element taken
+  IList<T> result() {
+    if (this.first == null) {
+      return new MtList<T>();
+    } else {
+      this.last.rest = new MtList<T>();
+      return this.first;
+    }
+  }
+}
+
+// a sink that counts the elements it's given
+class CountElements<T> implements ISink<T> {
+
+  // the number of elements taken so far
+  int count = 0;
+
+  // EFFECT: counts the given element, and keeps going
+  public boolean take(T item) {
+    this.count += 1;
+    return true;
+  }
+}
+
+// a sink that stops at the first element that satisfies a predicate
+class UntilSatisfied<T> implements ISink<T> {
+
+  // the predicate being looked for
+  IPred<T> pred;
+
+  // constructor
+  UntilSatisfied(IPred<T> pred) {
+    this.pred = pred;
+  }
+
+  // keeps going only if the given element doesn't satisfy the predicate
+  public boolean take(T item) {
+    return !this.pred.apply(item);
+  }
+}
+
+// adds one to the given integer, counting how many times it's been applied
+class CountingAddOne implements IFunc<Integer, Integer> {
+
+  // how many times this function has been applied
+  int calls = 0;
+
+  // EFFECT: counts this call
+  public Integer apply(Integer num) {
+    this.calls += 1;
+    return num + 1;
+  }
+}
+
+// a class for testing lazy list functionality
+class ExamplesLazyList {
+
+  // test that a lazy pipeline gives the same results as the eager list operations
+  void testMatchesEager(Tester t) {
+    IList<Integer> list = ListFixtures.range(20);
+    LazyList<Integer> lazy = new LazyList<Integer>(list).map(new AddOne())
+        .filter(new Even()).map(new AddOne());
+    IList<Integer> eager = list.map(new AddOne()).filter(new Even()).map(new AddOne());
+
+    t.checkExpect(lazy.toList(), eager);
+    t.checkExpect(lazy.length(), eager.length());
+    t.checkExpect(lazy.foldr(new SumInts(), 0), eager.foldr(new SumInts(), 0));
+    t.checkExpect(lazy.foldr(new ConsOnto<Integer>(), new MtList<Integer>()), eager);
+    t.checkExpect(lazy.ormap(new BiggerThanFive()), true);
+    t.checkExpect(lazy.ormap(new Negative()), false);
+  }
+
+  // test pipelines with no stages, and pipelines that drop everything
+  void testEdgeCases(Tester t) {
+    t.checkExpect(new LazyList<Integer>(ListFixtures.range(3)).toList(), ListFixtures.range(3));
+    t.checkExpect(new LazyList<Integer>(new MtList<Integer>()).length(), 0);
+    t.checkExpect(new LazyList<Integer>(ListFixtures.range(10)).filter(new Negative()).toList(),
+        new MtList<Integer>());
+    t.checkExpect(new LazyList<Integer>(ListFixtures.range(10)).filter(new Negative())
+        .foldr(new SumInts(), 7), 7);
+  }
+
+  // test that nothing runs until a terminal operation does, and that ormap stops early
+  void testLaziness(Tester t) {
+    CountingAddOne counted = new CountingAddOne();
+    LazyList<Integer> lazy = new LazyList<Integer>(ListFixtures.range(1000)).map(counted)
+        .filter(new BiggerThanFive());
+    t.checkExpect(counted.calls, 0);
+
+    // the sixth element becomes 6, which is the first one bigger than five
+    t.checkExpect(lazy.ormap(new Even()), true);
+    t.checkExpect(counted.calls, 6);
+
+    t.checkExpect(lazy.length(), 995);
+    t.checkExpect(counted.calls, 1006);
+  }
+
+  // test that stages can change the type of the elements
+  void testChangingTypes(Tester t) {
+    LazyList<String> words = new LazyList<Integer>(ListFixtures.range(5)).map(new ShowInt())
+        .filter(new ThreeLettersLong());
+    t.checkExpect(words.length(), 0);
+    t.checkExpect(new LazyList<Integer>(ListFixtures.range(5)).map(new ShowInt()).toList(),
+        ListFixtures.range(5).map(new ShowInt()));
+  }
+
+  // test that pipelines over long lists don't need a deep stack
+  void testLongList(Tester t) {
+    LazyList<Integer> lazy = new LazyList<Integer>(ListFixtures.range(1000000)).map(new AddOne())
+        .filter(new Even());
+    t.checkExpect(lazy.length(), 500000);
+    t.checkExpect(lazy.toList().length(), 500000);
+  }
+}
+
+// shows the given integer as a string
+class ShowInt implements IFunc<Integer, String> {
+  public String apply(Integer num) {
+    return num.toString();
+  }
+}
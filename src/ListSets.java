@@ -0,0 +1,304 @@
+import tester.*;
+
+// a set of elements compared by equals, stored in a single array with open addressing: an
+// element is kept at the first free slot at or after the one its hash code points to, so a
+// lookup only looks at the few slots in a row after that one.
+// The array is kept at most half full, and doubles in size when it would get fuller.
+// This is meant to be built, used and thrown away inside a single operation, so elements can't
+// be removed.
+class OpenHashSet<T> {
+
+  // the marker stored in place of null, since empty slots are null
+  static final Object NULL_ELEMENT = new Object();
+
+  // the slots of this set; the length is always a power of two
+  Object[] slots;
+
+  // the number of elements in this set
+  int size;
+
+  // constructor
+  // an empty set with room for the given number of elements before it has to grow
+  OpenHashSet(int expected) {
+    int capacity = 16;
+    while (capacity < expected * 2) {
+      capacity *= 2;
+    }
+    this.slots = new Object[capacity];
+    this.size = 0;
+  }
+
+  // convenience constructor for an empty set of the default size
+  OpenHashSet() {
+    this(8);
+  }
+
+  // does this set contain an element equal to the given one?
+  boolean contains(T item) {
+    Object key = this.mask(item);
+    int last = this.slots.length - 1;
+    for (int i = this.home(key); this.slots[i] != null; i = (i + 1) & last) {
+      if (this.slots[i].equals(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // EFFECT: adds the given element to this set, unless an equal one is already in it
+  // returns whether the element was added
+  boolean add(T item) {
+    Object key = this.mask(item);
+    int last = this.slots.length - 1;
+    int i = this.home(key);
+    while (this.slots[i] != null) {
+      if (this.slots[i].equals(key)) {
+        return false;
+      }
+      i = (i + 1) & last;
+    }
+
+    this.slots[i] = key;
+    this.size += 1;
+    if (this.size * 2 > this.slots.length) {
+      this.grow();
+    }
+    return true;
+  }
+
+  // returns the number of elements in this set
+  int size() {
+    return this.size;
+  }
+
+  // EFFECT: moves every element into an array twice as big
+  void grow() {
+    Object[] old = this.slots;
+    this.slots = new Object[old.length * 2];
+    int last = this.slots.length - 1;
+    for (Object key : old) {
+      if (key != null) {
+        int i = this.home(key);
+        while (this.slots[i] != null) {
+          i = (i + 1) & last;
+        }
+        this.slots[i] = key;
+      }
+    }
+  }
+
+  // returns the slot the given key belongs in if nothing else is there
+  // the high bits of the hash code are folded into the low ones, since only the low ones are
+  // used to pick a slot
+  int home(Object key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (this.slots.length - 1);
+  }
+
+  // returns what to store for the given element
+  Object mask(T item) {
+    if (item == null) {
+      return NULL_ELEMENT;
+    } else {
+      return item;
+    }
+  }
+}
+
+// an opt-in way to ask whether a list contains an element by equals rather than by reference,
+// in constant time on average.
+// IList.contains compares with ==, and looks through the whole list every time. Building one of
+// these from a list takes one pass over it, after which every contains is a hash lookup, so
+// testing m elements against a list of n takes O(n + m) rather than O(n * m).
+// It's also a predicate, so it can be passed straight to filter and ormap.
+// It holds the elements that were in the list when it was built; since lists are immutable,
+// it never goes stale.
+class EqualsMembership<T> implements IPred<T> {
+
+  // the elements of the list
+  OpenHashSet<T> elements;
+
+  // constructor
+  EqualsMembership(IList<T> list) {
+    this.elements = new OpenHashSet<T>();
+    for (T item : list) {
+      this.elements.add(item);
+    }
+  }
+
+  // does the list contain an element equal to the given one?
+  boolean contains(T item) {
+    return this.elements.contains(item);
+  }
+
+  // does the list contain an element equal to the given one?
+  public Boolean apply(T item) {
+    return this.elements.contains(item);
+  }
+}
+
+// returns the elements of a list without repeats (by equals), keeping the first of each in
+// order
+class Distinct<T> implements IFunc<IList<T>, IList<T>> {
+  public IList<T> apply(IList<T> list) {
+    OpenHashSet<T> seen = new OpenHashSet<T>();
+    BuildConsList<T> result = new BuildConsList<T>();
+    for (T item : list) {
+      if (seen.add(item)) {
+        result.take(item);
+      }
+    }
+    return result.result();
+  }
+}
+
+// returns the elements of a list that also appear in another list (by equals), without
+// repeats, in the order they first appear in the first list
+class Intersect<T> implements IFunc<IList<T>, IList<T>> {
+
+  // the list whose elements are kept
+  IList<T> other;
+
+  // constructor
+  Intersect(IList<T> other) {
+    this.other = other;
+  }
+
+  // returns the elements of the given list that are also in the other list
+  public IList<T> apply(IList<T> list) {
+    EqualsMembership<T> keep = new EqualsMembership<T>(this.other);
+    OpenHashSet<T> seen = new OpenHashSet<T>();
+    BuildConsList<T> result = new BuildConsList<T>();
+    for (T item : list) {
+      if (keep.contains(item) && seen.add(item)) {
+        result.take(item);
+      }
+    }
+    return result.result();
+  }
+}
+
+// returns the elements of a list that don't appear in another list (by equals), without
+// repeats, in the order they first appear in the first list
+class Except<T> implements IFunc<IList<T>, IList<T>> {
+
+  // the list whose elements are dropped
+  IList<T> other;
+
+  // constructor
+  Except(IList<T> other) {
+    this.other = other;
+  }
+
+  // returns the elements of the given list that aren't in the other list
+  public IList<T> apply(IList<T> list) {
+    // everything in the other list counts as already seen
+    OpenHashSet<T> seen = new OpenHashSet<T>();
+    for (T item : this.other) {
+      seen.add(item);
+    }
+    BuildConsList<T> result = new BuildConsList<T>();
+    for (T item : list) {
+      if (seen.add(item)) {
+        result.take(item);
+      }
+    }
+    return result.result();
+  }
+}
+
+// a class whose hash codes all collide, for testing that lookups look past other elements
+class Collider {
+
+  // the value that tells colliders apart
+  int value;
+
+  // constructor
+  Collider(int value) {
+    this.value = value;
+  }
+
+  // colliders are equal if their values are
+  public boolean equals(Object other) {
+    return other instanceof Collider && ((Collider) other).value == this.value;
+  }
+
+  // every collider has the same hash code
+  public int hashCode() {
+    return 42;
+  }
+}
+
+// a class for testing hash-based list set operations
+class ExamplesListSets {
+
+  // test the hash set on its own, including growing and null
+  void testOpenHashSet(Tester t) {
+    OpenHashSet<Integer> set = new OpenHashSet<Integer>();
+    for (int i = 0; i < 1000; i += 1) {
+      set.add(i * 16);
+    }
+    t.checkExpect(set.size(), 1000);
+    t.checkExpect(set.add(32), false);
+    t.checkExpect(set.contains(15984), true);
+    t.checkExpect(set.contains(15985), false);
+    t.checkExpect(set.contains(null), false);
+    t.checkExpect(set.add(null), true);
+    t.checkExpect(set.contains(null), true);
+    t.checkExpect(set.size(), 1001);
+    t.checkExpect(set.slots.length, 2048);
+
+    OpenHashSet<Collider> colliders = new OpenHashSet<Collider>();
+    for (int i = 0; i < 20; i += 1) {
+      colliders.add(new Collider(i));
+    }
+    t.checkExpect(colliders.contains(new Collider(19)), true);
+    t.checkExpect(colliders.contains(new Collider(20)), false);
+    t.checkExpect(colliders.add(new Collider(3)), false);
+  }
+
+  // test that membership compares by equals, where contains compares by reference
+  void testEqualsMembership(Tester t) {
+    IList<String> words = ListFixtures.list("hello", "there");
+    EqualsMembership<String> members = new EqualsMembership<String>(words);
+
+    t.checkExpect(words.contains(new String("hello")), false);
+    t.checkExpect(members.contains(new String("hello")), true);
+    t.checkExpect(members.contains("bye"), false);
+    t.checkExpect(ListFixtures.list("a", "there", "b").filter(members), ListFixtures.list("there"));
+    t.checkExpect(ListFixtures.list("a", "b").ormap(members), false);
+    t.checkExpect(new EqualsMembership<String>(new MtList<String>()).contains("a"), false);
+  }
+
+  // test distinct, intersect and except
+  void testSetOperations(Tester t) {
+    IList<String> first = ListFixtures.list("b", "a", "c", "a", "d", "b");
+    IList<String> second = ListFixtures.list("d", "x", "a", "a");
+
+    t.checkExpect(new Distinct<String>().apply(first), ListFixtures.list("b", "a", "c", "d"));
+    t.checkExpect(new Intersect<String>(second).apply(first), ListFixtures.list("a", "d"));
+    t.checkExpect(new Except<String>(second).apply(first), ListFixtures.list("b", "c"));
+    t.checkExpect(new Distinct<String>().apply(new MtList<String>()), new MtList<String>());
+    t.checkExpect(new Intersect<String>(new MtList<String>()).apply(first),
+        new MtList<String>());
+    t.checkExpect(new Except<String>(new MtList<String>()).apply(first),
+        new Distinct<String>().apply(first));
+  }
+
+  // test the set operations on lists big enough that nested scans would be far too slow
+  void testLargeLists(Tester t) {
+    IList<Integer> evens = new MtList<Integer>();
+    IList<Integer> thirds = new MtList<Integer>();
+    for (int i = 199998; i >= 0; i -= 2) {
+      evens = new ConsList<Integer>(i, evens);
+    }
+    for (int i = 199998; i >= 0; i -= 3) {
+      thirds = new ConsList<Integer>(i, thirds);
+    }
+
+    // multiples of six
+    t.checkExpect(new Intersect<Integer>(thirds).apply(evens).length(), 33334);
+    t.checkExpect(new Except<Integer>(thirds).apply(evens).length(), 66666);
+    t.checkExpect(new Distinct<Integer>().apply(evens.append(thirds)).length(), 133333);
+  }
+}
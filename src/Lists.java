@@ -3,8 +3,15 @@
  * by Benjamin Lerner (blerner@ccs.neu.edu)
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
 //represents a list of a generic class type that can be visited by a list visitor
-interface IList<T> { 
+// and iterated over from first to last
+interface IList<T> extends Iterable<T> { 
 
   // accept this list by the given list visitor
   <R> R accept(IListVisitor<T, R> f);
@@ -90,9 +97,17 @@ class MtList<T> implements IList<T> {
   public boolean contains(T that) {
     return false;
   }
+
+  // returns an iterator over the elements of this empty list, which has none
+  public Iterator<T> iterator() {
+    return Collections.emptyIterator();
+  }
 }
 
 //represents a list of a generic class type
+// every operation walks the cons cells with a loop rather than recursing once per element, so
+// lists of any length can be used without running out of stack. If the cells end in some
+// other kind of list, the operation is handed off to that list at the end.
 class ConsList<T> implements IList<T> {
   // the first element in this non-empty list
   T first;
@@ -113,55 +128,187 @@ class ConsList<T> implements IList<T> {
 
   // applies the given function to every element of this non-empty list
   public <U> IList<U> map(IFunc<T, U> f) {
-    return new ConsList<U>(f.apply(this.first), this.rest.map(f));
+    ConsList<U> result = new ConsList<U>(f.apply(this.first), null);
+    ConsList<U> last = result;
+    IList<T> curr = this.rest;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      ConsList<U> next = new ConsList<U>(f.apply(cell.first), null);
+      last.rest = next;
+      last = next;
+      curr = cell.rest;
+    }
+    last.rest = curr.map(f);
+
+    return result;
   }
 
   // returns the number of elements in this non-empty list
   public int length() {
-    return 1 + this.rest.length();
+    int count = 1;
+    IList<T> curr = this.rest;
+
+    while (curr instanceof ConsList) {
+      count += 1;
+      curr = ((ConsList<T>) curr).rest;
+    }
+
+    return count + curr.length();
   }
 
   // applies a function to each successive element of this list, starting with the base
+  // the elements are gathered up first, so that they can be folded from the right
   public <U> U foldr(IFunc2<T, U, U> func, U base) {
-    return func.apply(this.first,
-        this.rest.foldr(func, base));
+    ArrayList<T> elements = new ArrayList<T>();
+    IList<T> curr = this;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      elements.add(cell.first);
+      curr = cell.rest;
+    }
+
+    U result = curr.foldr(func, base);
+    for (int i = elements.size() - 1; i >= 0; i -= 1) {
+      result = func.apply(elements.get(i), result);
+    }
+
+    return result;
   }
 
   // returns whether or not any of the elements in this list fulfill the truth condition of the
   // given IPred
   public boolean ormap(IPred<T> func) {
-    return func.apply(this.first) || this.rest.ormap(func);
+    IList<T> curr = this;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      if (func.apply(cell.first)) {
+        return true;
+      }
+      curr = cell.rest;
+    }
+
+    return curr.ormap(func);
   }
 
   // adds the given list to the end of this nonempty list
+  // the cells of this list are copied, and the copy of the last one points at the given list
   public IList<T> append(IList<T> that) {
-    return new ConsList<T>(this.first, this.rest.append(that));
+    ConsList<T> result = new ConsList<T>(this.first, null);
+    ConsList<T> last = result;
+    IList<T> curr = this.rest;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      ConsList<T> next = new ConsList<T>(cell.first, null);
+      last.rest = next;
+      last = next;
+      curr = cell.rest;
+    }
+    last.rest = curr.append(that);
+
+    return result;
   }
 
   // adds the given element to the end of this ConsList
   public IList<T> add(T that) {
-    return new ConsList<T>(this.first, this.rest.add(that));
+    return this.append(new ConsList<T>(that, new MtList<T>()));
   }
-  
+
   // returns a filtered version of this MtList inlcuding only elements that satisfy
   // the given predicate
   public IList<T> filter(IPred<T> pred) {
-    if (pred.apply(this.first)) {
-      return new ConsList<T>(this.first, this.rest.filter(pred));
+    ConsList<T> result = null;
+    ConsList<T> last = null;
+    IList<T> curr = this;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      if (pred.apply(cell.first)) {
+        ConsList<T> next = new ConsList<T>(cell.first, null);
+        if (last == null) {
+          result = next;
+        } else {
+          last.rest = next;
+        }
+        last = next;
+      }
+      curr = cell.rest;
     }
-    else {
-      return this.rest.filter(pred);
+
+    if (last == null) {
+      return curr.filter(pred);
     }
+    last.rest = curr.filter(pred);
+    return result;
   }
   
   // does this MtList contain the given element?
   // false because an empty list contains nothing
   public boolean contains(T that) {
-    return this.first == that || this.rest.contains(that);
+    IList<T> curr = this;
+
+    while (curr instanceof ConsList) {
+      ConsList<T> cell = (ConsList<T>) curr;
+      if (cell.first == that) {
+        return true;
+      }
+      curr = cell.rest;
+    }
+
+    return curr.contains(that);
     // NOTE: this uses REFERENCE EQUALITY to determine sameness
   }
+
+  // returns an iterator over the elements of this list, from first to last
+  public Iterator<T> iterator() {
+    return new IListIterator<T>(this);
+  }
 }
 
+// an iterator over the elements of an IList, stepping through cons cells one at a time and
+// handing off to the iterator of whatever other kind of list they end in
+class IListIterator<T> implements Iterator<T> {
+
+  // the cell holding the next element, or null once we're past the cons cells
+  ConsList<T> cell;
+
+  // an iterator over the list the cons cells ended in, once we've reached it
+  Iterator<T> tail;
+
+  // constructor
+  IListIterator(ConsList<T> cell) {
+    this.cell = cell;
+    this.tail = null;
+  }
+
+  // are there any elements left?
+  public boolean hasNext() {
+    return this.cell != null || this.tail.hasNext();
+  }
+
+  // returns the next element of the list
+  // EFFECT: moves on to the following element
+  public T next() {
+    if (this.cell == null) {
+      if (this.tail.hasNext()) {
+        return this.tail.next();
+      }
+      throw new NoSuchElementException("The list has no more elements.");
+    }
+
+    T data = this.cell.first;
+    if (this.cell.rest instanceof ConsList) {
+      this.cell = (ConsList<T>) this.cell.rest;
+    } else {
+      this.tail = this.cell.rest.iterator();
+      this.cell = null;
+    }
+    return data;
+  }
+}
 
 //represents a function that takes in one input and provides one output
 //(both of which are of generic type)
@@ -191,3 +338,158 @@ interface IListVisitor<T, R> extends IFunc<IList<T>, R> {
   // apply this visitor to a non-empty (cons) list
   R visitConsList(ConsList<T> t);
 }
+
+// adds one to the given integer
+class AddOne implements IFunc<Integer, Integer> {
+  public Integer apply(Integer num) {
+    return num + 1;
+  }
+}
+
+// adds the given integers together
+class SumInts implements IFunc2<Integer, Integer, Integer> {
+  public Integer apply(Integer num, Integer sum) {
+    return num + sum;
+  }
+}
+
+// puts the given element at the front of the given list
+class ConsOnto<T> implements IFunc2<T, IList<T>, IList<T>> {
+  public IList<T> apply(T item, IList<T> list) {
+    return new ConsList<T>(item, list);
+  }
+}
+
+// is the given integer larger than 5?
+class BiggerThanFive implements IPred<Integer> {
+  public Boolean apply(Integer num) {
+    return num > 5;
+  }
+}
+
+// lists for the examples classes of the list representations to build their tests from, and
+// checks on lists, shared so each of them doesn't keep its own copy
+class ListFixtures {
+
+  // returns a list of the integers from 0 up to (but not including) the given number
+  static IList<Integer> range(int n) {
+    IList<Integer> result = new MtList<Integer>();
+    for (int i = n - 1; i >= 0; i -= 1) {
+      result = new ConsList<Integer>(i, result);
+    }
+    return result;
+  }
+
+  // builds a list of the given elements, in order
+  @SafeVarargs
+  static <T> IList<T> list(T... items) {
+    IList<T> result = new MtList<T>();
+    for (int i = items.length - 1; i >= 0; i -= 1) {
+      result = new ConsList<T>(items[i], result);
+    }
+    return result;
+  }
+
+  // does every element of the given list equal its own index plus the given offset?
+  static boolean countsUpFrom(IList<Integer> list, int offset) {
+    int expected = offset;
+    for (Integer item : list) {
+      if (item != expected) {
+        return false;
+      }
+      expected += 1;
+    }
+    return true;
+  }
+}
+
+// a class for testing list functionality
+class ExamplesLists {
+  MtList<Integer> mt = new MtList<Integer>();
+  IList<Integer> list3 = new ConsList<Integer>(1, new ConsList<Integer>(2,
+      new ConsList<Integer>(3, this.mt)));
+
+  // test the list operations on small lists
+  void testSmallLists(Tester t) {
+    t.checkExpect(this.list3.map(new AddOne()), new ConsList<Integer>(2,
+        new ConsList<Integer>(3, new ConsList<Integer>(4, this.mt))));
+    t.checkExpect(this.list3.length(), 3);
+    t.checkExpect(this.mt.length(), 0);
+    t.checkExpect(this.list3.foldr(new SumInts(), 0), 6);
+    t.checkExpect(this.list3.foldr(new ConsOnto<Integer>(), this.mt), this.list3);
+    t.checkExpect(this.list3.ormap(new Even()), true);
+    t.checkExpect(this.list3.ormap(new BiggerThanFive()), false);
+    t.checkExpect(this.list3.append(this.list3).length(), 6);
+    t.checkExpect(this.list3.append(this.mt), this.list3);
+    t.checkExpect(this.mt.append(this.list3), this.list3);
+    t.checkExpect(this.list3.add(4), ListFixtures.range(5).filter(new BiggerThanZero()));
+    t.checkExpect(this.list3.filter(new Odd()), new ConsList<Integer>(1,
+        new ConsList<Integer>(3, this.mt)));
+    t.checkExpect(this.list3.filter(new BiggerThanFive()), this.mt);
+  }
+
+  // test membership, which uses reference equality
+  void testContains(Tester t) {
+    String hello = "hello";
+    IList<String> words = new ConsList<String>("a", new ConsList<String>(hello,
+        new MtList<String>()));
+    t.checkExpect(words.contains(hello), true);
+    t.checkExpect(words.contains(new String("hello")), false);
+    t.checkExpect(new MtList<String>().contains(hello), false);
+  }
+
+  // test iterating over lists
+  void testIterate(Tester t) {
+    ArrayList<Integer> seen = new ArrayList<Integer>();
+    for (Integer num : this.list3) {
+      seen.add(num);
+    }
+    ArrayList<Integer> expected = new ArrayList<Integer>();
+    expected.add(1);
+    expected.add(2);
+    expected.add(3);
+    t.checkExpect(seen, expected);
+    t.checkExpect(this.mt.iterator().hasNext(), false);
+    Iterator<Integer> single = new ConsList<Integer>(1, this.mt).iterator();
+    t.checkExpect(single.next(), 1);
+    t.checkExpect(single.hasNext(), false);
+    t.checkException(new NoSuchElementException("The list has no more elements."),
+        single, "next");
+  }
+
+  // test that every operation works on a list far longer than the stack is deep
+  void testLongLists(Tester t) {
+    int n = 10000000;
+    IList<Integer> big = ListFixtures.range(n);
+
+    t.checkExpect(big.length(), n);
+    t.checkExpect(big.map(new AddOne()).length(), n);
+    t.checkExpect(big.foldr(new SumInts(), 0), (int) ((long) n * (n - 1) / 2));
+    t.checkExpect(big.filter(new Even()).length(), n / 2);
+    t.checkExpect(big.append(big).length(), 2 * n);
+    t.checkExpect(big.add(n).length(), n + 1);
+    t.checkExpect(big.ormap(new BiggerThanFive()), true);
+    t.checkExpect(big.ormap(new Negative()), false);
+    t.checkExpect(big.contains(null), false);
+
+    int count = 0;
+    for (Integer num : big) {
+      count += 1;
+    }
+    t.checkExpect(count, n);
+  }
+}
+
+// is the given integer larger than 0?
+class BiggerThanZero implements IPred<Integer> {
+  public Boolean apply(Integer num) {
+    return num > 0;
+  }
+}
+
+// is the given integer negative?
+class Negative implements IPred<Integer> {
+  public Boolean apply(Integer num) {
+    return num < 0;
+  }
+}
@@ -0,0 +1,1030 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.zip.CRC32;
+import tester.*;
+
+// an ordering of long keys, which compares them without boxing them
+interface ILongOrder {
+
+  // returns a negative number if the left key comes first, a positive one if the right one
+  // does, and 0 if they're the same
+  int compare(long left, long right);
+}
+
+// orders longs from smallest to largest
+class NaturalLongOrder implements ILongOrder {
+  public int compare(long left, long right) {
+    return Long.compare(left, right);
+  }
+}
+
+// orders longs with an IComparator, as a BinarySearchTree<Long> would (boxing the keys it
+// compares, so it's slower than an ILongOrder written for longs)
+class LongOrderOf implements ILongOrder {
+
+  // the comparator to order by
+  IComparator<Long> order;
+
+  // constructor
+  LongOrderOf(IComparator<Long> order) {
+    this.order = order;
+  }
+
+  public int compare(long left, long right) {
+    return this.order.compare(left, right);
+  }
+}
+
+// fixed-size pages of bytes outside the Java heap, in chunks of CHUNK_PAGES pages that are
+// added as more pages are needed. Pages are numbered from 0, and read and written through
+// absolute gets and puts, so the garbage collector never sees what's in them.
+abstract class APageStore {
+
+  // the number of bytes in a page
+  static final int PAGE_SIZE = 4096;
+
+  // the number of pages in a chunk (1024, so a chunk is 4MB)
+  static final int CHUNK_SHIFT = 10;
+  static final int CHUNK_PAGES = 1 << CHUNK_SHIFT;
+  static final int CHUNK_BYTES = CHUNK_PAGES * PAGE_SIZE;
+
+  // the chunks made so far, in order
+  ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+  // the number of pages in use
+  int pageCount = 0;
+
+  // returns the storage for the chunk with the given index
+  abstract ByteBuffer newChunk(int index);
+
+  // does this store keep its pages when the program ends?
+  abstract boolean durable();
+
+  // did this store start out with no pages?
+  abstract boolean isNew();
+
+  // EFFECT: makes sure every change to the pages has reached the storage
+  abstract void force();
+
+  // EFFECT: makes sure every change to the first page has reached the storage
+  abstract void forceFirstPage();
+
+  // EFFECT: releases the storage (the store can't be used after this)
+  abstract void close();
+
+  // returns the number of a new page at the end of the store
+  // EFFECT: adds a chunk, if the last one is full
+  int allocate() {
+    int page = this.pageCount;
+    this.ensure(page);
+    this.pageCount += 1;
+    return page;
+  }
+
+  // EFFECT: adds chunks until there's one holding the given page
+  void ensure(int page) {
+    while (this.chunks.size() <= page >>> CHUNK_SHIFT) {
+      this.chunks.add(this.newChunk(this.chunks.size()));
+    }
+  }
+
+  // EFFECT: sets the number of pages in use to the given number, as after reopening the store
+  void restore(int pageCount) {
+    this.pageCount = pageCount;
+    if (pageCount > 0) {
+      this.ensure(pageCount - 1);
+    }
+  }
+
+  // returns the position of the given byte of the given page within its chunk
+  int position(int page, int offset) {
+    return (page & (CHUNK_PAGES - 1)) * PAGE_SIZE + offset;
+  }
+
+  // returns the long at the given offset of the given page
+  long getLong(int page, int offset) {
+    return this.chunks.get(page >>> CHUNK_SHIFT).getLong(this.position(page, offset));
+  }
+
+  // EFFECT: sets the long at the given offset of the given page
+  void putLong(int page, int offset, long value) {
+    this.chunks.get(page >>> CHUNK_SHIFT).putLong(this.position(page, offset), value);
+  }
+
+  // returns the int at the given offset of the given page
+  int getInt(int page, int offset) {
+    return this.chunks.get(page >>> CHUNK_SHIFT).getInt(this.position(page, offset));
+  }
+
+  // EFFECT: sets the int at the given offset of the given page
+  void putInt(int page, int offset, int value) {
+    this.chunks.get(page >>> CHUNK_SHIFT).putInt(this.position(page, offset), value);
+  }
+
+  // EFFECT: copies every byte of one page onto another
+  void copyPage(int from, int to) {
+    ByteBuffer source = this.chunks.get(from >>> CHUNK_SHIFT).duplicate();
+    source.position(this.position(from, 0));
+    source.limit(this.position(from, PAGE_SIZE));
+    ByteBuffer dest = this.chunks.get(to >>> CHUNK_SHIFT).duplicate();
+    dest.position(this.position(to, 0));
+    dest.put(source);
+  }
+
+  // returns the CRC-32 of the given number of bytes starting at the given offset of the given
+  // page
+  int checksum(int page, int offset, int length) {
+    ByteBuffer bytes = this.chunks.get(page >>> CHUNK_SHIFT).duplicate();
+    bytes.position(this.position(page, offset));
+    bytes.limit(this.position(page, offset + length));
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+}
+
+// pages in direct ByteBuffers, which last only as long as the program
+class DirectPageStore extends APageStore {
+  ByteBuffer newChunk(int index) {
+    return ByteBuffer.allocateDirect(CHUNK_BYTES);
+  }
+
+  boolean durable() {
+    return false;
+  }
+
+  boolean isNew() {
+    return true;
+  }
+
+  void force() {
+    // there's nowhere for the pages to go
+  }
+
+  void forceFirstPage() {
+    // there's nowhere for the page to go
+  }
+
+  void close() {
+    this.chunks.clear();
+  }
+}
+
+// pages in a file, mapped into memory a chunk at a time (mapping a chunk past the end of the
+// file makes the file longer)
+class MappedPageStore extends APageStore {
+
+  // the file's channel
+  FileChannel channel;
+
+  // was the file empty when it was opened?
+  boolean empty;
+
+  // constructor
+  // opens the given file, making it if it doesn't exist
+  MappedPageStore(Path file) {
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE);
+      this.empty = this.channel.size() == 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  ByteBuffer newChunk(int index) {
+    try {
+      return this.channel.map(FileChannel.MapMode.READ_WRITE, (long) index * CHUNK_BYTES,
+          CHUNK_BYTES);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  boolean durable() {
+    return true;
+  }
+
+  boolean isNew() {
+    return this.empty;
+  }
+
+  void force() {
+    for (ByteBuffer chunk : this.chunks) {
+      ((MappedByteBuffer) chunk).force();
+    }
+  }
+
+  void forceFirstPage() {
+    ((MappedByteBuffer) this.chunks.get(0)).force(0, PAGE_SIZE);
+  }
+
+  void close() {
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// a set of long keys kept in order in a B+tree whose nodes are pages of an APageStore, so a
+// tree of hundreds of millions of keys is a few objects on the heap instead of a Node (and a
+// boxed Long) per key. It has the same operations as a BinarySearchTree<Long>: insert, find,
+// get by index, size and in-order iteration.
+// Leaves hold up to 510 keys; branches hold up to 254 separating keys, the pages of their
+// children and the number of keys under each child (so get can skip whole subtrees). A key
+// equal to a separator is in the child to its right. Leaves aren't linked to each other, so
+// iteration keeps a stack of the branches it's in.
+// Page 0 holds two copies of the header (the root, the height, the size and the page count),
+// each with a checksum. flush makes the pages durable and then writes the header over the
+// older copy, so a crash at any point leaves at least one whole header. Every page is stamped
+// with the epoch it was written in (one more than the last flush), and a page from an earlier
+// epoch is copied before it's changed. The pages that copying replaces aren't reused until the
+// flush after next, when the header that could reach them has been written over, so both
+// headers on disk always describe whole trees: if the newest is damaged, opening falls back to
+// the tree as of the flush before. On reopening, any page neither header can reach is reused.
+// A new tree in a durable store writes an empty tree's header straight away, so the store can
+// be opened again even if the program stops before the first flush.
+// Iterating while keys are being inserted isn't supported, and a tree should only be used from
+// one thread at a time.
+class LongBPlusTree implements Iterable<Long> {
+
+  // the layout of a page: its type, its number of keys and its epoch, and then its keys
+  static final int TYPE = 0;
+  static final int COUNT = 4;
+  static final int EPOCH = 8;
+  static final int KEYS = 16;
+
+  // the types of page
+  static final int LEAF = 1;
+  static final int BRANCH = 2;
+
+  // the number of keys that fit in a leaf
+  static final int LEAF_CAPACITY = (APageStore.PAGE_SIZE - KEYS) / 8;
+
+  // the number of keys that fit in a branch, along with one more child and child size
+  static final int BRANCH_CAPACITY = (APageStore.PAGE_SIZE - KEYS - 8) / 16;
+
+  // where a branch's child pages and child sizes start
+  static final int CHILDREN = KEYS + 8 * BRANCH_CAPACITY;
+  static final int SIZES = CHILDREN + 4 * (BRANCH_CAPACITY + 1);
+
+  // the layout of a copy of the header, and where the second copy starts
+  static final int MAGIC = 0x4C425054; // "LBPT"
+  static final int VERSION = 1;
+  static final int H_MAGIC = 0;
+  static final int H_VERSION = 4;
+  static final int H_EPOCH = 8;
+  static final int H_ROOT = 16;
+  static final int H_PAGES = 20;
+  static final int H_SIZE = 24;
+  static final int H_HEIGHT = 32;
+  static final int H_CRC = 36;
+  static final int SECOND_HEADER = APageStore.PAGE_SIZE / 2;
+
+  // where the pages are
+  APageStore store;
+
+  // how the keys are ordered
+  ILongOrder order;
+
+  // the root page, the number of levels (1 if the root is a leaf) and the number of keys
+  int root;
+  int height;
+  long size;
+
+  // the epoch pages are stamped with when they're written
+  long epoch;
+
+  // pages that can be reused now, pages replaced by copies before the last flush (which the
+  // older header can still reach), and pages replaced by copies since the last flush
+  ArrayList<Integer> free = new ArrayList<Integer>();
+  ArrayList<Integer> retiring = new ArrayList<Integer>();
+  ArrayList<Integer> retired = new ArrayList<Integer>();
+
+  // the branches an insert went through, and which child it took in each, from the root down
+  int[] pathPages = new int[64];
+  int[] pathSlots = new int[64];
+
+  // room to lay out a page that's being split, with the new entry in place
+  long[] splitKeys = new long[Math.max(LEAF_CAPACITY, BRANCH_CAPACITY) + 1];
+  int[] splitChildren = new int[BRANCH_CAPACITY + 2];
+  int[] splitSizes = new int[BRANCH_CAPACITY + 2];
+
+  // constructor
+  // starts a new tree if the store is new, or opens the tree in it as of its last flush
+  LongBPlusTree(APageStore store, ILongOrder order) {
+    this.store = store;
+    this.order = order;
+    if (store.isNew()) {
+      store.allocate(); // page 0, for the header
+      this.epoch = 0;
+      this.root = this.newPage(LEAF);
+      this.height = 1;
+      this.size = 0;
+      // the empty tree's header, as epoch 0
+      this.flush();
+    } else {
+      this.open();
+    }
+  }
+
+  // convenience constructor for a tree of longs from smallest to largest
+  LongBPlusTree(APageStore store) {
+    this(store, new NaturalLongOrder());
+  }
+
+  // returns the number of keys in this tree
+  long size() {
+    return this.size;
+  }
+
+  // is the given key in this tree?
+  boolean contains(long key) {
+    int page = this.root;
+    for (int level = this.height; level > 1; level -= 1) {
+      page = this.child(page, this.childFor(page, key));
+    }
+    return this.search(page, key) >= 0;
+  }
+
+  // returns the key where the given search returns zero (as in BinarySearchTree.find: the
+  // search returns a positive number for keys after the one it's looking for)
+  // returns null if no key in the tree satisfies the search
+  Long find(IFunc<Long, Integer> search) {
+    int page = this.root;
+    for (int level = this.height; level > 1; level -= 1) {
+      // the child to take is after every separator that's at or before the wanted key
+      int low = 0;
+      int high = this.count(page);
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (search.apply(this.key(page, mid)) <= 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      page = this.child(page, low);
+    }
+
+    int low = 0;
+    int high = this.count(page) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long key = this.key(page, mid);
+      int comparison = search.apply(key);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  // returns the key at the given index, in order
+  // throws an exception if there's no such index
+  long get(long index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this tree.");
+    }
+    int page = this.root;
+    for (int level = this.height; level > 1; level -= 1) {
+      int slot = 0;
+      while (index >= this.childSize(page, slot)) {
+        index -= this.childSize(page, slot);
+        slot += 1;
+      }
+      page = this.child(page, slot);
+    }
+    return this.key(page, (int) index);
+  }
+
+  // EFFECT: adds the given key to this tree, if it isn't already in it
+  // returns whether it was added
+  boolean insert(long key) {
+    int page = this.root;
+    int depth = 0;
+    for (int level = this.height; level > 1; level -= 1) {
+      int slot = this.childFor(page, key);
+      this.pathPages[depth] = page;
+      this.pathSlots[depth] = slot;
+      depth += 1;
+      page = this.child(page, slot);
+    }
+    int found = this.search(page, key);
+    if (found >= 0) {
+      return false;
+    }
+
+    int leaf = this.writablePath(depth, page);
+    for (int d = 0; d < depth; d += 1) {
+      this.setChildSize(this.pathPages[d], this.pathSlots[d],
+          this.childSize(this.pathPages[d], this.pathSlots[d]) + 1);
+    }
+    this.insertIntoLeaf(depth, leaf, -found - 1, key);
+    this.size += 1;
+    return true;
+  }
+
+  // returns an iterator over the keys of this tree, in order
+  public PrimitiveIterator.OfLong iterator() {
+    return new LongBPlusTreeIterator(this);
+  }
+
+  // EFFECT: makes every key inserted so far durable, if the store is
+  // Once this returns, reopening the store gives back the tree as it is now, even if the
+  // program stops before its next flush.
+  void flush() {
+    if (!this.store.durable()) {
+      return;
+    }
+    this.store.force();
+
+    int header = (int) (this.epoch % 2) * SECOND_HEADER;
+    this.store.putInt(0, header + H_MAGIC, MAGIC);
+    this.store.putInt(0, header + H_VERSION, VERSION);
+    this.store.putLong(0, header + H_EPOCH, this.epoch);
+    this.store.putInt(0, header + H_ROOT, this.root);
+    this.store.putInt(0, header + H_PAGES, this.store.pageCount);
+    this.store.putLong(0, header + H_SIZE, this.size);
+    this.store.putInt(0, header + H_HEIGHT, this.height);
+    this.store.putInt(0, header + H_CRC, this.store.checksum(0, header, H_CRC));
+    this.store.forceFirstPage();
+
+    this.epoch += 1;
+    this.free.addAll(this.retiring);
+    ArrayList<Integer> older = this.retiring;
+    this.retiring = this.retired;
+    this.retired = older;
+    this.retired.clear();
+  }
+
+  // EFFECT: flushes this tree and closes its store
+  void close() {
+    this.flush();
+    this.store.close();
+  }
+
+  // EFFECT: reads the newest whole header, and marks every page that neither header can reach
+  // as free
+  void open() {
+    this.store.ensure(0);
+    long first = this.headerEpoch(0);
+    long second = this.headerEpoch(SECOND_HEADER);
+    if (first < 0 && second < 0) {
+      throw new IllegalArgumentException("The store does not hold a tree, or its header is "
+          + "damaged.");
+    }
+    int header = first > second ? 0 : SECOND_HEADER;
+
+    this.epoch = this.store.getLong(0, header + H_EPOCH) + 1;
+    this.root = this.store.getInt(0, header + H_ROOT);
+    this.size = this.store.getLong(0, header + H_SIZE);
+    this.height = this.store.getInt(0, header + H_HEIGHT);
+    this.store.restore(this.store.getInt(0, header + H_PAGES));
+
+    BitSet reachable = new BitSet(this.store.pageCount);
+    reachable.set(0);
+    ArrayList<Integer> pending = new ArrayList<Integer>();
+    pending.add(this.root);
+    // the older header's pages are kept as they are, so it stays a whole tree to fall back to
+    int other = SECOND_HEADER - header;
+    if (this.headerEpoch(other) >= 0) {
+      pending.add(this.store.getInt(0, other + H_ROOT));
+    }
+    while (!pending.isEmpty()) {
+      int page = pending.remove(pending.size() - 1);
+      if (reachable.get(page)) {
+        continue;
+      }
+      reachable.set(page);
+      if (this.type(page) == BRANCH) {
+        for (int slot = 0; slot <= this.count(page); slot += 1) {
+          pending.add(this.child(page, slot));
+        }
+      }
+    }
+    for (int page = reachable.nextClearBit(0); page < this.store.pageCount;
+        page = reachable.nextClearBit(page + 1)) {
+      this.free.add(page);
+    }
+  }
+
+  // returns the epoch of the header copy at the given offset of page 0, or -1 if it isn't whole
+  long headerEpoch(int header) {
+    if (this.store.getInt(0, header + H_MAGIC) != MAGIC
+        || this.store.getInt(0, header + H_VERSION) != VERSION
+        || this.store.getInt(0, header + H_CRC) != this.store.checksum(0, header, H_CRC)) {
+      return -1;
+    }
+    return this.store.getLong(0, header + H_EPOCH);
+  }
+
+  // returns the number of a page to write, of the given type and with no keys
+  int newPage(int type) {
+    int page;
+    if (this.free.isEmpty()) {
+      page = this.store.allocate();
+    } else {
+      page = this.free.remove(this.free.size() - 1);
+    }
+    this.store.putInt(page, TYPE, type);
+    this.store.putInt(page, COUNT, 0);
+    this.store.putLong(page, EPOCH, this.epoch);
+    return page;
+  }
+
+  // returns the given page, or a copy of it if it was written before the last flush
+  int writable(int page) {
+    if (this.store.getLong(page, EPOCH) == this.epoch) {
+      return page;
+    }
+    int copy = this.newPage(this.type(page));
+    this.store.copyPage(page, copy);
+    this.store.putLong(copy, EPOCH, this.epoch);
+    this.retired.add(page);
+    return copy;
+  }
+
+  // returns the given leaf, at the bottom of the branches in the path, made writable
+  // EFFECT: makes every branch in the path writable, from the root down, pointing each one at
+  // its child's copy
+  int writablePath(int depth, int leaf) {
+    for (int d = 0; d <= depth; d += 1) {
+      int page;
+      if (d < depth) {
+        page = this.writable(this.pathPages[d]);
+        this.pathPages[d] = page;
+      } else {
+        page = this.writable(leaf);
+        leaf = page;
+      }
+      if (d == 0) {
+        this.root = page;
+      } else {
+        this.setChild(this.pathPages[d - 1], this.pathSlots[d - 1], page);
+      }
+    }
+    return leaf;
+  }
+
+  // EFFECT: puts the given key at the given position of the given (writable) leaf, splitting
+  // it if it's full
+  void insertIntoLeaf(int depth, int leaf, int position, long key) {
+    int count = this.count(leaf);
+    if (count < LEAF_CAPACITY) {
+      for (int i = count; i > position; i -= 1) {
+        this.setKey(leaf, i, this.key(leaf, i - 1));
+      }
+      this.setKey(leaf, position, key);
+      this.setCount(leaf, count + 1);
+      return;
+    }
+
+    for (int i = 0; i < count; i += 1) {
+      this.splitKeys[i < position ? i : i + 1] = this.key(leaf, i);
+    }
+    this.splitKeys[position] = key;
+    int total = count + 1;
+    int leftCount = total / 2;
+
+    int right = this.newPage(LEAF);
+    for (int i = 0; i < total; i += 1) {
+      if (i < leftCount) {
+        this.setKey(leaf, i, this.splitKeys[i]);
+      } else {
+        this.setKey(right, i - leftCount, this.splitKeys[i]);
+      }
+    }
+    this.setCount(leaf, leftCount);
+    this.setCount(right, total - leftCount);
+    this.insertIntoParent(depth - 1, leaf, this.splitKeys[leftCount], right, leftCount,
+        total - leftCount);
+  }
+
+  // EFFECT: adds the given separator and right page to the branch at the given depth of the
+  // path, just after the left page (which the branch already points to), splitting the
+  // branch if it's full; at depth -1 the root was split, so a new root is made above it
+  void insertIntoParent(int depth, int left, long separator, int right, int leftSize,
+      int rightSize) {
+    if (depth < 0) {
+      int newRoot = this.newPage(BRANCH);
+      this.setKey(newRoot, 0, separator);
+      this.setChild(newRoot, 0, left);
+      this.setChild(newRoot, 1, right);
+      this.setChildSize(newRoot, 0, leftSize);
+      this.setChildSize(newRoot, 1, rightSize);
+      this.setCount(newRoot, 1);
+      this.root = newRoot;
+      this.height += 1;
+      return;
+    }
+
+    int branch = this.pathPages[depth];
+    int slot = this.pathSlots[depth];
+    int count = this.count(branch);
+    if (count < BRANCH_CAPACITY) {
+      for (int i = count; i > slot; i -= 1) {
+        this.setKey(branch, i, this.key(branch, i - 1));
+        this.setChild(branch, i + 1, this.child(branch, i));
+        this.setChildSize(branch, i + 1, this.childSize(branch, i));
+      }
+      this.setKey(branch, slot, separator);
+      this.setChild(branch, slot + 1, right);
+      this.setChildSize(branch, slot, leftSize);
+      this.setChildSize(branch, slot + 1, rightSize);
+      this.setCount(branch, count + 1);
+      return;
+    }
+
+    // lay out the branch with the new entry in place, then split it around its middle key
+    for (int i = 0; i <= count; i += 1) {
+      int to = i <= slot ? i : i + 1;
+      if (i < count) {
+        this.splitKeys[i < slot ? i : i + 1] = this.key(branch, i);
+      }
+      this.splitChildren[to] = this.child(branch, i);
+      this.splitSizes[to] = this.childSize(branch, i);
+    }
+    this.splitKeys[slot] = separator;
+    this.splitChildren[slot + 1] = right;
+    this.splitSizes[slot] = leftSize;
+    this.splitSizes[slot + 1] = rightSize;
+
+    int total = count + 1;
+    int middle = total / 2;
+    int newRight = this.newPage(BRANCH);
+    int leftTotal = 0;
+    int rightTotal = 0;
+    for (int i = 0; i <= total; i += 1) {
+      if (i <= middle) {
+        if (i < middle) {
+          this.setKey(branch, i, this.splitKeys[i]);
+        }
+        this.setChild(branch, i, this.splitChildren[i]);
+        this.setChildSize(branch, i, this.splitSizes[i]);
+        leftTotal += this.splitSizes[i];
+      } else {
+        if (i < total) {
+          this.setKey(newRight, i - middle - 1, this.splitKeys[i]);
+        }
+        this.setChild(newRight, i - middle - 1, this.splitChildren[i]);
+        this.setChildSize(newRight, i - middle - 1, this.splitSizes[i]);
+        rightTotal += this.splitSizes[i];
+      }
+    }
+    this.setCount(branch, middle);
+    this.setCount(newRight, total - middle - 1);
+    this.insertIntoParent(depth - 1, branch, this.splitKeys[middle], newRight, leftTotal,
+        rightTotal);
+  }
+
+  // returns the position of the given key in the given page, or, if it isn't there,
+  // -(the position it would go at) - 1
+  int search(int page, long key) {
+    int low = 0;
+    int high = this.count(page) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = this.order.compare(this.key(page, mid), key);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -low - 1;
+  }
+
+  // returns the child of the given branch that the given key belongs under
+  int childFor(int page, long key) {
+    int found = this.search(page, key);
+    if (found >= 0) {
+      return found + 1;
+    } else {
+      return -found - 1;
+    }
+  }
+
+  // the fields of a page
+  int type(int page) {
+    return this.store.getInt(page, TYPE);
+  }
+
+  int count(int page) {
+    return this.store.getInt(page, COUNT);
+  }
+
+  void setCount(int page, int count) {
+    this.store.putInt(page, COUNT, count);
+  }
+
+  long key(int page, int index) {
+    return this.store.getLong(page, KEYS + 8 * index);
+  }
+
+  void setKey(int page, int index, long key) {
+    this.store.putLong(page, KEYS + 8 * index, key);
+  }
+
+  int child(int page, int slot) {
+    return this.store.getInt(page, CHILDREN + 4 * slot);
+  }
+
+  void setChild(int page, int slot, int child) {
+    this.store.putInt(page, CHILDREN + 4 * slot, child);
+  }
+
+  int childSize(int page, int slot) {
+    return this.store.getInt(page, SIZES + 4 * slot);
+  }
+
+  void setChildSize(int page, int slot, int size) {
+    this.store.putInt(page, SIZES + 4 * slot, size);
+  }
+}
+
+// iterates over the keys of a LongBPlusTree in order, keeping a stack of the branches above
+// the current leaf and the next child to visit in each
+class LongBPlusTreeIterator implements PrimitiveIterator.OfLong {
+
+  // the tree being iterated over
+  LongBPlusTree tree;
+
+  // the branches above the current leaf, and the next child to visit in each
+  int[] pages;
+  int[] slots;
+  int depth;
+
+  // the current leaf, and the position of the next key in it
+  int leaf;
+  int position;
+
+  // the number of keys not yet returned
+  long remaining;
+
+  // constructor
+  LongBPlusTreeIterator(LongBPlusTree tree) {
+    this.tree = tree;
+    this.pages = new int[tree.height];
+    this.slots = new int[tree.height];
+    this.depth = 0;
+    this.remaining = tree.size();
+    this.descend(tree.root);
+  }
+
+  // EFFECT: goes down the leftmost path from the given page to a leaf, pushing each branch
+  void descend(int page) {
+    while (this.tree.type(page) == LongBPlusTree.BRANCH) {
+      this.pages[this.depth] = page;
+      this.slots[this.depth] = 1;
+      this.depth += 1;
+      page = this.tree.child(page, 0);
+    }
+    this.leaf = page;
+    this.position = 0;
+  }
+
+  // are there any keys left?
+  public boolean hasNext() {
+    return this.remaining > 0;
+  }
+
+  // returns the next key
+  // EFFECT: moves past it, to the next leaf if this one is done
+  public long nextLong() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The tree has no more keys.");
+    }
+    while (this.position >= this.tree.count(this.leaf)) {
+      int page = this.pages[this.depth - 1];
+      int slot = this.slots[this.depth - 1];
+      if (slot > this.tree.count(page)) {
+        this.depth -= 1;
+      } else {
+        this.slots[this.depth - 1] = slot + 1;
+        this.descend(this.tree.child(page, slot));
+      }
+    }
+    this.remaining -= 1;
+    this.position += 1;
+    return this.tree.key(this.leaf, this.position - 1);
+  }
+}
+
+// orders longs from smallest to largest
+class IncreasingLongs implements IComparator<Long> {
+  public int compare(Long left, Long right) {
+    return Long.compare(left, right);
+  }
+}
+
+// orders longs from largest to smallest
+class DecreasingLongs implements IComparator<Long> {
+  public int compare(Long left, Long right) {
+    return Long.compare(right, left);
+  }
+}
+
+// a class for testing off-heap B+trees
+class ExamplesLongBPlusTree {
+
+  // returns the given number of distinct pseudo-random keys, in the order they were made
+  long[] keys(int count) {
+    long[] keys = new long[count];
+    long state = 88172645463325252L;
+    for (int i = 0; i < count; i += 1) {
+      state ^= state << 13;
+      state ^= state >>> 7;
+      state ^= state << 17;
+      keys[i] = state;
+    }
+    return keys;
+  }
+
+  // returns a new file name in a new temporary directory
+  Path tempFile() {
+    return TempFiles.directory("bplustree").resolve("tree.pages");
+  }
+
+  // returns whether the given tree holds exactly the given keys, sorted, checking iteration,
+  // get and contains
+  boolean holds(LongBPlusTree tree, long[] sorted) {
+    boolean same = tree.size() == sorted.length;
+    Iterator<Long> keys = tree.iterator();
+    for (int i = 0; i < sorted.length && same; i += 1) {
+      same = keys.hasNext() && keys.next() == sorted[i] && tree.get(i) == sorted[i]
+          && tree.contains(sorted[i]);
+    }
+    return same && !keys.hasNext();
+  }
+
+  // test inserting enough keys for the tree to be three levels deep
+  void testInsert(Tester t) {
+    LongBPlusTree tree = new LongBPlusTree(new DirectPageStore());
+    t.checkExpect(tree.iterator().hasNext(), false);
+    t.checkExpect(tree.contains(5), false);
+
+    long[] keys = this.keys(200000);
+    for (long key : keys) {
+      tree.insert(key);
+    }
+    t.checkExpect(tree.insert(keys[12345]), false);
+    t.checkExpect(tree.height, 3);
+
+    long[] sorted = keys.clone();
+    java.util.Arrays.sort(sorted);
+    t.checkExpect(this.holds(tree, sorted), true);
+    t.checkExpect(tree.contains(keys[0] + 1), java.util.Arrays.binarySearch(sorted,
+        keys[0] + 1) >= 0);
+    t.checkExpect(tree.find(new CompareToAnswer<Long>(new IncreasingLongs(), keys[777])),
+        keys[777]);
+    t.checkExpect(tree.find(new CompareToAnswer<Long>(new IncreasingLongs(), 3L)), null);
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this tree."), tree, "get", 200000L);
+    t.checkException(new NoSuchElementException("The tree has no more keys."),
+        new LongBPlusTree(new DirectPageStore()).iterator(), "nextLong");
+  }
+
+  // test keys inserted in order, and a tree ordered by an IComparator
+  void testOrders(Tester t) {
+    LongBPlusTree ascending = new LongBPlusTree(new DirectPageStore());
+    LongBPlusTree descending = new LongBPlusTree(new DirectPageStore(),
+        new LongOrderOf(new DecreasingLongs()));
+    long[] sorted = new long[100000];
+    long[] reversed = new long[100000];
+    for (int i = 0; i < 100000; i += 1) {
+      ascending.insert(i);
+      descending.insert(i);
+      sorted[i] = i;
+      reversed[i] = 99999 - i;
+    }
+    t.checkExpect(this.holds(ascending, sorted), true);
+    t.checkExpect(this.holds(descending, reversed), true);
+    t.checkExpect(descending.find(new CompareToAnswer<Long>(new DecreasingLongs(), 42L)), 42L);
+  }
+
+  // test that reopening a file gives back the tree as of its last flush
+  void testFlushAndReopen(Tester t) {
+    Path file = this.tempFile();
+    long[] keys = this.keys(50000);
+    LongBPlusTree tree = new LongBPlusTree(new MappedPageStore(file));
+    for (int i = 0; i < 30000; i += 1) {
+      tree.insert(keys[i]);
+    }
+    tree.flush();
+    int flushedPages = tree.store.pageCount;
+    for (int i = 30000; i < 50000; i += 1) {
+      tree.insert(keys[i]);
+    }
+    // stop without flushing the last 20000 keys, as if the program had crashed
+    tree.store.close();
+
+    long[] flushed = java.util.Arrays.copyOf(keys, 30000);
+    java.util.Arrays.sort(flushed);
+    LongBPlusTree reopened = new LongBPlusTree(new MappedPageStore(file));
+    t.checkExpect(this.holds(reopened, flushed), true);
+    t.checkExpect(reopened.contains(keys[40000]), false);
+
+    // the pages written after the flush are written over, and the tree keeps working
+    t.checkExpect(reopened.store.pageCount, flushedPages);
+    for (int i = 30000; i < 50000; i += 1) {
+      reopened.insert(keys[i]);
+    }
+    t.checkExpect(reopened.retired.size() > 0, true);
+    reopened.close();
+
+    // the pages the inserts copied are kept for the older header, but the empty root of epoch
+    // 0, which only the header that flush wrote over could reach, is reused
+    long[] all = keys.clone();
+    java.util.Arrays.sort(all);
+    LongBPlusTree again = new LongBPlusTree(new MappedPageStore(file));
+    t.checkExpect(this.holds(again, all), true);
+    t.checkExpect(again.free.size(), reopened.free.size() + 1);
+    t.checkExpect(again.free.contains(1), true);
+    t.checkExpect(again.free.contains(reopened.retiring.get(0)), false);
+    again.store.close();
+    TempFiles.delete(file.getParent());
+  }
+
+  // test that a new store that's closed before its first flush opens as an empty tree
+  void testCloseBeforeFirstFlush(Tester t) {
+    Path file = this.tempFile();
+    LongBPlusTree tree = new LongBPlusTree(new MappedPageStore(file));
+    tree.insert(42);
+    // stop without flushing, as if the program had crashed
+    tree.store.close();
+
+    LongBPlusTree reopened = new LongBPlusTree(new MappedPageStore(file));
+    t.checkExpect(reopened.size(), 0L);
+    t.checkExpect(reopened.contains(42), false);
+    reopened.insert(42);
+    reopened.close();
+    LongBPlusTree again = new LongBPlusTree(new MappedPageStore(file));
+    t.checkExpect(again.size(), 1L);
+    t.checkExpect(again.contains(42), true);
+    again.store.close();
+    TempFiles.delete(file.getParent());
+  }
+
+  // test that a damaged header falls back to the one from the flush before, even after many
+  // flushes have reused the pages copies replaced
+  void testDamagedHeader(Tester t) {
+    Path file = this.tempFile();
+    long[] keys = this.keys(8000);
+    LongBPlusTree tree = new LongBPlusTree(new MappedPageStore(file));
+    for (int round = 0; round < 8; round += 1) {
+      for (int i = round * 1000; i < round * 1000 + 1000; i += 1) {
+        tree.insert(keys[i]);
+      }
+      tree.flush(); // epochs 1 to 8, alternating between the copies of the header
+    }
+    t.checkExpect(tree.retiring.isEmpty(), false);
+    tree.store.close();
+
+    long[] older = java.util.Arrays.copyOf(keys, 7000);
+    java.util.Arrays.sort(older);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}), LongBPlusTree.H_ROOT);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // epoch 8 is in the first copy, so this falls back to epoch 7's tree
+    LongBPlusTree reopened = new LongBPlusTree(new MappedPageStore(file));
+    t.checkExpect(reopened.size(), 7000L);
+    t.checkExpect(this.holds(reopened, older), true);
+    t.checkExpect(reopened.contains(keys[7500]), false);
+    reopened.store.close();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}),
+          LongBPlusTree.SECOND_HEADER + LongBPlusTree.H_ROOT);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MappedPageStore damaged = new MappedPageStore(file);
+    t.checkConstructorException(new IllegalArgumentException(
+        "The store does not hold a tree, or its header is damaged."), "LongBPlusTree",
+        damaged);
+    damaged.close();
+    TempFiles.delete(file.getParent());
+  }
+}
@@ -0,0 +1,309 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import tester.*;
+
+// a cache of the results of visitors on lists, shared by any number of memoizing visitors.
+// Lists are immutable, so a visitor that doesn't depend on anything but the list it visits
+// always gives the same result for the same list. Results are kept by the identity of the list
+// and of the visitor (not by equals, which would have to look at the whole list).
+// At most a fixed number of results are kept: when another one is added, the one that was used
+// least recently is dropped. The cache keeps every list it has a result for alive, which this
+// bound keeps in check.
+// It's safe to share between threads.
+class VisitorCache {
+
+  // the marker returned for a result that isn't in the cache, since a result may be null
+  static final Object MISSING = new Object();
+
+  // the results, from the least recently used to the most
+  LinkedHashMap<VisitKey, Object> results;
+
+  // the most results kept at once
+  int capacity;
+
+  // how many lookups found a result, and how many didn't
+  long hits;
+  long misses;
+
+  // constructor
+  VisitorCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The cache must be able to hold at least one result.");
+    }
+    this.capacity = capacity;
+    // a LinkedHashMap in access order moves an entry to the end whenever it's used
+    this.results = new LinkedHashMap<VisitKey, Object>(16, 0.75f, true);
+    this.hits = 0;
+    this.misses = 0;
+  }
+
+  // returns the result of the given visitor on the given list, or MISSING if it isn't cached
+  synchronized Object lookup(IList<?> list, IListVisitor<?, ?> visitor) {
+    Object result = this.results.getOrDefault(new VisitKey(list, visitor), MISSING);
+    if (result == MISSING) {
+      this.misses += 1;
+    } else {
+      this.hits += 1;
+    }
+    return result;
+  }
+
+  // EFFECT: remembers the result of the given visitor on the given list, dropping the least
+  // recently used result if the cache is full
+  synchronized void remember(IList<?> list, IListVisitor<?, ?> visitor, Object result) {
+    this.results.put(new VisitKey(list, visitor), result);
+    if (this.results.size() > this.capacity) {
+      Map.Entry<VisitKey, Object> eldest = this.results.entrySet().iterator().next();
+      this.results.remove(eldest.getKey());
+    }
+  }
+
+  // returns the number of results in this cache
+  synchronized int size() {
+    return this.results.size();
+  }
+
+  // returns the number of lookups that found a result
+  synchronized long hits() {
+    return this.hits;
+  }
+
+  // returns the number of lookups that didn't find a result
+  synchronized long misses() {
+    return this.misses;
+  }
+
+  // EFFECT: forgets every result, and resets the counters
+  synchronized void clear() {
+    this.results.clear();
+    this.hits = 0;
+    this.misses = 0;
+  }
+}
+
+// a list and a visitor, compared by identity
+class VisitKey {
+
+  // the list visited
+  IList<?> list;
+
+  // the visitor that visited it
+  IListVisitor<?, ?> visitor;
+
+  // constructor
+  VisitKey(IList<?> list, IListVisitor<?, ?> visitor) {
+    this.list = list;
+    this.visitor = visitor;
+  }
+
+  // two keys are equal if they have the very same list and the very same visitor
+  public boolean equals(Object other) {
+    return other instanceof VisitKey
+        && ((VisitKey) other).list == this.list
+        && ((VisitKey) other).visitor == this.visitor;
+  }
+
+  // combines the identity hash codes of the list and the visitor
+  public int hashCode() {
+    return 31 * System.identityHashCode(this.list) + System.identityHashCode(this.visitor);
+  }
+}
+
+// an opt-in wrapper that memoizes another visitor's results in a cache.
+// Visiting a list through this visitor visits it with the wrapped one the first time, and
+// returns the cached result after that, for as long as the cache keeps it.
+// The wrapped visitor must give the same result every time it visits the same list; a
+// visitor that depends on anything else (a counter, the time, ...) shouldn't be memoized.
+// Results are found by the identity of the list visited, so visiting an equal but different
+// list (or a list like CatenableList, whose accept makes a new cons every time) is a miss.
+class MemoizingVisitor<T, R> implements IListVisitor<T, R> {
+
+  // the visitor whose results are memoized
+  IListVisitor<T, R> visitor;
+
+  // where the results are kept
+  VisitorCache cache;
+
+  // constructor
+  MemoizingVisitor(IListVisitor<T, R> visitor, VisitorCache cache) {
+    this.visitor = visitor;
+    this.cache = cache;
+  }
+
+  // visits the given list
+  public R apply(IList<T> list) {
+    return list.accept(this);
+  }
+
+  // returns the wrapped visitor's result for the given empty list
+  public R visitMtList(MtList<T> mt) {
+    Object cached = this.cache.lookup(mt, this.visitor);
+    if (cached != VisitorCache.MISSING) {
+      // the cast is safe, because only this visitor's results are kept under it
+      @SuppressWarnings("unchecked")
+      R result = (R) cached;
+      return result;
+    }
+    R result = this.visitor.visitMtList(mt);
+    this.cache.remember(mt, this.visitor, result);
+    return result;
+  }
+
+  // returns the wrapped visitor's result for the given non-empty list
+  public R visitConsList(ConsList<T> cons) {
+    Object cached = this.cache.lookup(cons, this.visitor);
+    if (cached != VisitorCache.MISSING) {
+      // the cast is safe, because only this visitor's results are kept under it
+      @SuppressWarnings("unchecked")
+      R result = (R) cached;
+      return result;
+    }
+    R result = this.visitor.visitConsList(cons);
+    this.cache.remember(cons, this.visitor, result);
+    return result;
+  }
+}
+
+// a visitor that folds the list it visits, so that a foldr can be memoized like any other
+// visitor
+class FoldrVisitor<T, U> implements IListVisitor<T, U> {
+
+  // the function to fold with
+  IFunc2<T, U, U> func;
+
+  // the result for an empty list
+  U base;
+
+  // constructor
+  FoldrVisitor(IFunc2<T, U, U> func, U base) {
+    this.func = func;
+    this.base = base;
+  }
+
+  // visits the given list
+  public U apply(IList<T> list) {
+    return list.accept(this);
+  }
+
+  // an empty list folds to the base
+  public U visitMtList(MtList<T> mt) {
+    return this.base;
+  }
+
+  // a non-empty list folds like foldr does
+  public U visitConsList(ConsList<T> cons) {
+    return cons.foldr(this.func, this.base);
+  }
+}
+
+// a list visitor that adds up a list of integers, counting how many lists it's visited
+class CountingSumVisitor implements IListVisitor<Integer, Integer> {
+
+  // the number of lists this visitor has been asked to visit
+  int visits = 0;
+
+  // visits the given list
+  public Integer apply(IList<Integer> list) {
+    return list.accept(this);
+  }
+
+  // EFFECT: counts this visit
+  public Integer visitMtList(MtList<Integer> mt) {
+    this.visits += 1;
+    return 0;
+  }
+
+  // EFFECT: counts this visit
+  public Integer visitConsList(ConsList<Integer> cons) {
+    this.visits += 1;
+    return cons.foldr(new SumInts(), 0);
+  }
+}
+
+// a class for testing memoized visitors
+class ExamplesMemoizingVisitor {
+
+  IList<Integer> list = new ConsList<Integer>(1, new ConsList<Integer>(2,
+      new ConsList<Integer>(3, new MtList<Integer>())));
+  IList<Integer> equalList = new ConsList<Integer>(1, new ConsList<Integer>(2,
+      new ConsList<Integer>(3, new MtList<Integer>())));
+
+  // test that repeated visits to the same list reuse the first result
+  void testHitsAndMisses(Tester t) {
+    VisitorCache cache = new VisitorCache(10);
+    CountingSumVisitor counting = new CountingSumVisitor();
+    MemoizingVisitor<Integer, Integer> memo =
+        new MemoizingVisitor<Integer, Integer>(counting, cache);
+
+    t.checkExpect(memo.apply(this.list), 6);
+    t.checkExpect(memo.apply(this.list), 6);
+    t.checkExpect(this.list.accept(memo), 6);
+    t.checkExpect(counting.visits, 1);
+    t.checkExpect(cache.hits(), 2L);
+    t.checkExpect(cache.misses(), 1L);
+
+    // an equal list that isn't the same one is visited again
+    t.checkExpect(memo.apply(this.equalList), 6);
+    t.checkExpect(counting.visits, 2);
+
+    // another visitor on the same list gets its own result
+    MemoizingVisitor<Integer, Integer> other =
+        new MemoizingVisitor<Integer, Integer>(new CountingSumVisitor(), cache);
+    t.checkExpect(other.apply(this.list), 6);
+    t.checkExpect(cache.misses(), 3L);
+    t.checkExpect(cache.size(), 3);
+
+    cache.clear();
+    t.checkExpect(cache.size(), 0);
+    t.checkExpect(cache.hits(), 0L);
+    t.checkExpect(memo.apply(new MtList<Integer>()), 0);
+  }
+
+  // test that the least recently used result is the one dropped
+  void testEviction(Tester t) {
+    VisitorCache cache = new VisitorCache(2);
+    CountingSumVisitor counting = new CountingSumVisitor();
+    MemoizingVisitor<Integer, Integer> memo =
+        new MemoizingVisitor<Integer, Integer>(counting, cache);
+    IList<Integer> third = new ConsList<Integer>(10, new MtList<Integer>());
+
+    memo.apply(this.list);
+    memo.apply(this.equalList);
+    // using the first list again makes the second the least recently used
+    memo.apply(this.list);
+    memo.apply(third);
+    t.checkExpect(cache.size(), 2);
+    t.checkExpect(counting.visits, 3);
+
+    memo.apply(this.list);
+    t.checkExpect(counting.visits, 3);
+    memo.apply(this.equalList);
+    t.checkExpect(counting.visits, 4);
+
+    t.checkConstructorException(new IllegalArgumentException(
+        "The cache must be able to hold at least one result."), "VisitorCache", 0);
+  }
+
+  // test memoizing a fold, and memoizing a null result
+  void testFoldr(Tester t) {
+    VisitorCache cache = new VisitorCache(4);
+    MemoizingVisitor<Integer, Integer> sum = new MemoizingVisitor<Integer, Integer>(
+        new FoldrVisitor<Integer, Integer>(new SumInts(), 0), cache);
+    t.checkExpect(sum.apply(this.list), 6);
+    t.checkExpect(sum.apply(this.list), 6);
+    t.checkExpect(cache.hits(), 1L);
+
+    MemoizingVisitor<Integer, String> nothing = new MemoizingVisitor<Integer, String>(
+        new FoldrVisitor<Integer, String>(new KeepBase(), null), cache);
+    t.checkExpect(nothing.apply(this.list), null);
+    t.checkExpect(nothing.apply(this.list), null);
+    t.checkExpect(cache.hits(), 2L);
+  }
+}
+
+// ignores each element, keeping the result so far
+class KeepBase implements IFunc2<Integer, String, String> {
+  public String apply(Integer num, String result) {
+    return result;
+  }
+}
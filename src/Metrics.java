@@ -0,0 +1,476 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import tester.*;
+
+// the registry of every metric the data structures record, and the switch that turns them on.
+// Metrics are off unless enabled is set: then every probe in the structures is a read of one
+// static field and a branch, and nothing is timed, counted or allocated.
+// The structures keep their probes in static fields, made once by name from here, so recording
+// never looks anything up. Metrics are shared by every instance of a structure, and are safe
+// to record from many threads at once.
+// enabled is volatile, so turning metrics on or off while the program runs reaches threads
+// that are already in hot loops (a plain field's read could be hoisted out of them for good).
+// On the platforms this targets a volatile read costs about what a plain one does, so the
+// disabled probe stays as cheap.
+class Metrics {
+
+  // are the probes recording?
+  static volatile boolean enabled = false;
+
+  // every metric made so far, by name, in name order
+  static final ConcurrentSkipListMap<String, Counter> COUNTERS =
+      new ConcurrentSkipListMap<String, Counter>();
+  static final ConcurrentSkipListMap<String, MaxGauge> GAUGES =
+      new ConcurrentSkipListMap<String, MaxGauge>();
+  static final ConcurrentSkipListMap<String, Histogram> HISTOGRAMS =
+      new ConcurrentSkipListMap<String, Histogram>();
+
+  // returns the counter with the given name, making it if there isn't one
+  static Counter counter(String name) {
+    Counter fresh = new Counter();
+    Counter existing = COUNTERS.putIfAbsent(name, fresh);
+    if (existing == null) {
+      return fresh;
+    } else {
+      return existing;
+    }
+  }
+
+  // returns the high-water mark with the given name, making it if there isn't one
+  static MaxGauge gauge(String name) {
+    MaxGauge fresh = new MaxGauge();
+    MaxGauge existing = GAUGES.putIfAbsent(name, fresh);
+    if (existing == null) {
+      return fresh;
+    } else {
+      return existing;
+    }
+  }
+
+  // returns the histogram with the given name, making it if there isn't one
+  static Histogram histogram(String name) {
+    Histogram fresh = new Histogram();
+    Histogram existing = HISTOGRAMS.putIfAbsent(name, fresh);
+    if (existing == null) {
+      return fresh;
+    } else {
+      return existing;
+    }
+  }
+
+  // returns the time to measure an operation from, to be passed to Histogram.recordSince, or 0
+  // if metrics are off (so a disabled probe doesn't even read the clock)
+  static long start() {
+    if (enabled) {
+      return System.nanoTime();
+    } else {
+      return 0;
+    }
+  }
+
+  // EFFECT: sets every metric back to zero (the metrics themselves stay, since the structures
+  // hold on to them)
+  static void reset() {
+    for (Counter counter : COUNTERS.values()) {
+      counter.reset();
+    }
+    for (MaxGauge gauge : GAUGES.values()) {
+      gauge.reset();
+    }
+    for (Histogram histogram : HISTOGRAMS.values()) {
+      histogram.reset();
+    }
+  }
+
+  // EFFECT: gives the current value of every metric to the given reporter: the counters, then
+  // the high-water marks, then the histograms, each in name order
+  static void report(IMetricsReporter reporter) {
+    for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+      reporter.reportCounter(entry.getKey(), entry.getValue().count());
+    }
+    for (Map.Entry<String, MaxGauge> entry : GAUGES.entrySet()) {
+      reporter.reportGauge(entry.getKey(), entry.getValue().max());
+    }
+    for (Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+      reporter.reportHistogram(entry.getKey(), entry.getValue());
+    }
+  }
+}
+
+// something that sends metrics somewhere, such as a monitoring system or a log
+// Metrics.report calls it once per metric; it may be called while the metrics are still being
+// recorded, so a histogram's counts can be slightly ahead of one another
+interface IMetricsReporter {
+
+  // EFFECT: reports the number of times something happened
+  void reportCounter(String name, long count);
+
+  // EFFECT: reports the largest value something has reached
+  void reportGauge(String name, long max);
+
+  // EFFECT: reports a distribution of values, such as latencies in nanoseconds
+  void reportHistogram(String name, Histogram histogram);
+}
+
+// counts how many times something happens
+class Counter {
+
+  // the count, spread over cells so that threads counting at once don't contend
+  LongAdder count = new LongAdder();
+
+  // EFFECT: adds one to the count, if metrics are on
+  void increment() {
+    if (Metrics.enabled) {
+      this.count.increment();
+    }
+  }
+
+  // returns the count so far
+  long count() {
+    return this.count.sum();
+  }
+
+  // EFFECT: sets the count back to zero
+  void reset() {
+    this.count.reset();
+  }
+}
+
+// the largest value something has reached, such as the depth of a work list
+class MaxGauge {
+
+  // the largest value seen so far
+  AtomicLong max = new AtomicLong();
+
+  // EFFECT: raises the high-water mark to the given value, if metrics are on and it's higher
+  void update(long value) {
+    if (Metrics.enabled) {
+      long current = this.max.get();
+      while (value > current && !this.max.compareAndSet(current, value)) {
+        current = this.max.get();
+      }
+    }
+  }
+
+  // returns the largest value seen so far
+  long max() {
+    return this.max.get();
+  }
+
+  // EFFECT: sets the high-water mark back to zero
+  void reset() {
+    this.max.set(0);
+  }
+}
+
+// a distribution of non-negative values, kept as counts in log-linear buckets (the way
+// HdrHistogram does it): values below 8 get a bucket each, and every power of two above that
+// is split into 8 equal buckets, so each bucket is within 12.5% of the values in it, and 488
+// buckets cover every long. Recording a value finds its bucket with a few bit operations and
+// adds to a count, without allocating.
+class Histogram {
+
+  // the number of bits of each value, below its highest one, that pick its bucket
+  static final int SUB_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  // the number of buckets: the first SUB_BUCKETS values, then SUB_BUCKETS for each power of
+  // two from 2^SUB_BITS to 2^62
+  static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+  // the number of values recorded in each bucket
+  AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  // the number of values recorded, their sum and the largest of them
+  LongAdder count = new LongAdder();
+  LongAdder sum = new LongAdder();
+  MaxGauge max = new MaxGauge();
+
+  // returns the bucket the given value goes in (negative values go in the first one)
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  // returns the smallest value that goes in the given bucket
+  static long lowestIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+
+  // returns the largest value that goes in the given bucket
+  static long highestIn(int bucket) {
+    if (bucket == BUCKETS - 1) {
+      return Long.MAX_VALUE;
+    }
+    return lowestIn(bucket + 1) - 1;
+  }
+
+  // EFFECT: records the given value, if metrics are on
+  void record(long value) {
+    if (Metrics.enabled) {
+      this.counts.incrementAndGet(bucketOf(value));
+      this.count.increment();
+      this.sum.add(value);
+      this.max.update(value);
+    }
+  }
+
+  // EFFECT: records the nanoseconds since the given start time (from Metrics.start), if
+  // metrics are on and were on when the time was taken
+  void recordSince(long start) {
+    if (Metrics.enabled && start != 0) {
+      this.record(System.nanoTime() - start);
+    }
+  }
+
+  // returns the number of values recorded
+  long count() {
+    return this.count.sum();
+  }
+
+  // returns the largest value recorded, or 0 if there are none
+  long max() {
+    return this.max.max();
+  }
+
+  // returns the mean of the values recorded, or 0 if there are none
+  double mean() {
+    long count = this.count();
+    if (count == 0) {
+      return 0;
+    }
+    return (double) this.sum.sum() / count;
+  }
+
+  // returns a value that the given percentage of the recorded values are at or below: the top
+  // of the bucket holding that value (or the largest value, if that's lower), or 0 if nothing
+  // has been recorded
+  long valueAt(double percentile) {
+    long count = this.count();
+    if (count == 0) {
+      return 0;
+    }
+
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket += 1) {
+      seen += this.counts.get(bucket);
+      if (seen >= target) {
+        return Math.min(highestIn(bucket), this.max());
+      }
+    }
+    return this.max();
+  }
+
+  // EFFECT: forgets every value recorded
+  void reset() {
+    for (int bucket = 0; bucket < BUCKETS; bucket += 1) {
+      this.counts.set(bucket, 0);
+    }
+    this.count.reset();
+    this.sum.reset();
+    this.max.reset();
+  }
+}
+
+// a reporter that writes each metric as a line of text, such as
+// "BinarySearchTree.insert count=3 mean=120.0 p50=112 p99=160 max=160"
+class PrintingReporter implements IMetricsReporter {
+
+  // where the lines go
+  PrintStream out;
+
+  // constructor
+  PrintingReporter(PrintStream out) {
+    this.out = out;
+  }
+
+  // EFFECT: writes the counter's name and count
+  public void reportCounter(String name, long count) {
+    this.out.println(name + " count=" + count);
+  }
+
+  // EFFECT: writes the high-water mark's name and value
+  public void reportGauge(String name, long max) {
+    this.out.println(name + " max=" + max);
+  }
+
+  // EFFECT: writes the histogram's name, count, mean and a few percentiles
+  public void reportHistogram(String name, Histogram histogram) {
+    this.out.println(String.format("%s count=%d mean=%.1f p50=%d p99=%d max=%d", name,
+        histogram.count(), histogram.mean(), histogram.valueAt(50), histogram.valueAt(99),
+        histogram.max()));
+  }
+}
+
+// a reporter that keeps a line for each nonzero metric, for checking what was recorded
+class CollectingReporter implements IMetricsReporter {
+
+  // the lines, in the order the metrics were reported
+  ArrayList<String> lines = new ArrayList<String>();
+
+  // EFFECT: keeps the counter's name and count, if it's counted anything
+  public void reportCounter(String name, long count) {
+    if (count > 0) {
+      this.lines.add(name + "=" + count);
+    }
+  }
+
+  // EFFECT: keeps the high-water mark's name and value, if it's been raised
+  public void reportGauge(String name, long max) {
+    if (max > 0) {
+      this.lines.add(name + "=" + max);
+    }
+  }
+
+  // EFFECT: keeps the histogram's name and count, if it's recorded anything
+  public void reportHistogram(String name, Histogram histogram) {
+    if (histogram.count() > 0) {
+      this.lines.add(name + "=" + histogram.count());
+    }
+  }
+}
+
+// a class for testing metrics
+// every test turns metrics on for itself and off again when it's done, since they're shared
+class ExamplesMetrics {
+
+  // EFFECT: clears every metric and turns them on
+  void start() {
+    Metrics.reset();
+    Metrics.enabled = true;
+  }
+
+  // EFFECT: turns metrics off and clears them
+  void stop() {
+    Metrics.enabled = false;
+    Metrics.reset();
+  }
+
+  // test the histogram's buckets
+  void testBuckets(Tester t) {
+    t.checkExpect(Histogram.bucketOf(0), 0);
+    t.checkExpect(Histogram.bucketOf(7), 7);
+    t.checkExpect(Histogram.bucketOf(8), 8);
+    t.checkExpect(Histogram.bucketOf(15), 15);
+    t.checkExpect(Histogram.bucketOf(16), 16);
+    t.checkExpect(Histogram.bucketOf(17), 16);
+    t.checkExpect(Histogram.bucketOf(-5), 0);
+    t.checkExpect(Histogram.bucketOf(Long.MAX_VALUE), Histogram.BUCKETS - 1);
+    t.checkExpect(Histogram.lowestIn(16), 16L);
+    t.checkExpect(Histogram.highestIn(16), 17L);
+    t.checkExpect(Histogram.lowestIn(Histogram.bucketOf(1000)) <= 1000, true);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(1000)) >= 1000, true);
+    t.checkExpect(Histogram.highestIn(Histogram.bucketOf(1000)) * 8
+        <= Histogram.lowestIn(Histogram.bucketOf(1000)) * 9, true);
+    t.checkExpect(Histogram.highestIn(Histogram.BUCKETS - 2) + 1,
+        Histogram.lowestIn(Histogram.BUCKETS - 1));
+  }
+
+  // test recording values and reading percentiles
+  void testPercentiles(Tester t) {
+    this.start();
+    Histogram histogram = new Histogram();
+    t.checkExpect(histogram.valueAt(50), 0L);
+    for (int i = 1; i <= 100; i += 1) {
+      histogram.record(i);
+    }
+    t.checkExpect(histogram.count(), 100L);
+    t.checkExpect(histogram.max(), 100L);
+    t.checkExpect(histogram.mean(), 50.5);
+    t.checkExpect(histogram.valueAt(5), 5L);
+    t.checkExpect(histogram.valueAt(50), 51L);
+    t.checkExpect(histogram.valueAt(100), 100L);
+    histogram.reset();
+    t.checkExpect(histogram.count(), 0L);
+    this.stop();
+  }
+
+  // test that nothing is recorded while metrics are off
+  void testDisabled(Tester t) {
+    this.stop();
+    Counter counter = new Counter();
+    Histogram histogram = new Histogram();
+    counter.increment();
+    histogram.record(10);
+    histogram.recordSince(Metrics.start());
+    t.checkExpect(counter.count(), 0L);
+    t.checkExpect(histogram.count(), 0L);
+    t.checkExpect(Metrics.start(), 0L);
+
+    Deque<Integer> deque = new Deque<Integer>();
+    deque.addAtTail(1);
+    CollectingReporter reporter = new CollectingReporter();
+    Metrics.report(reporter);
+    t.checkExpect(reporter.lines, new ArrayList<String>());
+  }
+
+  // test the probes in the deque, work lists, binary search tree and multiset
+  void testProbes(Tester t) {
+    this.start();
+    Deque<Integer> deque = new Deque<Integer>();
+    deque.addAtTail(1);
+    deque.addAtTail(2);
+    deque.addAtHead(0);
+    deque.removeFromTail();
+
+    IWorkList<Integer> queue = new Queue<Integer>();
+    for (int i = 0; i < 5; i += 1) {
+      queue.add(i);
+    }
+    queue.next();
+    queue.add(5);
+
+    // a tree of 1 to 7 inserted in order is a path 7 nodes deep
+    BinarySearchTree<Integer> tree = new BinarySearchTree<Integer>(new IncrementingIntegers());
+    for (int i = 1; i <= 7; i += 1) {
+      tree.insert(i);
+    }
+    tree.find(new CompareToAnswer<Integer>(new IncrementingIntegers(), 3));
+    tree.find(new CompareToAnswer<Integer>(new IncrementingIntegers(), 9));
+    t.checkExpect(Metrics.histogram("BinarySearchTree.find.visits").max(), 8L);
+    t.checkExpect(Metrics.histogram("BinarySearchTree.find.visits").valueAt(50), 3L);
+
+    CollectingReporter reporter = new CollectingReporter();
+    Metrics.report(reporter);
+    ArrayList<String> expected = new ArrayList<String>();
+    expected.add("Deque.addAtHead=1");
+    expected.add("Deque.addAtTail=8");
+    expected.add("Deque.removeFromHead=1");
+    expected.add("Deque.removeFromTail=1");
+    expected.add("Queue.add=6");
+    expected.add("Queue.next=1");
+    expected.add("BinarySearchTree.height=7");
+    expected.add("Queue.maxDepth=5");
+    expected.add("BinarySearchTree.find=2");
+    expected.add("BinarySearchTree.find.visits=2");
+    expected.add("BinarySearchTree.insert=7");
+    t.checkExpect(reporter.lines, expected);
+
+    Metrics.reset();
+    OrderableMultiSet<String> words = new OrderableMultiSet<String>(new AlphabeticalStrings());
+    words.add("b");
+    words.add("a");
+    words.add("b");
+    t.checkExpect(words.itemCount("b"), 2);
+    t.checkExpect(Metrics.histogram("OrderableMultiSet.add").count(), 3L);
+    t.checkExpect(Metrics.histogram("OrderableMultiSet.itemCount").count(), 1L);
+    t.checkExpect(Metrics.histogram("BinarySearchTree.insert").count(), 2L);
+    t.checkExpect(Metrics.histogram("BinarySearchTree.find").count(), 4L);
+    this.stop();
+  }
+}
@@ -1,3 +1,8 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import tester.Tester;
 
 // a non-mutable list of strings
@@ -26,6 +31,11 @@ interface ILoString {
   // strings (from this list, left to right) concatenated together
   // maintains original order of the elements in this ILoString
   ILoString scanHelper(String prevConcat);
+
+  // EFFECT: pushes the parts of this ILoString onto the given stack, so that the part that
+  // comes first ends up on top
+  // each part is either a String or a smaller ILoString
+  void unfold(ArrayList<Object> pending);
 }
 
 
@@ -62,6 +72,9 @@ class MtLoString implements ILoString {
   public ILoString scanHelper(String prevConcat) {
     return this;
   }
+
+  // an empty ILoString has no parts to push
+  public void unfold(ArrayList<Object> pending) { }
 }
 
 // represents an ILosString with a string before it
@@ -77,18 +90,18 @@ class ConsLoString implements ILoString {
 
   // compute the number of string elements contained within this ConsLoString
   public int length() {
-    return 1 + this.rest.length(); 
+    return new CountStrings().apply(this);
   }
 
   // produce the ILoString that results in reversing this ConsLoString
   public ILoString reverse() {
-    return new SnocLoString(this.rest.reverse(), this.first);
+    return new ReverseLoString().apply(this);
   }
 
   // convert this ConsLoString into only a combination of ConsLoString and MtLoString lists
   // maintains original order of the elements in this ConsLoString 
   public ILoString normalize() {
-    return new ConsLoString(this.first, this.rest.normalize());
+    return new NormalizeLoString().apply(this);
   }
 
   // add the elements of the given ILoString, back, to the end of this ConsLoString, in their 
@@ -101,7 +114,7 @@ class ConsLoString implements ILoString {
   // ConsLoString) concatenated together from left to right
   // maintains original order of the elements in this ILoString
   public ILoString scanConcat() {
-    return this.normalize().scanHelper("");
+    return new PrefixScan(this).toLoString();
   }
 
   // produces an ILoString where each string element is all the prior strings (from this 
@@ -113,6 +126,13 @@ class ConsLoString implements ILoString {
     // we use this value multiple times, so we're storing it as a local variable
     return new ConsLoString(newConcat, this.rest.scanHelper(newConcat));
   }
+
+  // EFFECT: pushes the rest of this ConsLoString, and then its first string, onto the given
+  // stack
+  public void unfold(ArrayList<Object> pending) {
+    pending.add(this.rest);
+    pending.add(this.first);
+  }
 }
 
 // represents an ILosString with a string after it
@@ -128,18 +148,18 @@ class SnocLoString implements ILoString {
 
   // compute the number of string elements contained within this SnocLoString
   public int length() { 
-    return this.front.length() + 1; 
+    return new CountStrings().apply(this);
   }
 
   // produce the ILoString that results in reversing this SnocLoString
   public ILoString reverse() {
-    return new ConsLoString(this.last, this.front.reverse());
+    return new ReverseLoString().apply(this);
   }
 
   // convert this SnocLoString into only a combination of ConsLoString and MtLoString lists
   // maintains original order of the elements in this SnocLoString 
   public ILoString normalize() {
-    return this.front.append(new ConsLoString(this.last, new MtLoString()));
+    return new NormalizeLoString().apply(this);
   }
 
   // add the elements of the given ILoString, back, to the end of this SnocLoString, in their 
@@ -152,7 +172,7 @@ class SnocLoString implements ILoString {
   // SnocLoString) concatenated together from left to right
   // maintains original order of the elements in this SnocLoString
   public ILoString scanConcat() {
-    return this.scanHelper("");
+    return new PrefixScan(this).toLoString();
   }
 
   // produces an ILoString where each string element is all the prior strings (from this 
@@ -162,6 +182,13 @@ class SnocLoString implements ILoString {
   public ILoString scanHelper(String prevConcat) { 
     return this.normalize().scanHelper(prevConcat);
   }
+
+  // EFFECT: pushes the last string of this SnocLoString, and then its front, onto the given
+  // stack
+  public void unfold(ArrayList<Object> pending) {
+    pending.add(this.last);
+    pending.add(this.front);
+  }
 }
 
 // represents two ILosStrings appended together
@@ -177,18 +204,18 @@ class AppendLoString implements ILoString {
 
   // compute the number of string elements contained within this AppendLoString
   public int length() { 
-    return this.front.length() + this.back.length(); 
+    return new CountStrings().apply(this);
   }
 
   // produce the ILoString that results in reversing this AppendLoString
   public ILoString reverse() {
-    return new AppendLoString(this.back.reverse(), this.front.reverse());
+    return new ReverseLoString().apply(this);
   }
 
   // convert this AppendLoString into only a combination of ConsLoString and MtLoString lists
   // maintains original order of the elements in this AppendLoString 
   public ILoString normalize() {
-    return this.front.normalize().append(back.normalize());
+    return new NormalizeLoString().apply(this);
   }
 
   // add the elements of the given ILoString, back, to the end of this AppendLoString, in their 
@@ -201,7 +228,7 @@ class AppendLoString implements ILoString {
   // AppendLoString) concatenated together from left to right
   // maintains original order of the elements in this AppendLoString
   public ILoString scanConcat() {
-    return this.scanHelper("");
+    return new PrefixScan(this).toLoString();
   }
 
   // produces an ILoString where each string element is all the prior strings (from this 
@@ -212,6 +239,230 @@ class AppendLoString implements ILoString {
     return this.normalize().scanHelper(prevConcat);
   }
 
+  // EFFECT: pushes the back of this AppendLoString, and then its front, onto the given stack
+  public void unfold(ArrayList<Object> pending) {
+    pending.add(this.back);
+    pending.add(this.front);
+  }
+}
+
+// an iterator over the strings of any ILoString, from first to last.
+// It keeps its own stack of the parts it hasn't gotten to yet instead of recursing, so it can
+// walk lists of any length and shape (Cons, Snoc and Append nested however deeply) with a
+// constant amount of Java stack, in time linear in the number of strings and list nodes.
+class ILoStringIterator implements Iterator<String> {
+
+  // the parts still to be walked, with the next one on top (at the end)
+  ArrayList<Object> pending;
+
+  // constructor
+  ILoStringIterator(ILoString list) {
+    this.pending = new ArrayList<Object>();
+    this.pending.add(list);
+  }
+
+  // are there any strings left?
+  // EFFECT: unfolds lists on top of the stack until a string is on top, or the stack is empty
+  public boolean hasNext() {
+    while (!this.pending.isEmpty()) {
+      Object top = this.pending.get(this.pending.size() - 1);
+      if (top instanceof String) {
+        return true;
+      }
+      this.pending.remove(this.pending.size() - 1);
+      ((ILoString) top).unfold(this.pending);
+    }
+    return false;
+  }
+
+  // returns the next string
+  // EFFECT: takes the string off the stack
+  public String next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The list has no more strings.");
+    }
+    return (String) this.pending.remove(this.pending.size() - 1);
+  }
+}
+
+// converts any ILoString into only ConsLoStrings ending in an MtLoString, in one pass.
+// The strings are gathered in order by an ILoStringIterator, and the new list is then built
+// from the last string to the first, so the whole thing takes time linear in the size of the
+// list, no matter how its Cons, Snoc and Append nodes are mixed, and never recurses.
+class NormalizeLoString implements IFunc<ILoString, ILoString> {
+  public ILoString apply(ILoString list) {
+    ArrayList<String> strings = new ArrayList<String>();
+    Iterator<String> walk = new ILoStringIterator(list);
+    while (walk.hasNext()) {
+      strings.add(walk.next());
+    }
+
+    ILoString result = new MtLoString();
+    for (int i = strings.size() - 1; i >= 0; i -= 1) {
+      result = new ConsLoString(strings.get(i), result);
+    }
+    return result;
+  }
+}
+
+// reverses any ILoString by mirroring it: a ConsLoString becomes a SnocLoString of the reversed
+// rest, a SnocLoString becomes a ConsLoString onto the reversed front, and an AppendLoString
+// becomes an AppendLoString of the reversed back and the reversed front. Any other kind of
+// list (such as an empty one) reverses itself.
+// The nodes are listed parent before children with an explicit stack, and then mirrored from
+// the end of that listing back to the start, so every node's parts are mirrored before it is.
+// That takes time linear in the number of nodes and never recurses, however deep the list.
+class ReverseLoString implements IFunc<ILoString, ILoString> {
+  public ILoString apply(ILoString list) {
+    ArrayList<ILoString> nodes = new ArrayList<ILoString>();
+    ArrayList<ILoString> pending = new ArrayList<ILoString>();
+    pending.add(list);
+    while (!pending.isEmpty()) {
+      ILoString node = pending.remove(pending.size() - 1);
+      nodes.add(node);
+      // a node's first part is pushed last, so its whole subtree is listed before the second's
+      if (node instanceof ConsLoString) {
+        pending.add(((ConsLoString) node).rest);
+      } else if (node instanceof SnocLoString) {
+        pending.add(((SnocLoString) node).front);
+      } else if (node instanceof AppendLoString) {
+        pending.add(((AppendLoString) node).back);
+        pending.add(((AppendLoString) node).front);
+      }
+    }
+
+    // the mirrored parts, with the most recently mirrored on top (at the end)
+    ArrayList<ILoString> mirrored = new ArrayList<ILoString>();
+    for (int i = nodes.size() - 1; i >= 0; i -= 1) {
+      ILoString node = nodes.get(i);
+      if (node instanceof ConsLoString) {
+        ILoString rest = mirrored.remove(mirrored.size() - 1);
+        mirrored.add(new SnocLoString(rest, ((ConsLoString) node).first));
+      } else if (node instanceof SnocLoString) {
+        ILoString front = mirrored.remove(mirrored.size() - 1);
+        mirrored.add(new ConsLoString(((SnocLoString) node).last, front));
+      } else if (node instanceof AppendLoString) {
+        // the front's subtree was listed first, so it was mirrored last
+        ILoString front = mirrored.remove(mirrored.size() - 1);
+        ILoString back = mirrored.remove(mirrored.size() - 1);
+        mirrored.add(new AppendLoString(back, front));
+      } else {
+        mirrored.add(node.reverse());
+      }
+    }
+    return mirrored.get(0);
+  }
+}
+
+// counts the strings in any ILoString in one pass, without recursing
+class CountStrings implements IFunc<ILoString, Integer> {
+  public Integer apply(ILoString list) {
+    int count = 0;
+    Iterator<String> walk = new ILoStringIterator(list);
+    while (walk.hasNext()) {
+      walk.next();
+      count += 1;
+    }
+    return count;
+  }
+}
+
+// the prefixes of an ILoString's strings concatenated together, as scanConcat computes them,
+// without copying each prefix.
+// Every prefix is the start of the same string (all of the strings concatenated), so this keeps
+// that one string and where each prefix ends in it, built in time linear in the total length.
+// A prefix is only copied into its own String when a PrefixView's toString is called, so
+// scanning 100k fragments and reading a few of the prefixes copies only those few.
+class PrefixScan {
+
+  // all of the strings concatenated together
+  String whole;
+
+  // where in the whole string each prefix ends
+  int[] ends;
+
+  // constructor
+  PrefixScan(ILoString list) {
+    StringBuilder builder = new StringBuilder();
+    int[] found = new int[16];
+    int count = 0;
+    Iterator<String> strings = new ILoStringIterator(list);
+    while (strings.hasNext()) {
+      builder.append(strings.next());
+      if (count == found.length) {
+        found = Arrays.copyOf(found, count * 2);
+      }
+      found[count] = builder.length();
+      count += 1;
+    }
+    this.whole = builder.toString();
+    this.ends = Arrays.copyOf(found, count);
+  }
+
+  // returns the number of prefixes, which is the number of strings in the list
+  int length() {
+    return this.ends.length;
+  }
+
+  // returns the prefix made of the strings up to and including the one at the given index
+  CharSequence get(int index) {
+    if (index < 0 || index >= this.ends.length) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this scan.");
+    }
+    return new PrefixView(this.whole, this.ends[index]);
+  }
+
+  // returns an ILoString of every prefix, copied into its own String, like scanConcat
+  // (this copies the quadratic number of characters that scanConcat's result holds)
+  ILoString toLoString() {
+    ILoString result = new MtLoString();
+    for (int i = this.ends.length - 1; i >= 0; i -= 1) {
+      result = new ConsLoString(this.whole.substring(0, this.ends[i]), result);
+    }
+    return result;
+  }
+}
+
+// the start of a string, up to an end index, as a CharSequence that doesn't copy anything
+class PrefixView implements CharSequence {
+
+  // the string this is the start of
+  String whole;
+
+  // the length of this prefix
+  int end;
+
+  // constructor
+  PrefixView(String whole, int end) {
+    this.whole = whole;
+    this.end = end;
+  }
+
+  // returns the number of characters in this prefix
+  public int length() {
+    return this.end;
+  }
+
+  // returns the character at the given index of this prefix
+  public char charAt(int index) {
+    if (index < 0 || index >= this.end) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this prefix.");
+    }
+    return this.whole.charAt(index);
+  }
+
+  // returns the characters of this prefix from start (inclusive) to end (exclusive)
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.end || start > end) {
+      throw new IndexOutOfBoundsException("The given range is out of bounds for this prefix.");
+    }
+    return this.whole.subSequence(start, end);
+  }
+
+  // returns this prefix, copied into its own String
+  public String toString() {
+    return this.whole.substring(0, this.end);
+  }
 }
 
 class ExamplesILoString {
@@ -359,4 +610,107 @@ class ExamplesILoString {
         && t.checkExpect(cons4.scanHelper("yoyoyo"), new ConsLoString("yoyoyohello", 
             new ConsLoString("yoyoyohelloworld", mt)));
   }
+
+  // test walking the strings of lists of every shape, in order
+  boolean testIterator(Tester t) {
+    Iterator<String> strings = new ILoStringIterator(test);
+    String seen = "";
+    while (strings.hasNext()) {
+      seen = seen + strings.next() + ",";
+    }
+    return t.checkExpect(seen, "w,x,y,z,a,")
+        && t.checkExpect(new ILoStringIterator(append1).hasNext(), false)
+        && t.checkException(new NoSuchElementException("The list has no more strings."),
+            new ILoStringIterator(mt), "next");
+  }
+
+  // test the lazy prefix scan
+  boolean testPrefixScan(Tester t) {
+    PrefixScan scan = new PrefixScan(append4);
+    CharSequence third = scan.get(2);
+    return t.checkExpect(scan.length(), 8)
+        && t.checkExpect(scan.get(0).toString(), "hello")
+        && t.checkExpect(third.toString(), "helloworldLucky Charms are tasty")
+        && t.checkExpect(third.length(), 32)
+        && t.checkExpect(third.charAt(10), 'L')
+        && t.checkExpect(third.subSequence(5, 10).toString(), "world")
+        && t.checkExpect(scan.toLoString(), append4.normalize().scanHelper(""))
+        && t.checkExpect(new PrefixScan(mt).length(), 0)
+        && t.checkException(new IndexOutOfBoundsException(
+            "The given index is out of bounds for this scan."), scan, "get", 8)
+        && t.checkException(new IndexOutOfBoundsException(
+            "The given index is out of bounds for this prefix."), third, "charAt", 32);
+  }
+
+  // test scanning lists far too long to scan by copying every prefix, or to walk by recursion
+  boolean testLongScan(Tester t) {
+    ILoString fragments = new MtLoString();
+    ILoString snocs = new MtLoString();
+    for (int i = 0; i < 100000; i += 1) {
+      fragments = new AppendLoString(fragments, new ConsLoString("log" + i + ";", mt));
+      snocs = new SnocLoString(snocs, "ab");
+    }
+    PrefixScan scan = new PrefixScan(fragments);
+    return t.checkExpect(scan.length(), 100000)
+        && t.checkExpect(scan.get(1).toString(), "log0;log1;")
+        && t.checkExpect(scan.get(99999).length(), 888890)
+        && t.checkExpect(new PrefixScan(snocs).get(49999).length(), 100000);
+  }
+
+  // test normalize and length on lists too deep to handle by recursion, including long
+  // chains of Snocs and Appends whose old normalize was quadratic
+  boolean testLongNormalize(Tester t) {
+    ILoString snocs = new MtLoString();
+    ILoString appends = new MtLoString();
+    ILoString conses = new MtLoString();
+    for (int i = 0; i < 100000; i += 1) {
+      snocs = new SnocLoString(snocs, "s" + i);
+      appends = new AppendLoString(appends, new SnocLoString(mt, "a" + i));
+      conses = new ConsLoString("c" + i, conses);
+    }
+    ILoString normal = snocs.normalize();
+    return t.checkExpect(snocs.length(), 100000)
+        && t.checkExpect(appends.length(), 100000)
+        && t.checkExpect(conses.length(), 100000)
+        && t.checkExpect(normal.length(), 100000)
+        && t.checkExpect(((ConsLoString) normal).first, "s0")
+        && t.checkExpect(((ConsLoString) appends.normalize()).first, "a0")
+        && t.checkExpect(((ConsLoString) conses.normalize()).first, "c99999")
+        && t.checkExpect(appends.append(snocs).length(), 200000);
+  }
+
+  // test reverse on a list too deep to handle by recursion, mixing all three kinds of node
+  boolean testLongReverse(Tester t) {
+    ILoString mixed = new MtLoString();
+    // the strings added to the front, last to first, and those added to the back
+    ArrayList<String> fronts = new ArrayList<String>();
+    ArrayList<String> backs = new ArrayList<String>();
+    for (int i = 0; i < 300000; i += 1) {
+      if (i % 3 == 0) {
+        mixed = new ConsLoString("c" + i, mixed);
+        fronts.add("c" + i);
+      } else if (i % 3 == 1) {
+        mixed = new SnocLoString(mixed, "s" + i);
+        backs.add("s" + i);
+      } else {
+        mixed = new AppendLoString(mixed, new ConsLoString("a" + i, mt));
+        backs.add("a" + i);
+      }
+    }
+    // reversed, the back strings come first, last to first, and then the front ones
+    ArrayList<String> strings = new ArrayList<String>(backs);
+    Collections.reverse(strings);
+    strings.addAll(fronts);
+
+    ArrayList<String> reversed = new ArrayList<String>();
+    Iterator<String> walk = new ILoStringIterator(mixed.reverse());
+    while (walk.hasNext()) {
+      reversed.add(walk.next());
+    }
+    return t.checkExpect(reversed.equals(strings), true)
+        && t.checkExpect(mixed.reverse() instanceof AppendLoString, true)
+        && t.checkExpect(mixed.reverse().reverse().length(), 300000)
+        && t.checkExpect(((ConsLoString) mixed.reverse().reverse().normalize()).first,
+            "c299997");
+  }
 }
@@ -1,3 +1,13 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
 import tester.*;
 
 // A generic pair of values. You may access its fields directly
@@ -79,27 +89,303 @@ class ComparePairToAnswer<T> implements IFunc<Pair<T, Integer>, Integer> {
 }
 
 
+// a node in a CountIndex, holding one distinct item with its count, and the number of nodes
+// in the subtree it's the root of
+class RankNode<T> extends TreapNode<RankNode<T>> {
+
+  // the distinct item
+  T item;
+
+  // how many times the item appears in the multiset
+  int count;
+
+  // the number of nodes in the subtree rooted at this node, including itself
+  int size;
+
+  // constructor
+  RankNode(T item, int count, int priority) {
+    super(priority);
+    this.item = item;
+    this.count = count;
+    this.size = 1;
+  }
+
+  // EFFECT: recounts the nodes in this node's subtree from its children's counts
+  void update() {
+    this.size = 1;
+    if (this.left != null) {
+      this.size += this.left.size;
+    }
+    if (this.right != null) {
+      this.size += this.right.size;
+    }
+  }
+}
+
+// a secondary index over the items of a multiset that orders them by count, from the most
+// frequent to the least, breaking ties with the item comparator.
+// It's a treap where every node also knows the size of its subtree, so the position of any
+// entry can be found on the way down to it.
+class CountIndex<T> {
+
+  // the comparator used to break ties between items with the same count
+  IComparator<T> tOrder;
+
+  // the root of the index, or null if it's empty
+  RankNode<T> root;
+
+  // the priorities and rotations that keep the index balanced
+  Treap<RankNode<T>> treap;
+
+  // constructor
+  CountIndex(IComparator<T> tOrder) {
+    this.tOrder = tOrder;
+    this.root = null;
+    this.treap = new Treap<RankNode<T>>();
+  }
+
+  // compares the given entries: a negative result means the first one comes first, because
+  // it has a larger count or, with the same count, a smaller item
+  int compare(T leftItem, int leftCount, T rightItem, int rightCount) {
+    if (leftCount != rightCount) {
+      return leftCount > rightCount ? -1 : 1;
+    }
+    return this.tOrder.compare(leftItem, rightItem);
+  }
+
+  // returns the number of nodes in the given subtree
+  int size(RankNode<T> node) {
+    if (node == null) {
+      return 0;
+    } else {
+      return node.size;
+    }
+  }
+
+  // EFFECT: adds an entry for the given item with the given count
+  void insert(T item, int count) {
+    this.root = this.insert(this.root,
+        new RankNode<T>(item, count, this.treap.nextPriority()));
+  }
+
+  // EFFECT: removes the entry for the given item with the given count, if there is one
+  void delete(T item, int count) {
+    this.root = this.delete(this.root, item, count);
+  }
+
+  // returns the (at most) n most frequent items and their counts, most frequent first
+  ArrayList<Pair<T, Integer>> first(int n) {
+    ArrayList<Pair<T, Integer>> result = new ArrayList<Pair<T, Integer>>();
+    ArrayList<RankNode<T>> path = new ArrayList<RankNode<T>>();
+    RankNode<T> curr = this.root;
+
+    while (result.size() < n && (curr != null || !path.isEmpty())) {
+      while (curr != null) {
+        path.add(curr);
+        curr = curr.left;
+      }
+      RankNode<T> node = path.remove(path.size() - 1);
+      result.add(new Pair<T, Integer>(node.item, node.count));
+      curr = node.right;
+    }
+
+    return result;
+  }
+
+  // returns the number of entries whose count is at least the given count
+  int countAtLeast(int count) {
+    int before = 0;
+    RankNode<T> curr = this.root;
+
+    while (curr != null) {
+      if (curr.count >= count) { // this node and everything to its left have enough
+        before += this.size(curr.left) + 1;
+        curr = curr.right;
+      } else {
+        curr = curr.left;
+      }
+    }
+
+    return before;
+  }
+
+  // returns the position of the entry for the given item with the given count, where the most
+  // frequent item is at position 0, or -1 if there's no such entry
+  int rank(T item, int count) {
+    int before = 0;
+    RankNode<T> curr = this.root;
+
+    while (curr != null) {
+      int comparison = this.compare(curr.item, curr.count, item, count);
+
+      if (comparison > 0) { // the entry comes before this node
+        curr = curr.left;
+      } else if (comparison < 0) { // the entry comes after this node and its left subtree
+        before += this.size(curr.left) + 1;
+        curr = curr.right;
+      } else {
+        return before + this.size(curr.left);
+      }
+    }
+
+    return -1;
+  }
+
+  // inserts the given node into the given subtree and returns the new root of that subtree,
+  // rotating the node upwards until its priority is no higher than its parent's
+  RankNode<T> insert(RankNode<T> subtree, RankNode<T> node) {
+    if (subtree == null) {
+      return node;
+    }
+
+    subtree.size += 1;
+    if (this.compare(subtree.item, subtree.count, node.item, node.count) > 0) {
+      subtree.left = this.insert(subtree.left, node);
+      if (subtree.left.priority > subtree.priority) {
+        return this.treap.rotateRight(subtree);
+      }
+    } else {
+      subtree.right = this.insert(subtree.right, node);
+      if (subtree.right.priority > subtree.priority) {
+        return this.treap.rotateLeft(subtree);
+      }
+    }
+
+    return subtree;
+  }
+
+  // deletes the entry for the given item and count from the given subtree and returns the new
+  // root of that subtree
+  RankNode<T> delete(RankNode<T> subtree, T item, int count) {
+    if (subtree == null) {
+      return null;
+    }
+
+    int comparison = this.compare(subtree.item, subtree.count, item, count);
+    if (comparison > 0) {
+      subtree.left = this.delete(subtree.left, item, count);
+    } else if (comparison < 0) {
+      subtree.right = this.delete(subtree.right, item, count);
+    } else {
+      return this.join(subtree.left, subtree.right);
+    }
+    subtree.size = 1 + this.size(subtree.left) + this.size(subtree.right);
+
+    return subtree;
+  }
+
+  // joins the given subtrees, where every entry on the left comes before every entry on the
+  // right, keeping the higher priority root on top
+  RankNode<T> join(RankNode<T> left, RankNode<T> right) {
+    if (left == null) {
+      return right;
+    } else if (right == null) {
+      return left;
+    } else if (left.priority > right.priority) {
+      left.right = this.join(left.right, right);
+      left.size = 1 + this.size(left.left) + this.size(left.right);
+      return left;
+    } else {
+      right.left = this.join(left, right.left);
+      right.size = 1 + this.size(right.left) + this.size(right.right);
+      return right;
+    }
+  }
+
+  // EFFECT: replaces every entry of this index with one for each of the given items and counts
+  // The entries are sorted by count once, and the treap is then built over them in a single
+  // pass, the way a Cartesian tree is: each new entry goes at the end of the right spine,
+  // below every node there with a higher priority, and takes the nodes it passed as its left
+  // subtree. That makes the same shape inserting them one at a time would, without searching.
+  void rebuild(ArrayList<Pair<T, Integer>> entries) {
+    ArrayList<RankNode<T>> nodes = new ArrayList<RankNode<T>>(entries.size());
+    for (Pair<T, Integer> entry : entries) {
+      nodes.add(new RankNode<T>(entry.first, entry.second, this.treap.nextPriority()));
+    }
+    Collections.sort(nodes, new ComparatorOf<RankNode<T>>(new ByRank<T>(this)));
+
+    ArrayList<RankNode<T>> spine = new ArrayList<RankNode<T>>();
+    for (RankNode<T> node : nodes) {
+      RankNode<T> passed = null;
+      while (!spine.isEmpty() && spine.get(spine.size() - 1).priority < node.priority) {
+        passed = spine.remove(spine.size() - 1);
+      }
+      node.left = passed;
+      if (!spine.isEmpty()) {
+        spine.get(spine.size() - 1).right = node;
+      }
+      spine.add(node);
+    }
+
+    if (spine.isEmpty()) {
+      this.root = null;
+    } else {
+      this.root = spine.get(0);
+      this.fixSizes(this.root);
+    }
+  }
+
+  // returns the number of nodes in the given subtree
+  // EFFECT: sets the size of every node in it
+  int fixSizes(RankNode<T> node) {
+    if (node == null) {
+      return 0;
+    }
+    node.size = 1 + this.fixSizes(node.left) + this.fixSizes(node.right);
+    return node.size;
+  }
+}
+
+// orders the nodes of a count index the way the index does
+class ByRank<T> implements IComparator<RankNode<T>> {
+
+  // the index whose order is used
+  CountIndex<T> index;
+
+  // constructor
+  ByRank(CountIndex<T> index) {
+    this.index = index;
+  }
+
+  // compares the given nodes by count, most frequent first, and then by item
+  public int compare(RankNode<T> left, RankNode<T> right) {
+    return this.index.compare(left.item, left.count, right.item, right.count);
+  }
+}
+
+
 //Allows creating sets of values where the elements of the set are *comparable*.
 class OrderableMultiSet<T> extends BinarySearchTree<Pair<T, Integer>> implements IMultiSet<T> {
 
+  // the latencies (in nanoseconds) of adding to and counting items in every orderable multiset,
+  // recorded when Metrics are enabled
+  static final Histogram ADD = Metrics.histogram("OrderableMultiSet.add");
+  static final Histogram ITEM_COUNT = Metrics.histogram("OrderableMultiSet.itemCount");
+
   // comparator of values of pairs in this orderable multiset
   IComparator<T> tOrder;
 
+  // the items of this multiset ordered by how often they appear, kept up to date by add and
+  // remove
+  CountIndex<T> byCount;
+
   // constructor
   // constructs a binary search tree with a new comparator for pairs based on the given comparator
   // of values
   OrderableMultiSet(IComparator<T> comp) { 
     super(new ComparePairs<T>(comp));
     this.tOrder = comp;
+    this.byCount = new CountIndex<T>(comp);
   }
 
   // How often does the given item appear in this multi set?
   // (If it is not present, then return 0.)
   public int itemCount(T item) {
+    long start = Metrics.start();
     CompareToAnswer<Pair<T, Integer>> comparer = new CompareToAnswer<Pair<T, Integer>>(this.order, 
         new Pair<T, Integer>(item, 1)); // TODO: understand how I did this
-    Pair<T, Integer> pair = new Find<Pair<T, Integer>>(comparer).apply(this.root);
-    // also could have just done: this.find(comparer);
+    Pair<T, Integer> pair = this.find(comparer);
+    ITEM_COUNT.recordSince(start);
 
     if (pair != null) {
       return pair.second;
@@ -123,13 +409,196 @@ class OrderableMultiSet<T> extends BinarySearchTree<Pair<T, Integer>> implements
 
   // EFFECT: adds the given item into this multiset
   public void add(T item) {
+    this.add(item, 1);
+  }
+
+  // EFFECT: adds the given item into this multiset the given number of times
+  void add(T item, int times) {
+    long start = Metrics.start();
     ComparePairToAnswer<T> comparison = new ComparePairToAnswer<T>(this.tOrder, item);
     Pair<T, Integer> pair = this.find(comparison); // TODO: understand what I did here
 
-    if (pair == null) {
-      this.insert(new Pair<T, Integer>(item, 1));
+    if (times <= 0) {
+      return;
+    } else if (pair == null) {
+      super.insert(new Pair<T, Integer>(item, times));
+      this.byCount.insert(item, times);
     } else {
-      pair.second += 1;
+      this.byCount.delete(pair.first, pair.second);
+      pair.second += times;
+      this.byCount.insert(pair.first, pair.second);
+    }
+    ADD.recordSince(start);
+  }
+
+  // EFFECT: adds the given pair's item into this multiset the pair's number of times
+  // (this overrides the tree's insert, which would put the item in a node of its own even if
+  // it's already present, and leave the index by count out of date)
+  // throws an exception if the count isn't positive
+  void insert(Pair<T, Integer> pair) {
+    if (pair.second <= 0) {
+      throw new IllegalArgumentException("The counts must be positive.");
+    }
+    this.add(pair.first, pair.second);
+  }
+
+  // EFFECT: removes every occurrence of the given pair's item from this multiset, whatever
+  // the pair's count (this overrides the tree's delete, to keep the index by count up to date)
+  // does nothing if the item isn't present
+  void delete(Pair<T, Integer> pair) {
+    this.remove(pair.first, this.itemCount(pair.first));
+  }
+
+  // EFFECT: replaces the contents of this multiset with the given items and counts, which must
+  // be in order with no item twice, in O(n) (plus sorting the items by count for the index),
+  // such as when loading a snapshot
+  // The pairs are kept, not copied.
+  void buildFrom(ArrayList<Pair<T, Integer>> sorted) {
+    for (Pair<T, Integer> pair : sorted) {
+      if (pair.second <= 0) {
+        throw new IllegalArgumentException("The counts must be positive.");
+      }
+    }
+    super.buildFrom(sorted);
+    this.byCount.rebuild(sorted);
+  }
+
+  // returns the number of distinct items in this multiset
+  int distinctCount() {
+    return this.byCount.size(this.byCount.root);
+  }
+
+  // EFFECT: adds every item of the given multiset into this one, as many times as it appears
+  // there.
+  // When the other multiset is ordered by the same comparator, and isn't much smaller than
+  // this one, the two are merged in a single in-order pass and the tree is rebuilt balanced.
+  // Otherwise each of its items is added with its whole count at once.
+  // NOTE: "the same comparator" means the SAME OBJECT (reference equality), since there's no
+  // way to tell whether two comparator objects order items the same way. A caller who knows
+  // that they do can say so with the mergeFrom below.
+  void mergeFrom(IMultiSet<T> other) {
+    this.mergeFrom(other, other instanceof OrderableMultiSet
+        && ((OrderableMultiSet<T>) other).tOrder == this.tOrder);
+  }
+
+  // EFFECT: adds every item of the given multiset into this one, as many times as it appears
+  // there, as above, where the given flag says whether the other multiset is an orderable
+  // multiset in the same order as this one
+  // throws an exception if it says so wrongly and the two are merged in one pass (which
+  // finds the merged items out of order), leaving this multiset unchanged
+  void mergeFrom(IMultiSet<T> other, boolean sameOrder) {
+    if (sameOrder && other instanceof OrderableMultiSet) {
+      OrderableMultiSet<T> that = (OrderableMultiSet<T>) other;
+      int mine = this.distinctCount();
+      int theirs = that.distinctCount();
+      int depth = 32 - Integer.numberOfLeadingZeros(mine);
+
+      if ((long) theirs * depth >= mine + theirs) {
+        this.mergeOrdered(that);
+        return;
+      }
+    }
+
+    for (Pair<T, Integer> pair : other) {
+      this.add(pair.first, pair.second);
+    }
+  }
+
+  // EFFECT: merges the given multiset, which is in the same order as this one, into this one by
+  // walking both in order at the same time, then rebuilds this multiset's tree balanced
+  // throws an exception if the merged items aren't in order (so the given multiset wasn't in
+  // this one's order after all), leaving this multiset unchanged
+  void mergeOrdered(OrderableMultiSet<T> that) {
+    ArrayList<Pair<T, Integer>> merged = new ArrayList<Pair<T, Integer>>();
+    Iterator<Pair<T, Integer>> mine = this.iterator();
+    Iterator<Pair<T, Integer>> theirs = that.iterator();
+    Pair<T, Integer> left = this.nextOrNull(mine);
+    Pair<T, Integer> right = this.nextOrNull(theirs);
+
+    while (left != null || right != null) {
+      int comparison;
+      if (left == null) {
+        comparison = 1;
+      } else if (right == null) {
+        comparison = -1;
+      } else {
+        comparison = this.tOrder.compare(left.first, right.first);
+      }
+
+      // nothing is changed until the whole merge is checked, so the pairs whose counts change
+      // (and the other multiset's, which it still holds) are copied
+      if (comparison < 0) { // only this multiset has the smaller item
+        merged.add(left);
+        left = this.nextOrNull(mine);
+      } else if (comparison > 0) { // only the other multiset has the smaller item
+        merged.add(new Pair<T, Integer>(right.first, right.second));
+        right = this.nextOrNull(theirs);
+      } else {
+        merged.add(new Pair<T, Integer>(left.first, left.second + right.second));
+        left = this.nextOrNull(mine);
+        right = this.nextOrNull(theirs);
+      }
+    }
+
+    this.buildFrom(merged);
+  }
+
+  // returns the next pair from the given iterator, or null if it has run out
+  Pair<T, Integer> nextOrNull(Iterator<Pair<T, Integer>> pairs) {
+    if (pairs.hasNext()) {
+      return pairs.next();
+    } else {
+      return null;
+    }
+  }
+
+  // EFFECT: removes one occurrence of the given item from this multiset
+  // does nothing if the item isn't present
+  void remove(T item) {
+    this.remove(item, 1);
+  }
+
+  // EFFECT: removes the given number of occurrences of the given item from this multiset
+  // once an item's count reaches zero, its node is taken out of the tree
+  void remove(T item, int times) {
+    ComparePairToAnswer<T> comparison = new ComparePairToAnswer<T>(this.tOrder, item);
+    Pair<T, Integer> pair = this.find(comparison);
+
+    if (pair == null || times <= 0) {
+      return;
+    }
+
+    this.byCount.delete(pair.first, pair.second);
+    if (pair.second > times) {
+      pair.second -= times;
+      this.byCount.insert(pair.first, pair.second);
+    } else {
+      super.delete(pair);
+    }
+  }
+
+  // returns the (at most) n most frequent items in this multiset with their counts, most
+  // frequent first, and items with the same count in order
+  ArrayList<Pair<T, Integer>> mostFrequent(int n) {
+    return this.byCount.first(n);
+  }
+
+  // returns every item in this multiset that appears at least the given number of times, with
+  // their counts, most frequent first
+  ArrayList<Pair<T, Integer>> countAtLeast(int count) {
+    return this.byCount.first(this.byCount.countAtLeast(count));
+  }
+
+  // returns how many items in this multiset come before the given one when they're ordered
+  // from the most frequent to the least (so the most frequent item has rank 0), or -1 if the
+  // item isn't present
+  int frequencyRank(T item) {
+    int count = this.itemCount(item);
+
+    if (count == 0) {
+      return -1;
+    } else {
+      return this.byCount.rank(item, count);
     }
   }
 
@@ -144,6 +613,7 @@ class OrderableMultiSet<T> extends BinarySearchTree<Pair<T, Integer>> implements
       return false; 
     }
     // this cast is safe, because we just checked instanceof
+    @SuppressWarnings("unchecked")
     IMultiSet<T> that = (IMultiSet<T>) other;
     // return this.hashCode() == that.hashCode();
     return this.hasSubset(that) && that.hasSubset(this);
@@ -170,6 +640,84 @@ class OrderableMultiSet<T> extends BinarySearchTree<Pair<T, Integer>> implements
 
 
 
+// collects the items of a stream into an orderable multiset. In a parallel stream, every
+// thread counts its share of the items into its own multiset, and these are merged in bulk
+// with mergeFrom at the end.
+class ToMultiSet<T> implements Collector<T, OrderableMultiSet<T>, OrderableMultiSet<T>> {
+
+  // the comparator for the items of the multisets that are built
+  IComparator<T> order;
+
+  // constructor
+  ToMultiSet(IComparator<T> order) {
+    this.order = order;
+  }
+
+  // makes an empty multiset for a thread to count into
+  public Supplier<OrderableMultiSet<T>> supplier() {
+    return new NewMultiSet<T>(this.order);
+  }
+
+  // counts one item into a thread's multiset
+  public BiConsumer<OrderableMultiSet<T>, T> accumulator() {
+    return new AddToMultiSet<T>();
+  }
+
+  // merges the multisets of two threads
+  public BinaryOperator<OrderableMultiSet<T>> combiner() {
+    return new MergeMultiSets<T>();
+  }
+
+  // the merged multiset is already the result
+  public Function<OrderableMultiSet<T>, OrderableMultiSet<T>> finisher() {
+    return new SameMultiSet<T>();
+  }
+
+  // the result doesn't depend on the order the items are counted in
+  public Set<Characteristics> characteristics() {
+    return Collections.unmodifiableSet(java.util.EnumSet.of(Characteristics.IDENTITY_FINISH,
+        Characteristics.UNORDERED));
+  }
+}
+
+// makes empty orderable multisets with the given comparator
+class NewMultiSet<T> implements Supplier<OrderableMultiSet<T>> {
+
+  // the comparator for the items of the multisets
+  IComparator<T> order;
+
+  // constructor
+  NewMultiSet(IComparator<T> order) {
+    this.order = order;
+  }
+
+  public OrderableMultiSet<T> get() {
+    return new OrderableMultiSet<T>(this.order);
+  }
+}
+
+// adds an item to an orderable multiset
+class AddToMultiSet<T> implements BiConsumer<OrderableMultiSet<T>, T> {
+  public void accept(OrderableMultiSet<T> set, T item) {
+    set.add(item);
+  }
+}
+
+// merges the second orderable multiset into the first, and returns the first
+class MergeMultiSets<T> implements BinaryOperator<OrderableMultiSet<T>> {
+  public OrderableMultiSet<T> apply(OrderableMultiSet<T> left, OrderableMultiSet<T> right) {
+    left.mergeFrom(right);
+    return left;
+  }
+}
+
+// returns the given orderable multiset
+class SameMultiSet<T> implements Function<OrderableMultiSet<T>, OrderableMultiSet<T>> {
+  public OrderableMultiSet<T> apply(OrderableMultiSet<T> set) {
+    return set;
+  }
+}
+
 // a wrapper class for an integer with a modified hashCode method
 class CustomInt {
   // the integer value
@@ -351,6 +899,238 @@ class ExamplesMultiSet {
     t.checkExpect(this.smallSet.hasSubset(this.smallSetWithOverlap), false);
   }
 
+  // test removing elements, which decrements their counts and removes their nodes at zero
+  void testRemove(Tester t) {
+    this.initData();
+
+    // removing an element that isn't there does nothing
+    this.smallSetWithOverlap.remove(new CustomInt(5));
+    t.checkExpect(this.smallSetWithOverlap.size(), 5);
+
+    // removing one of several copies just lowers the count
+    this.smallSetWithOverlap.remove(new CustomInt(8));
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(8)), 1);
+    t.checkExpect(this.smallSetWithOverlap.size(), 5);
+
+    // removing the last copy takes the element out of the tree
+    this.smallSetWithOverlap.remove(new CustomInt(8));
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(8)), 0);
+    t.checkExpect(this.smallSetWithOverlap.size(), 4);
+    t.checkExpect(this.smallSetWithOverlap.equals(this.smallSet), true);
+
+    // removing more copies than there are removes the element entirely
+    this.bigSet.remove(new CustomInt(4), 10);
+    t.checkExpect(this.bigSet.itemCount(new CustomInt(4)), 0);
+    t.checkExpect(this.bigSet.size(), 12);
+  }
+
+  // test asking for the most frequent items, which stay up to date as items are added and
+  // removed
+  void testMostFrequent(Tester t) {
+    this.initData();
+
+    // 8 appears twice, the rest once (and are listed in order)
+    ArrayList<Pair<CustomInt, Integer>> top = this.smallSetWithOverlap.mostFrequent(3);
+    t.checkExpect(top.size(), 3);
+    t.checkExpect(top.get(0).first.getValue(), 8);
+    t.checkExpect(top.get(0).second, 2);
+    t.checkExpect(top.get(1).first.getValue(), 2);
+    t.checkExpect(top.get(2).first.getValue(), 3);
+
+    // asking for more than there are gives every item
+    t.checkExpect(this.smallSetWithOverlap.mostFrequent(10).size(), 5);
+    t.checkExpect(this.mtSet.mostFrequent(10).size(), 0);
+
+    // removing an 8 ties it with the rest
+    this.smallSetWithOverlap.remove(new CustomInt(8));
+    t.checkExpect(this.smallSetWithOverlap.mostFrequent(1).get(0).first.getValue(), 2);
+
+    // adding 9 three times moves it to the front
+    this.smallSetWithOverlap.add(new CustomInt(9));
+    this.smallSetWithOverlap.add(new CustomInt(9));
+    this.smallSetWithOverlap.add(new CustomInt(9));
+    t.checkExpect(this.smallSetWithOverlap.mostFrequent(1).get(0).first.getValue(), 9);
+    t.checkExpect(this.smallSetWithOverlap.mostFrequent(1).get(0).second, 4);
+  }
+
+  // test finding the items that appear at least a given number of times
+  void testCountAtLeast(Tester t) {
+    this.initData();
+
+    t.checkExpect(this.bigSet.countAtLeast(2).size(), 1);
+    t.checkExpect(this.bigSet.countAtLeast(2).get(0).first.getValue(), 4);
+    t.checkExpect(this.bigSet.countAtLeast(1).size(), 13);
+    t.checkExpect(this.bigSet.countAtLeast(3).size(), 0);
+    t.checkExpect(this.mtSet.countAtLeast(1).size(), 0);
+
+    this.bigSet.remove(new CustomInt(4));
+    t.checkExpect(this.bigSet.countAtLeast(2).size(), 0);
+  }
+
+  // test finding the rank of items by how frequent they are
+  void testFrequencyRank(Tester t) {
+    this.initData();
+
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(8)), 0);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(2)), 1);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(9)), 4);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(7)), -1);
+
+    // removing an item entirely drops it from the ranking
+    this.smallSetWithOverlap.remove(new CustomInt(2));
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(2)), -1);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(3)), 1);
+  }
+
+  // test that the tree's own insert and delete keep the index by count up to date
+  void testTreeInsertAndDelete(Tester t) {
+    this.initData();
+
+    this.smallSetWithOverlap.insert(new Pair<CustomInt, Integer>(new CustomInt(9), 3));
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(9)), 4);
+    t.checkExpect(this.smallSetWithOverlap.size(), 5);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(9)), 0);
+    t.checkExpect(this.smallSetWithOverlap.mostFrequent(1).get(0).second, 4);
+
+    this.smallSetWithOverlap.insert(new Pair<CustomInt, Integer>(new CustomInt(7), 1));
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(7)), 5);
+    t.checkException(new IllegalArgumentException("The counts must be positive."),
+        this.smallSetWithOverlap, "insert", new Pair<CustomInt, Integer>(new CustomInt(1), 0));
+
+    // deleting takes the item out entirely, whatever count the pair has
+    this.smallSetWithOverlap.delete(new Pair<CustomInt, Integer>(new CustomInt(9), 1));
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(9)), 0);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(9)), -1);
+    t.checkExpect(this.smallSetWithOverlap.frequencyRank(new CustomInt(8)), 0);
+    t.checkExpect(this.smallSetWithOverlap.distinctCount(), 5);
+    this.smallSetWithOverlap.delete(new Pair<CustomInt, Integer>(new CustomInt(100), 1));
+    t.checkExpect(this.smallSetWithOverlap.distinctCount(), 5);
+  }
+
+  // test that the count index agrees with a full sort of a larger multiset
+  void testCountIndexAgreesWithSort(Tester t) {
+    IncrementingIntegers ints = new IncrementingIntegers();
+    OrderableMultiSet<Integer> set = new OrderableMultiSet<Integer>(ints);
+    for (int i = 0; i < 3000; i += 1) {
+      set.add((i * 37) % 101 % (1 + i % 17));
+      if (i % 5 == 0) {
+        set.remove(i % 7);
+      }
+    }
+
+    ArrayList<Pair<Integer, Integer>> all = new ArrayList<Pair<Integer, Integer>>();
+    for (Pair<Integer, Integer> pair : set) {
+      all.add(pair);
+    }
+    all.sort(new java.util.Comparator<Pair<Integer, Integer>>() {
+      public int compare(Pair<Integer, Integer> left, Pair<Integer, Integer> right) {
+        if (!left.second.equals(right.second)) {
+          return right.second - left.second;
+        }
+        return left.first - right.first;
+      }
+    });
+
+    boolean agrees = set.mostFrequent(all.size() + 1).size() == all.size();
+    for (int i = 0; i < all.size(); i += 1) {
+      agrees = agrees && set.frequencyRank(all.get(i).first) == i
+          && set.mostFrequent(i + 1).get(i).first.equals(all.get(i).first);
+    }
+    t.checkExpect(agrees, true);
+  }
+
+  // test merging multisets together in bulk
+  void testMergeFrom(Tester t) {
+    this.initData();
+
+    // merging two multisets with the same order walks both at once
+    this.bigSet.mergeFrom(this.smallSetWithOverlap);
+    t.checkExpect(this.bigSet.itemCount(new CustomInt(8)), 3);
+    t.checkExpect(this.bigSet.itemCount(new CustomInt(4)), 2);
+    t.checkExpect(this.bigSet.itemCount(new CustomInt(6)), 2);
+    t.checkExpect(this.bigSet.itemCount(new CustomInt(77)), 1);
+    t.checkExpect(this.bigSet.size(), 13);
+    t.checkExpect(this.bigSet.distinctCount(), 13);
+    t.checkExpect(this.bigSet.mostFrequent(1).get(0).first.getValue(), 8);
+    t.checkExpect(this.bigSet.get(0).first.getValue(), 0);
+    t.checkExpect(this.bigSet.get(12).first.getValue(), 77);
+
+    // the merged-in multiset is left alone
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(8)), 2);
+    this.bigSet.add(new CustomInt(8));
+    t.checkExpect(this.smallSetWithOverlap.itemCount(new CustomInt(8)), 2);
+
+    // merging into an empty multiset copies the other one
+    this.mtSet.mergeFrom(this.smallSet);
+    t.checkExpect(this.mtSet.equals(this.smallSet), true);
+
+    // merging an empty multiset changes nothing
+    this.smallSet.mergeFrom(new OrderableMultiSet<CustomInt>(this.incInts));
+    t.checkExpect(this.smallSet.equals(this.reorderedSmallSet), true);
+  }
+
+  // test merging a multiset that isn't ordered the same way
+  void testMergeFromOtherMultiSet(Tester t) {
+    IncrementingIntegers ints = new IncrementingIntegers();
+    OrderableMultiSet<Integer> set = new OrderableMultiSet<Integer>(ints);
+    set.add(1);
+    CountingMultiSet<Integer> counts = new CountingMultiSet<Integer>(ints);
+    counts.add(1, 4);
+    counts.add(2, 3);
+
+    set.mergeFrom(counts);
+    t.checkExpect(set.itemCount(1), 5);
+    t.checkExpect(set.itemCount(2), 3);
+    t.checkExpect(set.frequencyRank(1), 0);
+
+    // a different comparator object is only trusted to be the same order when the caller
+    // says so
+    OrderableMultiSet<Integer> other = new OrderableMultiSet<Integer>(
+        new IncrementingIntegers());
+    other.add(2, 4);
+    other.add(3);
+    set.mergeFrom(other, true);
+    t.checkExpect(set.itemCount(2), 7);
+    t.checkExpect(set.itemCount(3), 1);
+    t.checkExpect(set.distinctCount(), 3);
+    t.checkExpect(set.mostFrequent(1).get(0).first, 2);
+    set.mergeFrom(other);
+    t.checkExpect(set.itemCount(2), 11);
+    t.checkExpect(set.get(2).first, 3);
+
+    // saying so wrongly is caught, and leaves the multiset as it was
+    OrderableMultiSet<Long> up = new OrderableMultiSet<Long>(new IncreasingLongs());
+    up.add(1L);
+    up.add(2L, 2);
+    up.add(3L);
+    OrderableMultiSet<Long> down = new OrderableMultiSet<Long>(new DecreasingLongs());
+    down.add(2L);
+    down.add(5L);
+    down.add(7L);
+    t.checkException(new IllegalArgumentException(
+        "The items are not in strictly increasing order."), up, "mergeFrom", down, true);
+    t.checkExpect(up.itemCount(2L), 2);
+    t.checkExpect(up.itemCount(5L), 0);
+    t.checkExpect(up.distinctCount(), 3);
+    t.checkExpect(up.mostFrequent(1).get(0).first, 2L);
+  }
+
+  // test collecting a parallel stream into a multiset
+  void testCollectParallel(Tester t) {
+    IncrementingIntegers ints = new IncrementingIntegers();
+    OrderableMultiSet<Integer> collected = IntStream.range(0, 20000).parallel()
+        .map(i -> i % 97).boxed().collect(new ToMultiSet<Integer>(ints));
+
+    OrderableMultiSet<Integer> expected = new OrderableMultiSet<Integer>(ints);
+    for (int i = 0; i < 97; i += 1) {
+      expected.add(i, i < 20000 % 97 ? 20000 / 97 + 1 : 20000 / 97);
+    }
+
+    t.checkExpect(collected.equals(expected), true);
+    t.checkExpect(collected.distinctCount(), 97);
+    t.checkExpect(collected.mostFrequent(1).get(0).second, 20000 / 97 + 1);
+  }
+
   // test whether sets are equal under the correct circumstances
   void testEquality(Tester t) {
     this.initData();
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import tester.*;
+
+// map, filter and reduce over ILists, run in parallel on a fork-join pool.
+// The list is first copied into an array, which is then split in half over and over until the
+// pieces are no bigger than the grain size, and the pieces are worked on by the pool's threads.
+// Results keep the order of the original list. This only pays off when the function applied to
+// each element is expensive; for cheap functions the sequential IList operations are faster.
+class ParallelLists<T> {
+
+  // the pool that runs the tasks
+  ForkJoinPool pool;
+
+  // the most elements a single task will work on without splitting
+  int grain;
+
+  // constructor
+  ParallelLists(ForkJoinPool pool, int grain) {
+    if (grain <= 0) {
+      throw new IllegalArgumentException("The grain size must be positive.");
+    }
+    this.pool = pool;
+    this.grain = grain;
+  }
+
+  // convenience constructor that uses the common pool and pieces of 1024 elements
+  ParallelLists() {
+    this(ForkJoinPool.commonPool(), 1024);
+  }
+
+  // returns a list of the given function applied to every element of the given list, in order
+  <U> IList<U> map(IList<T> list, IFunc<T, U> f) {
+    Object[] items = this.toArray(list);
+    Object[] results = new Object[items.length];
+    this.pool.invoke(new MapChunk<T, U>(items, results, f, 0, items.length, this.grain));
+    return this.toList(results, null);
+  }
+
+  // returns a list of only the elements of the given list that satisfy the given predicate,
+  // in order
+  IList<T> filter(IList<T> list, IPred<T> pred) {
+    Object[] items = this.toArray(list);
+    boolean[] keep = new boolean[items.length];
+    this.pool.invoke(new FilterChunk<T>(items, keep, pred, 0, items.length, this.grain));
+    return this.toList(items, keep);
+  }
+
+  // combines every element of the given list into one value: each piece of the list is
+  // folded from left to right with the accumulator, starting from the identity, and the
+  // results of neighboring pieces are joined with the combiner.
+  // This gives the same result as a sequential left fold as long as the combiner is
+  // associative, the identity really is one (combining it with any value gives that value),
+  // and the accumulator agrees with the combiner
+  <U> U reduce(IList<T> list, IFunc2<U, T, U> accumulator, U identity,
+      IFunc2<U, U, U> combiner) {
+    Object[] items = this.toArray(list);
+    return this.pool.invoke(new ReduceChunk<T, U>(items, accumulator, identity, combiner,
+        0, items.length, this.grain));
+  }
+
+  // returns an array of the elements of the given list, in order
+  Object[] toArray(IList<T> list) {
+    ArrayList<Object> items = new ArrayList<Object>();
+    for (T item : list) {
+      items.add(item);
+    }
+    return items.toArray();
+  }
+
+  // returns a list of the given elements, in order, skipping the ones that aren't kept
+  // (if there are no keep flags, every element is kept)
+  <U> IList<U> toList(Object[] items, boolean[] keep) {
+    IList<U> result = new MtList<U>();
+    for (int i = items.length - 1; i >= 0; i -= 1) {
+      if (keep == null || keep[i]) {
+        // the cast is safe, because the array was filled from a list of U's
+        @SuppressWarnings("unchecked")
+        U item = (U) items[i];
+        result = new ConsList<U>(item, result);
+      }
+    }
+    return result;
+  }
+}
+
+// applies a function to a range of an array, writing the results into the same range of
+// another array, splitting the range in half until it's no bigger than the grain size
+class MapChunk<T, U> extends RecursiveAction {
+
+  // fork-join tasks are Serializable, so this names the version of this class's serial form
+  private static final long serialVersionUID = 1L;
+
+  // the elements to apply the function to, and where their results go
+  Object[] items;
+  Object[] results;
+
+  // the function to apply
+  IFunc<T, U> func;
+
+  // the range of indices to work on, from low (inclusive) to high (exclusive)
+  int low;
+  int high;
+
+  // the most elements to work on without splitting
+  int grain;
+
+  // constructor
+  MapChunk(Object[] items, Object[] results, IFunc<T, U> func, int low, int high, int grain) {
+    this.items = items;
+    this.results = results;
+    this.func = func;
+    this.low = low;
+    this.high = high;
+    this.grain = grain;
+  }
+
+  // EFFECT: fills in the results for this range
+  protected void compute() {
+    if (this.high - this.low <= this.grain) {
+      for (int i = this.low; i < this.high; i += 1) {
+        // the cast is safe, because the array was filled from a list of T's
+        @SuppressWarnings("unchecked")
+        T item = (T) this.items[i];
+        this.results[i] = this.func.apply(item);
+      }
+    } else {
+      int mid = (this.low + this.high) >>> 1;
+      invokeAll(new MapChunk<T, U>(this.items, this.results, this.func, this.low, mid,
+          this.grain),
+          new MapChunk<T, U>(this.items, this.results, this.func, mid, this.high, this.grain));
+    }
+  }
+}
+
+// tests a predicate on a range of an array, recording which elements satisfy it, splitting
+// the range in half until it's no bigger than the grain size
+class FilterChunk<T> extends RecursiveAction {
+
+  // the version of this class's serial form, as in MapChunk
+  private static final long serialVersionUID = 1L;
+
+  // the elements to test, and whether each one is kept
+  Object[] items;
+  boolean[] keep;
+
+  // the predicate to test
+  IPred<T> pred;
+
+  // the range of indices to work on, from low (inclusive) to high (exclusive)
+  int low;
+  int high;
+
+  // the most elements to work on without splitting
+  int grain;
+
+  // constructor
+  FilterChunk(Object[] items, boolean[] keep, IPred<T> pred, int low, int high, int grain) {
+    this.items = items;
+    this.keep = keep;
+    this.pred = pred;
+    this.low = low;
+    this.high = high;
+    this.grain = grain;
+  }
+
+  // EFFECT: fills in the keep flags for this range
+  protected void compute() {
+    if (this.high - this.low <= this.grain) {
+      for (int i = this.low; i < this.high; i += 1) {
+        // the cast is safe, because the array was filled from a list of T's
+        @SuppressWarnings("unchecked")
+        T item = (T) this.items[i];
+        this.keep[i] = this.pred.apply(item);
+      }
+    } else {
+      int mid = (this.low + this.high) >>> 1;
+      invokeAll(new FilterChunk<T>(this.items, this.keep, this.pred, this.low, mid, this.grain),
+          new FilterChunk<T>(this.items, this.keep, this.pred, mid, this.high, this.grain));
+    }
+  }
+}
+
+// reduces a range of an array to one value, splitting the range in half until it's no bigger
+// than the grain size, folding each piece from left to right and combining the halves in order
+class ReduceChunk<T, U> extends RecursiveTask<U> {
+
+  // the version of this class's serial form, as in MapChunk
+  private static final long serialVersionUID = 1L;
+
+  // the elements to reduce
+  Object[] items;
+
+  // folds one more element into a piece's result
+  IFunc2<U, T, U> accumulator;
+
+  // the value each piece's fold starts from
+  U identity;
+
+  // joins the results of two neighboring pieces
+  IFunc2<U, U, U> combiner;
+
+  // the range of indices to work on, from low (inclusive) to high (exclusive)
+  int low;
+  int high;
+
+  // the most elements to work on without splitting
+  int grain;
+
+  // constructor
+  ReduceChunk(Object[] items, IFunc2<U, T, U> accumulator, U identity, IFunc2<U, U, U> combiner,
+      int low, int high, int grain) {
+    this.items = items;
+    this.accumulator = accumulator;
+    this.identity = identity;
+    this.combiner = combiner;
+    this.low = low;
+    this.high = high;
+    this.grain = grain;
+  }
+
+  // returns the reduction of this range
+  protected U compute() {
+    if (this.high - this.low <= this.grain) {
+      U result = this.identity;
+      for (int i = this.low; i < this.high; i += 1) {
+        // the cast is safe, because the array was filled from a list of T's
+        @SuppressWarnings("unchecked")
+        T item = (T) this.items[i];
+        result = this.accumulator.apply(result, item);
+      }
+      return result;
+    }
+
+    int mid = (this.low + this.high) >>> 1;
+    ReduceChunk<T, U> left = new ReduceChunk<T, U>(this.items, this.accumulator, this.identity,
+        this.combiner, this.low, mid, this.grain);
+    ReduceChunk<T, U> right = new ReduceChunk<T, U>(this.items, this.accumulator, this.identity,
+        this.combiner, mid, this.high, this.grain);
+    left.fork();
+    U rightResult = right.compute();
+    return this.combiner.apply(left.join(), rightResult);
+  }
+}
+
+// adds an integer onto a running sum
+class AddToSum implements IFunc2<Integer, Integer, Integer> {
+  public Integer apply(Integer sum, Integer num) {
+    return sum + num;
+  }
+}
+
+// appends a string onto the end of another, which is associative but not commutative
+class ConcatStrings implements IFunc2<String, String, String> {
+  public String apply(String front, String back) {
+    return front + back;
+  }
+}
+
+// a class for testing parallel list functionality
+class ExamplesParallelLists {
+
+  // the common pool, with pieces small enough that the tests split many times
+  ParallelLists<Integer> par = new ParallelLists<Integer>(ForkJoinPool.commonPool(), 16);
+
+  // test that parallel map and filter agree with the sequential versions, in order
+  void testMapAndFilter(Tester t) {
+    IList<Integer> list = ListFixtures.range(1000);
+
+    t.checkExpect(this.par.map(list, new AddOne()), list.map(new AddOne()));
+    t.checkExpect(this.par.map(list, new ShowInt()), list.map(new ShowInt()));
+    t.checkExpect(this.par.filter(list, new Even()), list.filter(new Even()));
+    t.checkExpect(this.par.map(new MtList<Integer>(), new AddOne()), new MtList<Integer>());
+    t.checkExpect(this.par.filter(ListFixtures.range(5), new Negative()), new MtList<Integer>());
+  }
+
+  // test that parallel reduce agrees with a sequential fold, including for an operation whose
+  // result depends on the order of the elements
+  void testReduce(Tester t) {
+    IList<Integer> list = ListFixtures.range(1000);
+
+    t.checkExpect(this.par.reduce(list, new AddToSum(), 0, new AddToSum()), 499500);
+    t.checkExpect(this.par.reduce(new MtList<Integer>(), new AddToSum(), 0, new AddToSum()), 0);
+
+    IList<String> digits = ListFixtures.range(500).map(new ShowInt());
+    String sequential = "";
+    for (String digit : digits) {
+      sequential = sequential + digit;
+    }
+    ParallelLists<String> strings = new ParallelLists<String>(ForkJoinPool.commonPool(), 7);
+    t.checkExpect(strings.reduce(digits, new ConcatStrings(), "", new ConcatStrings()),
+        sequential);
+  }
+
+  // test that a bad grain size is rejected
+  void testGrain(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException("The grain size must be positive."),
+        "ParallelLists", ForkJoinPool.commonPool(), 0);
+  }
+}
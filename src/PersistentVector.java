@@ -0,0 +1,461 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
+/*
+ * A persistent vector keeps its elements in a tree where every internal node is an array of
+ * up to 32 children and every leaf is an array of 32 elements. The bits of an element's index
+ * say where it is: the lowest 5 bits pick its place in its leaf, the next 5 pick the leaf's
+ * place in its parent, and so on up to the root. So getting an element is O(log32 n), which
+ * is at most 7 steps for any list that fits in an int.
+ *
+ * Changing an element copies only the arrays on the path from the root to its leaf, and the
+ * new version shares every other array with the old one. The newest (up to 32) elements are
+ * kept in a separate tail array, so adding to the end usually only copies the tail, and only
+ * every 32nd addition pushes a full tail down into the tree.
+ *
+ * Nothing is ever changed once a version has been made, so any number of threads can read a
+ * version at the same time without locking.
+ *
+ * (This is the design of Clojure's PersistentVector, by Rich Hickey)
+ */
+
+// an immutable list with O(log32 n) access to the element at any index, O(log32 n) updates
+// that return a new version, and O(1) amortized additions to the end
+class PersistentVector<T> implements IList<T> {
+
+  // the number of bits of an index used at each level of the tree
+  static final int BITS = 5;
+
+  // the number of children of each node (and elements of each leaf)
+  static final int WIDTH = 1 << BITS;
+
+  // the mask that picks out one level's bits of an index
+  static final int MASK = WIDTH - 1;
+
+  // the number of elements stored, including the dropped ones before the offset
+  final int count;
+
+  // how far the root's bits are shifted into an index
+  final int shift;
+
+  // the root of the tree holding every element before the tail
+  final Object[] root;
+
+  // the last (up to 32) elements
+  final Object[] tail;
+
+  // the number of elements at the front that have been dropped from this version
+  final int offset;
+
+  // constructor
+  // makes an empty vector
+  PersistentVector() {
+    this(0, BITS, new Object[WIDTH], new Object[0], 0);
+  }
+
+  // convenience constructor for a vector holding the elements of the given list, in order
+  PersistentVector(IList<T> list) {
+    PersistentVector<T> built = new PersistentVector<T>();
+    for (T item : list) {
+      built = built.add(item);
+    }
+    this.count = built.count;
+    this.shift = built.shift;
+    this.root = built.root;
+    this.tail = built.tail;
+    this.offset = 0;
+  }
+
+  // convenience constructor that specifies every field
+  PersistentVector(int count, int shift, Object[] root, Object[] tail, int offset) {
+    this.count = count;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+    this.offset = offset;
+  }
+
+  // visits the given IListVisitor, as an MtList if this vector is empty, or otherwise as a
+  // ConsList of the first element and a vector of the rest (which shares this one's arrays)
+  public <R> R accept(IListVisitor<T, R> f) {
+    if (this.length() == 0) {
+      return f.visitMtList(new MtList<T>());
+    } else {
+      return f.visitConsList(new ConsList<T>(this.get(0), this.drop(1)));
+    }
+  }
+
+  // applies the given function to every element of this vector
+  public <U> IList<U> map(IFunc<T, U> f) {
+    PersistentVector<U> result = new PersistentVector<U>();
+
+    for (T item : this) {
+      result = result.add(f.apply(item));
+    }
+
+    return result;
+  }
+
+  // returns the number of elements in this vector
+  public int length() {
+    return this.count - this.offset;
+  }
+
+  // applies a function to each successive element of this vector, starting with the base and
+  // the last element
+  public <U> U foldr(IFunc2<T, U, U> func, U base) {
+    U result = base;
+
+    for (int i = this.length() - 1; i >= 0; i -= 1) {
+      result = func.apply(this.get(i), result);
+    }
+
+    return result;
+  }
+
+  // returns whether or not any of the elements in this vector fulfill the truth condition of
+  // the given IPred
+  public boolean ormap(IPred<T> func) {
+    for (T item : this) {
+      if (func.apply(item)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // adds the given list to the end of this vector, one element at a time
+  public IList<T> append(IList<T> that) {
+    PersistentVector<T> result = this;
+
+    for (T item : that) {
+      result = result.add(item);
+    }
+
+    return result;
+  }
+
+  // returns a new version of this vector with the given element added to the end
+  public PersistentVector<T> add(T that) {
+    if (this.count - this.tailOffset() < WIDTH) {
+      Object[] newTail = new Object[this.tail.length + 1];
+      System.arraycopy(this.tail, 0, newTail, 0, this.tail.length);
+      newTail[this.tail.length] = that;
+      return new PersistentVector<T>(this.count + 1, this.shift, this.root, newTail, this.offset);
+    }
+
+    // the tail is full, so it becomes a leaf of the tree and a new tail is started
+    Object[] newRoot;
+    int newShift = this.shift;
+
+    if ((this.count >>> BITS) > (1 << this.shift)) {
+      // the tree is full too, so it gets a new root one level up
+      newRoot = new Object[WIDTH];
+      newRoot[0] = this.root;
+      newRoot[1] = this.newPath(this.shift, this.tail);
+      newShift += BITS;
+    } else {
+      newRoot = this.pushTail(this.shift, this.root, this.tail);
+    }
+
+    Object[] newTail = new Object[] {that};
+    return new PersistentVector<T>(this.count + 1, newShift, newRoot, newTail, this.offset);
+  }
+
+  // returns a filtered version of this vector including only elements that satisfy the given
+  // predicate
+  public IList<T> filter(IPred<T> pred) {
+    PersistentVector<T> result = new PersistentVector<T>();
+
+    for (T item : this) {
+      if (pred.apply(item)) {
+        result = result.add(item);
+      }
+    }
+
+    return result;
+  }
+
+  // does this vector contain the given element?
+  // NOTE: like ConsList, this uses REFERENCE EQUALITY to determine sameness
+  public boolean contains(T that) {
+    for (T item : this) {
+      if (item == that) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // returns an iterator over the elements of this vector, from first to last
+  public Iterator<T> iterator() {
+    return new PersistentVectorIterator<T>(this);
+  }
+
+  // returns the element at the given index of this vector, in O(log32 n)
+  // the cast is safe, because the leaves only ever hold T's
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    if (index < 0 || index >= this.length()) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this vector.");
+    }
+    int physical = index + this.offset;
+    return (T) this.leafFor(physical)[physical & MASK];
+  }
+
+  // returns a new version of this vector with the element at the given index replaced by the
+  // given one, sharing everything but the path to that element with this version
+  PersistentVector<T> set(int index, T value) {
+    if (index < 0 || index >= this.length()) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this vector.");
+    }
+    int physical = index + this.offset;
+
+    if (physical >= this.tailOffset()) {
+      Object[] newTail = this.tail.clone();
+      newTail[physical & MASK] = value;
+      return new PersistentVector<T>(this.count, this.shift, this.root, newTail, this.offset);
+    } else {
+      Object[] newRoot = this.assoc(this.shift, this.root, physical, value);
+      return new PersistentVector<T>(this.count, this.shift, newRoot, this.tail, this.offset);
+    }
+  }
+
+  // returns this vector without its first n elements, in O(1), sharing all of its arrays
+  PersistentVector<T> drop(int n) {
+    int dropped = Math.max(0, Math.min(n, this.length()));
+    return new PersistentVector<T>(this.count, this.shift, this.root, this.tail,
+        this.offset + dropped);
+  }
+
+  // returns the number of elements stored in the tree, before the tail
+  int tailOffset() {
+    return this.count - this.tail.length;
+  }
+
+  // returns the array holding the element at the given physical index
+  Object[] leafFor(int physical) {
+    if (physical >= this.tailOffset()) {
+      return this.tail;
+    }
+
+    Object[] node = this.root;
+    for (int level = this.shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(physical >>> level) & MASK];
+    }
+    return node;
+  }
+
+  // returns a copy of the given node, at the given level, with the given full tail added as
+  // the leaf after its last one
+  Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+    int subIndex = ((this.count - 1) >>> level) & MASK;
+    Object[] result = parent.clone();
+    Object[] toInsert;
+
+    if (level == BITS) {
+      toInsert = tailNode;
+    } else {
+      Object[] child = (Object[]) parent[subIndex];
+      if (child != null) {
+        toInsert = this.pushTail(level - BITS, child, tailNode);
+      } else {
+        toInsert = this.newPath(level - BITS, tailNode);
+      }
+    }
+
+    result[subIndex] = toInsert;
+    return result;
+  }
+
+  // returns a chain of new nodes from the given level down to the given leaf
+  Object[] newPath(int level, Object[] leaf) {
+    if (level == 0) {
+      return leaf;
+    }
+    Object[] result = new Object[WIDTH];
+    result[0] = this.newPath(level - BITS, leaf);
+    return result;
+  }
+
+  // returns a copy of the given node, at the given level, with the element at the given
+  // physical index replaced by the given value
+  Object[] assoc(int level, Object[] node, int physical, T value) {
+    Object[] result = node.clone();
+
+    if (level == 0) {
+      result[physical & MASK] = value;
+    } else {
+      int subIndex = (physical >>> level) & MASK;
+      result[subIndex] = this.assoc(level - BITS, (Object[]) node[subIndex], physical, value);
+    }
+
+    return result;
+  }
+}
+
+// an iterator over the elements of a persistent vector, from first to last, that looks up
+// each leaf once and then steps through its elements
+class PersistentVectorIterator<T> implements Iterator<T> {
+
+  // the vector being iterated over
+  PersistentVector<T> vector;
+
+  // the physical index of the next element
+  int physical;
+
+  // the leaf holding the next element
+  Object[] leaf;
+
+  // constructor
+  PersistentVectorIterator(PersistentVector<T> vector) {
+    this.vector = vector;
+    this.physical = vector.offset;
+    this.leaf = null;
+  }
+
+  // are there any elements left?
+  public boolean hasNext() {
+    return this.physical < this.vector.count;
+  }
+
+  // returns the next element
+  // EFFECT: moves on to the following element, and the following leaf if this one is done
+  public T next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The vector has no more elements.");
+    }
+    if (this.leaf == null || (this.physical & PersistentVector.MASK) == 0) {
+      this.leaf = this.vector.leafFor(this.physical);
+    }
+    // the cast is safe, because the leaves only ever hold T's
+    @SuppressWarnings("unchecked")
+    T data = (T) this.leaf[this.physical & PersistentVector.MASK];
+    this.physical += 1;
+    return data;
+  }
+}
+
+// a class for testing persistent vector functionality
+class ExamplesPersistentVector {
+
+  // returns a vector of the integers from 0 up to (but not including) the given number
+  PersistentVector<Integer> range(int n) {
+    PersistentVector<Integer> result = new PersistentVector<Integer>();
+    for (int i = 0; i < n; i += 1) {
+      result = result.add(i);
+    }
+    return result;
+  }
+
+  // test the list operations on a small vector
+  void testSmallVector(Tester t) {
+    PersistentVector<Integer> vector = this.range(4);
+    PersistentVector<Integer> empty = new PersistentVector<Integer>();
+
+    t.checkExpect(vector.length(), 4);
+    t.checkExpect(empty.length(), 0);
+    t.checkExpect(ListFixtures.countsUpFrom(vector.map(new AddOne()), 1), true);
+    t.checkExpect(vector.foldr(new SumInts(), 0), 6);
+    t.checkExpect(vector.ormap(new Odd()), true);
+    t.checkExpect(vector.ormap(new BiggerThanFive()), false);
+    t.checkExpect(vector.filter(new Even()).length(), 2);
+    t.checkExpect(vector.contains(vector.get(3)), true);
+    t.checkExpect(empty.contains(3), false);
+    t.checkExpect(ListFixtures.countsUpFrom(vector.append(new ConsList<Integer>(4,
+        new MtList<Integer>())), 0), true);
+    t.checkExpect(new PersistentVector<Integer>(new ConsList<Integer>(7,
+        new MtList<Integer>())).get(0), 7);
+    t.checkException(
+        new IndexOutOfBoundsException("The given index is out of bounds for this vector."),
+        vector, "get", 4);
+    t.checkException(
+        new IndexOutOfBoundsException("The given index is out of bounds for this vector."),
+        empty, "set", 0, 1);
+  }
+
+  // test getting and setting elements across several levels of the tree
+  void testGetAndSet(Tester t) {
+    int n = 40000; // more than 32 * 32 * 32, so there are three levels above the leaves
+    PersistentVector<Integer> vector = this.range(n);
+
+    t.checkExpect(vector.shift, 3 * PersistentVector.BITS);
+    t.checkExpect(ListFixtures.countsUpFrom(vector, 0), true);
+
+    boolean allFound = true;
+    for (int i = 0; i < n; i += 97) {
+      allFound = allFound && vector.get(i) == i;
+    }
+    t.checkExpect(allFound, true);
+
+    // setting an element gives a new version, and the old one keeps its element
+    PersistentVector<Integer> changed = vector.set(12345, -1).set(n - 1, -2);
+    t.checkExpect(changed.get(12345), -1);
+    t.checkExpect(changed.get(n - 1), -2);
+    t.checkExpect(vector.get(12345), 12345);
+    t.checkExpect(vector.get(n - 1), n - 1);
+
+    // the versions share every leaf that wasn't on a changed path
+    t.checkExpect(changed.leafFor(0) == vector.leafFor(0), true);
+    t.checkExpect(changed.leafFor(12345) == vector.leafFor(12345), false);
+  }
+
+  // test that adding to an old version doesn't disturb newer versions
+  void testPersistence(Tester t) {
+    PersistentVector<Integer> base = this.range(32);
+    PersistentVector<Integer> first = base.add(100);
+    PersistentVector<Integer> second = base.add(200);
+
+    t.checkExpect(base.length(), 32);
+    t.checkExpect(first.get(32), 100);
+    t.checkExpect(second.get(32), 200);
+  }
+
+  // test dropping elements from the front, which visitors rely on
+  void testDropAndVisit(Tester t) {
+    PersistentVector<Integer> vector = this.range(101);
+
+    t.checkExpect(vector.drop(1).get(0), 1);
+    t.checkExpect(vector.drop(100).length(), 1);
+    t.checkExpect(vector.drop(500).length(), 0);
+    t.checkExpect(ListFixtures.countsUpFrom(vector.drop(40), 40), true);
+    t.checkExpect(vector.drop(40).add(101).get(61), 101);
+    t.checkExpect(vector.accept(new SumVisitor()), 5050);
+    t.checkExpect(new PersistentVector<Integer>().accept(new SumVisitor()), 0);
+  }
+
+  // test that many threads can read the same version at once
+  void testConcurrentReads(Tester t) {
+    PersistentVector<Integer> vector = this.range(50000);
+    ArrayList<Thread> readers = new ArrayList<Thread>();
+    long[] sums = new long[4];
+
+    for (int r = 0; r < sums.length; r += 1) {
+      int reader = r;
+      Thread thread = new Thread(() -> {
+        for (Integer item : vector) {
+          sums[reader] += item;
+        }
+      });
+      readers.add(thread);
+      thread.start();
+    }
+    for (Thread thread : readers) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    boolean allAgree = true;
+    for (long sum : sums) {
+      allAgree = allAgree && sum == 50000L * 49999 / 2;
+    }
+    t.checkExpect(allAgree, true);
+  }
+}
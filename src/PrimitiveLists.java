@@ -0,0 +1,576 @@
+import java.util.Arrays;
+import tester.*;
+
+// represents a function from an int to an int
+interface IIntFunc {
+
+  // apply this function to the given number
+  int apply(int num);
+}
+
+// represents a function from two ints to an int
+interface IIntFunc2 {
+
+  // apply this function to the given numbers
+  int apply(int num1, int num2);
+}
+
+// represents a question asked about an int
+interface IIntPred {
+
+  // apply this predicate to the given number
+  boolean apply(int num);
+}
+
+// represents a function from anything to an int
+interface IToIntFunc<T> {
+
+  // apply this function to the given argument
+  int apply(T arg);
+}
+
+// represents a function from a double to a double
+interface IDoubleFunc {
+
+  // apply this function to the given number
+  double apply(double num);
+}
+
+// represents a function from two doubles to a double
+interface IDoubleFunc2 {
+
+  // apply this function to the given numbers
+  double apply(double num1, double num2);
+}
+
+// represents a question asked about a double
+interface IDoublePred {
+
+  // apply this predicate to the given number
+  boolean apply(double num);
+}
+
+// represents a function from anything to a double
+interface IToDoubleFunc<T> {
+
+  // apply this function to the given argument
+  double apply(T arg);
+}
+
+// an immutable list of ints, stored in an array of exactly the right length.
+// Unlike an IList<Integer>, no element is ever boxed, and neither is the running result of a
+// fold, so numeric pipelines over these lists allocate only the arrays they return.
+class IntList {
+
+  // the numbers in this list, in order; nothing ever changes this array
+  private final int[] items;
+
+  // constructor
+  // the list of the given numbers; the array is copied, so changing it afterwards doesn't
+  // change this list
+  IntList(int[] items) {
+    this(Arrays.copyOf(items, items.length), items.length);
+  }
+
+  // convenience constructor that converts a list of Integers
+  IntList(IList<Integer> list) {
+    this.items = new MapToInt<Integer>(new UnboxInt()).apply(list).items;
+  }
+
+  // constructor
+  // the list of the first count numbers of the given array, which it takes over without
+  // copying when the array holds exactly that many
+  private IntList(int[] items, int count) {
+    if (count == items.length) {
+      this.items = items;
+    } else {
+      this.items = Arrays.copyOf(items, count);
+    }
+  }
+
+  // returns the list of the numbers in the given array, which it takes over without copying,
+  // so nothing may change the array afterwards
+  static IntList wrap(int[] items) {
+    return new IntList(items, items.length);
+  }
+
+  // returns the number of elements in this list
+  int size() {
+    return this.items.length;
+  }
+
+  // returns the number at the given index
+  int get(int index) {
+    if (index < 0 || index >= this.items.length) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+    return this.items[index];
+  }
+
+  // returns a list of the given function applied to every number of this list
+  IntList map(IIntFunc f) {
+    int[] result = new int[this.items.length];
+    for (int i = 0; i < result.length; i += 1) {
+      result[i] = f.apply(this.items[i]);
+    }
+    return IntList.wrap(result);
+  }
+
+  // returns a list of only the numbers of this list that satisfy the given predicate
+  IntList filter(IIntPred pred) {
+    int[] kept = new int[this.items.length];
+    int count = 0;
+    for (int num : this.items) {
+      if (pred.apply(num)) {
+        kept[count] = num;
+        count += 1;
+      }
+    }
+    return new IntList(kept, count);
+  }
+
+  // applies the given function to the result so far and each number of this list, from
+  // the first number to the last, starting with the base
+  int foldl(IIntFunc2 func, int base) {
+    int result = base;
+    for (int num : this.items) {
+      result = func.apply(result, num);
+    }
+    return result;
+  }
+
+  // applies the given function to each number of this list and the result so far, from
+  // the last number to the first, starting with the base
+  int foldr(IIntFunc2 func, int base) {
+    int result = base;
+    for (int i = this.items.length - 1; i >= 0; i -= 1) {
+      result = func.apply(this.items[i], result);
+    }
+    return result;
+  }
+
+  // returns the sum of the numbers in this list
+  // the sum is a long, so that it doesn't overflow for long lists of big numbers
+  long sum() {
+    long total = 0;
+    for (int num : this.items) {
+      total += num;
+    }
+    return total;
+  }
+
+  // returns the smallest number in this list
+  int min() {
+    this.checkNotEmpty();
+    int least = this.items[0];
+    for (int num : this.items) {
+      least = Math.min(least, num);
+    }
+    return least;
+  }
+
+  // returns the largest number in this list
+  int max() {
+    this.checkNotEmpty();
+    int most = this.items[0];
+    for (int num : this.items) {
+      most = Math.max(most, num);
+    }
+    return most;
+  }
+
+  // EFFECT: throws an exception if this list is empty
+  void checkNotEmpty() {
+    if (this.items.length == 0) {
+      throw new IllegalStateException("The list is empty.");
+    }
+  }
+
+  // returns a list of the numbers of this list as doubles
+  DoubleList asDoubles() {
+    double[] result = new double[this.items.length];
+    for (int i = 0; i < result.length; i += 1) {
+      result[i] = this.items[i];
+    }
+    return DoubleList.wrap(result);
+  }
+
+  // returns a list of the numbers of this list as Integers
+  IList<Integer> toList() {
+    IList<Integer> result = new MtList<Integer>();
+    for (int i = this.items.length - 1; i >= 0; i -= 1) {
+      result = new ConsList<Integer>(this.items[i], result);
+    }
+    return result;
+  }
+}
+
+// an immutable list of doubles, stored in an array of exactly the right length.
+// Unlike an IList<Double>, no element is ever boxed, and neither is the running result of a
+// fold, so numeric pipelines over these lists allocate only the arrays they return.
+class DoubleList {
+
+  // the numbers in this list, in order; nothing ever changes this array
+  private final double[] items;
+
+  // constructor
+  // the list of the given numbers; the array is copied, so changing it afterwards doesn't
+  // change this list
+  DoubleList(double[] items) {
+    this(Arrays.copyOf(items, items.length), items.length);
+  }
+
+  // convenience constructor that converts a list of Doubles
+  DoubleList(IList<Double> list) {
+    this.items = new MapToDouble<Double>(new UnboxDouble()).apply(list).items;
+  }
+
+  // constructor
+  // the list of the first count numbers of the given array, which it takes over without
+  // copying when the array holds exactly that many
+  private DoubleList(double[] items, int count) {
+    if (count == items.length) {
+      this.items = items;
+    } else {
+      this.items = Arrays.copyOf(items, count);
+    }
+  }
+
+  // returns the list of the numbers in the given array, which it takes over without copying,
+  // so nothing may change the array afterwards
+  static DoubleList wrap(double[] items) {
+    return new DoubleList(items, items.length);
+  }
+
+  // returns the number of elements in this list
+  int size() {
+    return this.items.length;
+  }
+
+  // returns the number at the given index
+  double get(int index) {
+    if (index < 0 || index >= this.items.length) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+    return this.items[index];
+  }
+
+  // returns a list of the given function applied to every number of this list
+  DoubleList map(IDoubleFunc f) {
+    double[] result = new double[this.items.length];
+    for (int i = 0; i < result.length; i += 1) {
+      result[i] = f.apply(this.items[i]);
+    }
+    return DoubleList.wrap(result);
+  }
+
+  // returns a list of only the numbers of this list that satisfy the given predicate
+  DoubleList filter(IDoublePred pred) {
+    double[] kept = new double[this.items.length];
+    int count = 0;
+    for (double num : this.items) {
+      if (pred.apply(num)) {
+        kept[count] = num;
+        count += 1;
+      }
+    }
+    return new DoubleList(kept, count);
+  }
+
+  // applies the given function to the result so far and each number of this list, from
+  // the first number to the last, starting with the base
+  double foldl(IDoubleFunc2 func, double base) {
+    double result = base;
+    for (double num : this.items) {
+      result = func.apply(result, num);
+    }
+    return result;
+  }
+
+  // applies the given function to each number of this list and the result so far, from
+  // the last number to the first, starting with the base
+  double foldr(IDoubleFunc2 func, double base) {
+    double result = base;
+    for (int i = this.items.length - 1; i >= 0; i -= 1) {
+      result = func.apply(this.items[i], result);
+    }
+    return result;
+  }
+
+  // returns the sum of the numbers in this list, added from the first to the last
+  double sum() {
+    double total = 0;
+    for (double num : this.items) {
+      total += num;
+    }
+    return total;
+  }
+
+  // returns the smallest number in this list
+  double min() {
+    this.checkNotEmpty();
+    double least = this.items[0];
+    for (double num : this.items) {
+      least = Math.min(least, num);
+    }
+    return least;
+  }
+
+  // returns the largest number in this list
+  double max() {
+    this.checkNotEmpty();
+    double most = this.items[0];
+    for (double num : this.items) {
+      most = Math.max(most, num);
+    }
+    return most;
+  }
+
+  // EFFECT: throws an exception if this list is empty
+  void checkNotEmpty() {
+    if (this.items.length == 0) {
+      throw new IllegalStateException("The list is empty.");
+    }
+  }
+
+  // returns a list of the numbers of this list as Doubles
+  IList<Double> toList() {
+    IList<Double> result = new MtList<Double>();
+    for (int i = this.items.length - 1; i >= 0; i -= 1) {
+      result = new ConsList<Double>(this.items[i], result);
+    }
+    return result;
+  }
+}
+
+// turns a list of anything into an IntList, by applying a function to each element
+class MapToInt<T> implements IFunc<IList<T>, IntList> {
+
+  // the function that turns each element into an int
+  IToIntFunc<T> func;
+
+  // constructor
+  MapToInt(IToIntFunc<T> func) {
+    this.func = func;
+  }
+
+  // returns the IntList of the function applied to every element of the given list, in order
+  // the array grows by doubling, since the length of the list isn't known up front
+  public IntList apply(IList<T> list) {
+    int[] result = new int[16];
+    int count = 0;
+    for (T item : list) {
+      if (count == result.length) {
+        result = Arrays.copyOf(result, count * 2);
+      }
+      result[count] = this.func.apply(item);
+      count += 1;
+    }
+    return IntList.wrap(Arrays.copyOf(result, count));
+  }
+}
+
+// turns a list of anything into a DoubleList, by applying a function to each element
+class MapToDouble<T> implements IFunc<IList<T>, DoubleList> {
+
+  // the function that turns each element into a double
+  IToDoubleFunc<T> func;
+
+  // constructor
+  MapToDouble(IToDoubleFunc<T> func) {
+    this.func = func;
+  }
+
+  // returns the DoubleList of the function applied to every element of the given list, in
+  // order
+  // the array grows by doubling, since the length of the list isn't known up front
+  public DoubleList apply(IList<T> list) {
+    double[] result = new double[16];
+    int count = 0;
+    for (T item : list) {
+      if (count == result.length) {
+        result = Arrays.copyOf(result, count * 2);
+      }
+      result[count] = this.func.apply(item);
+      count += 1;
+    }
+    return DoubleList.wrap(Arrays.copyOf(result, count));
+  }
+}
+
+// unboxes an Integer
+class UnboxInt implements IToIntFunc<Integer> {
+  public int apply(Integer num) {
+    return num;
+  }
+}
+
+// unboxes a Double
+class UnboxDouble implements IToDoubleFunc<Double> {
+  public double apply(Double num) {
+    return num;
+  }
+}
+
+// returns the length of a string
+class StringLength implements IToIntFunc<String> {
+  public int apply(String str) {
+    return str.length();
+  }
+}
+
+// squares an int
+class SquareInt implements IIntFunc {
+  public int apply(int num) {
+    return num * num;
+  }
+}
+
+// adds two ints
+class AddInts implements IIntFunc2 {
+  public int apply(int num1, int num2) {
+    return num1 + num2;
+  }
+}
+
+// subtracts the second int from the first, which gives different answers for foldl and foldr
+class SubtractInts implements IIntFunc2 {
+  public int apply(int num1, int num2) {
+    return num1 - num2;
+  }
+}
+
+// is the given int even?
+class EvenInt implements IIntPred {
+  public boolean apply(int num) {
+    return num % 2 == 0;
+  }
+}
+
+// halves a double
+class HalveDouble implements IDoubleFunc {
+  public double apply(double num) {
+    return num / 2;
+  }
+}
+
+// is the given double bigger than one?
+class BiggerThanOne implements IDoublePred {
+  public boolean apply(double num) {
+    return num > 1;
+  }
+}
+
+// returns the larger of two doubles
+class MaxDouble implements IDoubleFunc2 {
+  public double apply(double num1, double num2) {
+    return Math.max(num1, num2);
+  }
+}
+
+// a class for testing primitive list functionality
+class ExamplesPrimitiveLists {
+
+  IntList ints = new IntList(new int[] {3, 1, 4, 1, 5, 9, 2, 6});
+  DoubleList doubles = new DoubleList(new double[] {1.5, -2.0, 4.0, 0.5});
+  IntList noInts = new IntList(new int[] {});
+
+  IList<Integer> boxed = new ConsList<Integer>(3, new ConsList<Integer>(1,
+      new ConsList<Integer>(4, new MtList<Integer>())));
+
+  // test converting to and from lists of boxed numbers
+  void testConversions(Tester t) {
+    t.checkExpect(new IntList(this.boxed), new IntList(new int[] {3, 1, 4}));
+    t.checkExpect(new IntList(this.boxed).toList(), this.boxed);
+    t.checkExpect(new IntList(new MtList<Integer>()), this.noInts);
+    t.checkExpect(new DoubleList(this.doubles.toList()), this.doubles);
+    t.checkExpect(new IntList(new int[] {1, 2}).asDoubles(),
+        new DoubleList(new double[] {1.0, 2.0}));
+
+    IList<String> words = new ConsList<String>("hi", new ConsList<String>("there",
+        new MtList<String>()));
+    t.checkExpect(new MapToInt<String>(new StringLength()).apply(words),
+        new IntList(new int[] {2, 5}));
+
+    // the constructor copies its array, so changing the array doesn't change the list
+    int[] source = {7, 8};
+    IntList copied = new IntList(source);
+    source[0] = 0;
+    t.checkExpect(copied.get(0), 7);
+    // wrap takes the array over instead
+    t.checkExpect(IntList.wrap(source), new IntList(new int[] {0, 8}));
+    t.checkExpect(DoubleList.wrap(new double[] {0.5}), new DoubleList(new double[] {0.5}));
+  }
+
+  // test converting a list long enough that the array has to grow several times
+  void testLongConversion(Tester t) {
+    IList<Integer> list = new MtList<Integer>();
+    for (int i = 999; i >= 0; i -= 1) {
+      list = new ConsList<Integer>(i, list);
+    }
+    IntList converted = new IntList(list);
+    t.checkExpect(converted.size(), 1000);
+    t.checkExpect(converted.get(999), 999);
+    t.checkExpect(converted.sum(), 499500L);
+  }
+
+  // test map, filter and the folds on ints
+  void testIntOperations(Tester t) {
+    t.checkExpect(this.ints.map(new SquareInt()),
+        new IntList(new int[] {9, 1, 16, 1, 25, 81, 4, 36}));
+    t.checkExpect(this.ints.filter(new EvenInt()), new IntList(new int[] {4, 2, 6}));
+    t.checkExpect(this.noInts.filter(new EvenInt()), this.noInts);
+    t.checkExpect(this.ints.foldl(new AddInts(), 0), 31);
+    t.checkExpect(this.ints.foldr(new AddInts(), 0), 31);
+    // ((0 - 3) - 1) - 4 versus 3 - (1 - (4 - 0))
+    t.checkExpect(new IntList(this.boxed).foldl(new SubtractInts(), 0), -8);
+    t.checkExpect(new IntList(this.boxed).foldr(new SubtractInts(), 0), 6);
+    t.checkExpect(new IntList(this.boxed).foldr(new SubtractInts(), 0),
+        this.boxed.foldr(new SubtractIntegers(), 0));
+  }
+
+  // test sum, min and max
+  void testSummaries(Tester t) {
+    t.checkExpect(this.ints.sum(), 31L);
+    t.checkExpect(this.ints.min(), 1);
+    t.checkExpect(this.ints.max(), 9);
+    t.checkExpect(new IntList(new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE}).sum(),
+        2L * Integer.MAX_VALUE);
+    t.checkExpect(this.noInts.sum(), 0L);
+    t.checkException(new IllegalStateException("The list is empty."), this.noInts, "min");
+    t.checkException(new IllegalStateException("The list is empty."), this.noInts, "max");
+
+    t.checkExpect(this.doubles.sum(), 4.0);
+    t.checkExpect(this.doubles.min(), -2.0);
+    t.checkExpect(this.doubles.max(), 4.0);
+    t.checkException(new IllegalStateException("The list is empty."),
+        new DoubleList(new double[] {}), "max");
+  }
+
+  // test map, filter and the folds on doubles
+  void testDoubleOperations(Tester t) {
+    t.checkExpect(this.doubles.map(new HalveDouble()),
+        new DoubleList(new double[] {0.75, -1.0, 2.0, 0.25}));
+    t.checkExpect(this.doubles.filter(new BiggerThanOne()),
+        new DoubleList(new double[] {1.5, 4.0}));
+    t.checkExpect(this.doubles.foldl(new MaxDouble(), Double.NEGATIVE_INFINITY), 4.0);
+    t.checkExpect(this.doubles.foldr(new MaxDouble(), 10.0), 10.0);
+  }
+
+  // test indexing
+  void testGet(Tester t) {
+    t.checkExpect(this.ints.get(5), 9);
+    t.checkExpect(this.doubles.get(0), 1.5);
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this list."), this.ints, "get", 8);
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this list."), this.doubles, "get", -1);
+  }
+}
+
+// subtracts the second Integer from the first
+class SubtractIntegers implements IFunc2<Integer, Integer, Integer> {
+  public Integer apply(Integer num1, Integer num2) {
+    return num1 - num2;
+  }
+}
@@ -0,0 +1,455 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
+// a list of strings that knows its own length and total number of characters, and can have
+// strings added to either end in O(1) amortized time, be reversed in O(1), be indexed in
+// O(log n), and be appended to another SeqLoString or split in O(log n) once its strings are
+// in one tree (see below).
+// The strings are kept in two conc-trees (see CatenableList.java), whose nodes weigh their
+// strings by their number of characters: strings added to the back go on the end of the back
+// tree, and strings added to the front go on the end of the front tree, so the front tree
+// holds its strings last to first. Reversing doesn't move anything, it just flips which end
+// is which: a reversed SeqLoString adds to the front of its list by adding to the end of its
+// back tree, and so on.
+// Appending and splitting need the strings in one balanced tree, so the front tree is turned
+// around and joined onto the back tree first, which takes time linear in the number of
+// strings in the front tree. The joined tree is kept in place of the two, so a list only
+// joins once, however many times it's appended or split; but a list made by adding to the
+// front of it starts a new front tree, which the new list has to join in turn. Keeping it
+// doesn't change the list's strings, and the two trees are swapped for the joined ones all at
+// once (they're held together in one SeqTrees, through a volatile field), so a list can still
+// be shared between threads: one reading it while another joins it sees either the old trees
+// or the new ones, never some of each.
+// Appending two SeqLoStrings that are reversed differently (one has been reversed an odd
+// number of times more than the other) has to turn one of them around, which takes time
+// linear in the length of the shorter one.
+class SeqLoString implements ILoString {
+
+  // the strings added to the front and the back
+  volatile SeqTrees trees;
+
+  // has this list been reversed, so that its strings are the ones above, last to first?
+  boolean reversed;
+
+  // the operations on the trees
+  ConcOps<String> ops;
+
+  // constructor
+  SeqLoString(SeqTrees trees, boolean reversed) {
+    this.trees = trees;
+    this.reversed = reversed;
+    this.ops = new ConcOps<String>(new CharCount());
+  }
+
+  // convenience constructor for a list of the given trees
+  SeqLoString(Conc<String> front, Conc<String> back, boolean reversed) {
+    this(new SeqTrees(front, back), reversed);
+  }
+
+  // convenience constructor for an empty list
+  SeqLoString() {
+    this(new ConcEmpty<String>(), new ConcEmpty<String>(), false);
+  }
+
+  // convenience constructor for a list of the strings of the given list, in the same order
+  SeqLoString(ILoString list) {
+    this();
+    Conc<String> back = new ConcEmpty<String>();
+    Iterator<String> strings = new ILoStringIterator(list);
+    while (strings.hasNext()) {
+      back = this.ops.addLast(back, strings.next());
+    }
+    this.trees = new SeqTrees(new ConcEmpty<String>(), back);
+  }
+
+  // returns the number of strings in this list, in O(1)
+  public int length() {
+    SeqTrees trees = this.trees;
+    return trees.front.size + trees.back.size;
+  }
+
+  // returns the total number of characters in the strings of this list, in O(1)
+  long charLength() {
+    SeqTrees trees = this.trees;
+    return trees.front.weight + trees.back.weight;
+  }
+
+  // returns this list with its strings in the opposite order, in O(1)
+  public ILoString reverse() {
+    return new SeqLoString(this.trees, !this.reversed);
+  }
+
+  // returns the strings of this list as ConsLoStrings ending in an MtLoString
+  public ILoString normalize() {
+    ILoString result = new MtLoString();
+    Iterator<String> strings = this.reverseIterator();
+    while (strings.hasNext()) {
+      result = new ConsLoString(strings.next(), result);
+    }
+    return result;
+  }
+
+  // returns a list of the strings of this list followed by those of the given list
+  // if the given list is also a SeqLoString, this takes O(log n) once both have joined their
+  // front trees (as long as both are reversed the same way), and otherwise it takes time
+  // linear in the length of the given list
+  public ILoString append(ILoString back) {
+    return this.appendSeq(this.asSeq(back));
+  }
+
+  // returns a list of the strings of this list followed by those of the given one
+  SeqLoString appendSeq(SeqLoString that) {
+    if (that.length() == 0) {
+      return this;
+    } else if (this.length() == 0) {
+      return that;
+    } else if (this.reversed != that.reversed) {
+      // turn the shorter one around to match the other
+      if (this.length() < that.length()) {
+        return this.turnedAround().appendSeq(that);
+      } else {
+        return this.appendSeq(that.turnedAround());
+      }
+    }
+
+    if (this.reversed) {
+      // the stored order is backwards, so the given list's strings go before this one's
+      return new SeqLoString(new ConcEmpty<String>(),
+          this.ops.concat(that.joined(), this.joined()), true);
+    } else {
+      return new SeqLoString(new ConcEmpty<String>(),
+          this.ops.concat(this.joined(), that.joined()), false);
+    }
+  }
+
+  // returns a list of the given string followed by the strings of this list, in O(1)
+  // amortized
+  SeqLoString cons(String str) {
+    SeqTrees trees = this.trees;
+    if (this.reversed) {
+      return new SeqLoString(trees.front, this.ops.addLast(trees.back, str), true);
+    } else {
+      return new SeqLoString(this.ops.addLast(trees.front, str), trees.back, false);
+    }
+  }
+
+  // returns a list of the strings of this list followed by the given string, in O(1)
+  // amortized
+  SeqLoString snoc(String str) {
+    SeqTrees trees = this.trees;
+    if (this.reversed) {
+      return new SeqLoString(this.ops.addLast(trees.front, str), trees.back, true);
+    } else {
+      return new SeqLoString(trees.front, this.ops.addLast(trees.back, str), false);
+    }
+  }
+
+  // returns the string at the given index, in O(log n)
+  String get(int index) {
+    SeqTrees trees = this.trees;
+    int length = trees.front.size + trees.back.size;
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("The given index is out of bounds for this list.");
+    }
+
+    int stored = index;
+    if (this.reversed) {
+      stored = length - 1 - index;
+    }
+    if (stored < trees.front.size) {
+      return trees.front.get(trees.front.size - 1 - stored);
+    } else {
+      return trees.back.get(stored - trees.front.size);
+    }
+  }
+
+  // returns a list of the first n strings of this list and a list of the rest, in O(log n)
+  // once this list has joined its front tree
+  Pair<SeqLoString, SeqLoString> split(int n) {
+    n = Math.max(0, Math.min(n, this.length()));
+    Conc<String> all = this.joined();
+    Pair<Conc<String>, Conc<String>> halves;
+    if (this.reversed) {
+      halves = this.ops.split(all, this.length() - n);
+    } else {
+      halves = this.ops.split(all, n);
+    }
+
+    // in a reversed list, the first strings are the ones stored at the end
+    Conc<String> first = halves.first;
+    Conc<String> rest = halves.second;
+    if (this.reversed) {
+      first = halves.second;
+      rest = halves.first;
+    }
+    return new Pair<SeqLoString, SeqLoString>(
+        new SeqLoString(new ConcEmpty<String>(), first, this.reversed),
+        new SeqLoString(new ConcEmpty<String>(), rest, this.reversed));
+  }
+
+  // produces an ILoString where each string element is all the prior strings (from this
+  // SeqLoString) concatenated together from left to right
+  public ILoString scanConcat() {
+    return new PrefixScan(this).toLoString();
+  }
+
+  // produces an ILoString where each string element is all the prior strings (from this
+  // SeqLoString) concatenated together from left to right, using an accumulator which stores
+  // all the previous strings (from this list, left to right) concatenated together
+  public ILoString scanHelper(String prevConcat) {
+    return this.normalize().scanHelper(prevConcat);
+  }
+
+  // EFFECT: pushes the strings of this list onto the given stack, last to first, so that the
+  // first one ends up on top
+  public void unfold(ArrayList<Object> pending) {
+    Iterator<String> strings = this.reverseIterator();
+    while (strings.hasNext()) {
+      pending.add(strings.next());
+    }
+  }
+
+  // returns an iterator over the strings of this list, first to last
+  Iterator<String> iterator() {
+    SeqTrees trees = this.trees;
+    if (this.reversed) {
+      return new ChainedIterator<String>(new ConcIterator<String>(trees.back, true),
+          new ConcIterator<String>(trees.front, false));
+    } else {
+      return new ChainedIterator<String>(new ConcIterator<String>(trees.front, true),
+          new ConcIterator<String>(trees.back, false));
+    }
+  }
+
+  // returns an iterator over the strings of this list, last to first
+  Iterator<String> reverseIterator() {
+    return ((SeqLoString) this.reverse()).iterator();
+  }
+
+  // returns one balanced tree of the strings of this list in their stored order: the front
+  // tree turned around, followed by the back tree
+  // EFFECT: keeps that tree as this list's back tree, with an empty front tree, so the next
+  // call takes O(1) (this list's strings and their order are the same as before)
+  Conc<String> joined() {
+    SeqTrees trees = this.trees;
+    if (trees.front.size > 0 || !trees.back.isBalanced()) {
+      Conc<String> result = new ConcEmpty<String>();
+      Iterator<String> fronts = new ConcIterator<String>(trees.front, true);
+      while (fronts.hasNext()) {
+        result = this.ops.addLast(result, fronts.next());
+      }
+      // two threads joining at once both build the same tree, so either can be kept
+      trees = new SeqTrees(new ConcEmpty<String>(), this.ops.concatTop(result, trees.back));
+      this.trees = trees;
+    }
+    return trees.back;
+  }
+
+  // returns a list of the same strings in the same order, but stored the other way around
+  // (so it's reversed if this one isn't), in time linear in its length
+  SeqLoString turnedAround() {
+    // a reversed list stores its strings last to first, so it's stored first to last
+    Iterator<String> strings = this.reverseIterator();
+    if (this.reversed) {
+      strings = this.iterator();
+    }
+    Conc<String> result = new ConcEmpty<String>();
+    while (strings.hasNext()) {
+      result = this.ops.addLast(result, strings.next());
+    }
+    return new SeqLoString(new ConcEmpty<String>(), result, !this.reversed);
+  }
+
+  // returns the given list as a SeqLoString
+  SeqLoString asSeq(ILoString list) {
+    if (list instanceof SeqLoString) {
+      return (SeqLoString) list;
+    } else {
+      return new SeqLoString(list);
+    }
+  }
+}
+
+// the two trees of a SeqLoString, which are only ever replaced together
+class SeqTrees {
+
+  // the strings added to the front, last to first
+  Conc<String> front;
+
+  // the strings added to the back (or joined in from the front), first to last
+  Conc<String> back;
+
+  // constructor
+  SeqTrees(Conc<String> front, Conc<String> back) {
+    this.front = front;
+    this.back = back;
+  }
+}
+
+// weighs a string by its number of characters
+class CharCount implements IFunc<String, Integer> {
+  public Integer apply(String str) {
+    return str.length();
+  }
+}
+
+// an iterator over the elements of one iterator followed by those of another
+class ChainedIterator<T> implements Iterator<T> {
+
+  // the iterators, in order
+  Iterator<T> first;
+  Iterator<T> second;
+
+  // constructor
+  ChainedIterator(Iterator<T> first, Iterator<T> second) {
+    this.first = first;
+    this.second = second;
+  }
+
+  // are there any elements left in either iterator?
+  public boolean hasNext() {
+    return this.first.hasNext() || this.second.hasNext();
+  }
+
+  // returns the next element of the first iterator, or of the second once the first is done
+  public T next() {
+    if (this.first.hasNext()) {
+      return this.first.next();
+    } else if (this.second.hasNext()) {
+      return this.second.next();
+    } else {
+      throw new NoSuchElementException("The list has no more elements.");
+    }
+  }
+}
+
+// a class for testing SeqLoString functionality
+class ExamplesSeqLoString {
+
+  MtLoString mt = new MtLoString();
+  ILoString abc = new ConsLoString("a", new ConsLoString("bb",
+      new ConsLoString("ccc", this.mt)));
+
+  // test building from other lists, length, and adding to both ends
+  void testBuilding(Tester t) {
+    SeqLoString seq = new SeqLoString(this.abc);
+    t.checkExpect(seq.length(), 3);
+    t.checkExpect(seq.charLength(), 6L);
+    t.checkExpect(seq.normalize(), this.abc);
+
+    SeqLoString more = seq.cons("z").snoc("dd").cons("y");
+    t.checkExpect(more.normalize(), new ConsLoString("y", new ConsLoString("z",
+        new ConsLoString("a", new ConsLoString("bb", new ConsLoString("ccc",
+            new ConsLoString("dd", this.mt)))))));
+    t.checkExpect(more.length(), 6);
+    t.checkExpect(more.charLength(), 10L);
+    // the original list is unchanged
+    t.checkExpect(seq.normalize(), this.abc);
+
+    t.checkExpect(new SeqLoString().normalize(), this.mt);
+    t.checkExpect(new SeqLoString(new SnocLoString(new SnocLoString(this.mt, "p"), "q"))
+        .normalize(), new ConsLoString("p", new ConsLoString("q", this.mt)));
+  }
+
+  // test reversing, and adding to a reversed list
+  void testReverse(Tester t) {
+    SeqLoString seq = new SeqLoString(this.abc).cons("z");
+    SeqLoString rev = (SeqLoString) seq.reverse();
+    t.checkExpect(rev.normalize(), new ConsLoString("ccc", new ConsLoString("bb",
+        new ConsLoString("a", new ConsLoString("z", this.mt)))));
+    t.checkExpect(rev.get(0), "ccc");
+    t.checkExpect(rev.get(3), "z");
+    t.checkExpect(rev.cons("x").snoc("w").normalize(), new ConsLoString("x",
+        new ConsLoString("ccc", new ConsLoString("bb", new ConsLoString("a",
+            new ConsLoString("z", new ConsLoString("w", this.mt)))))));
+    t.checkExpect(rev.reverse().normalize(), seq.normalize());
+  }
+
+  // test appending, including lists reversed differently and other kinds of lists
+  void testAppend(Tester t) {
+    SeqLoString seq = new SeqLoString(this.abc).cons("z");
+    SeqLoString rev = (SeqLoString) new SeqLoString(this.abc).reverse();
+
+    t.checkExpect(seq.append(seq).normalize(), seq.normalize().append(seq.normalize()));
+    t.checkExpect(seq.append(rev).normalize(), seq.normalize().append(rev.normalize()));
+    t.checkExpect(rev.append(seq).normalize(), rev.normalize().append(seq.normalize()));
+    t.checkExpect(rev.append(rev).normalize(), rev.normalize().append(rev.normalize()));
+    t.checkExpect(seq.append(this.abc).normalize(), seq.normalize().append(this.abc));
+    t.checkExpect(((SeqLoString) seq.append(rev)).charLength(), 13L);
+    t.checkExpect(new SeqLoString().append(this.mt).length(), 0);
+  }
+
+  // test indexing and splitting
+  void testGetAndSplit(Tester t) {
+    SeqLoString seq = new SeqLoString(this.abc).cons("z").cons("y");
+    t.checkExpect(seq.get(0), "y");
+    t.checkExpect(seq.get(2), "a");
+    t.checkExpect(seq.get(4), "ccc");
+    t.checkException(new IndexOutOfBoundsException(
+        "The given index is out of bounds for this list."), seq, "get", 5);
+
+    Pair<SeqLoString, SeqLoString> halves = seq.split(2);
+    t.checkExpect(halves.first.normalize(), new ConsLoString("y", new ConsLoString("z",
+        this.mt)));
+    t.checkExpect(halves.second.normalize(), this.abc);
+    t.checkExpect(halves.first.charLength(), 2L);
+    t.checkExpect(halves.second.charLength(), 6L);
+
+    Pair<SeqLoString, SeqLoString> revHalves = ((SeqLoString) seq.reverse()).split(1);
+    t.checkExpect(revHalves.first.normalize(), new ConsLoString("ccc", this.mt));
+    t.checkExpect(revHalves.second.normalize(), new ConsLoString("bb", new ConsLoString("a",
+        new ConsLoString("z", new ConsLoString("y", this.mt)))));
+    t.checkExpect(revHalves.second.charLength(), 5L);
+  }
+
+  // test scanConcat and walking a SeqLoString nested inside other lists
+  void testScan(Tester t) {
+    SeqLoString seq = new SeqLoString(this.abc);
+    t.checkExpect(seq.scanConcat(), this.abc.scanConcat());
+    t.checkExpect(seq.scanHelper("_"), this.abc.scanHelper("_"));
+    t.checkExpect(new AppendLoString(seq.reverse(), this.abc).normalize(),
+        new ConsLoString("ccc", new ConsLoString("bb", new ConsLoString("a",
+            this.abc))));
+  }
+
+  // test a long list built from both ends, then reversed, appended and split
+  void testLongList(Tester t) {
+    SeqLoString seq = new SeqLoString();
+    for (int i = 0; i < 100000; i += 1) {
+      seq = seq.cons("f" + i).snoc("b" + i);
+    }
+    t.checkExpect(seq.length(), 200000);
+    t.checkExpect(seq.get(0), "f99999");
+    t.checkExpect(seq.get(199999), "b99999");
+
+    SeqLoString both = seq.appendSeq((SeqLoString) seq.reverse());
+    t.checkExpect(both.length(), 400000);
+    t.checkExpect(both.get(200000), "b99999");
+    t.checkExpect(both.charLength(), 4 * seq.charLength() / 2);
+    t.checkExpect(both.split(300000).second.get(0), "f0");
+    t.checkExpect(both.split(300000).second.length(), 100000);
+  }
+
+  // test that a list joins its front tree once, however many times it's split
+  void testRepeatedSplits(Tester t) {
+    SeqLoString seq = new SeqLoString();
+    for (int i = 0; i < 200000; i += 1) {
+      seq = seq.cons("s" + i);
+    }
+    long chars = seq.charLength();
+    boolean lengthsAddUp = true;
+    for (int n = 0; n < 200000; n += 2000) {
+      Pair<SeqLoString, SeqLoString> halves = seq.split(n);
+      lengthsAddUp = lengthsAddUp && halves.first.length() == n
+          && halves.first.charLength() + halves.second.charLength() == chars;
+    }
+    t.checkExpect(lengthsAddUp, true);
+    t.checkExpect(seq.trees.front.size, 0);
+    t.checkExpect(seq.trees.back.size, 200000);
+    // the strings "s199999" down to "s199990" are 7 characters each
+    t.checkExpect(seq.split(10).first.charLength(), 70L);
+    t.checkExpect(seq.split(10).second.get(0), "s199989");
+  }
+}
@@ -0,0 +1,345 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import tester.*;
+
+// a way of writing values of some type as bytes, and reading them back
+interface ICodec<T> {
+
+  // EFFECT: writes the given value to the given stream
+  void write(T value, DataOutputStream out) throws IOException;
+
+  // returns the value that starts at the given buffer's position
+  // EFFECT: moves the buffer's position past it
+  T read(ByteBuffer in);
+}
+
+// writes integers as 4 bytes
+class IntCodec implements ICodec<Integer> {
+  public void write(Integer value, DataOutputStream out) throws IOException {
+    out.writeInt(value);
+  }
+
+  public Integer read(ByteBuffer in) {
+    return in.getInt();
+  }
+}
+
+// writes strings as their length in bytes, then their UTF-8 bytes
+class StringCodec implements ICodec<String> {
+  public void write(String value, DataOutputStream out) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public String read(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
+
+// writes the items and counts of a multiset: the item with the given codec, then the count
+class PairCodec<T> implements ICodec<Pair<T, Integer>> {
+
+  // the codec for the items
+  ICodec<T> items;
+
+  // constructor
+  PairCodec(ICodec<T> items) {
+    this.items = items;
+  }
+
+  public void write(Pair<T, Integer> pair, DataOutputStream out) throws IOException {
+    this.items.write(pair.first, out);
+    out.writeInt(pair.second);
+  }
+
+  public Pair<T, Integer> read(ByteBuffer in) {
+    T item = this.items.read(in);
+    return new Pair<T, Integer>(item, in.getInt());
+  }
+}
+
+// a compact binary file of the values of a binary search tree (or the items and counts of an
+// orderable multiset), in order, which can be loaded back into a balanced tree in O(n) instead
+// of inserting each value again.
+// The file is the magic number and format version, then the number of values and the values
+// themselves (written with the codec), and last a CRC-32 of everything before it. Files are
+// read through a MappedByteBuffer, so the operating system pages them in as the values are
+// decoded, without copying them into the heap first.
+// Snapshots are written to a temporary file that's synced to disk and then moved into place
+// (syncing the directory after the move), so a crash while writing leaves any older snapshot
+// as it was, and a crash after write returns keeps the new one.
+class Snapshot<T> {
+
+  // the first four bytes of every snapshot ("BST" and a 1)
+  static final int MAGIC = 0x42535401;
+
+  // the version of the format described above
+  static final int VERSION = 1;
+
+  // the number of bytes before the values, and after them
+  static final int HEADER_BYTES = 12;
+  static final int FOOTER_BYTES = 4;
+
+  // how the values are written
+  ICodec<T> codec;
+
+  // constructor
+  Snapshot(ICodec<T> codec) {
+    this.codec = codec;
+  }
+
+  // EFFECT: writes the values of the given tree, in order, to the given file, replacing it
+  void write(BinarySearchTree<T> tree, Path file) {
+    ArrayList<T> values = new ArrayList<T>();
+    for (T value : tree) {
+      values.add(value);
+    }
+    this.write(values, file);
+  }
+
+  // EFFECT: writes the given values, which should already be in order, to the given file,
+  // replacing it
+  void write(ArrayList<T> values, Path file) {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+            new BufferedOutputStream(fileOut, 1 << 16), crc))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(values.size());
+      for (T value : values) {
+        this.codec.write(value, out);
+      }
+      // the checksum is taken before it's written, so it covers everything before it
+      out.writeInt((int) crc.getValue());
+      out.flush();
+      fileOut.getFD().sync();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      // the move is a change to the directory, which has to be synced too for it to last
+      try (FileChannel directory = FileChannel.open(file.toAbsolutePath().getParent(),
+          StandardOpenOption.READ)) {
+        directory.force(true);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // returns the values in the given file, in order
+  // throws an exception if it isn't a snapshot of this version, or it's been damaged
+  ArrayList<T> read(Path file) {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("The snapshot is too large to map.");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    int end = buffer.limit() - FOOTER_BYTES;
+    if (end < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("The file is not a snapshot.");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("The snapshot's version is not supported.");
+    }
+    CRC32 crc = new CRC32();
+    ByteBuffer covered = buffer.duplicate();
+    covered.limit(end);
+    crc.update(covered);
+    if ((int) crc.getValue() != buffer.getInt(end)) {
+      throw new IllegalArgumentException("The snapshot is damaged.");
+    }
+
+    int count = buffer.getInt(8);
+    ArrayList<T> values = new ArrayList<T>(count);
+    buffer.position(HEADER_BYTES);
+    buffer.limit(end);
+    for (int i = 0; i < count; i += 1) {
+      values.add(this.codec.read(buffer));
+    }
+    return values;
+  }
+
+  // EFFECT: replaces the contents of the given tree with the values in the given file, as a
+  // balanced tree
+  void load(BinarySearchTree<T> tree, Path file) {
+    tree.buildFrom(this.read(file));
+  }
+}
+
+// snapshots of orderable multisets: their items and counts, in order
+class MultiSetSnapshot<T> {
+
+  // the snapshot of the multiset's pairs
+  Snapshot<Pair<T, Integer>> pairs;
+
+  // constructor
+  MultiSetSnapshot(ICodec<T> items) {
+    this.pairs = new Snapshot<Pair<T, Integer>>(new PairCodec<T>(items));
+  }
+
+  // EFFECT: writes the items and counts of the given multiset to the given file, replacing it
+  void write(OrderableMultiSet<T> set, Path file) {
+    this.pairs.write(set, file);
+  }
+
+  // returns a new multiset, ordered by the given comparator, holding the items and counts in
+  // the given file
+  OrderableMultiSet<T> load(Path file, IComparator<T> order) {
+    OrderableMultiSet<T> set = new OrderableMultiSet<T>(order);
+    set.buildFrom(this.pairs.read(file));
+    return set;
+  }
+}
+
+// temporary directories for the tests of the structures that write files, so each test can
+// delete what it wrote when it's done
+class TempFiles {
+
+  // returns a new temporary directory whose name starts with the given prefix
+  static Path directory(String prefix) {
+    try {
+      return Files.createTempDirectory(prefix);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // EFFECT: deletes every file in the given directory, and then the directory
+  static void delete(Path directory) {
+    try {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+        for (Path file : files) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// a class for testing snapshots
+class ExamplesSnapshot {
+
+  // returns a new file name in a new temporary directory
+  Path tempFile() {
+    return TempFiles.directory("snapshot").resolve("data.snap");
+  }
+
+  // test that a tree written and loaded back has the same values, balanced
+  void testTreeRoundTrip(Tester t) {
+    BinarySearchTree<Integer> tree = new BinarySearchTree<Integer>(new IncrementingIntegers());
+    for (int i = 0; i < 1000; i += 1) {
+      tree.insert(i); // a path 1000 nodes deep
+    }
+    Path file = this.tempFile();
+    Snapshot<Integer> snapshot = new Snapshot<Integer>(new IntCodec());
+    snapshot.write(tree, file);
+
+    BinarySearchTree<Integer> loaded = new BinarySearchTree<Integer>(new IncrementingIntegers());
+    snapshot.load(loaded, file);
+    t.checkExpect(loaded.size(), 1000);
+    t.checkExpect(loaded.get(0), 0);
+    t.checkExpect(loaded.get(999), 999);
+    t.checkExpect(loaded.find(new CompareToAnswer<Integer>(new IncrementingIntegers(), 512)), 512);
+    t.checkExpect(loaded.root, new BuildBalanced<Integer>().apply(snapshot.read(file)));
+
+    // an empty tree
+    snapshot.write(new BinarySearchTree<Integer>(new IncrementingIntegers()), file);
+    snapshot.load(loaded, file);
+    t.checkExpect(loaded.size(), 0);
+    TempFiles.delete(file.getParent());
+  }
+
+  // test that a multiset written and loaded back has the same items, counts and count index
+  void testMultiSetRoundTrip(Tester t) {
+    OrderableMultiSet<String> words = new OrderableMultiSet<String>(new AlphabeticalStrings());
+    String[] text = {"the", "cat", "sat", "on", "the", "mat", "the", "end", "", "naïve"};
+    for (String word : text) {
+      words.add(word);
+    }
+    Path file = this.tempFile();
+    MultiSetSnapshot<String> snapshot = new MultiSetSnapshot<String>(new StringCodec());
+    snapshot.write(words, file);
+
+    OrderableMultiSet<String> loaded = snapshot.load(file, new AlphabeticalStrings());
+    t.checkExpect(loaded.equals(words), true);
+    t.checkExpect(loaded.itemCount("the"), 3);
+    t.checkExpect(loaded.itemCount("naïve"), 1);
+    t.checkExpect(loaded.itemCount("dog"), 0);
+    t.checkExpect(loaded.mostFrequent(2), words.mostFrequent(2));
+    t.checkExpect(loaded.countAtLeast(1), words.countAtLeast(1));
+    t.checkExpect(loaded.frequencyRank("the"), 0);
+    t.checkExpect(loaded.frequencyRank("cat"), words.frequencyRank("cat"));
+    t.checkExpect(loaded.distinctCount(), 8);
+
+    // the loaded multiset keeps working like any other
+    loaded.add("cat", 5);
+    loaded.remove("the", 3);
+    t.checkExpect(loaded.mostFrequent(1).get(0).first, "cat");
+    t.checkExpect(loaded.itemCount("the"), 0);
+    TempFiles.delete(file.getParent());
+  }
+
+  // test that files that aren't whole snapshots are rejected
+  void testDamaged(Tester t) {
+    Path file = this.tempFile();
+    Snapshot<Integer> snapshot = new Snapshot<Integer>(new IntCodec());
+    ArrayList<Integer> values = new ArrayList<Integer>();
+    values.add(1);
+    values.add(2);
+    snapshot.write(values, file);
+
+    try {
+      byte[] bytes = Files.readAllBytes(file);
+      bytes[Snapshot.HEADER_BYTES + 1] ^= 1;
+      Files.write(file, bytes);
+      t.checkException(new IllegalArgumentException("The snapshot is damaged."), snapshot,
+          "read", file);
+
+      Files.write(file, new byte[] {1, 2, 3});
+      t.checkException(new IllegalArgumentException("The file is not a snapshot."), snapshot,
+          "read", file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // values that aren't in order can't be loaded into a tree
+    values.add(0);
+    snapshot.write(values, file);
+    t.checkException(new IllegalArgumentException(
+        "The items are not in strictly increasing order."), snapshot, "load",
+        new BinarySearchTree<Integer>(new IncrementingIntegers()), file);
+    TempFiles.delete(file.getParent());
+  }
+}
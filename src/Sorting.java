@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import tester.*;
+
+// sorts a list with a stable merge sort, in O(n log n) time.
+// The list is copied into an array and sorted bottom-up: first every run of 1 element is merged
+// with its neighbor, then every run of 2, then 4, and so on, going back and forth between the
+// array and a buffer of the same size. Nothing recurses, so even very long lists can be sorted.
+// Elements that compare as equal stay in the order they were in.
+class SortList<T> implements IFunc<IList<T>, IList<T>> {
+
+  // the order to sort into
+  IComparator<T> order;
+
+  // constructor
+  SortList(IComparator<T> order) {
+    this.order = order;
+  }
+
+  // returns the elements of the given list, sorted
+  public IList<T> apply(IList<T> list) {
+    return new ListOfArray<T>().apply(this.sorted(new ArrayOfList<T>().apply(list)));
+  }
+
+  // returns an array of the given elements, sorted, reusing the given array as one of the two
+  // that the passes go back and forth between
+  Object[] sorted(Object[] items) {
+    Object[] buffer = new Object[items.length];
+
+    for (int width = 1; width < items.length; width *= 2) {
+      for (int low = 0; low < items.length; low += 2 * width) {
+        int mid = Math.min(low + width, items.length);
+        int high = Math.min(low + 2 * width, items.length);
+        this.merge(items, buffer, low, mid, high);
+      }
+      Object[] swap = items;
+      items = buffer;
+      buffer = swap;
+    }
+
+    return items;
+  }
+
+  // EFFECT: merges the sorted runs from low to mid and from mid to high of the source array
+  // into the same range of the destination array
+  // on ties, the element from the first run goes first, which keeps the sort stable
+  void merge(Object[] source, Object[] dest, int low, int mid, int high) {
+    int left = low;
+    int right = mid;
+    for (int i = low; i < high; i += 1) {
+      if (right >= high || (left < mid && this.atOrBefore(source, left, right))) {
+        dest[i] = source[left];
+        left += 1;
+      } else {
+        dest[i] = source[right];
+        right += 1;
+      }
+    }
+  }
+
+  // does the element at the first index of the given array go at or before the element at the
+  // second index?
+  // the casts are safe, because the array was filled from a list of T's
+  @SuppressWarnings("unchecked")
+  boolean atOrBefore(Object[] items, int first, int second) {
+    return this.order.compare((T) items[first], (T) items[second]) <= 0;
+  }
+}
+
+// sorts a list like SortList, but hands lists longer than a threshold to Arrays.parallelSort,
+// which sorts pieces of the array on the common fork-join pool and merges them in parallel.
+// That sort is stable too, so both paths give the same answer.
+class ParallelSortList<T> implements IFunc<IList<T>, IList<T>> {
+
+  // the order to sort into
+  IComparator<T> order;
+
+  // the shortest list that is sorted in parallel
+  int threshold;
+
+  // constructor
+  ParallelSortList(IComparator<T> order, int threshold) {
+    this.order = order;
+    this.threshold = threshold;
+  }
+
+  // convenience constructor that sorts lists of 8192 or more elements in parallel, which is
+  // where Arrays.parallelSort itself stops sorting sequentially
+  ParallelSortList(IComparator<T> order) {
+    this(order, 8192);
+  }
+
+  // returns the elements of the given list, sorted
+  public IList<T> apply(IList<T> list) {
+    Object[] items = new ArrayOfList<T>().apply(list);
+    if (items.length < this.threshold) {
+      return new ListOfArray<T>().apply(new SortList<T>(this.order).sorted(items));
+    }
+
+    // the cast is safe, because the array was filled from a list of T's
+    @SuppressWarnings("unchecked")
+    T[] typed = (T[]) items;
+    Arrays.parallelSort(typed, new ComparatorOf<T>(this.order));
+    return new ListOfArray<T>().apply(typed);
+  }
+}
+
+// merges any number of sorted lists into one sorted list, in O(n log k) time for k lists with
+// n elements in total.
+// A heap holds the next element of each list. Its smallest element goes on the result, and
+// is replaced by the next element of the same list. When the next elements of two lists
+// compare as equal, the one from the earlier list goes first, so the merge is stable.
+class MergeSorted<T> {
+
+  // the order the lists are sorted in
+  IComparator<T> order;
+
+  // constructor
+  MergeSorted(IComparator<T> order) {
+    this.order = order;
+  }
+
+  // returns the elements of all of the given sorted lists, sorted
+  // (it only reads the array of lists, so passing them as varargs is safe)
+  @SafeVarargs
+  final IList<T> merge(IList<T>... lists) {
+    PriorityQueue<MergeCursor<T>> heap =
+        new PriorityQueue<MergeCursor<T>>(Math.max(1, lists.length),
+            new ByHeadThenSource<T>(this.order));
+    for (int i = 0; i < lists.length; i += 1) {
+      Iterator<T> items = lists[i].iterator();
+      if (items.hasNext()) {
+        heap.add(new MergeCursor<T>(items, i));
+      }
+    }
+
+    BuildConsList<T> result = new BuildConsList<T>();
+    while (!heap.isEmpty()) {
+      MergeCursor<T> smallest = heap.poll();
+      result.take(smallest.head);
+      if (smallest.advance()) {
+        heap.add(smallest);
+      }
+    }
+    return result.result();
+  }
+}
+
+// the next element of one of the lists being merged
+class MergeCursor<T> {
+
+  // the rest of the list
+  Iterator<T> rest;
+
+  // the element of the list that's next in line
+  T head;
+
+  // the position of the list among the lists being merged
+  int source;
+
+  // constructor
+  // the list has to have at least one element left
+  MergeCursor(Iterator<T> rest, int source) {
+    this.rest = rest;
+    this.source = source;
+    this.head = rest.next();
+  }
+
+  // EFFECT: moves on to the next element of the list, if there is one
+  // returns whether there was one
+  boolean advance() {
+    if (this.rest.hasNext()) {
+      this.head = this.rest.next();
+      return true;
+    } else {
+      return false;
+    }
+  }
+}
+
+// orders merge cursors by their next elements, and then by which list they came from
+class ByHeadThenSource<T> implements Comparator<MergeCursor<T>> {
+
+  // the order the elements are sorted in
+  IComparator<T> order;
+
+  // constructor
+  ByHeadThenSource(IComparator<T> order) {
+    this.order = order;
+  }
+
+  // compares the next elements of the given cursors, breaking ties by their lists' positions
+  public int compare(MergeCursor<T> left, MergeCursor<T> right) {
+    int byHead = this.order.compare(left.head, right.head);
+    if (byHead != 0) {
+      return byHead;
+    } else {
+      return Integer.compare(left.source, right.source);
+    }
+  }
+}
+
+// lets an IComparator be used wherever Java expects a Comparator
+class ComparatorOf<T> implements Comparator<T> {
+
+  // the comparator to use
+  IComparator<T> order;
+
+  // constructor
+  ComparatorOf(IComparator<T> order) {
+    this.order = order;
+  }
+
+  // compares the given elements with the IComparator
+  public int compare(T left, T right) {
+    return this.order.compare(left, right);
+  }
+}
+
+// returns an array of the elements of a list, in order
+class ArrayOfList<T> implements IFunc<IList<T>, Object[]> {
+  public Object[] apply(IList<T> list) {
+    Object[] items = new Object[16];
+    int count = 0;
+    for (T item : list) {
+      if (count == items.length) {
+        items = Arrays.copyOf(items, count * 2);
+      }
+      items[count] = item;
+      count += 1;
+    }
+    return Arrays.copyOf(items, count);
+  }
+}
+
+// returns a list of the elements of an array, in order
+class ListOfArray<T> implements IFunc<Object[], IList<T>> {
+  public IList<T> apply(Object[] items) {
+    IList<T> result = new MtList<T>();
+    for (int i = items.length - 1; i >= 0; i -= 1) {
+      // the cast is safe, because the array only ever holds T's
+      @SuppressWarnings("unchecked")
+      T item = (T) items[i];
+      result = new ConsList<T>(item, result);
+    }
+    return result;
+  }
+}
+
+// orders strings by their lengths alone, so that strings of the same length tie
+class ByLength implements IComparator<String> {
+  public int compare(String left, String right) {
+    return Integer.compare(left.length(), right.length());
+  }
+}
+
+// a class for testing sorting and merging
+class ExamplesSorting {
+
+  IncrementingIntegers ints = new IncrementingIntegers();
+
+  // test sorting small lists
+  void testSort(Tester t) {
+    SortList<Integer> sort = new SortList<Integer>(this.ints);
+    t.checkExpect(sort.apply(ListFixtures.list(5, 3, 9, 1, 3, 7)),
+        ListFixtures.list(1, 3, 3, 5, 7, 9));
+    t.checkExpect(sort.apply(new MtList<Integer>()), new MtList<Integer>());
+    t.checkExpect(sort.apply(ListFixtures.list(4)), ListFixtures.list(4));
+    t.checkExpect(sort.apply(ListFixtures.list(2, 1)), ListFixtures.list(1, 2));
+  }
+
+  // test that elements which compare as equal keep their order
+  void testStable(Tester t) {
+    IList<String> words = ListFixtures.list("ccc", "a", "bb", "b", "aaa", "c", "aa");
+    IList<String> sorted = ListFixtures.list("a", "b", "c", "bb", "aa", "ccc", "aaa");
+    t.checkExpect(new SortList<String>(new ByLength()).apply(words), sorted);
+    t.checkExpect(new ParallelSortList<String>(new ByLength(), 0).apply(words), sorted);
+  }
+
+  // test sorting a list long enough to need many passes, both ways
+  void testLongList(Tester t) {
+    IList<Integer> list = new MtList<Integer>();
+    for (int i = 0; i < 200000; i += 1) {
+      list = new ConsList<Integer>((i * 7919) % 200000, list);
+    }
+
+    IList<Integer> sorted = new SortList<Integer>(this.ints).apply(list);
+    IList<Integer> parallel = new ParallelSortList<Integer>(this.ints).apply(list);
+    boolean inOrder = true;
+    int expected = 0;
+    Iterator<Integer> fromParallel = parallel.iterator();
+    for (Integer num : sorted) {
+      inOrder = inOrder && num == expected && fromParallel.next() == expected;
+      expected += 1;
+    }
+    t.checkExpect(inOrder, true);
+    t.checkExpect(expected, 200000);
+  }
+
+  // test merging several sorted lists
+  void testMergeSorted(Tester t) {
+    MergeSorted<Integer> merge = new MergeSorted<Integer>(this.ints);
+    t.checkExpect(merge.merge(ListFixtures.list(1, 4, 7), ListFixtures.list(2, 5, 8),
+        ListFixtures.list(3, 6, 9)), ListFixtures.list(1, 2, 3, 4, 5, 6, 7, 8, 9));
+    t.checkExpect(merge.merge(ListFixtures.list(1, 2), new MtList<Integer>(),
+        ListFixtures.list(0, 5, 6)), ListFixtures.list(0, 1, 2, 5, 6));
+    t.checkExpect(merge.merge(), new MtList<Integer>());
+
+    // ties come from the earlier list first
+    MergeSorted<String> byLength = new MergeSorted<String>(new ByLength());
+    t.checkExpect(byLength.merge(ListFixtures.list("b", "bb"), ListFixtures.list("a", "aa"),
+        ListFixtures.list("c")), ListFixtures.list("b", "a", "c", "bb", "aa"));
+  }
+}
@@ -23,21 +23,34 @@ interface IWorkList<T> {
 
 //represents a stack data structure, where the last items added are the first to be removed
 class Stack<T> implements IWorkList<T> {
+  // counts of the operations on every Stack, and the most elements any Stack has held, recorded
+  // when Metrics are enabled
+  static final Counter ADD = Metrics.counter("Stack.add");
+  static final Counter NEXT = Metrics.counter("Stack.next");
+  static final MaxGauge MAX_DEPTH = Metrics.gauge("Stack.maxDepth");
+
   private final Deque<T> contents;
 
+  // the number of elements in this stack
+  private int depth;
+
   // Default constructor initializes empty collection of elements
   Stack() {
     this.contents = new Deque<T>();
+    this.depth = 0;
   }
 
   // adds an item to the head of the list
   public void add(T item) {
+    ADD.increment();
     this.contents.addAtHead(item);
+    this.depth += 1;
+    MAX_DEPTH.update(this.depth);
   }
 
-  // determines if this stack contains no elements
+  // determines if this stack contains no elements, in O(1)
   public boolean isEmpty() {
-    return this.contents.size() == 0;
+    return this.depth == 0;
   }
 
   // Removes and returns the most recent element added, throwing exception if no elements
@@ -46,6 +59,8 @@ class Stack<T> implements IWorkList<T> {
     if (this.isEmpty()) {
       throw new NoSuchElementException("No more elements in worklist.");
     }
+    NEXT.increment();
+    this.depth -= 1;
     return this.contents.removeFromHead();
   }
 
@@ -59,21 +74,34 @@ class Stack<T> implements IWorkList<T> {
 
 //represents a queue data structure, where the first items added are the first to be removed
 class Queue<T> implements IWorkList<T> {
+  // counts of the operations on every Queue, and the most elements any Queue has held, recorded
+  // when Metrics are enabled
+  static final Counter ADD = Metrics.counter("Queue.add");
+  static final Counter NEXT = Metrics.counter("Queue.next");
+  static final MaxGauge MAX_DEPTH = Metrics.gauge("Queue.maxDepth");
+
   private final Deque<T> contents;
 
+  // the number of elements in this queue
+  private int depth;
+
   // Default constructor initializes empty collection of elements
   Queue() {
     this.contents = new Deque<T>();
+    this.depth = 0;
   }
 
   // adds an item to the tail of the list
   public void add(T item) {
+    ADD.increment();
     this.contents.addAtTail(item);
+    this.depth += 1;
+    MAX_DEPTH.update(this.depth);
   }
 
-  // determines if this queue contains no elements
+  // determines if this queue contains no elements, in O(1)
   public boolean isEmpty() {
-    return this.contents.size() == 0;
+    return this.depth == 0;
   }
 
   // Removes and returns the least recent element added, throwing exception if no elements
@@ -82,6 +110,8 @@ class Queue<T> implements IWorkList<T> {
     if (this.isEmpty()) {
       throw new NoSuchElementException("No more elements in worklist.");
     }
+    NEXT.increment();
+    this.depth -= 1;
     return this.contents.removeFromHead();
   }
 
@@ -0,0 +1,202 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import tester.*;
+
+// what scanConcat would produce for one prefix of a stream of strings, without the prefix
+// itself: which prefix it is, how many characters it has, and its hash code
+class PrefixSummary {
+
+  // the number of strings in this prefix, minus one (the first prefix has index 0)
+  long index;
+
+  // the number of characters in this prefix
+  long length;
+
+  // the hash code this prefix would have as a String
+  int hash;
+
+  // constructor
+  PrefixSummary(long index, long length, int hash) {
+    this.index = index;
+    this.length = length;
+    this.hash = hash;
+  }
+}
+
+// a streaming version of scanConcat, which reads strings one at a time from a source that may
+// never end, and produces a summary of each prefix as soon as its last string has been read.
+// Only the length and hash code of the prefix so far are kept, never the prefix, so memory use
+// stays constant however much has been read (beyond the one string being read).
+// The hash codes match String.hashCode: a String's hash code is
+// s[0]*31^(n-1) + s[1]*31^(n-2) + ... + s[n-1], so adding one more character to the end of a
+// string multiplies its hash code by 31 and adds the character.
+class StreamingScan implements Iterator<PrefixSummary> {
+
+  // where the strings come from
+  Iterator<String> source;
+
+  // the summary of the prefix read so far, or null if nothing has been read
+  PrefixSummary last;
+
+  // constructor
+  StreamingScan(Iterator<String> source) {
+    this.source = source;
+    this.last = null;
+  }
+
+  // convenience constructor that reads the lines of the given reader, one string per line
+  // (without the line endings)
+  StreamingScan(Reader reader) {
+    this(new LineIterator(reader));
+  }
+
+  // are there any more strings to read?
+  public boolean hasNext() {
+    return this.source.hasNext();
+  }
+
+  // returns the summary of the prefix ending with the next string
+  // EFFECT: reads the next string from the source
+  public PrefixSummary next() {
+    String str = this.source.next();
+
+    long index = 0;
+    long length = 0;
+    int hash = 0;
+    if (this.last != null) {
+      index = this.last.index + 1;
+      length = this.last.length;
+      hash = this.last.hash;
+    }
+
+    for (int i = 0; i < str.length(); i += 1) {
+      hash = 31 * hash + str.charAt(i);
+    }
+    this.last = new PrefixSummary(index, length + str.length(), hash);
+    return this.last;
+  }
+}
+
+// an iterator over the lines of a reader, which reads each line only when it's asked for
+class LineIterator implements Iterator<String> {
+
+  // the reader the lines come from
+  BufferedReader reader;
+
+  // the line that's been read but not returned yet, or null if there isn't one
+  String nextLine;
+
+  // has the reader run out of lines?
+  boolean done;
+
+  // constructor
+  LineIterator(Reader reader) {
+    if (reader instanceof BufferedReader) {
+      this.reader = (BufferedReader) reader;
+    } else {
+      this.reader = new BufferedReader(reader);
+    }
+    this.nextLine = null;
+    this.done = false;
+  }
+
+  // are there any lines left?
+  // EFFECT: reads the next line, if it hasn't been read already
+  public boolean hasNext() {
+    if (this.nextLine == null && !this.done) {
+      try {
+        this.nextLine = this.reader.readLine();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.done = this.nextLine == null;
+    }
+    return this.nextLine != null;
+  }
+
+  // returns the next line
+  public String next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException("The reader has no more lines.");
+    }
+    String line = this.nextLine;
+    this.nextLine = null;
+    return line;
+  }
+}
+
+// an endless source of strings ("0", "1", "2", ...), made up as they're asked for
+class CountingStrings implements Iterator<String> {
+
+  // the number to make the next string from
+  long next = 0;
+
+  // there's always another string
+  public boolean hasNext() {
+    return true;
+  }
+
+  // returns the next number as a string
+  public String next() {
+    String str = Long.toString(this.next);
+    this.next += 1;
+    return str;
+  }
+}
+
+// a class for testing streaming scans
+class ExamplesStreamingScan {
+
+  // test that each summary matches the corresponding element of scanConcat
+  void testMatchesScanConcat(Tester t) {
+    ILoString list = new ConsLoString("hello", new ConsLoString("",
+        new ConsLoString(" world", new MtLoString())));
+    ILoString scanned = list.scanConcat();
+    StreamingScan scan = new StreamingScan(new ILoStringIterator(list));
+
+    boolean matches = true;
+    int count = 0;
+    Iterator<String> expected = new ILoStringIterator(scanned);
+    while (scan.hasNext()) {
+      PrefixSummary summary = scan.next();
+      String prefix = expected.next();
+      matches = matches && summary.index == count && summary.length == prefix.length()
+          && summary.hash == prefix.hashCode();
+      count += 1;
+    }
+    t.checkExpect(matches, true);
+    t.checkExpect(count, 3);
+    t.checkExpect(new StreamingScan(new ILoStringIterator(new MtLoString())).hasNext(), false);
+  }
+
+  // test reading the strings from the lines of a reader
+  void testReader(Tester t) {
+    StreamingScan scan = new StreamingScan(new StringReader("ab\ncd\r\n\nef"));
+    t.checkExpect(scan.next(), new PrefixSummary(0, 2, "ab".hashCode()));
+    t.checkExpect(scan.next(), new PrefixSummary(1, 4, "abcd".hashCode()));
+    t.checkExpect(scan.next(), new PrefixSummary(2, 4, "abcd".hashCode()));
+    t.checkExpect(scan.next(), new PrefixSummary(3, 6, "abcdef".hashCode()));
+    t.checkExpect(scan.hasNext(), false);
+    t.checkException(new NoSuchElementException("The reader has no more lines."), scan, "next");
+  }
+
+  // test scanning far more strings than would fit in memory as a list of prefixes: the prefix
+  // after the last of these would be tens of megabytes, and all of the prefixes together
+  // would be terabytes
+  void testEndlessSource(Tester t) {
+    StreamingScan scan = new StreamingScan(new CountingStrings());
+    PrefixSummary summary = null;
+    for (int i = 0; i < 5000000; i += 1) {
+      summary = scan.next();
+    }
+    // 10 one-digit numbers, 90 two-digit, 900 three-digit, ... up to 4000000 seven-digit
+    t.checkExpect(summary.length, 10L + 180 + 2700 + 36000 + 450000 + 5400000 + 28000000);
+    t.checkExpect(summary.index, 4999999L);
+    t.checkExpect(scan.hasNext(), true);
+  }
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import tester.*;
+
+// a source of positions that a window slides along, such as the current time or the number of
+// items seen so far
+interface IWindowClock {
+
+  // the current position of this clock, given how many items have been added so far
+  // (including one that's being added right now)
+  long position(long added);
+}
+
+// a clock that advances by one for every item added, for windows over the last M items
+class EventClock implements IWindowClock {
+
+  // the position is that of the most recently added item, where the first item is at 0
+  public long position(long added) {
+    return Math.max(0, added - 1);
+  }
+}
+
+// a clock that reads the system time in milliseconds, for windows over the last N milliseconds
+class MillisClock implements IWindowClock {
+
+  // the position is the current time, no matter how many items have been added
+  public long position(long added) {
+    return System.currentTimeMillis();
+  }
+}
+
+// a multiset that only counts the items added within a sliding window, such as the last N
+// seconds or the last M items.
+// The window is split into a ring of equally sized buckets, each an ordered multiset of just
+// the items added while it was the newest bucket. A running multiset holds the counts over
+// every live bucket. When the window slides past a bucket, its counts are subtracted from the
+// running multiset and the bucket is reused for new items, so every added item is expired
+// exactly once and nothing is ever rescanned.
+// Counts are only as precise as a bucket: an item stays counted until the whole bucket it
+// was added in has left the window.
+class WindowedMultiSet<T> implements IMultiSet<T> {
+
+  // the comparator used to order the items
+  IComparator<T> tOrder;
+
+  // the clock whose position the window slides along
+  IWindowClock clock;
+
+  // the counts over every bucket still in the window
+  OrderableMultiSet<T> live;
+
+  // the ring of buckets; the bucket numbered b is stored at index b mod buckets.size()
+  ArrayList<OrderableMultiSet<T>> buckets;
+
+  // how much of the clock's positions each bucket covers
+  long bucketSpan;
+
+  // the number of the newest bucket (the clock's position divided by the bucket span, rounded
+  // down)
+  long newest;
+
+  // the number of items added so far
+  long added;
+
+  // constructor
+  // the window covers the given length of the clock's positions, split into the given number
+  // of buckets, which has to divide the length evenly
+  WindowedMultiSet(IComparator<T> comp, IWindowClock clock, long windowLength, int buckets) {
+    if (windowLength <= 0 || buckets <= 0 || windowLength % buckets != 0) {
+      throw new IllegalArgumentException(
+          "The window must split evenly into a positive number of buckets.");
+    }
+    this.tOrder = comp;
+    this.clock = clock;
+    this.bucketSpan = windowLength / buckets;
+    this.added = 0;
+    this.newest = this.bucketNumber(clock.position(0));
+    this.live = new OrderableMultiSet<T>(comp);
+    this.buckets = new ArrayList<OrderableMultiSet<T>>(buckets);
+    for (int i = 0; i < buckets; i += 1) {
+      this.buckets.add(new OrderableMultiSet<T>(comp));
+    }
+  }
+
+  // How often does the given item appear in the current window?
+  // (If it is not present, then return 0.)
+  public int itemCount(T item) {
+    this.slide();
+    return this.live.itemCount(item);
+  }
+
+  // The given multiset is a subset of the current window if every item in the given multiset
+  // is present in the window, with a count that's less than or equal to the window's count.
+  public boolean hasSubset(IMultiSet<T> other) {
+    this.slide();
+    return this.live.hasSubset(other);
+  }
+
+  // EFFECT: adds the given item into the newest bucket of this window
+  public void add(T item) {
+    this.added += 1;
+    this.slide();
+    this.live.add(item);
+    this.bucket(this.newest).add(item);
+  }
+
+  // returns an iterator over the items in the current window and their counts
+  public Iterator<Pair<T, Integer>> iterator() {
+    this.slide();
+    return this.live.iterator();
+  }
+
+  // returns the number of the bucket that covers the given position of the clock
+  // positions can be negative (as some clocks' are), so this rounds down rather than toward 0,
+  // which would put the positions just either side of 0 in the same bucket
+  long bucketNumber(long position) {
+    return Math.floorDiv(position, this.bucketSpan);
+  }
+
+  // returns the index in the ring of the bucket with the given number, which is never
+  // negative, even for a negative number
+  int index(long number) {
+    return (int) Math.floorMod(number, (long) this.buckets.size());
+  }
+
+  // returns the bucket with the given number
+  OrderableMultiSet<T> bucket(long number) {
+    return this.buckets.get(this.index(number));
+  }
+
+  // EFFECT: expires every bucket that the clock has moved the window past
+  // if the window has moved past all of them, everything is dropped at once
+  void slide() {
+    long current = this.bucketNumber(this.clock.position(this.added));
+
+    if (current - this.newest >= this.buckets.size()) {
+      this.live = new OrderableMultiSet<T>(this.tOrder);
+      for (int i = 0; i < this.buckets.size(); i += 1) {
+        this.buckets.set(i, new OrderableMultiSet<T>(this.tOrder));
+      }
+      this.newest = current;
+    }
+
+    while (this.newest < current) {
+      this.newest += 1;
+      // the bucket the newest one will reuse is the oldest one in the window
+      this.expire(this.newest);
+    }
+  }
+
+  // EFFECT: subtracts the counts of the bucket with the given number from the running counts,
+  // and empties it
+  void expire(long number) {
+    OrderableMultiSet<T> oldest = this.bucket(number);
+
+    for (Pair<T, Integer> pair : oldest) {
+      this.live.remove(pair.first, pair.second);
+    }
+    this.buckets.set(this.index(number), new OrderableMultiSet<T>(this.tOrder));
+  }
+}
+
+// a clock whose position is set by hand, for testing time-based windows
+class ManualClock implements IWindowClock {
+
+  // the current position of this clock
+  long now;
+
+  // constructor
+  ManualClock(long now) {
+    this.now = now;
+  }
+
+  // the position is whatever was last set
+  public long position(long added) {
+    return this.now;
+  }
+}
+
+// a class for testing windowed multiset functionality
+class ExamplesWindowedMultiSet {
+
+  AlphabeticalStrings abc = new AlphabeticalStrings();
+
+  // test that bad window shapes are rejected
+  void testConstructor(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "The window must split evenly into a positive number of buckets."),
+        "WindowedMultiSet", this.abc, new EventClock(), 10L, 3);
+    t.checkConstructorException(new IllegalArgumentException(
+        "The window must split evenly into a positive number of buckets."),
+        "WindowedMultiSet", this.abc, new EventClock(), 0L, 1);
+  }
+
+  // test a window over the last 6 items, split into 3 buckets of 2
+  void testEventWindow(Tester t) {
+    WindowedMultiSet<String> window =
+        new WindowedMultiSet<String>(this.abc, new EventClock(), 6, 3);
+
+    window.add("a"); // bucket 0
+    window.add("a");
+    window.add("b"); // bucket 1
+    window.add("a");
+    window.add("b"); // bucket 2
+    window.add("c");
+    t.checkExpect(window.itemCount("a"), 3);
+    t.checkExpect(window.itemCount("b"), 2);
+    t.checkExpect(window.itemCount("c"), 1);
+
+    window.add("c"); // bucket 3 replaces bucket 0, dropping two a's
+    t.checkExpect(window.itemCount("a"), 1);
+    t.checkExpect(window.itemCount("c"), 2);
+
+    window.add("c");
+    window.add("c"); // bucket 4 replaces bucket 1, dropping an a and a b
+    t.checkExpect(window.itemCount("a"), 0);
+    t.checkExpect(window.itemCount("b"), 1);
+    t.checkExpect(window.itemCount("c"), 4);
+    t.checkExpect(window.live.size(), 2);
+  }
+
+  // test a window over the last 10 time units, split into 5 buckets, including skipping ahead
+  // further than the whole window
+  void testTimeWindow(Tester t) {
+    ManualClock clock = new ManualClock(100);
+    WindowedMultiSet<String> window = new WindowedMultiSet<String>(this.abc, clock, 10, 5);
+
+    window.add("x");
+    clock.now = 103;
+    window.add("x");
+    window.add("y");
+    t.checkExpect(window.itemCount("x"), 2);
+
+    // at 110 the bucket for 100-101 has left the window
+    clock.now = 110;
+    t.checkExpect(window.itemCount("x"), 1);
+    t.checkExpect(window.itemCount("y"), 1);
+
+    OrderableMultiSet<String> wanted = new OrderableMultiSet<String>(this.abc);
+    wanted.add("y");
+    t.checkExpect(window.hasSubset(wanted), true);
+
+    // after a long quiet stretch, everything has expired
+    clock.now = 500;
+    t.checkExpect(window.itemCount("x"), 0);
+    t.checkExpect(window.itemCount("y"), 0);
+    t.checkExpect(window.iterator().hasNext(), false);
+    t.checkExpect(window.hasSubset(wanted), false);
+
+    window.add("z");
+    t.checkExpect(window.itemCount("z"), 1);
+  }
+
+  // test a window whose clock starts at a negative position and moves past 0
+  void testNegativePositions(Tester t) {
+    ManualClock clock = new ManualClock(-7);
+    WindowedMultiSet<String> window = new WindowedMultiSet<String>(this.abc, clock, 10, 5);
+    t.checkExpect(window.newest, -4L);
+
+    window.add("x");
+    clock.now = -1;
+    window.add("y");
+    clock.now = 0;
+    window.add("z");
+    // positions -1 and 0 fall in different buckets, and the bucket for -8 to -7 is still in
+    // the window
+    t.checkExpect(window.newest, 0L);
+    t.checkExpect(window.itemCount("x"), 1);
+    t.checkExpect(window.bucket(-1).itemCount("y"), 1);
+    t.checkExpect(window.bucket(0).itemCount("y"), 0);
+
+    // at 2 the bucket for -8 to -7 has left the window
+    clock.now = 2;
+    t.checkExpect(window.itemCount("x"), 0);
+    t.checkExpect(window.itemCount("y"), 1);
+    t.checkExpect(window.itemCount("z"), 1);
+  }
+
+  // test that the counts always match a recount of the last M items in a long stream
+  void testMatchesRecount(Tester t) {
+    WindowedMultiSet<String> window =
+        new WindowedMultiSet<String>(this.abc, new EventClock(), 100, 10);
+    ArrayList<String> stream = new ArrayList<String>();
+    String[] keys = {"p", "q", "r", "s", "t"};
+
+    boolean matches = true;
+    for (int i = 0; i < 5000; i += 1) {
+      String key = keys[(i * 7 + i / 13) % keys.length];
+      window.add(key);
+      stream.add(key);
+
+      // the window holds everything since the start of the oldest live bucket
+      int start = Math.max(0, (i / 10 - 9) * 10);
+      int expected = 0;
+      for (int j = start; j <= i; j += 1) {
+        if (stream.get(j).equals("q")) {
+          expected += 1;
+        }
+      }
+      matches = matches && window.itemCount("q") == expected;
+    }
+    t.checkExpect(matches, true);
+  }
+}